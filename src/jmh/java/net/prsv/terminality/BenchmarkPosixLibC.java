@@ -0,0 +1,69 @@
+package net.prsv.terminality;
+
+import com.sun.jna.NativeLong;
+
+/**
+ * Stands in for libc in the benchmarks: the terminal is a TTY of a fixed size and every call succeeds.
+ */
+final class BenchmarkPosixLibC implements PosixLibC {
+
+    private final short rows;
+    private final short columns;
+
+    BenchmarkPosixLibC(int rows, int columns) {
+        this.rows = (short) rows;
+        this.columns = (short) columns;
+    }
+
+    @Override
+    public int tcgetattr(int fd, Termios termios) {
+        return 0;
+    }
+
+    @Override
+    public int tcsetattr(int fd, int optionalActions, Termios termios) {
+        return 0;
+    }
+
+    @Override
+    public int ioctl(int fd, int opt, WinSize winsize) {
+        winsize.ws_row = rows;
+        winsize.ws_col = columns;
+        return 0;
+    }
+
+    @Override
+    public int isatty(int fd) {
+        return 1;
+    }
+
+    @Override
+    public int poll(PollFd descriptors, NfdsT count, int timeoutMillis) {
+        return 0;
+    }
+
+    @Override
+    public int poll(PollFd[] descriptors, NfdsT count, int timeoutMillis) {
+        return 0;
+    }
+
+    @Override
+    public int pipe(int[] fds) {
+        return 0;
+    }
+
+    @Override
+    public NativeLong read(int fd, byte[] buffer, NativeLong count) {
+        return new NativeLong(0);
+    }
+
+    @Override
+    public NativeLong write(int fd, byte[] buffer, NativeLong count) {
+        return count;
+    }
+
+    @Override
+    public int close(int fd) {
+        return 0;
+    }
+}
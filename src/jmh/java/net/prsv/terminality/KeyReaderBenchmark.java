@@ -0,0 +1,193 @@
+package net.prsv.terminality;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decoding throughput of {@link UTKeyReader} on recorded input. Every operation is one decoded key,
+ * so the throughput is in keys per second, and {@code -prof gc} reports the allocation per key.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyReaderBenchmark {
+
+    private static final int KEYS = 4096;
+    private static final int PASTE_BYTES = 1 << 20;
+    private static final long ESCAPE_TIMEOUT_NANOS = 25_000_000L;
+
+    private static final String[] SPECIAL_KEYS = {
+            "\u001b[A", "\u001b[1;5C", "\u001b[1;2D", "\u001b[15;3~", "\u001b[24;8~", "\u001bOP", "\u001b[1;6H",
+            "\u001b[3~"
+    };
+
+    private ReplayInputStream asciiInput;
+    private ReplayInputStream cjkInput;
+    private ReplayInputStream specialKeyInput;
+    private ReplayInputStream pasteInput;
+    private ReplayInputStream bracketedPasteInput;
+    private ReplayInputStream escapeInput;
+
+    private UTKeyReader asciiReader;
+    private UTKeyReader cjkReader;
+    private UTKeyReader specialKeyReader;
+    private UTKeyReader pasteReader;
+    private UTKeyReader bracketedPasteReader;
+    private UTKeyReader escapeReader;
+
+    private long now;
+
+    @Setup
+    public void setUp() {
+        String sentence = "The quick brown fox jumps over the lazy dog. ";
+        asciiInput = new ReplayInputStream(repeat(sentence, KEYS).getBytes(StandardCharsets.US_ASCII));
+        cjkInput = new ReplayInputStream(repeat("終端機の入力を読む", KEYS).getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream specialKeys = new ByteArrayOutputStream();
+        for (int key = 0; key < KEYS; key++) {
+            specialKeys.writeBytes(SPECIAL_KEYS[key % SPECIAL_KEYS.length].getBytes(StandardCharsets.US_ASCII));
+        }
+        specialKeyInput = new ReplayInputStream(specialKeys.toByteArray());
+        pasteInput = new ReplayInputStream(repeat(sentence, PASTE_BYTES).getBytes(StandardCharsets.US_ASCII));
+        bracketedPasteInput = new ReplayInputStream(("\u001b[200~" + repeat(sentence, PASTE_BYTES) + "\u001b[201~")
+                .getBytes(StandardCharsets.US_ASCII));
+        escapeInput = new ReplayInputStream(new byte[] {0x1b});
+
+        asciiReader = reader(asciiInput);
+        cjkReader = reader(cjkInput);
+        specialKeyReader = reader(specialKeyInput);
+        pasteReader = reader(pasteInput);
+        bracketedPasteReader = reader(bracketedPasteInput);
+        escapeReader = reader(escapeInput);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void asciiTyping(Blackhole blackhole) throws IOException {
+        decodeAll(asciiReader, asciiInput, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void cjkText(Blackhole blackhole) throws IOException {
+        decodeAll(cjkReader, cjkInput, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void specialKeysWithModifiers(Blackhole blackhole) throws IOException {
+        decodeAll(specialKeyReader, specialKeyInput, blackhole);
+    }
+
+    /**
+     * The same input as {@link #asciiTyping(Blackhole)}, read as key codes instead of keystrokes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void asciiTypingKeyCodes(Blackhole blackhole) throws IOException {
+        decodeAllCodes(asciiReader, asciiInput, blackhole);
+    }
+
+    /**
+     * The same input as {@link #specialKeysWithModifiers(Blackhole)}, read as key codes instead of keystrokes.
+     */
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void specialKeyCodesWithModifiers(Blackhole blackhole) throws IOException {
+        decodeAllCodes(specialKeyReader, specialKeyInput, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PASTE_BYTES)
+    public void pasteBurst(Blackhole blackhole) throws IOException {
+        decodeAll(pasteReader, pasteInput, blackhole);
+    }
+
+    /**
+     * The same paste as {@link #pasteBurst(Blackhole)}, marked by bracketed paste mode and read as one keystroke.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PASTE_BYTES)
+    public void bracketedPasteBurst(Blackhole blackhole) throws IOException {
+        decodeAll(bracketedPasteReader, bracketedPasteInput, blackhole);
+    }
+
+    /**
+     * A lone ESC is reported once the escape timeout has expired. The injected clock jumps past the timeout, so
+     * this measures the overhead of the timeout path rather than the timeout itself.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public KeyStroke escapeTimeout() throws IOException {
+        escapeInput.rewind();
+        escapeReader.reset();
+        if (escapeReader.readKey(false) != null) {
+            throw new IllegalStateException("ESC must wait for the escape timeout");
+        }
+        now += ESCAPE_TIMEOUT_NANOS;
+        return escapeReader.readKey(false);
+    }
+
+    private UTKeyReader reader(ReplayInputStream input) {
+        return new UTKeyReader(input, StandardCharsets.UTF_8, ESCAPE_TIMEOUT_NANOS, () -> now,
+                () -> UTKeyReader.InputStatus.UNAVAILABLE);
+    }
+
+    private static void decodeAll(UTKeyReader reader, ReplayInputStream input, Blackhole blackhole)
+            throws IOException {
+        input.rewind();
+        reader.reset();
+        KeyStroke keyStroke;
+        while ((keyStroke = reader.readKey(false)) != null) {
+            blackhole.consume(keyStroke);
+        }
+    }
+
+    private static void decodeAllCodes(UTKeyReader reader, ReplayInputStream input, Blackhole blackhole)
+            throws IOException {
+        input.rewind();
+        reader.reset();
+        int code;
+        while ((code = reader.readKeyCode(false)) != KeyCode.NONE) {
+            blackhole.consume(code);
+        }
+    }
+
+    // repeats the text until it is exactly the specified number of characters long
+    private static String repeat(String text, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(text, 0, Math.min(text.length(), length - builder.length()));
+        }
+        return builder.toString();
+    }
+
+    private static final class ReplayInputStream extends ByteArrayInputStream {
+        private ReplayInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        private void rewind() {
+            reset();
+        }
+    }
+}
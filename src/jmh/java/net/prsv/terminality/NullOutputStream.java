@@ -0,0 +1,21 @@
+package net.prsv.terminality;
+
+import java.io.OutputStream;
+
+/**
+ * Counts and discards the output, so that the benchmarks measure Terminality rather than the I/O.
+ */
+final class NullOutputStream extends OutputStream {
+
+    long bytes;
+
+    @Override
+    public void write(int b) {
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        bytes += len;
+    }
+}
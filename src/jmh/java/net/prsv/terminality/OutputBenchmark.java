@@ -0,0 +1,121 @@
+package net.prsv.terminality;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the output path, from the public {@link UnixTerminal} methods down to the bytes written.
+ * Run with {@code -prof gc} to see the allocation per operation. With the {@code virtual} sink, the output is
+ * parsed by a {@link VirtualTerminal}, which adds the cost of a terminal that interprets it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OutputBenchmark {
+
+    @Param({"24x80", "60x200"})
+    public String size;
+
+    @Param({"null", "virtual"})
+    public String sink;
+
+    private int rows;
+    private int columns;
+    private OutputStream output;
+    private UnixTerminal terminal;
+    private Screen screen;
+    private String[] lines;
+
+    private int step;
+    private int ballRow;
+    private int ballColumn;
+    private int deltaRow = 1;
+    private int deltaColumn = 2;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] dimensions = size.split("x");
+        rows = Integer.parseInt(dimensions[0]);
+        columns = Integer.parseInt(dimensions[1]);
+        output = sink.equals("virtual") ? new VirtualTerminal(rows, columns) : new NullOutputStream();
+        terminal = new UnixTerminal(new ByteArrayInputStream(new byte[0]), output, StandardCharsets.UTF_8, false,
+                new BenchmarkPosixLibC(rows, columns));
+        // every frame is the previous one shifted by a row, which would otherwise be repainted as a scroll
+        screen = new Screen(terminal, rows, columns).setScrolling(Screen.Scrolling.NONE);
+        lines = new String[2];
+        for (int line = 0; line < lines.length; line++) {
+            StringBuilder text = new StringBuilder(columns);
+            for (int column = 0; column < columns; column++) {
+                text.append((char) ('a' + (line + column) % 26));
+            }
+            lines[line] = text.toString();
+        }
+    }
+
+    @Benchmark
+    public UnixTerminal cursorMove() throws IOException {
+        step++;
+        return terminal.setCursorPosition(step % rows, step % columns);
+    }
+
+    @Benchmark
+    public UnixTerminal styledPut() throws IOException {
+        return terminal.setTextRendition(TextRendition.FG_RED, TextRendition.BOLD).put("Hello, world!");
+    }
+
+    @Benchmark
+    public UnixTerminal fullRepaint() throws IOException {
+        String[] frame = lines;
+        int offset = step++ & 1;
+        for (int row = 0; row < rows; row++) {
+            terminal.setCursorPosition(row, 0).put(frame[(row + offset) & 1]);
+        }
+        return terminal.flush();
+    }
+
+    @Benchmark
+    public Screen fullRepaintWithScreen() throws IOException {
+        int offset = step++ & 1;
+        for (int row = 0; row < rows; row++) {
+            screen.put(row, 0, lines[(row + offset) & 1]);
+        }
+        return screen.refresh();
+    }
+
+    @Benchmark
+    public Screen bouncyBallFrame() throws IOException {
+        screen.put(ballRow, ballColumn, ' ');
+        ballRow += deltaRow;
+        ballColumn += deltaColumn;
+        if (ballRow <= 0 || ballRow >= rows - 2) {
+            deltaRow = -deltaRow;
+            ballRow = Math.max(0, Math.min(ballRow, rows - 2));
+            screen.put(rows - 1, 0, " Bounces: " + ++step, TextRendition.FG_RED, TextRendition.BG_WHITE);
+        }
+        if (ballColumn <= 0 || ballColumn >= columns - 1) {
+            deltaColumn = -deltaColumn;
+            ballColumn = Math.max(0, Math.min(ballColumn, columns - 1));
+        }
+        screen.put(ballRow, ballColumn, '⬤', TextRendition.FG_WHITE_INTENSE);
+        return screen.refresh();
+    }
+}
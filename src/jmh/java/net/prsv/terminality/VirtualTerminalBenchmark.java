@@ -0,0 +1,98 @@
+package net.prsv.terminality;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast {@link VirtualTerminal} parses output, in bytes per microsecond (i.e. MB/s). The parser has to
+ * keep well ahead of the code it checks, so that it can serve as the sink of the output benchmarks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VirtualTerminalBenchmark {
+
+    private static final int STREAM_BYTES = 1 << 20;
+    private static final int ROWS = 60;
+    private static final int COLUMNS = 200;
+
+    /**
+     * {@code text} is plain ASCII lines; {@code screen} is the output of {@link Screen} painting styled, scrolling
+     * and partially changed frames.
+     */
+    @Param({"text", "screen"})
+    public String stream;
+
+    private byte[] bytes;
+    private VirtualTerminal terminal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bytes = stream.equals("text") ? text() : screenFrames();
+        terminal = new VirtualTerminal(ROWS, COLUMNS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STREAM_BYTES)
+    public VirtualTerminal parse() {
+        terminal.write(bytes, 0, bytes.length);
+        return terminal;
+    }
+
+    private static byte[] text() {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; text.length() < STREAM_BYTES; line++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                text.append((char) ('a' + (line + column) % 26));
+            }
+            text.append("\r\n");
+        }
+        return Arrays.copyOf(text.toString().getBytes(StandardCharsets.US_ASCII), STREAM_BYTES);
+    }
+
+    private static byte[] screenFrames() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(STREAM_BYTES);
+        UnixTerminal terminal = new UnixTerminal(new ByteArrayInputStream(new byte[0]), output,
+                StandardCharsets.UTF_8, false, new BenchmarkPosixLibC(ROWS, COLUMNS));
+        Screen screen = new Screen(terminal, ROWS, COLUMNS).setCompression(Screen.Compression.values());
+        TextRendition[] renditions = {null, TextRendition.BOLD, TextRendition.FG_RED, TextRendition.BG_BLUE,
+                new TextRendition("38", "5", "208")};
+        Random random = new Random(1);
+        for (int frame = 0; output.size() < STREAM_BYTES; frame++) {
+            for (int row = 0; row < ROWS - 1; row++) {
+                for (int column = 0; column < COLUMNS; column++) {
+                    screen.put(row, column, screen.getCharacter(row + 1, column), screen.getRendition(row + 1, column));
+                }
+            }
+            screen.put(ROWS - 1, 0, " ".repeat(COLUMNS));
+            for (int column = 0; column < COLUMNS; column += 10) {
+                screen.put(ROWS - 1, column, "log line " + frame, renditions[random.nextInt(renditions.length)]);
+            }
+            screen.put(random.nextInt(ROWS), random.nextInt(COLUMNS), "─".repeat(20), TextRendition.FG_CYAN);
+            screen.refresh();
+        }
+        return Arrays.copyOf(output.toByteArray(), STREAM_BYTES);
+    }
+}
@@ -0,0 +1,24 @@
+package net.prsv.terminality;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.prsv.terminality.AsyncQueueOverflow")
+@Label("Async Queue Overflow")
+@Description("The asynchronous keyboard reader found the key queue full and waited for the application to catch up")
+@Category("Terminality")
+@Enabled(false)
+@StackTrace(false)
+final class AsyncQueueOverflowEvent extends Event {
+
+    @Label("Queue Capacity")
+    int capacity;
+
+    @Label("Key Type")
+    String keyType;
+}
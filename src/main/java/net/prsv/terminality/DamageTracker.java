@@ -0,0 +1,145 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Collects the regions of a screen that have to be repainted.
+ *
+ * <p>Regions that overlap or touch are merged into their bounding region as long as that does not add more
+ * undamaged cells than the smaller of the two regions contains, so that, for example, adjacent spans of text on
+ * the same row become one region while two distant widgets remain separate. The number of regions is bounded;
+ * when the limit is reached, the pair whose bounding region wastes the fewest cells is merged.</p>
+ */
+public final class DamageTracker {
+
+    private static final int MAX_REGIONS = 32;
+
+    private final List<Region> regions = new ArrayList<>();
+
+    /**
+     * Marks a rectangle of cells as damaged.
+     * @param row vertical coordinate of the top left cell
+     * @param column horizontal coordinate of the top left cell
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @throws IllegalArgumentException if {@code rows} or {@code columns} is negative
+     */
+    public void add(int row, int column, int rows, int columns) {
+        add(new Region(row, column, rows, columns));
+    }
+
+    /**
+     * Marks a region as damaged.
+     * @param region the damaged region
+     */
+    public void add(Region region) {
+        if (region.isEmpty()) {
+            return;
+        }
+        Region merged = region;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Iterator<Region> iterator = regions.iterator(); iterator.hasNext(); ) {
+                Region existing = iterator.next();
+                if (existing.contains(merged)) {
+                    return;
+                }
+                if (shouldMerge(merged, existing)) {
+                    merged = merged.union(existing);
+                    iterator.remove();
+                    changed = true;
+                }
+            }
+        }
+        regions.add(merged);
+        while (regions.size() > MAX_REGIONS) {
+            mergeCheapestPair();
+        }
+    }
+
+    public boolean isEmpty() {
+        return regions.isEmpty();
+    }
+
+    /**
+     * Returns the damaged regions. The regions may overlap.
+     * @return an unmodifiable snapshot of the damaged regions
+     */
+    public List<Region> getRegions() {
+        return Collections.unmodifiableList(new ArrayList<>(regions));
+    }
+
+    /**
+     * Returns the smallest region containing all damaged regions.
+     * @return the bounding region, or an empty region if nothing is damaged
+     */
+    public Region getBounds() {
+        Region bounds = new Region(0, 0, 0, 0);
+        for (Region region : regions) {
+            bounds = bounds.union(region);
+        }
+        return bounds;
+    }
+
+    /**
+     * Forgets all damage, typically after the damaged regions have been repainted.
+     */
+    public void clear() {
+        regions.clear();
+    }
+
+    // the live list, for renderers that iterate over the regions on every frame
+    List<Region> regions() {
+        return regions;
+    }
+
+    private static boolean shouldMerge(Region first, Region second) {
+        boolean touching = first.row <= second.row + second.rows && second.row <= first.row + first.rows
+                && first.column <= second.column + second.columns && second.column <= first.column + first.columns;
+        return touching && waste(first, second) <= Math.min(first.area(), second.area());
+    }
+
+    // the number of undamaged cells in the bounding region of both regions
+    private static long waste(Region first, Region second) {
+        return first.union(second).area() - first.area() - second.area() + first.intersection(second).area();
+    }
+
+    private void mergeCheapestPair() {
+        int bestFirst = 0;
+        int bestSecond = 1;
+        long bestWaste = Long.MAX_VALUE;
+        for (int first = 0; first < regions.size(); first++) {
+            for (int second = first + 1; second < regions.size(); second++) {
+                long waste = waste(regions.get(first), regions.get(second));
+                if (waste < bestWaste) {
+                    bestWaste = waste;
+                    bestFirst = first;
+                    bestSecond = second;
+                }
+            }
+        }
+        Region merged = regions.get(bestFirst).union(regions.get(bestSecond));
+        regions.remove(bestSecond);
+        regions.set(bestFirst, merged);
+    }
+}
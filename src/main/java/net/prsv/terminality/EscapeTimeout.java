@@ -0,0 +1,94 @@
+package net.prsv.terminality;
+
+import java.util.Arrays;
+
+/**
+ * How long the key reader waits for the rest of an escape sequence before it reports a lone [Esc]. A fixed timeout
+ * is either too long for local terminals, where [Esc] feels sluggish, or too short for slow connections, where
+ * sequences split between packets turn into [Esc] and garbage. An adaptive timeout learns from the session instead:
+ * the key reader reports the time between the first and the last byte of every control sequence it decodes, and the
+ * timeout becomes twice a high percentile of the gaps seen in sequences that arrived in more than one piece, within
+ * the bounds. Until a sequence has been split, the initial timeout is kept; after enough sequences have arrived in
+ * one piece, the lower bound is used.
+ */
+final class EscapeTimeout {
+
+    static final long MIN_NANOS = 5_000_000L;
+    static final long MAX_NANOS = 250_000_000L;
+
+    private static final int SAMPLE_COUNT = 32;
+    private static final double PERCENTILE = 0.9;
+    // sequences without a split after which the connection is assumed to never split them
+    private static final int UNSPLIT_SEQUENCES = 32;
+
+    private final long initialNanos;
+    private final long minNanos;
+    private final long maxNanos;
+    private final long[] gaps = new long[SAMPLE_COUNT];
+    private int splitSequences;
+    private int sequences;
+    private volatile long nanos;
+
+    EscapeTimeout(long initialNanos, long minNanos, long maxNanos) {
+        if (minNanos < 0 || minNanos > maxNanos || initialNanos < minNanos || initialNanos > maxNanos) {
+            throw new IllegalArgumentException("Escape timeout bounds must satisfy 0 <= min <= initial <= max");
+        }
+        this.initialNanos = initialNanos;
+        this.minNanos = minNanos;
+        this.maxNanos = maxNanos;
+        nanos = initialNanos;
+    }
+
+    static EscapeTimeout fixed(long nanos) {
+        return new EscapeTimeout(nanos, nanos, nanos);
+    }
+
+    static EscapeTimeout adaptive(long initialNanos) {
+        return new EscapeTimeout(initialNanos, Math.min(MIN_NANOS, initialNanos), Math.max(MAX_NANOS, initialNanos));
+    }
+
+    long nanos() {
+        return nanos;
+    }
+
+    /**
+     * Records a control sequence that has been decoded.
+     * @param gapNanos the time between the arrival of its first and its last byte, 0 if it arrived in one piece
+     */
+    void sequenceRead(long gapNanos) {
+        if (minNanos == maxNanos) {
+            return;
+        }
+        sequences++;
+        if (gapNanos > 0) {
+            gaps[splitSequences++ % SAMPLE_COUNT] = gapNanos;
+            adapt();
+        } else if (splitSequences == 0 && sequences == UNSPLIT_SEQUENCES) {
+            nanos = minNanos;
+        }
+    }
+
+    /**
+     * Records the rest of a control sequence that arrived after the timeout had already expired and its [Esc] had
+     * been reported. Gaps longer than the upper bound are more likely [Esc] typed before a bracket and are ignored.
+     */
+    void lateContinuation(long gapNanos) {
+        if (gapNanos > 0 && gapNanos <= maxNanos) {
+            sequenceRead(gapNanos);
+        }
+    }
+
+    void reset() {
+        splitSequences = 0;
+        sequences = 0;
+        nanos = initialNanos;
+    }
+
+    private void adapt() {
+        int count = Math.min(splitSequences, SAMPLE_COUNT);
+        long[] sorted = Arrays.copyOf(gaps, count);
+        Arrays.sort(sorted);
+        long percentile = sorted[(int) Math.ceil(PERCENTILE * count) - 1];
+        nanos = Math.max(minNanos, Math.min(maxNanos, 2 * percentile));
+    }
+}
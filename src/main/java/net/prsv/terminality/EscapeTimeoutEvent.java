@@ -0,0 +1,23 @@
+package net.prsv.terminality;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("net.prsv.terminality.EscapeTimeout")
+@Label("Escape Timeout")
+@Description("An ESC byte that was not followed by the rest of an escape sequence in time and was reported as [Esc]")
+@Category("Terminality")
+@Enabled(false)
+@StackTrace(false)
+final class EscapeTimeoutEvent extends Event {
+
+    @Label("Waited")
+    @Timespan
+    long waited;
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Paces the frames of an application according to the measured output throughput of the terminal.
+ *
+ * <p>After each frame, the scheduler estimates how long the terminal needs to receive the bytes of that frame
+ * (see {@link UnixTerminal#getOutputThroughput()}). As long as that is shorter than the frame interval requested
+ * by the application, frames are due at the requested rate. On a slow link, such as a serial console or a
+ * congested SSH connection, the interval is stretched to the transfer time so that frames do not pile up in the
+ * kernel buffers ahead of the response to the user's input, and {@link #isUnderPressure()} tells the application
+ * to leave out cosmetic updates such as animations.</p>
+ *
+ * <p>The bytes of a frame are counted when it is flushed. In the asynchronous output mode, that is when the frame is
+ * handed over to the writer thread, before it has been written, so that the estimate is still that of the frame
+ * just rendered.</p>
+ *
+ * <pre>{@code
+ * FrameScheduler scheduler = new FrameScheduler(terminal, 30);
+ * while (running) {
+ *     if (scheduler.isFrameDue()) {
+ *         drawContent();
+ *         if (!scheduler.isUnderPressure()) drawAnimations();
+ *         screen.refresh();
+ *         scheduler.frameRendered();
+ *     }
+ *     // wait for the next key or the next frame, whichever comes first
+ *     handleInput(terminal.readKey(scheduler.nanosUntilNextFrame(), TimeUnit.NANOSECONDS));
+ * }
+ * }</pre>
+ */
+public final class FrameScheduler {
+
+    private static final long MAX_FRAME_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final OutputMeter meter;
+    private final LongSupplier bytesFlushed;
+    private final LongSupplier nanoTime;
+    private final long targetIntervalNanos;
+
+    private long intervalNanos;
+    private long nextFrameNanos;
+    private long bytesAtLastFrame;
+    private boolean underPressure = false;
+
+    /**
+     * Creates a scheduler for the specified terminal.
+     * @param terminal the terminal the frames are written to
+     * @param framesPerSecond the frame rate to aim for when the terminal keeps up
+     * @throws IllegalArgumentException if {@code framesPerSecond} is not positive
+     */
+    public FrameScheduler(UnixTerminal terminal, int framesPerSecond) {
+        this(terminal.outputMeter(), terminal::bytesFlushed, framesPerSecond, System::nanoTime);
+    }
+
+    FrameScheduler(OutputMeter meter, int framesPerSecond, LongSupplier nanoTime) {
+        this(meter, meter::bytesWritten, framesPerSecond, nanoTime);
+    }
+
+    FrameScheduler(OutputMeter meter, LongSupplier bytesFlushed, int framesPerSecond, LongSupplier nanoTime) {
+        if (framesPerSecond < 1) {
+            throw new IllegalArgumentException("framesPerSecond must be positive");
+        }
+        this.meter = meter;
+        this.bytesFlushed = bytesFlushed;
+        this.nanoTime = nanoTime;
+        targetIntervalNanos = 1_000_000_000L / framesPerSecond;
+        intervalNanos = targetIntervalNanos;
+        nextFrameNanos = nanoTime.getAsLong();
+        bytesAtLastFrame = bytesFlushed.getAsLong();
+    }
+
+    /**
+     * Checks whether the next frame should be rendered now.
+     */
+    public boolean isFrameDue() {
+        return nanoTime.getAsLong() - nextFrameNanos >= 0;
+    }
+
+    /**
+     * Returns the time left until the next frame is due, which is zero if it is due already.
+     */
+    public long nanosUntilNextFrame() {
+        return Math.max(0, nextFrameNanos - nanoTime.getAsLong());
+    }
+
+    /**
+     * Records that a frame has been rendered and flushed, and schedules the next one.
+     */
+    public void frameRendered() {
+        long now = nanoTime.getAsLong();
+        long flushed = bytesFlushed.getAsLong();
+        long frameBytes = flushed - bytesAtLastFrame;
+        bytesAtLastFrame = flushed;
+
+        double throughput = meter.throughput();
+        long transferNanos = throughput == Double.POSITIVE_INFINITY
+                ? 0
+                : (long) Math.min(MAX_FRAME_INTERVAL_NANOS, frameBytes * 1_000_000_000.0 / throughput);
+        underPressure = transferNanos > targetIntervalNanos;
+        intervalNanos = Math.max(targetIntervalNanos, transferNanos);
+        nextFrameNanos = now + intervalNanos;
+    }
+
+    /**
+     * Checks whether the terminal could not keep up with the requested frame rate during the last frame.
+     * Applications should skip updates that are not essential while this method returns {@code true}.
+     */
+    public boolean isUnderPressure() {
+        return underPressure;
+    }
+
+    /**
+     * Returns the current frame rate, which is lower than the requested one while the terminal cannot keep up.
+     */
+    public double getFramesPerSecond() {
+        return 1_000_000_000.0 / intervalNanos;
+    }
+}
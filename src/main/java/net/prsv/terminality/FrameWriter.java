@@ -0,0 +1,232 @@
+package net.prsv.terminality;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Hands complete frames over to a writer thread. Bytes are collected in the frame buffer until {@link #flush()}
+ * is called; the frame is then passed to the writer thread, which drains it to the underlying stream while the
+ * caller starts on the next frame. If the previous frame has not been picked up by the writer thread yet, the new
+ * frame is appended to it, so that both go out in a single write instead of queuing behind each other.
+ */
+final class FrameWriter extends OutputStream {
+
+    private static final int INITIAL_CAPACITY = 8192;
+    private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+    private final OutputStream out;
+    private final TerminalCounters counters;
+    private final Thread thread;
+
+    private Frame filling = new Frame();
+    private Frame pending;
+    private Frame spare;
+    private boolean writing;
+    private boolean closed;
+    private long bytesHandedOver;
+    private IOException failure;
+
+    FrameWriter(OutputStream out) {
+        this(out, new TerminalCounters());
+    }
+
+    FrameWriter(OutputStream out, TerminalCounters counters) {
+        this.out = out;
+        this.counters = counters;
+        thread = new Thread(this::drain, "terminality-output-writer");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        ensureOpen();
+        filling.append(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        filling.append(b, off, len);
+    }
+
+    /**
+     * Hands the current frame over to the writer thread without waiting for it to be written.
+     * @throws IOException if the writer thread has failed to write a previous frame
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        ensureOpen();
+        if (filling.length == 0) {
+            return;
+        }
+        bytesHandedOver += filling.length;
+        if (pending == null) {
+            pending = filling;
+            filling = spare != null ? spare : new Frame();
+            spare = null;
+            notifyAll();
+        } else {
+            pending.append(filling.bytes, 0, filling.length);
+            if (filling.tagged) {
+                pending.tag(filling.inputNanoTime);
+            }
+            filling.clear();
+        }
+    }
+
+    /**
+     * Returns the number of bytes handed over to the writer thread so far, whether it has written them yet or not.
+     */
+    synchronized long bytesHandedOver() {
+        return bytesHandedOver;
+    }
+
+    /**
+     * Marks the current frame as the response to input read at the specified time. Once the frame has been
+     * written, the time since then is recorded in the key latency histogram.
+     */
+    synchronized void tag(long inputNanoTime) {
+        filling.tag(inputNanoTime);
+    }
+
+    /**
+     * Checks whether a frame has been handed over but is still waiting for the writer thread, which means that
+     * the writer is busy with an earlier frame.
+     */
+    synchronized boolean isFramePending() {
+        return pending != null;
+    }
+
+    /**
+     * Hands over the current frame, waits until all frames have been written and stops the writer thread.
+     * @throws IOException if a frame could not be written or the writer thread did not stop in time
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (failure == null) {
+                    flush();
+                }
+                while (failure == null && (pending != null || writing)) {
+                    wait();
+                }
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while draining the output");
+            } finally {
+                closed = true;
+                notifyAll();
+            }
+        }
+        try {
+            thread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stopping the output writer");
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        if (thread.isAlive()) {
+            throw new IOException("Output writer did not stop");
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (closed) {
+            throw new IOException("Output writer is closed");
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                while (pending == null && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                }
+                if (pending == null) {
+                    return;
+                }
+                frame = pending;
+                pending = null;
+                writing = true;
+            }
+            TerminalFlushEvent event = new TerminalFlushEvent();
+            long start = System.nanoTime();
+            event.begin();
+            try {
+                out.write(frame.bytes, 0, frame.length);
+                out.flush();
+                event.complete(frame.length);
+                long end = System.nanoTime();
+                counters.recordFlush(end - start);
+                if (frame.tagged) {
+                    counters.keyLatency.record(end - frame.inputNanoTime);
+                }
+            } catch (IOException | RuntimeException writeFailure) {
+                synchronized (this) {
+                    failure = writeFailure instanceof IOException
+                            ? (IOException) writeFailure
+                            : new IOException("Output writer failed", writeFailure);
+                    writing = false;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                frame.clear();
+                spare = frame;
+                writing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private static final class Frame {
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int length;
+        private boolean tagged;
+        private long inputNanoTime;
+
+        // keeps the earliest input, so that the latency of the oldest unanswered key is recorded
+        private void tag(long nanoTime) {
+            if (!tagged || nanoTime - inputNanoTime < 0) {
+                inputNanoTime = nanoTime;
+            }
+            tagged = true;
+        }
+
+        private void clear() {
+            length = 0;
+            tagged = false;
+        }
+
+        private void append(byte[] source, int offset, int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package net.prsv.terminality;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from non-negative {@code int} keys, such as key codes, to objects, with open addressing and linear
+ * probing, so that lookups neither box the key nor follow a chain of entries.
+ */
+final class IntObjectMap<V> {
+
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    IntObjectMap() {
+        keys = new int[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associates the value with the key.
+     * @return the previous value, or {@code null} if there was none
+     * @throws IllegalArgumentException if the key is negative
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Key must not be negative");
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 4 > keys.length * 3) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the key and its value.
+     * @return the removed value, or {@code null} if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        if (key < 0) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        V removed = (V) values[slot];
+        // shifts the entries of the probe sequence back, so that no entry is left behind an empty slot
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        int mask = keys.length - 1;
+        for (int index = 0; index < oldKeys.length; index++) {
+            if (oldKeys[index] != EMPTY) {
+                int slot = slot(oldKeys[index], mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[index];
+                values[slot] = oldValues[index];
+            }
+        }
+    }
+
+    // Fibonacci hashing spreads keys that differ only in their high bits, like the modifiers of key codes
+    private static int slot(int key, int mask) {
+        int hash = key * 0x9e3779b9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+/**
+ * What happened to the key of a {@link KeyStroke}. Terminals only report repeats and releases while
+ * {@link TerminalMode#KITTY_KEYBOARD} is enabled and supported; every other keystroke is a {@link #PRESS}.
+ */
+public enum KeyAction {
+    PRESS,
+    /** The key is held down and the keyboard auto-repeat has fired. */
+    REPEAT,
+    RELEASE
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+/**
+ * Static helpers for key codes, the allocation-free alternative to {@link KeyStroke} returned by
+ * {@link Terminal#readKeyCode(boolean)}. A key code packs a keystroke into an {@code int}: the character in bits
+ * 0-15, the ordinal of the {@link KeyType} in bits 16-23, the modifiers in bits 24-26 and the ordinal of the
+ * {@link KeyAction} in bits 27-28. Valid key codes are never negative.
+ *
+ * <p>The code of an unmodified character that has been pressed is the character itself, and the modifier bits can
+ * be combined with a character at compile time, so that characters can be dispatched with a {@code switch}:
+ * <pre>{@code
+ * switch (code) {
+ *     case 'q': quit(); break;
+ *     case 's' | KeyCode.CTRL: save(); break;
+ *     default:
+ *         if (KeyCode.type(code) == KeyType.ARROW_UP) moveUp();
+ * }
+ * }</pre>
+ *
+ * <p>The text of a {@link KeyType#PASTE} and the event of a {@link KeyType#MOUSE} keystroke do not fit into a key
+ * code; only their type is kept. Applications that use bracketed paste or the mouse should read them with
+ * {@link Terminal#readKey(boolean)}.
+ */
+public final class KeyCode {
+
+    /** The code returned when no key is available. */
+    public static final int NONE = -1;
+    /** The code of the end of the input. */
+    public static final int EOF = KeyType.EOF.ordinal() << 16;
+
+    /** The bit of the Shift modifier. */
+    public static final int SHIFT = 1 << 24;
+    /** The bit of the Alt modifier. */
+    public static final int ALT = 1 << 25;
+    /** The bit of the Ctrl modifier. */
+    public static final int CTRL = 1 << 26;
+
+    private static final int TYPE_SHIFT = 16;
+    private static final int ACTION_SHIFT = 27;
+    private static final KeyType[] KEY_TYPES = KeyType.values();
+    private static final KeyAction[] KEY_ACTIONS = KeyAction.values();
+
+    private KeyCode() {
+    }
+
+    /**
+     * Returns the code of a character keystroke.
+     */
+    public static int character(char c, boolean ctrl, boolean alt, boolean shift) {
+        return c | modifiers(ctrl, alt, shift);
+    }
+
+    /**
+     * Returns the code of a special keystroke.
+     * @throws NullPointerException if {@code type} is {@code null}
+     */
+    public static int special(KeyType type, boolean ctrl, boolean alt, boolean shift) {
+        return type.ordinal() << TYPE_SHIFT | modifiers(ctrl, alt, shift);
+    }
+
+    /**
+     * Returns the code of a keystroke, or {@link #NONE} if it is {@code null}.
+     */
+    public static int of(KeyStroke keyStroke) {
+        if (keyStroke == null) {
+            return NONE;
+        }
+        return keyStroke.c | keyStroke.type.ordinal() << TYPE_SHIFT
+                | modifiers(keyStroke.ctrl, keyStroke.alt, keyStroke.shift)
+                | keyStroke.getAction().ordinal() << ACTION_SHIFT;
+    }
+
+    /**
+     * Returns a copy of the code with the specified action.
+     */
+    public static int withAction(int code, KeyAction action) {
+        return code & ~(3 << ACTION_SHIFT) | action.ordinal() << ACTION_SHIFT;
+    }
+
+    /**
+     * Creates the keystroke of a code.
+     * @return the keystroke, or {@code null} if the code is {@link #NONE}
+     * @throws IllegalArgumentException if the code is not a valid key code, or the code of a paste or a mouse report,
+     *         whose text or event it does not carry
+     */
+    public static KeyStroke toKeyStroke(int code) {
+        if (code == NONE) {
+            return null;
+        }
+        if (code < 0 || (code >>> TYPE_SHIFT & 0xff) >= KEY_TYPES.length
+                || (code >>> ACTION_SHIFT) >= KEY_ACTIONS.length) {
+            throw new IllegalArgumentException("Not a key code: " + code);
+        }
+        KeyType type = type(code);
+        KeyStroke keyStroke;
+        switch (type) {
+            case CHARACTER:
+                keyStroke = KeyStroke.character(character(code), isCtrl(code), isAlt(code), isShift(code));
+                break;
+            case EOF:
+                keyStroke = KeyStroke.eof();
+                break;
+            case PASTE:
+            case MOUSE:
+                throw new IllegalArgumentException("The key code of a " + type.name() + " cannot be converted");
+            default:
+                keyStroke = KeyStroke.special(type, isCtrl(code), isAlt(code), isShift(code));
+                break;
+        }
+        return keyStroke.withAction(action(code));
+    }
+
+    /**
+     * Returns the type of the key.
+     */
+    public static KeyType type(int code) {
+        return KEY_TYPES[code >>> TYPE_SHIFT & 0xff];
+    }
+
+    /**
+     * Returns the character of a {@link KeyType#CHARACTER} key, or {@code '\u0000'} for other keys.
+     */
+    public static char character(int code) {
+        return (char) code;
+    }
+
+    public static boolean isCtrl(int code) {
+        return (code & CTRL) != 0;
+    }
+
+    public static boolean isAlt(int code) {
+        return (code & ALT) != 0;
+    }
+
+    public static boolean isShift(int code) {
+        return (code & SHIFT) != 0;
+    }
+
+    /**
+     * Returns whether the key was pressed, repeated or released.
+     */
+    public static KeyAction action(int code) {
+        return KEY_ACTIONS[code >>> ACTION_SHIFT & 3];
+    }
+
+    /**
+     * Returns the code without its action, so that presses, repeats and releases of a key have the same code.
+     */
+    public static int withoutAction(int code) {
+        return code & ~(3 << ACTION_SHIFT);
+    }
+
+    /**
+     * Returns a description of the code in the format of {@link KeyStroke#toString()}.
+     */
+    public static String toString(int code) {
+        if (code == NONE) {
+            return "NONE";
+        }
+        if (type(code) == KeyType.MOUSE || type(code) == KeyType.PASTE) {
+            return "Type: " + type(code).name() + ", Ctrl: " + isCtrl(code) + ", Alt: " + isAlt(code)
+                    + ", Shift: " + isShift(code);
+        }
+        return toKeyStroke(code).toString();
+    }
+
+    private static int modifiers(boolean ctrl, boolean alt, boolean shift) {
+        return (ctrl ? CTRL : 0) | (alt ? ALT : 0) | (shift ? SHIFT : 0);
+    }
+}
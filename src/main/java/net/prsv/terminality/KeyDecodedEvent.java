@@ -0,0 +1,32 @@
+package net.prsv.terminality;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+@Name("net.prsv.terminality.KeyDecoded")
+@Label("Key Decoded")
+@Description("A key stroke decoded from the terminal input")
+@Category("Terminality")
+@Enabled(false)
+@StackTrace(false)
+final class KeyDecodedEvent extends Event {
+
+    @Label("Key Type")
+    String keyType;
+
+    @Label("Bytes Consumed")
+    @DataAmount
+    int bytesConsumed;
+
+    @Label("Time From First Byte")
+    @Description("Time between reading the first byte of the key and decoding the key")
+    @Timespan
+    long timeFromFirstByte;
+}
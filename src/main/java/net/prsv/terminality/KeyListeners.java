@@ -0,0 +1,168 @@
+package net.prsv.terminality;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The key listeners of a terminal. The keyboard reader hands every keystroke to {@link #dispatch(KeyStroke)}, which
+ * appends it to the mailbox of each listener. A listener's mailbox is drained by one task at a time on the listener's
+ * executor, so every listener receives the keystrokes in order, and a slow listener delays neither the reader nor the
+ * other listeners until it falls a whole mailbox behind.
+ *
+ * <p>The mailboxes are bounded {@link KeyQueue}s, so mouse motion is coalesced in them as in the queue read by
+ * {@link UnixTerminal#readKey()}. When a mailbox is full, the reader waits for the listener to catch up, leaving the
+ * input in the terminal's buffer rather than on the heap. If a listener's executor rejects the task that drains its
+ * mailbox, e.g. because it has been shut down, the listener is removed, its pending keystrokes are dropped and the
+ * rejection is passed to the uncaught exception handler of the thread that scheduled the task.
+ */
+final class KeyListeners {
+
+    /** The default number of keystrokes a mailbox holds. */
+    static final int MAILBOX_CAPACITY = 256;
+
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final int mailboxCapacity;
+
+    KeyListeners() {
+        this(MAILBOX_CAPACITY);
+    }
+
+    KeyListeners(int mailboxCapacity) {
+        if (mailboxCapacity <= 0) {
+            throw new IllegalArgumentException("Mailbox capacity must be positive");
+        }
+        this.mailboxCapacity = mailboxCapacity;
+    }
+
+    void add(Consumer<KeyStroke> listener, Executor executor) {
+        if (listener == null) {
+            throw new NullPointerException("listener can't be null");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor can't be null");
+        }
+        registrations.add(new Registration(listener, executor));
+    }
+
+    /**
+     * Removes the first registration of the listener. Keystrokes already in its mailbox are still delivered.
+     * @return {@code false} if the listener was not registered
+     */
+    boolean remove(Consumer<KeyStroke> listener) {
+        for (Registration registration : registrations) {
+            if (registration.listener.equals(listener)) {
+                return registrations.remove(registration);
+            }
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return registrations.isEmpty();
+    }
+
+    /**
+     * Appends the keystroke to the mailbox of every listener, waiting for room in the mailboxes that are full.
+     */
+    void dispatch(KeyStroke keyStroke) throws InterruptedException {
+        for (Registration registration : registrations) {
+            registration.deliver(keyStroke);
+        }
+    }
+
+    /**
+     * Returns the executor used for listeners registered without one: an executor that starts a virtual thread per
+     * task on Java 21 and later, otherwise a shared pool of daemon threads.
+     */
+    static Executor defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    private static final class DefaultExecutor {
+        private static final Executor INSTANCE = create();
+
+        // the target release predates virtual threads, so they can only be reached by reflection
+        private static Executor create() {
+            try {
+                return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException unavailable) {
+                AtomicInteger threads = new AtomicInteger();
+                return Executors.newCachedThreadPool(task -> {
+                    Thread thread = new Thread(task, "terminality-key-listener-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+
+    private final class Registration {
+        private final Consumer<KeyStroke> listener;
+        private final Executor executor;
+        private final KeyQueue mailbox = new KeyQueue(mailboxCapacity);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean rejected;
+
+        private Registration(Consumer<KeyStroke> listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        private void deliver(KeyStroke keyStroke) throws InterruptedException {
+            if (rejected) {
+                return;
+            }
+            // a full mailbox is being drained, as a drain is scheduled whenever it is not empty
+            if (!mailbox.offer(keyStroke)) {
+                mailbox.put(keyStroke);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException rejection) {
+                    // the flag stays set, so that nothing is scheduled on the executor again
+                    rejected = true;
+                    registrations.remove(this);
+                    int dropped = mailbox.size();
+                    mailbox.clear();
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, new RejectedExecutionException(
+                            "Removed key listener " + listener + " whose executor rejected it; dropped " + dropped
+                                    + " keystroke(s)", rejection));
+                }
+            }
+        }
+
+        // errors are reported like exceptions, so that a listener that throws one keeps receiving keystrokes rather
+        // than leaving its mailbox undrained and, once the mailbox is full, the reader waiting forever
+        private void drain() {
+            try {
+                KeyStroke keyStroke;
+                while ((keyStroke = mailbox.poll()) != null) {
+                    try {
+                        listener.accept(keyStroke);
+                    } catch (Throwable listenerFailure) {
+                        Thread thread = Thread.currentThread();
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, listenerFailure);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                // a keystroke delivered after the mailbox was found empty, but before the flag was cleared
+                if (mailbox.size() > 0) {
+                    schedule();
+                }
+            }
+        }
+    }
+}
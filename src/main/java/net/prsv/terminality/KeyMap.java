@@ -0,0 +1,340 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Key bindings: maps keys and chords (sequences of keys, such as [Ctrl]+[x] [Ctrl]+[s]) to actions of any type, and
+ * resolves the keys read from the terminal to the actions bound to them.
+ *
+ * <p>Keys are identified by their {@link KeyCode}, without the action, so that auto-repeats of a key trigger its
+ * binding like presses do; releases are ignored. The bindings form a trie of chords. In every node of the trie,
+ * characters up to U+007F and the special keys, with any modifiers, are looked up by their index in a dense array;
+ * other characters are looked up in a hash map of primitive keys. Looking up a key therefore takes constant time
+ * however many bindings there are, and does not allocate.
+ *
+ * <p>{@link #press(int, Consumer)} resolves the keys one at a time and passes the actions they trigger to a sink. A
+ * key that starts a chord is remembered until the next key completes or cancels the chord, or until the chord timeout
+ * expires. A key that is both bound itself and the start of a chord (e.g. [Esc] and [Esc] [x]) waits for the next
+ * key. Its own action is never lost: if the timeout expires first, {@link #expire()} returns it, and if the next key
+ * arrives after the timeout or does not continue the chord (e.g. [Esc] [q]), the action is triggered before the next
+ * key is resolved on its own.
+ *
+ * <p>A key map is not thread-safe; it is meant to be used by the thread that reads the keyboard.
+ *
+ * @param <A> the type of the actions
+ */
+public final class KeyMap<A> {
+
+    /** The default chord timeout in milliseconds. */
+    public static final long DEFAULT_CHORD_TIMEOUT_MILLIS = 1000;
+
+    // the dense index: 128 characters and 32 key types, each with the 8 combinations of the modifiers
+    private static final int DENSE_CHARACTERS = 128;
+    private static final int DENSE_KEY_TYPES = 32;
+    private static final int DENSE_SIZE = 8 * (DENSE_CHARACTERS + DENSE_KEY_TYPES);
+
+    private final LongSupplier nanoTime;
+    private final Node<A> root = new Node<>();
+    private long chordTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CHORD_TIMEOUT_MILLIS);
+    private Node<A> pending = root;
+    private long pendingSince;
+
+    public KeyMap() {
+        this(System::nanoTime);
+    }
+
+    KeyMap(LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Binds the action to a key or a chord, replacing the action bound to it before.
+     * @param action the action
+     * @param keys the key, or the keys of the chord in order
+     * @return this key map
+     * @throws NullPointerException if {@code action} or one of the keys is {@code null}
+     * @throws IllegalArgumentException if there are no keys
+     */
+    public KeyMap<A> bind(A action, KeyStroke... keys) {
+        return bind(action, codes(keys));
+    }
+
+    /**
+     * Binds the action to a key or a chord given by key codes, replacing the action bound to it before.
+     * @param action the action
+     * @param codes the key code, or the key codes of the chord in order
+     * @return this key map
+     * @throws NullPointerException if {@code action} is {@code null}
+     * @throws IllegalArgumentException if there are no key codes, or one of them is {@link KeyCode#NONE}
+     */
+    public KeyMap<A> bind(A action, int... codes) {
+        if (action == null) {
+            throw new NullPointerException("action can't be null");
+        }
+        checkCodes(codes);
+        Node<A> node = root;
+        for (int value : codes) {
+            int code = KeyCode.withoutAction(value);
+            Node<A> child = node.child(code);
+            if (child == null) {
+                child = new Node<>();
+                node.putChild(code, child);
+            }
+            node = child;
+        }
+        node.action = action;
+        return this;
+    }
+
+    /**
+     * Removes the binding of a key or a chord. The bindings of longer chords that start with it are kept.
+     * @return this key map
+     */
+    public KeyMap<A> unbind(KeyStroke... keys) {
+        return unbind(codes(keys));
+    }
+
+    /**
+     * Removes the binding of a key or a chord given by key codes. The bindings of longer chords that start with it
+     * are kept.
+     * @return this key map
+     */
+    public KeyMap<A> unbind(int... codes) {
+        checkCodes(codes);
+        unbind(root, codes, 0);
+        pending = root;
+        return this;
+    }
+
+    /**
+     * Returns the action bound to a key or a chord, without changing the state of a chord in progress.
+     * @return the action, or {@code null} if nothing is bound to the keys
+     */
+    public A get(int... codes) {
+        Node<A> node = root;
+        for (int index = 0; index < codes.length && node != null; index++) {
+            node = node.child(KeyCode.withoutAction(codes[index]));
+        }
+        return node == null ? null : node.action;
+    }
+
+    /**
+     * Sets how long a chord in progress waits for its next key. A timeout of 0 lets chords wait forever.
+     * @return this key map
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public KeyMap<A> setChordTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Chord timeout must not be negative");
+        }
+        chordTimeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Resolves a keystroke read from the terminal; see {@link #press(int, Consumer)}.
+     */
+    public void press(KeyStroke keyStroke, Consumer<? super A> sink) {
+        press(KeyCode.of(keyStroke), sink);
+    }
+
+    /**
+     * Resolves a key read from the terminal, and passes the actions it triggers to the sink. A key triggers the action
+     * bound to it or to the chord it completes; nothing while it starts or continues a chord, or if it is unbound or a
+     * release. If the key cuts short a chord whose keys so far are bound themselves, because it does not continue the
+     * chord or because the chord has timed out, the action of the chord's keys is passed to the sink first, and the key
+     * is then resolved on its own. A key that does not continue a chord whose keys are not bound only cancels it.
+     * @param code the key code
+     * @param sink receives the actions, in the order they were triggered
+     * @throws NullPointerException if {@code sink} is {@code null}
+     */
+    public void press(int code, Consumer<? super A> sink) {
+        if (sink == null) {
+            throw new NullPointerException("sink can't be null");
+        }
+        if (code == KeyCode.NONE || KeyCode.action(code) == KeyAction.RELEASE) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        int key = KeyCode.withoutAction(code);
+        if (pending != root) {
+            Node<A> interrupted = pending;
+            if (!isExpired(now)) {
+                Node<A> next = interrupted.child(key);
+                if (next != null) {
+                    advance(next, now, sink);
+                    return;
+                }
+                if (interrupted.action == null) {
+                    pending = root;
+                    return;
+                }
+            }
+            pending = root;
+            if (interrupted.action != null) {
+                sink.accept(interrupted.action);
+            }
+        }
+        Node<A> next = root.child(key);
+        if (next != null) {
+            advance(next, now, sink);
+        }
+    }
+
+    /**
+     * Ends a chord in progress whose timeout has expired. Event loops should call this method when no key has
+     * arrived for a while, e.g. once per frame.
+     * @return the action bound to the keys of the expired chord, or {@code null} if there is none, no chord is in
+     *         progress, or its timeout has not expired
+     */
+    public A expire() {
+        if (pending == root || !isExpired(nanoTime.getAsLong())) {
+            return null;
+        }
+        A action = pending.action;
+        pending = root;
+        return action;
+    }
+
+    /**
+     * Checks whether a chord has been started and waits for its next key.
+     */
+    public boolean isPending() {
+        return pending != root;
+    }
+
+    /**
+     * Abandons the chord in progress, if any.
+     */
+    public void cancel() {
+        pending = root;
+    }
+
+    // moves to the node of a key that has been found, which either waits for the next key of a chord or is bound
+    private void advance(Node<A> next, long now, Consumer<? super A> sink) {
+        if (next.children > 0) {
+            pending = next;
+            pendingSince = now;
+            return;
+        }
+        pending = root;
+        sink.accept(next.action);
+    }
+
+    private boolean isExpired(long now) {
+        return chordTimeoutNanos > 0 && now - pendingSince >= chordTimeoutNanos;
+    }
+
+    // removes the binding at the end of the path and prunes the nodes that no longer lead to a binding
+    private static <A> boolean unbind(Node<A> node, int[] codes, int index) {
+        if (index == codes.length) {
+            node.action = null;
+        } else {
+            int code = KeyCode.withoutAction(codes[index]);
+            Node<A> child = node.child(code);
+            if (child != null && unbind(child, codes, index + 1)) {
+                node.removeChild(code);
+            }
+        }
+        return node.action == null && node.children == 0;
+    }
+
+    private static int[] codes(KeyStroke... keys) {
+        int[] codes = new int[keys.length];
+        for (int index = 0; index < keys.length; index++) {
+            if (keys[index] == null) {
+                throw new NullPointerException("keys can't contain null");
+            }
+            codes[index] = KeyCode.of(keys[index]);
+        }
+        return codes;
+    }
+
+    private static void checkCodes(int[] codes) {
+        if (codes.length == 0) {
+            throw new IllegalArgumentException("A binding needs at least one key");
+        }
+        for (int code : codes) {
+            if (code < 0) {
+                throw new IllegalArgumentException("Not a key code: " + code);
+            }
+        }
+    }
+
+    // the index of a key code in the dense array, or -1 if it has none
+    private static int denseIndex(int code) {
+        int character = code & 0xffff;
+        int keyType = code >>> 16 & 0xff;
+        int modifiers = code >>> 24 & 7;
+        if (keyType == 0) {
+            return character < DENSE_CHARACTERS ? modifiers * DENSE_CHARACTERS + character : -1;
+        }
+        return character == 0 && keyType < DENSE_KEY_TYPES
+                ? 8 * DENSE_CHARACTERS + modifiers * DENSE_KEY_TYPES + keyType
+                : -1;
+    }
+
+    // a node of the trie: the action bound to the keys that lead to it, and the keys that continue them
+    private static final class Node<A> {
+        private A action;
+        private int children;
+        private Node<A>[] dense;
+        private IntObjectMap<Node<A>> sparse;
+
+        private Node<A> child(int code) {
+            int index = denseIndex(code);
+            if (index >= 0) {
+                return dense == null ? null : dense[index];
+            }
+            return sparse == null ? null : sparse.get(code);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void putChild(int code, Node<A> child) {
+            int index = denseIndex(code);
+            if (index >= 0) {
+                if (dense == null) {
+                    dense = (Node<A>[]) new Node<?>[DENSE_SIZE];
+                }
+                dense[index] = child;
+            } else {
+                if (sparse == null) {
+                    sparse = new IntObjectMap<>();
+                }
+                sparse.put(code, child);
+            }
+            children++;
+        }
+
+        private void removeChild(int code) {
+            int index = denseIndex(code);
+            if (index >= 0) {
+                dense[index] = null;
+            } else {
+                sparse.remove(code);
+            }
+            if (--children == 0) {
+                dense = null;
+                sparse = null;
+            }
+        }
+    }
+}
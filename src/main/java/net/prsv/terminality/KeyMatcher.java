@@ -0,0 +1,397 @@
+package net.prsv.terminality;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recognizes the escape sequences of special keys. The matcher is compiled from a table of literal sequences, the
+ * built-in xterm, rxvt, Linux console and screen/tmux keys merged with the key capabilities of the terminal's terminfo
+ * entry, into a byte trie with a dense transition table. While the trie is walked, the parameters of the sequence
+ * are parsed alongside, so that the parameterized forms of the keys (e.g. {@code CSI 1 ; 5 A} for [Ctrl]+[Up]) and
+ * the sequences the key reader handles itself (mouse reports, kitty key events, replies) are recognized in the same
+ * single forward pass over the input, without backtracking and without allocating. A compiled matcher is immutable
+ * and can be shared; the result of a match is stored in a {@link Match} owned by the caller.
+ */
+final class KeyMatcher {
+
+    /** The sequence is a key; see {@link Match#key}. */
+    static final int KEY = 0;
+    /** The sequence is complete and well-formed, but not a key; its parameters are in the {@link Match}. */
+    static final int SEQUENCE = 1;
+    /** More bytes are needed. */
+    static final int INCOMPLETE = 2;
+    /** The sequence is malformed or too long; {@link Match#end} tells where it ends. */
+    static final int INVALID = 3;
+
+    static final int MAX_SEQUENCE_LENGTH = 32;
+
+    // the parameter value of an empty parameter, and the largest value accepted (the largest code point)
+    static final int MISSING = -1;
+    private static final int MAX_PARAMETER = Character.MAX_CODE_POINT;
+
+    private static final int SHIFT = 1;
+    private static final int ALT = 2;
+    private static final int CTRL = 4;
+
+    private static final int ALPHABET = 128;
+    private static final int NONE = -1;
+
+    private static final KeyType[] CURSOR_KEYS = new KeyType[ALPHABET];
+    private static final KeyType[] TILDE_KEYS = new KeyType[35];
+    private static final Map<String, Integer> BUILT_IN_KEYS = new LinkedHashMap<>();
+    private static final Map<String, KeyMatcher> BY_TERMINAL = new ConcurrentHashMap<>();
+    private static final KeyMatcher BUILT_IN;
+
+    static {
+        CURSOR_KEYS['A'] = KeyType.ARROW_UP;
+        CURSOR_KEYS['B'] = KeyType.ARROW_DOWN;
+        CURSOR_KEYS['C'] = KeyType.ARROW_RIGHT;
+        CURSOR_KEYS['D'] = KeyType.ARROW_LEFT;
+        CURSOR_KEYS['H'] = KeyType.HOME;
+        CURSOR_KEYS['F'] = KeyType.END;
+        CURSOR_KEYS['P'] = KeyType.F1;
+        CURSOR_KEYS['Q'] = KeyType.F2;
+        CURSOR_KEYS['R'] = KeyType.F3;
+        CURSOR_KEYS['S'] = KeyType.F4;
+
+        TILDE_KEYS[1] = KeyType.HOME;
+        TILDE_KEYS[2] = KeyType.INSERT;
+        TILDE_KEYS[3] = KeyType.DELETE;
+        TILDE_KEYS[4] = KeyType.END;
+        TILDE_KEYS[5] = KeyType.PAGE_UP;
+        TILDE_KEYS[6] = KeyType.PAGE_DOWN;
+        TILDE_KEYS[7] = KeyType.HOME; // rxvt
+        TILDE_KEYS[8] = KeyType.END;  // rxvt
+        TILDE_KEYS[11] = KeyType.F1;
+        TILDE_KEYS[12] = KeyType.F2;
+        TILDE_KEYS[13] = KeyType.F3;
+        TILDE_KEYS[14] = KeyType.F4;
+        TILDE_KEYS[15] = KeyType.F5;
+        TILDE_KEYS[16] = KeyType.F5;
+        TILDE_KEYS[17] = KeyType.F6;
+        TILDE_KEYS[18] = KeyType.F7;
+        TILDE_KEYS[19] = KeyType.F8;
+        TILDE_KEYS[20] = KeyType.F9;
+        TILDE_KEYS[21] = KeyType.F10;
+        TILDE_KEYS[23] = KeyType.F11;
+        TILDE_KEYS[24] = KeyType.F12;
+
+        // xterm, in the normal and the application cursor key mode
+        String[] cursorFinals = {"A", "B", "C", "D", "H", "F"};
+        for (String finalByte : cursorFinals) {
+            builtIn("[" + finalByte, CURSOR_KEYS[finalByte.charAt(0)], 0);
+            builtIn("O" + finalByte, CURSOR_KEYS[finalByte.charAt(0)], 0);
+        }
+        for (String finalByte : new String[]{"P", "Q", "R", "S"}) {
+            builtIn("O" + finalByte, CURSOR_KEYS[finalByte.charAt(0)], 0);
+        }
+        builtIn("[Z", KeyType.REVERSE_TAB, 0);
+        // the application keypad of xterm and rxvt
+        builtIn("OM", KeyType.CR, 0);
+        String keypad = "*+,-./0123456789";
+        for (int index = 0; index < keypad.length(); index++) {
+            BUILT_IN_KEYS.put("O" + (char) ('j' + index), character(keypad.charAt(index), 0));
+        }
+        BUILT_IN_KEYS.put("OX", character('=', 0));
+        // rxvt: Shift and Ctrl with the cursor keys
+        String rxvtCursor = "abcd";
+        for (int index = 0; index < rxvtCursor.length(); index++) {
+            KeyType keyType = CURSOR_KEYS['A' + index];
+            builtIn("[" + rxvtCursor.charAt(index), keyType, SHIFT);
+            builtIn("O" + rxvtCursor.charAt(index), keyType, CTRL);
+        }
+        // the Linux console
+        KeyType[] linuxFunctionKeys = {KeyType.F1, KeyType.F2, KeyType.F3, KeyType.F4, KeyType.F5};
+        for (int index = 0; index < linuxFunctionKeys.length; index++) {
+            builtIn("[[" + (char) ('A' + index), linuxFunctionKeys[index], 0);
+        }
+
+        BUILT_IN = new KeyMatcher(BUILT_IN_KEYS);
+    }
+
+    // terminfo key capabilities and the keys they stand for
+    private static final int[] TERMINFO_CAPABILITIES = {
+            Terminfo.KEY_UP, Terminfo.KEY_DOWN, Terminfo.KEY_LEFT, Terminfo.KEY_RIGHT, Terminfo.KEY_HOME,
+            Terminfo.KEY_END, Terminfo.KEY_IC, Terminfo.KEY_DC, Terminfo.KEY_PPAGE, Terminfo.KEY_NPAGE,
+            Terminfo.KEY_BTAB, Terminfo.KEY_ENTER,
+            Terminfo.KEY_F1, Terminfo.KEY_F2, Terminfo.KEY_F2 + 1, Terminfo.KEY_F2 + 2, Terminfo.KEY_F2 + 3,
+            Terminfo.KEY_F2 + 4, Terminfo.KEY_F2 + 5, Terminfo.KEY_F2 + 6, Terminfo.KEY_F2 + 7, Terminfo.KEY_F10,
+            Terminfo.KEY_F11, Terminfo.KEY_F12,
+            Terminfo.KEY_SLEFT, Terminfo.KEY_SRIGHT, Terminfo.KEY_SHOME, Terminfo.KEY_SEND, Terminfo.KEY_SIC,
+            Terminfo.KEY_SDC, Terminfo.KEY_SPREVIOUS, Terminfo.KEY_SNEXT
+    };
+    private static final KeyType[] TERMINFO_KEYS = {
+            KeyType.ARROW_UP, KeyType.ARROW_DOWN, KeyType.ARROW_LEFT, KeyType.ARROW_RIGHT, KeyType.HOME,
+            KeyType.END, KeyType.INSERT, KeyType.DELETE, KeyType.PAGE_UP, KeyType.PAGE_DOWN,
+            KeyType.REVERSE_TAB, KeyType.CR,
+            KeyType.F1, KeyType.F2, KeyType.F3, KeyType.F4, KeyType.F5,
+            KeyType.F6, KeyType.F7, KeyType.F8, KeyType.F9, KeyType.F10,
+            KeyType.F11, KeyType.F12,
+            KeyType.ARROW_LEFT, KeyType.ARROW_RIGHT, KeyType.HOME, KeyType.END, KeyType.INSERT,
+            KeyType.DELETE, KeyType.PAGE_UP, KeyType.PAGE_DOWN
+    };
+    private static final int FIRST_SHIFTED_CAPABILITY = 24;
+
+    // node n's transition on byte b is transitions[n * ALPHABET + b]; 0 is the root and, as a target, no transition
+    private final int[] transitions;
+    private final int[] keys;
+
+    private KeyMatcher(Map<String, Integer> sequences) {
+        List<int[]> nodes = new ArrayList<>();
+        List<Integer> nodeKeys = new ArrayList<>();
+        nodes.add(new int[ALPHABET]);
+        nodeKeys.add(NONE);
+        for (Map.Entry<String, Integer> entry : sequences.entrySet()) {
+            String sequence = entry.getKey();
+            int node = 0;
+            for (int index = 0; index < sequence.length(); index++) {
+                int value = sequence.charAt(index);
+                int next = nodes.get(node)[value];
+                if (next == 0) {
+                    next = nodes.size();
+                    nodes.get(node)[value] = next;
+                    nodes.add(new int[ALPHABET]);
+                    nodeKeys.add(NONE);
+                }
+                node = next;
+            }
+            nodeKeys.set(node, entry.getValue());
+        }
+        transitions = new int[nodes.size() * ALPHABET];
+        keys = new int[nodes.size()];
+        for (int node = 0; node < nodes.size(); node++) {
+            System.arraycopy(nodes.get(node), 0, transitions, node * ALPHABET, ALPHABET);
+            keys[node] = nodeKeys.get(node);
+        }
+    }
+
+    /**
+     * Returns the matcher for the built-in key table.
+     */
+    static KeyMatcher builtIn() {
+        return BUILT_IN;
+    }
+
+    /**
+     * Returns the matcher for the built-in key table merged with the key capabilities of the terminfo entry of the
+     * specified terminal, or the built-in matcher if there is no entry. Matchers are compiled once per terminal.
+     */
+    static KeyMatcher forTerminal(String term) {
+        if (term == null || term.isEmpty()) {
+            return BUILT_IN;
+        }
+        return BY_TERMINAL.computeIfAbsent(term, name -> {
+            Terminfo terminfo = Terminfo.load(name);
+            return terminfo == null ? BUILT_IN : compile(terminfo);
+        });
+    }
+
+    /**
+     * Compiles the built-in key table merged with the key capabilities of a terminfo entry. The terminfo entry wins
+     * where both define a sequence; capabilities that are not CSI or SS3 sequences are left to the key reader.
+     */
+    static KeyMatcher compile(Terminfo terminfo) {
+        Map<String, Integer> sequences = new LinkedHashMap<>(BUILT_IN_KEYS);
+        for (int index = 0; index < TERMINFO_CAPABILITIES.length; index++) {
+            String value = terminfo.getString(TERMINFO_CAPABILITIES[index]);
+            if (value == null || value.length() < 3 || value.charAt(0) != 0x1b
+                    || (value.charAt(1) != '[' && value.charAt(1) != 'O')) {
+                continue;
+            }
+            String sequence = value.substring(1);
+            if (sequence.chars().anyMatch(character -> character >= ALPHABET)) {
+                continue;
+            }
+            int modifiers = index >= FIRST_SHIFTED_CAPABILITY ? SHIFT : 0;
+            sequences.put(sequence, key(TERMINFO_KEYS[index], modifiers));
+        }
+        return new KeyMatcher(sequences);
+    }
+
+    /**
+     * Matches the escape sequence whose introducer ({@code '['} or {@code 'O'}) is at {@code start}; the ESC before
+     * it is not part of the input. A sequence of the table is preferred to the parameterized form of a key, and a
+     * sequence that is a prefix of another one in the table wins over the longer one.
+     * @return {@link #KEY}, {@link #SEQUENCE}, {@link #INCOMPLETE} or {@link #INVALID}
+     */
+    int match(byte[] buffer, int start, int length, Match match) {
+        match.reset();
+        int introducer = buffer[start] & 0xff;
+        boolean csi = introducer == '[';
+        int node = introducer < ALPHABET ? transitions[introducer] : 0;
+        boolean inParameters = true;
+        boolean valid = true;
+        int value = MISSING;
+        int field = 0;
+        int subfield = 0;
+
+        for (int index = start + 1; index < length; index++) {
+            int current = buffer[index] & 0xff;
+            if (node != 0) {
+                node = current < ALPHABET ? transitions[node * ALPHABET + current] : 0;
+                if (node != 0 && keys[node] != NONE) {
+                    match.key = keys[node];
+                    match.end = index + 1;
+                    return KEY;
+                }
+            }
+            if (inParameters) {
+                if (current >= '0' && current <= '9') {
+                    value = Math.max(value, 0) * 10 + current - '0';
+                    if (value > MAX_PARAMETER) {
+                        valid = false;
+                        value = MAX_PARAMETER;
+                    }
+                } else if (current == ';' || current == ':') {
+                    match.store(field, subfield, value);
+                    value = MISSING;
+                    if (current == ';') {
+                        field++;
+                        subfield = 0;
+                    } else {
+                        subfield++;
+                        match.subparameters = true;
+                    }
+                } else if (csi && index == start + 1 && current >= '<' && current <= '?') {
+                    match.prefix = current;
+                } else if ((current >= 0x40 && current <= 0x7e) || current == '$') {
+                    // '$' ends rxvt's Shift+key sequences, although ECMA-48 makes it an intermediate byte
+                    if (value != MISSING || field > 0) {
+                        match.store(field, subfield, value);
+                        match.fields = field + 1;
+                    }
+                    match.finalByte = current;
+                    match.end = index + 1;
+                    inParameters = false;
+                } else {
+                    valid = false;
+                    inParameters = false;
+                    match.end = index + 1;
+                }
+            }
+            if (node == 0 && !inParameters) {
+                return valid ? finish(introducer, match) : INVALID;
+            }
+            if (index - start >= MAX_SEQUENCE_LENGTH) {
+                match.end = index + 1;
+                return INVALID;
+            }
+        }
+        return INCOMPLETE;
+    }
+
+    // maps the parameterized forms of the xterm and rxvt keys
+    private static int finish(int introducer, Match match) {
+        int finalByte = match.finalByte;
+        if (match.prefix != 0) {
+            return SEQUENCE;
+        }
+        int modifiers;
+        KeyType keyType;
+        if (introducer == 'O') {
+            keyType = finalByte < ALPHABET ? CURSOR_KEYS[finalByte] : null;
+            if (keyType == null || match.fields > 1 || match.subparameters) {
+                return SEQUENCE;
+            }
+            // old xterm and konsole send the modifiers as the only parameter, e.g. SS3 5 A
+            modifiers = match.fields == 0 ? 0 : modifiers(match.parameter0);
+        } else if (finalByte < ALPHABET && CURSOR_KEYS[finalByte] != null) {
+            keyType = CURSOR_KEYS[finalByte];
+            if (match.fields == 0 || (match.fields == 1 && match.parameter0 == 1)) {
+                modifiers = 0;
+            } else if (match.fields == 2 && match.parameter0 == 1) {
+                modifiers = modifiers(match.parameter1);
+            } else {
+                return SEQUENCE;
+            }
+        } else if (finalByte == 'Z') {
+            keyType = KeyType.REVERSE_TAB;
+            modifiers = match.fields == 0 ? 0 : NONE;
+        } else if (finalByte == '~' || finalByte == '$' || finalByte == '^' || finalByte == '@') {
+            if (match.fields < 1 || match.parameter0 < 0 || match.parameter0 >= TILDE_KEYS.length
+                    || TILDE_KEYS[match.parameter0] == null) {
+                return SEQUENCE;
+            }
+            keyType = TILDE_KEYS[match.parameter0];
+            if (finalByte == '~') {
+                modifiers = match.fields == 1 ? 0 : match.fields == 2 ? modifiers(match.parameter1) : NONE;
+            } else {
+                // rxvt: $ for Shift, ^ for Ctrl and @ for both
+                modifiers = match.fields != 1 ? NONE
+                        : finalByte == '$' ? SHIFT : finalByte == '^' ? CTRL : CTRL | SHIFT;
+            }
+        } else {
+            return SEQUENCE;
+        }
+        if (modifiers == NONE) {
+            return SEQUENCE;
+        }
+        match.key = key(keyType, modifiers);
+        return KEY;
+    }
+
+    // decodes the xterm modifier parameter (1 + the modifier bits); the Meta bit and the lock keys are dropped
+    private static int modifiers(int parameter) {
+        return parameter >= 1 ? (parameter - 1) & (SHIFT | ALT | CTRL) : NONE;
+    }
+
+    private static void builtIn(String sequence, KeyType keyType, int modifiers) {
+        BUILT_IN_KEYS.put(sequence, key(keyType, modifiers));
+    }
+
+    // a matched key is a KeyCode without an action
+    static int key(KeyType keyType, int modifiers) {
+        return keyType.ordinal() << 16 | modifiers << 24;
+    }
+
+    static int character(char c, int modifiers) {
+        return key(KeyType.CHARACTER, modifiers) | c;
+    }
+
+    /**
+     * The result of a match. Parameters past the third and subparameters other than the first of each parameter and
+     * the second of the second parameter (the event type of the kitty keyboard protocol) are not kept.
+     */
+    static final class Match {
+        int key;
+        int end;
+        int prefix;
+        int finalByte;
+        int fields;
+        int parameter0;
+        int parameter1;
+        int parameter2;
+        int eventType;
+        boolean subparameters;
+
+        private void reset() {
+            key = 0;
+            end = 0;
+            prefix = 0;
+            finalByte = 0;
+            fields = 0;
+            parameter0 = MISSING;
+            parameter1 = MISSING;
+            parameter2 = MISSING;
+            eventType = MISSING;
+            subparameters = false;
+        }
+
+        private void store(int field, int subfield, int value) {
+            if (subfield == 0) {
+                if (field == 0) {
+                    parameter0 = value;
+                } else if (field == 1) {
+                    parameter1 = value;
+                } else if (field == 2) {
+                    parameter2 = value;
+                }
+            } else if (subfield == 1 && field == 1) {
+                eventType = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package net.prsv.terminality;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Publishes the keystrokes read by the asynchronous keyboard reader to reactive subscribers. The reader asks
+ * {@link #awaitDemand()} before it decodes the next keystroke, and waits while a subscriber has not requested one,
+ * so that unrequested input stays in the terminal's input buffer, where the kernel stops the sender once it is full,
+ * rather than piling up on the heap. Signals are delivered on the reader thread, one at a time; the slowest
+ * subscriber sets the pace for all of them.
+ */
+final class KeyPublisher implements Flow.Publisher<KeyStroke> {
+
+    private final List<KeySubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition demandChanged = lock.newCondition();
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super KeyStroke> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber can't be null");
+        }
+        KeySubscription subscription = new KeySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        lock.lock();
+        try {
+            if (!subscription.cancelled) {
+                subscriptions.add(subscription);
+            }
+            demandChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Waits until every subscriber has requested at least one more keystroke, or there are no subscribers left.
+     */
+    void awaitDemand() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!subscriptions.isEmpty() && !everySubscriberHasDemand()) {
+                demandChanged.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delivers the keystroke to every subscriber that has requested it; the end of the input completes the
+     * subscriptions instead.
+     */
+    void publish(KeyStroke keyStroke) {
+        if (keyStroke.type == KeyType.EOF) {
+            for (KeySubscription subscription : subscriptions) {
+                if (remove(subscription)) {
+                    subscription.subscriber.onComplete();
+                }
+            }
+            return;
+        }
+        for (KeySubscription subscription : subscriptions) {
+            if (subscription.take()) {
+                subscription.subscriber.onNext(keyStroke);
+            }
+        }
+    }
+
+    /**
+     * Terminates every subscription with the failure of the keyboard reader.
+     */
+    void fail(Throwable failure) {
+        for (KeySubscription subscription : subscriptions) {
+            if (remove(subscription)) {
+                subscription.subscriber.onError(failure);
+            }
+        }
+    }
+
+    private boolean everySubscriberHasDemand() {
+        for (KeySubscription subscription : subscriptions) {
+            if (subscription.demand == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ends the subscription; returns false if it had already ended
+    private boolean remove(KeySubscription subscription) {
+        lock.lock();
+        try {
+            boolean active = !subscription.cancelled;
+            subscription.cancelled = true;
+            subscriptions.remove(subscription);
+            demandChanged.signalAll();
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class KeySubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super KeyStroke> subscriber;
+        // guarded by the lock of the publisher
+        private long demand;
+        private boolean cancelled;
+
+        private KeySubscription(Flow.Subscriber<? super KeyStroke> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (remove(this)) {
+                    subscriber.onError(new IllegalArgumentException("Requested a non-positive number of keystrokes"));
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                if (!cancelled) {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n; // unbounded once it overflows
+                    demandChanged.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            remove(this);
+        }
+
+        // takes one unit of demand for the next keystroke
+        private boolean take() {
+            lock.lock();
+            try {
+                if (cancelled || demand == 0) {
+                    return false;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
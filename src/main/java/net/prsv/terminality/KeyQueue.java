@@ -0,0 +1,159 @@
+package net.prsv.terminality;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The bounded queue between the asynchronous keyboard reader and the application. Mouse motion is coalesced: a
+ * motion event that arrives while the previous motion event of the same kind is still waiting at the tail of the
+ * queue replaces it, so that only the latest position survives when the application falls behind, and a flood of
+ * motion cannot fill the queue. It is not a {@link java.util.Queue}: it has only the operations the reader and the
+ * terminal need, each of which keeps the waiting threads informed.
+ */
+final class KeyQueue {
+
+    private final int capacity;
+    private final ArrayDeque<KeyStroke> keyStrokes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private long coalesced;
+
+    KeyQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        keyStrokes = new ArrayDeque<>(capacity);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds the keystroke, or replaces the motion event at the tail with it.
+     * @return {@code false} if the queue is full
+     */
+    boolean offer(KeyStroke keyStroke) {
+        lock.lock();
+        try {
+            return enqueue(keyStroke);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the keystroke, waiting for room if the queue is full.
+     */
+    void put(KeyStroke keyStroke) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!enqueue(keyStroke)) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the head of the queue.
+     * @return the keystroke, or {@code null} if the queue is empty
+     */
+    KeyStroke poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the head of the queue, waiting up to the specified time for a keystroke to arrive.
+     * @return the keystroke, or {@code null} if none has arrived in time
+     */
+    KeyStroke poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (keyStrokes.isEmpty()) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return keyStrokes.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            keyStrokes.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of motion events that have been replaced by later ones.
+     */
+    long coalesced() {
+        lock.lock();
+        try {
+            return coalesced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean enqueue(KeyStroke keyStroke) {
+        KeyStroke last = keyStrokes.peekLast();
+        if (last != null && isSameMotion(last, keyStroke)) {
+            keyStrokes.pollLast();
+            keyStrokes.addLast(keyStroke);
+            coalesced++;
+            return true;
+        }
+        if (keyStrokes.size() == capacity) {
+            return false;
+        }
+        keyStrokes.addLast(keyStroke);
+        notEmpty.signal();
+        return true;
+    }
+
+    private KeyStroke dequeue() {
+        KeyStroke keyStroke = keyStrokes.pollFirst();
+        if (keyStroke != null) {
+            notFull.signal();
+        }
+        return keyStroke;
+    }
+
+    private static boolean isSameMotion(KeyStroke first, KeyStroke second) {
+        MouseEvent firstEvent = first.getMouseEvent();
+        MouseEvent secondEvent = second.getMouseEvent();
+        return firstEvent != null && secondEvent != null
+                && firstEvent.isMotion() && firstEvent.type == secondEvent.type
+                && firstEvent.button == secondEvent.button
+                && first.ctrl == second.ctrl && first.alt == second.alt && first.shift == second.shift;
+    }
+}
@@ -1,5 +1,7 @@
 package net.prsv.terminality;
 
+import java.util.Objects;
+
 public final class KeyStroke {
 
     public final char c;
@@ -12,7 +14,22 @@ public final class KeyStroke {
 
     public final KeyType type;
 
+    private final String text;
+
+    private final MouseEvent mouseEvent;
+
+    private final KeyAction action;
+
+    // set by the key reader before the keystroke is handed out; not part of the identity of the keystroke
+    private boolean timestamped;
+    private long timestamp;
+
     private KeyStroke(char c, KeyType keyType, boolean ctrl, boolean alt, boolean shift) {
+        this(c, keyType, ctrl, alt, shift, null, null, KeyAction.PRESS);
+    }
+
+    private KeyStroke(char c, KeyType keyType, boolean ctrl, boolean alt, boolean shift, String text,
+                      MouseEvent mouseEvent, KeyAction action) {
         if (keyType == null) {
             throw new NullPointerException("keyType can't be null");
         }
@@ -21,6 +38,72 @@ public final class KeyStroke {
         this.ctrl = ctrl;
         this.shift = shift;
         this.type = keyType;
+        this.text = text;
+        this.mouseEvent = mouseEvent;
+        this.action = action;
+    }
+
+    /**
+     * Returns the text of a {@link KeyType#PASTE} keystroke.
+     * @return the pasted text, or {@code null} if this is not a paste
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the mouse event of a {@link KeyType#MOUSE} keystroke.
+     * @return the mouse event, or {@code null} if this is not a mouse report
+     */
+    public MouseEvent getMouseEvent() {
+        return mouseEvent;
+    }
+
+    /**
+     * Returns whether the key was pressed, repeated or released. Repeats and releases are reported only by terminals
+     * that support {@link TerminalMode#KITTY_KEYBOARD}.
+     */
+    public KeyAction getAction() {
+        return action;
+    }
+
+    /**
+     * Returns a copy of this keystroke with the specified action.
+     * @throws NullPointerException if {@code action} is {@code null}
+     */
+    public KeyStroke withAction(KeyAction action) {
+        if (action == null) {
+            throw new NullPointerException("action can't be null");
+        }
+        return action == this.action
+                ? this
+                : new KeyStroke(c, type, ctrl, alt, shift, text, mouseEvent, action);
+    }
+
+    /**
+     * Checks whether the keystroke carries the time at which its first byte was read from the terminal. Keystrokes
+     * read from a terminal do; keystrokes created with the factory methods do not.
+     */
+    public boolean hasTimestamp() {
+        return timestamped;
+    }
+
+    /**
+     * Returns the value of {@link System#nanoTime()} at which the first byte of this keystroke was read from the
+     * terminal. The timestamp can be passed to {@link UnixTerminal#tagNextFlush(KeyStroke)} to measure the latency
+     * between a key press and the resulting output.
+     * @throws IllegalStateException if the keystroke has no timestamp
+     */
+    public long getTimestamp() {
+        if (!timestamped) {
+            throw new IllegalStateException("The keystroke has no timestamp");
+        }
+        return timestamp;
+    }
+
+    void setTimestamp(long nanoTime) {
+        timestamp = nanoTime;
+        timestamped = true;
     }
 
     @Override
@@ -29,8 +112,15 @@ public final class KeyStroke {
         sb.append("Type: ").append(type.name()).append(", ");
         if (type == KeyType.CHARACTER) {
             sb.append("character: '").append(escapeCharacter(c)).append("', ");
+        } else if (type == KeyType.PASTE) {
+            sb.append("length: ").append(text.length()).append(", ");
+        } else if (type == KeyType.MOUSE) {
+            sb.append(mouseEvent).append(", ");
         }
         sb.append("Ctrl: ").append(ctrl).append(", ").append("Alt: ").append(alt).append(", ").append("Shift: ").append(shift);
+        if (action != KeyAction.PRESS) {
+            sb.append(", Action: ").append(action.name());
+        }
         return sb.toString();
     }
 
@@ -88,15 +178,48 @@ public final class KeyStroke {
      * @return a special keystroke with the specified modifiers
      * @throws NullPointerException if {@code type} is {@code null}
      * @throws IllegalArgumentException if {@code type} is
-     *         {@link KeyType#CHARACTER} or {@link KeyType#EOF}
+     *         {@link KeyType#CHARACTER}, {@link KeyType#PASTE}, {@link KeyType#MOUSE} or {@link KeyType#EOF}
      */
     public static KeyStroke special(KeyType type, boolean ctrl, boolean alt, boolean shift) {
-        if (type == KeyType.CHARACTER || type == KeyType.EOF) {
-            throw new IllegalArgumentException("Special keystroke cannot be a character or EOF");
+        if (type == KeyType.CHARACTER || type == KeyType.EOF || type == KeyType.PASTE || type == KeyType.MOUSE) {
+            throw new IllegalArgumentException("Special keystroke cannot be a character, paste, mouse report or EOF");
         }
         return new KeyStroke('\u0000', type, ctrl, alt, shift);
     }
 
+    /**
+     * Creates a paste keystroke without modifiers.
+     * The {@link #c} field of the returned keystroke is {@code '\u0000'}.
+     *
+     * @param text the pasted text
+     * @return a {@link KeyType#PASTE} keystroke carrying the text
+     * @throws NullPointerException if {@code text} is {@code null}
+     */
+    public static KeyStroke paste(String text) {
+        if (text == null) {
+            throw new NullPointerException("text can't be null");
+        }
+        return new KeyStroke('\u0000', KeyType.PASTE, false, false, false, text, null, KeyAction.PRESS);
+    }
+
+    /**
+     * Creates a mouse keystroke with the specified modifiers.
+     * The {@link #c} field of the returned keystroke is {@code '\u0000'}.
+     *
+     * @param event the mouse event
+     * @param ctrl whether the Ctrl modifier is active
+     * @param alt whether the Alt modifier is active
+     * @param shift whether the Shift modifier is active
+     * @return a {@link KeyType#MOUSE} keystroke carrying the event
+     * @throws NullPointerException if {@code event} is {@code null}
+     */
+    public static KeyStroke mouse(MouseEvent event, boolean ctrl, boolean alt, boolean shift) {
+        if (event == null) {
+            throw new NullPointerException("event can't be null");
+        }
+        return new KeyStroke('\u0000', KeyType.MOUSE, ctrl, alt, shift, null, event, KeyAction.PRESS);
+    }
+
     /**
      * Creates an end-of-input keystroke without modifiers.
      * The {@link #c} field of the returned keystroke is {@code '\u0000'}.
@@ -117,16 +240,18 @@ public final class KeyStroke {
                 this.type  == that.type &&
                 this.ctrl  == that.ctrl &&
                 this.alt   == that.alt  &&
-                this.shift == that.shift);
+                this.shift == that.shift &&
+                Objects.equals(this.text, that.text) &&
+                Objects.equals(this.mouseEvent, that.mouseEvent) &&
+                this.action == that.action);
     }
 
     @Override
     public int hashCode() {
-        int result = 23 * c;
-        result += alt ? 5 : 0;
-        result += ctrl ? 7 : 0;
-        result += shift ? 11 : 0;
-        result += 17 * type.hashCode();
+        // the key code packs the other fields without collisions, and multiplying by an odd number keeps it so
+        int result = KeyCode.of(this);
+        result = 31 * result + Objects.hashCode(text);
+        result = 31 * result + Objects.hashCode(mouseEvent);
         return result;
     }
 
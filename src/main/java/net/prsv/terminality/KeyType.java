@@ -30,5 +30,9 @@ public enum KeyType {
     F10,
     F11,
     F12,
+    /** Text pasted while {@link TerminalMode#BRACKETED_PASTE} is enabled; see {@link KeyStroke#getText()}. */
+    PASTE,
+    /** A mouse report read while one of the mouse tracking modes is enabled; see {@link KeyStroke#getMouseEvent()}. */
+    MOUSE,
     EOF
 }
@@ -0,0 +1,164 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds with log-linear buckets, in the style of HdrHistogram.
+ *
+ * <p>Values below 128 ns are counted exactly; above that, every power of two is divided into 128 buckets, so that
+ * a recorded value is off by less than 1%. Values above about 18 minutes are counted as 18 minutes. Recording
+ * does not allocate and may be done from several threads at once.</p>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 39;
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     * @param nanos the latency in nanoseconds; negative values are counted as zero
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        max.accumulate(value);
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * Returns the largest recorded latency in nanoseconds, or zero if nothing has been recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded latencies in nanoseconds, or zero if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = totalCount.sum();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Returns the latency at or below which the specified percentage of the recorded latencies lie.
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value equivalent to the bucket containing the percentile, or zero if nothing has been
+     * recorded
+     * @throws IllegalArgumentException if {@code percentile} is outside the range from 0 to 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long threshold = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int index = 0; index < counts.length(); index++) {
+            seen += counts.get(index);
+            if (seen >= threshold) {
+                return Math.min(highestEquivalentValue(index), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Forgets all recorded latencies.
+     */
+    public void reset() {
+        for (int index = 0; index < counts.length(); index++) {
+            counts.set(index, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        max.reset();
+    }
+
+    /**
+     * Writes the percentile distribution of the recorded latencies in the text format of HdrHistogram, which can be
+     * plotted with its tools. Every non-empty bucket is one line with the value, the cumulative percentile (as a
+     * fraction), the cumulative count and 1/(1-percentile).
+     * @param out where to write the distribution
+     * @param unitNanos the number of nanoseconds per output unit, e.g. 1000000 to write milliseconds
+     * @throws IOException if writing fails
+     */
+    public void dump(Appendable out, double unitNanos) throws IOException {
+        long count = totalCount.sum();
+        out.append(String.format(Locale.ROOT, "%12s %14s %10s %14s%n%n",
+                "Value", "Percentile", "TotalCount", "1/(1-Percentile)"));
+        long seen = 0;
+        for (int index = 0; index < counts.length() && count > 0; index++) {
+            long bucketCount = counts.get(index);
+            if (bucketCount == 0) {
+                continue;
+            }
+            seen += bucketCount;
+            double fraction = (double) seen / count;
+            out.append(String.format(Locale.ROOT, "%12.3f %2.12f %10d %14.2f%n",
+                    Math.min(highestEquivalentValue(index), getMax()) / unitNanos, fraction, seen,
+                    fraction < 1 ? 1 / (1 - fraction) : Double.POSITIVE_INFINITY));
+        }
+        out.append(String.format(Locale.ROOT, "#[Mean    = %12.3f, Max            = %12.3f]%n",
+                getMean() / unitNanos, getMax() / unitNanos));
+        out.append(String.format(Locale.ROOT, "#[Total count    = %12d]%n", count));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "LatencyHistogram{count=%d, mean=%.0fns, p50=%dns, p99=%dns, max=%dns}",
+                getTotalCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(99), getMax());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
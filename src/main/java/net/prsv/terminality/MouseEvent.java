@@ -0,0 +1,102 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+/**
+ * A mouse report read from the terminal while one of the mouse tracking modes is enabled (see
+ * {@link TerminalMode#MOUSE_BUTTONS}). Mouse reports are delivered as keystrokes of the type
+ * {@link KeyType#MOUSE}; the modifier keys held during the event are the modifiers of the keystroke.
+ */
+public final class MouseEvent {
+
+    public enum Type {
+        PRESS,
+        RELEASE,
+        /** The mouse moved while a button was held. */
+        DRAG,
+        /** The mouse moved without a button held; reported only in {@link TerminalMode#MOUSE_ALL_MOTION}. */
+        MOVE,
+        WHEEL_UP,
+        WHEEL_DOWN,
+        WHEEL_LEFT,
+        WHEEL_RIGHT
+    }
+
+    /** Button number of events without a button, such as wheel events and motion without a pressed button. */
+    public static final int NO_BUTTON = 0;
+    public static final int LEFT_BUTTON = 1;
+    public static final int MIDDLE_BUTTON = 2;
+    public static final int RIGHT_BUTTON = 3;
+
+    public final Type type;
+
+    /**
+     * The button: {@link #LEFT_BUTTON}, {@link #MIDDLE_BUTTON}, {@link #RIGHT_BUTTON}, 8 to 11 for additional buttons
+     * (e.g. 8 and 9 for back and forward), or {@link #NO_BUTTON}.
+     */
+    public final int button;
+
+    /** The row of the cell under the pointer, counted from 0. */
+    public final int row;
+
+    /** The column of the cell under the pointer, counted from 0. */
+    public final int column;
+
+    /**
+     * Creates a mouse event.
+     * @throws NullPointerException if {@code type} is {@code null}
+     */
+    public MouseEvent(Type type, int button, int row, int column) {
+        if (type == null) {
+            throw new NullPointerException("type can't be null");
+        }
+        this.type = type;
+        this.button = button;
+        this.row = row;
+        this.column = column;
+    }
+
+    /**
+     * Checks whether this is a motion event ({@link Type#DRAG} or {@link Type#MOVE}).
+     */
+    public boolean isMotion() {
+        return type == Type.DRAG || type == Type.MOVE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MouseEvent)) return false;
+
+        MouseEvent that = (MouseEvent) o;
+        return type == that.type && button == that.button && row == that.row && column == that.column;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type.hashCode();
+        result = 31 * result + button;
+        result = 31 * result + row;
+        result = 31 * result + column;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MouseEvent{" + type + ", button " + button + " at " + row + ", " + column + '}';
+    }
+}
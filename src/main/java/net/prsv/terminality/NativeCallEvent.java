@@ -0,0 +1,29 @@
+package net.prsv.terminality;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.prsv.terminality.NativeCall")
+@Label("Native Call")
+@Description("A call to a native libc function")
+@Category("Terminality")
+@Enabled(false)
+@StackTrace(false)
+final class NativeCallEvent extends Event {
+
+    @Label("Function")
+    String function;
+
+    void complete(String function) {
+        end();
+        if (shouldCommit()) {
+            this.function = function;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package net.prsv.terminality;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongSupplier;
+
+/**
+ * Measures how fast the terminal accepts output. Every write and flush of the underlying stream is timed, and the
+ * throughput is the number of bytes written per unit of time spent blocked in those calls. Older samples decay, so
+ * that the estimate follows changes of the connection within a few frames.
+ */
+final class OutputMeter extends OutputStream {
+
+    private static final double DECAY = 0.75;
+
+    private final OutputStream out;
+    private final TerminalCounters counters;
+    private final LongSupplier nanoTime;
+
+    private volatile SessionRecorder recorder;
+
+    private long bytesWritten;
+    private long blockedNanos;
+    private double recentBytes;
+    private double recentNanos;
+
+    OutputMeter(OutputStream out, TerminalCounters counters) {
+        this(out, counters, System::nanoTime);
+    }
+
+    OutputMeter(OutputStream out, LongSupplier nanoTime) {
+        this(out, new TerminalCounters(), nanoTime);
+    }
+
+    OutputMeter(OutputStream out, TerminalCounters counters, LongSupplier nanoTime) {
+        this.out = out;
+        this.counters = counters;
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        long start = nanoTime.getAsLong();
+        out.write(b);
+        record(1, nanoTime.getAsLong() - start);
+        counters.writeCalls.increment();
+        SessionRecorder tap = recorder;
+        if (tap != null) {
+            tap.output(new byte[] {(byte) b}, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = nanoTime.getAsLong();
+        out.write(b, off, len);
+        record(len, nanoTime.getAsLong() - start);
+        counters.writeCalls.increment();
+        SessionRecorder tap = recorder;
+        if (tap != null) {
+            tap.output(b, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = nanoTime.getAsLong();
+        out.flush();
+        record(0, nanoTime.getAsLong() - start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Passes every chunk of bytes written to the underlying stream to the specified recorder, or stops doing so if it
+     * is null.
+     */
+    void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    synchronized long bytesWritten() {
+        return bytesWritten;
+    }
+
+    synchronized long blockedNanos() {
+        return blockedNanos;
+    }
+
+    /**
+     * Returns the recent throughput in bytes per second, or {@link Double#POSITIVE_INFINITY} if no write has
+     * blocked measurably yet.
+     */
+    synchronized double throughput() {
+        if (recentNanos <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return recentBytes * 1_000_000_000.0 / recentNanos;
+    }
+
+    private synchronized void record(int bytes, long nanos) {
+        counters.bytesWritten.add(bytes);
+        bytesWritten += bytes;
+        blockedNanos += nanos;
+        recentBytes = recentBytes * DECAY + bytes;
+        recentNanos = recentNanos * DECAY + Math.max(0, nanos);
+    }
+}
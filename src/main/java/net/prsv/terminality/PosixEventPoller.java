@@ -0,0 +1,133 @@
+package net.prsv.terminality;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.NativeLong;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Waits with {@code poll()} for input on the terminal or for a wakeup from another thread. A wakeup writes a byte to
+ * a pipe whose read end is polled along with the terminal (the self-pipe trick), so the waiting thread returns at once
+ * instead of when its timeout expires. A wakeup while another one is pending writes nothing, so the pipe never fills
+ * up and a wakeup never blocks. A wakeup after {@link #close()} does nothing, so that a thread that wakes the poller
+ * up just as it is closed never writes to a closed file descriptor, or to whatever file has since reused its number.
+ */
+final class PosixEventPoller implements TerminalEventLoop.Poller {
+
+    private static final int INPUT = 0;
+    private static final int WAKEUP = 1;
+
+    private final PosixLibC lib;
+    private final int wakeupReadFd;
+    private final int wakeupWriteFd;
+    private final PosixLibC.PollFd[] descriptors;
+    private final byte[] wakeupByte = new byte[1];
+    private final byte[] drainedByte = new byte[1];
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    // guards the write end of the pipe against being closed while a wakeup writes to it
+    private final Object writeLock = new Object();
+    private boolean closed;
+
+    PosixEventPoller(PosixLibC lib, int fileDescriptor) throws IOException {
+        if (lib == null) {
+            throw new NullPointerException("lib");
+        }
+        this.lib = lib;
+        int[] pipe = new int[2];
+        try {
+            if (lib.pipe(pipe) != 0) {
+                throw new IOException("Failed to create the wakeup pipe");
+            }
+        } catch (LastErrorException e) {
+            throw new IOException("Failed to create the wakeup pipe", e);
+        }
+        wakeupReadFd = pipe[0];
+        wakeupWriteFd = pipe[1];
+        // the descriptors must be contiguous in native memory
+        descriptors = (PosixLibC.PollFd[]) new PosixLibC.PollFd().toArray(2);
+        descriptors[INPUT].fd = fileDescriptor;
+        descriptors[INPUT].events = PosixLibC.POLLIN;
+        descriptors[WAKEUP].fd = wakeupReadFd;
+        descriptors[WAKEUP].events = PosixLibC.POLLIN;
+    }
+
+    /**
+     * Waits until the terminal has input, another thread calls {@link #wakeup()} or the timeout expires. The timeout
+     * is rounded up to whole milliseconds, and {@link Long#MAX_VALUE} waits indefinitely. A signal ends the wait early.
+     */
+    @Override
+    public void await(long timeoutNanos) throws IOException {
+        int timeoutMillis = timeoutNanos == Long.MAX_VALUE ? -1 : PosixInputProbe.pollTimeoutMillis(timeoutNanos);
+        descriptors[INPUT].revents = 0;
+        descriptors[WAKEUP].revents = 0;
+        int result;
+        NativeCallEvent event = new NativeCallEvent();
+        event.begin();
+        try {
+            result = lib.poll(descriptors, new PosixLibC.NfdsT(descriptors.length), timeoutMillis);
+        } catch (LastErrorException e) {
+            if (e.getErrorCode() == PosixLibC.EINTR) {
+                return;
+            }
+            throw new IOException("Failed to poll terminal input", e);
+        } finally {
+            event.complete("poll");
+        }
+        if (result < 0) {
+            throw new IOException("Failed to poll terminal input; poll returned " + result);
+        }
+        int events = Short.toUnsignedInt(descriptors[INPUT].revents);
+        if ((events & PosixLibC.POLLNVAL) != 0) {
+            throw new IOException("Failed to poll terminal input; file descriptor is invalid");
+        }
+        if ((events & PosixLibC.POLLERR) != 0) {
+            throw new IOException("Failed to poll terminal input; input error");
+        }
+        if ((descriptors[WAKEUP].revents & PosixLibC.POLLIN) != 0) {
+            // the flag is cleared first, so that a wakeup that arrives while the byte is read writes another one
+            wakeupPending.set(false);
+            try {
+                lib.read(wakeupReadFd, drainedByte, new NativeLong(1));
+            } catch (LastErrorException e) {
+                throw new IOException("Failed to read the wakeup pipe", e);
+            }
+        }
+    }
+
+    @Override
+    public void wakeup() {
+        if (!wakeupPending.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (writeLock) {
+            while (!closed) {
+                try {
+                    lib.write(wakeupWriteFd, wakeupByte, new NativeLong(1));
+                    return;
+                } catch (LastErrorException e) {
+                    if (e.getErrorCode() != PosixLibC.EINTR) {
+                        throw new UncheckedIOException(new IOException("Failed to write the wakeup pipe", e));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                lib.close(wakeupReadFd);
+                lib.close(wakeupWriteFd);
+            } catch (LastErrorException e) {
+                throw new IOException("Failed to close the wakeup pipe", e);
+            }
+        }
+    }
+}
@@ -19,6 +19,25 @@ final class PosixInputProbe implements UTKeyReader.InputStatusProbe {
 
     @Override
     public UTKeyReader.InputStatus poll() throws IOException {
+        return poll(0);
+    }
+
+    /**
+     * Waits with {@code poll()} for the descriptor to become readable. The timeout is rounded up to whole
+     * milliseconds, so that the wait does not end before it; a signal, such as {@code SIGWINCH}, ends it early.
+     */
+    @Override
+    public UTKeyReader.InputStatus await(long timeoutNanos) throws IOException {
+        return poll(pollTimeoutMillis(timeoutNanos));
+    }
+
+    // the timeout of poll() in whole milliseconds, rounded up so that the wait does not end before the timeout
+    static int pollTimeoutMillis(long timeoutNanos) {
+        long timeoutMillis = timeoutNanos <= 0 ? 0 : (timeoutNanos - 1) / 1_000_000 + 1;
+        return (int) Math.min(timeoutMillis, Integer.MAX_VALUE);
+    }
+
+    private UTKeyReader.InputStatus poll(int timeoutMillis) throws IOException {
         PosixLibC.PollFd descriptor = new PosixLibC.PollFd();
         descriptor.fd = fileDescriptor;
         descriptor.events = PosixLibC.POLLIN;
@@ -26,12 +45,22 @@ final class PosixInputProbe implements UTKeyReader.InputStatusProbe {
         int result;
         while (true) {
             try {
-                result = lib.poll(descriptor, new PosixLibC.NfdsT(1), 0);
+                NativeCallEvent event = new NativeCallEvent();
+                event.begin();
+                try {
+                    result = lib.poll(descriptor, new PosixLibC.NfdsT(1), timeoutMillis);
+                } finally {
+                    event.complete("poll");
+                }
                 break;
             } catch (LastErrorException e) {
                 if (e.getErrorCode() != PosixLibC.EINTR) {
                     throw new IOException("Failed to poll terminal input", e);
                 }
+                if (timeoutMillis > 0) {
+                    // the caller decides whether the rest of the timeout is still worth waiting for
+                    return UTKeyReader.InputStatus.UNAVAILABLE;
+                }
             }
         }
         if (result < 0) {
@@ -279,4 +279,31 @@ public interface PosixLibC extends Library {
      */
     int poll(PollFd descriptors, NfdsT count, int timeoutMillis) throws LastErrorException;
 
+    /**
+     * Polls several file descriptors.
+     *
+     * <p>The array must have been created with {@link Structure#toArray(int)},
+     * so that the descriptors are contiguous in native memory.</p>
+     *
+     * @param descriptors the descriptors to poll
+     * @param count the number of descriptors in the array
+     * @param timeoutMillis timeout in milliseconds, or {@code -1} to wait indefinitely
+     * @return the result returned by the native {@code poll()} function
+     */
+    int poll(PollFd[] descriptors, NfdsT count, int timeoutMillis) throws LastErrorException;
+
+    /**
+     * Creates a pipe.
+     *
+     * @param fds receives the read end at index 0 and the write end at index 1
+     * @return the result returned by the native {@code pipe()} function
+     */
+    int pipe(int[] fds) throws LastErrorException;
+
+    NativeLong read(int fd, byte[] buffer, NativeLong count) throws LastErrorException;
+
+    NativeLong write(int fd, byte[] buffer, NativeLong count) throws LastErrorException;
+
+    int close(int fd) throws LastErrorException;
+
 }
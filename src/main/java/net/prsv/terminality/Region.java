@@ -0,0 +1,122 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+/**
+ * An immutable rectangle of character cells. Row and column indices are zero-based.
+ */
+public final class Region {
+
+    public final int row, column, rows, columns;
+
+    /**
+     * Creates a region.
+     * @param row vertical coordinate of the top left cell
+     * @param column horizontal coordinate of the top left cell
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @throws IllegalArgumentException if {@code rows} or {@code columns} is negative
+     */
+    public Region(int row, int column, int rows, int columns) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("Region dimensions must not be negative");
+        }
+        this.row = row;
+        this.column = column;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    public boolean isEmpty() {
+        return rows == 0 || columns == 0;
+    }
+
+    public long area() {
+        return (long) rows * columns;
+    }
+
+    /**
+     * Checks whether this region and the specified region share at least one cell.
+     * @param other the region to check
+     * @return {@code true} if the regions overlap
+     */
+    public boolean intersects(Region other) {
+        return !isEmpty() && !other.isEmpty()
+                && row < other.row + other.rows && other.row < row + rows
+                && column < other.column + other.columns && other.column < column + columns;
+    }
+
+    /**
+     * Checks whether this region contains every cell of the specified region.
+     * @param other the region to check
+     * @return {@code true} if the specified region lies inside this region
+     */
+    public boolean contains(Region other) {
+        return other.row >= row && other.row + other.rows <= row + rows
+                && other.column >= column && other.column + other.columns <= column + columns;
+    }
+
+    /**
+     * Returns the smallest region containing both this region and the specified region.
+     * @param other the other region
+     * @return the bounding region
+     */
+    public Region union(Region other) {
+        if (other.isEmpty()) return this;
+        if (isEmpty()) return other;
+        int top = Math.min(row, other.row);
+        int left = Math.min(column, other.column);
+        int bottom = Math.max(row + rows, other.row + other.rows);
+        int right = Math.max(column + columns, other.column + other.columns);
+        return new Region(top, left, bottom - top, right - left);
+    }
+
+    /**
+     * Returns the cells shared by this region and the specified region.
+     * @param other the other region
+     * @return the intersection, which is empty if the regions do not overlap
+     */
+    public Region intersection(Region other) {
+        int top = Math.max(row, other.row);
+        int left = Math.max(column, other.column);
+        int bottom = Math.min(row + rows, other.row + other.rows);
+        int right = Math.min(column + columns, other.column + other.columns);
+        return new Region(top, left, Math.max(0, bottom - top), Math.max(0, right - left));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Region)) return false;
+        Region that = (Region) o;
+        return row == that.row && column == that.column && rows == that.rows && columns == that.columns;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = row;
+        result = 31 * result + column;
+        result = 31 * result + rows;
+        result = 31 * result + columns;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Region{row=" + row + ", column=" + column + ", rows=" + rows + ", columns=" + columns + '}';
+    }
+}
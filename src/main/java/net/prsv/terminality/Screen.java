@@ -0,0 +1,662 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An off-screen buffer of character cells that is rendered to a {@link UnixTerminal} incrementally.
+ *
+ * <p>Applications draw into the buffer using the {@code put()} methods and call {@link #refresh()} to make the
+ * changes visible. A refresh compares the buffer with the content previously sent to the terminal and writes only
+ * the cells that differ. When whole lines have moved vertically, for example because a log pane has scrolled,
+ * the shift is detected by comparing per-line hashes, and the lines already displayed by the terminal are moved
+ * using its scrolling commands so that only the newly exposed lines have to be written.</p>
+ *
+ * <p>Every change made through this class marks the affected cells as damaged, and a refresh only examines the
+ * damaged regions, so the cost of a refresh depends on the size of the changes rather than the size of the screen.
+ * The whole terminal window is only cleared and repainted after {@link #resize(int, int)} or
+ * {@link #invalidate()}; applications should call {@link #resize(int, int)} when {@link Terminal#sizeChanged()}
+ * reports a new window size.</p>
+ *
+ * <p>Optionally, runs of identical characters and blanks can be encoded with the terminal's repeat and erase
+ * sequences instead of being written literally, see {@link #setCompression(Compression...)}.</p>
+ *
+ * <p>The screen assumes that nothing else writes to the terminal between refreshes. Every cell holds a single
+ * UTF-16 character; wide characters and combining sequences are not supported.</p>
+ */
+public class Screen {
+
+    /**
+     * Strategies for moving lines that are already displayed by the terminal.
+     */
+    public enum Scrolling {
+        /** Shifted lines are always repainted. */
+        NONE,
+        /** Shifted lines are moved by setting a scroll region (DECSTBM) and scrolling it (SU/SD). */
+        SCROLL_REGION,
+        /** Shifted lines are moved by deleting and inserting lines (DL/IL). */
+        INSERT_DELETE_LINE
+    }
+
+    /**
+     * Control sequences that can replace runs of characters when they are shorter than the literal text. Not all
+     * terminals support them, so none are used unless enabled with {@link #setCompression(Compression...)}.
+     * The erase sequences are only used for blanks without text attributes.
+     */
+    public enum Compression {
+        /** Runs of an identical character are written once and repeated with REP ({@code CSI n b}). */
+        REPEAT_CHARACTER,
+        /** Runs of blanks are erased with ECH ({@code CSI n X}). */
+        ERASE_CHARACTERS,
+        /** Blanks reaching the end of the line are erased with EL ({@code CSI K}). */
+        ERASE_TO_END_OF_LINE
+    }
+
+    private static final char BLANK = ' ';
+    private static final long HASH_SEED = 1125899906842597L;
+    // the control sequences of a single scroll are roughly as expensive as repainting one short line
+    private static final int SCROLL_COST_LINES = 1;
+
+    private final UnixTerminal terminal;
+
+    private int rows;
+    private int columns;
+
+    // the buffer the application draws into
+    private char[] chars;
+    private TextRendition[] renditions;
+
+    // the content displayed by the terminal
+    private char[] shownChars;
+    private TextRendition[] shownRenditions;
+    private long[] shownHashes;
+
+    private final DamageTracker damage = new DamageTracker();
+    private long[] hashes;
+    private boolean[] damagedRows;
+    private boolean[] repaintedRows;
+
+    private boolean clearPending = true;
+    private Scrolling scrolling = Scrolling.SCROLL_REGION;
+    private final EnumSet<Compression> compression = EnumSet.noneOf(Compression.class);
+
+    // output state, only valid during refresh()
+    private int cursorRow;
+    private int cursorColumn;
+    private TextRendition currentRendition;
+    private boolean renditionKnown;
+
+    // the best scroll found by findScroll()
+    private int scrollStart;
+    private int scrollEnd;
+    private int scrollShift;
+
+    /**
+     * Creates a blank screen of the specified size. The first {@link #refresh()} clears the terminal window.
+     * @param terminal the terminal the screen is rendered to
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @throws IllegalArgumentException if either dimension is negative
+     */
+    public Screen(UnixTerminal terminal, int rows, int columns) {
+        this.terminal = Objects.requireNonNull(terminal);
+        allocate(rows, columns);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Selects how lines that have moved vertically are transferred to the terminal. The default is
+     * {@link Scrolling#SCROLL_REGION}.
+     * @param scrolling the scrolling strategy
+     */
+    public Screen setScrolling(Scrolling scrolling) {
+        this.scrolling = Objects.requireNonNull(scrolling);
+        return this;
+    }
+
+    /**
+     * Selects the control sequences used to shorten runs of identical characters and blanks. Each sequence is only
+     * used where it is shorter than the literal text. Passing no arguments disables compression, which is the
+     * default.
+     * @param compression the sequences the terminal supports
+     */
+    public Screen setCompression(Compression... compression) {
+        this.compression.clear();
+        for (Compression value : compression) {
+            this.compression.add(Objects.requireNonNull(value));
+        }
+        return this;
+    }
+
+    /**
+     * Writes a string into the buffer, starting at the specified cell. Text that extends past the last column is
+     * clipped, and control characters are stored as blanks.
+     * @param row vertical coordinate of the first cell
+     * @param column horizontal coordinate of the first cell
+     * @param str string to be written into the buffer
+     * @param renditions text renditions to be applied to the written cells
+     */
+    public Screen put(int row, int column, String str, TextRendition... renditions) {
+        if (str == null || row < 0 || row >= rows) {
+            return this;
+        }
+        TextRendition rendition = TextRendition.combine(renditions);
+        int first = Math.max(column, 0);
+        int last = Math.min(columns, column + str.length());
+        for (int target = first; target < last; target++) {
+            setCell(row, target, str.charAt(target - column), rendition);
+        }
+        if (first < last) {
+            damage.add(row, first, 1, last - first);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a single character into the buffer.
+     * @param row vertical coordinate of the cell
+     * @param column horizontal coordinate of the cell
+     * @param c character to be written into the buffer
+     * @param renditions text renditions to be applied to the cell
+     */
+    public Screen put(int row, int column, char c, TextRendition... renditions) {
+        if (row >= 0 && row < rows && column >= 0 && column < columns) {
+            setCell(row, column, c, TextRendition.combine(renditions));
+            damage.add(row, column, 1, 1);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the character stored in the specified cell of the buffer.
+     * @param row vertical coordinate of the cell
+     * @param column horizontal coordinate of the cell
+     * @return the character stored in the cell
+     * @throws IndexOutOfBoundsException if the cell is outside the screen
+     */
+    public char getCharacter(int row, int column) {
+        return chars[index(row, column)];
+    }
+
+    /**
+     * Returns the rendition of the specified cell of the buffer.
+     * @param row vertical coordinate of the cell
+     * @param column horizontal coordinate of the cell
+     * @return the rendition of the cell, or {@code null} if the cell uses the default attributes
+     * @throws IndexOutOfBoundsException if the cell is outside the screen
+     */
+    public TextRendition getRendition(int row, int column) {
+        return renditions[index(row, column)];
+    }
+
+    /**
+     * Fills the buffer with blanks. The terminal itself is not cleared; the next {@link #refresh()} erases only
+     * the cells that are not blank already.
+     */
+    public Screen clear() {
+        Arrays.fill(chars, BLANK);
+        Arrays.fill(renditions, null);
+        damage.add(0, 0, rows, columns);
+        return this;
+    }
+
+    /**
+     * Marks a rectangle of cells as damaged, so that the next {@link #refresh()} compares it with the content
+     * displayed by the terminal. Changes made through this class are tracked automatically; this method is meant for
+     * widgets that need parts of the screen repainted for other reasons. Cells outside the screen are ignored.
+     * @param row vertical coordinate of the top left cell
+     * @param column horizontal coordinate of the top left cell
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @throws IllegalArgumentException if {@code rows} or {@code columns} is negative
+     */
+    public Screen markDirty(int row, int column, int rows, int columns) {
+        damage.add(new Region(row, column, rows, columns).intersection(new Region(0, 0, this.rows, this.columns)));
+        return this;
+    }
+
+    /**
+     * Returns the regions that will be examined by the next {@link #refresh()}.
+     * @return an unmodifiable snapshot of the damaged regions
+     */
+    public List<Region> getDamage() {
+        return damage.getRegions();
+    }
+
+    /**
+     * Changes the size of the screen, keeping the content of the cells that remain inside it. Because terminals
+     * rearrange their content unpredictably when they are resized, the next {@link #refresh()} clears the terminal
+     * window and repaints the whole screen.
+     * @param rows the new number of rows
+     * @param columns the new number of columns
+     * @throws IllegalArgumentException if either dimension is negative
+     */
+    public Screen resize(int rows, int columns) {
+        char[] oldChars = chars;
+        TextRendition[] oldRenditions = renditions;
+        int oldRows = this.rows;
+        int oldColumns = this.columns;
+        allocate(rows, columns);
+        int copiedColumns = Math.min(oldColumns, columns);
+        for (int row = 0; row < Math.min(oldRows, rows); row++) {
+            System.arraycopy(oldChars, row * oldColumns, chars, row * columns, copiedColumns);
+            System.arraycopy(oldRenditions, row * oldColumns, renditions, row * columns, copiedColumns);
+        }
+        return this;
+    }
+
+    /**
+     * Makes the next {@link #refresh()} clear the terminal window and repaint the whole screen, e.g. after
+     * something else has written to the terminal.
+     */
+    public Screen invalidate() {
+        clearPending = true;
+        damage.clear();
+        damage.add(0, 0, rows, columns);
+        return this;
+    }
+
+    /**
+     * Writes the changes made to the damaged regions of the buffer since the previous refresh to the terminal and
+     * flushes the output.
+     * <p>In the asynchronous output mode (see {@link UnixTerminal#setAsyncOutput(boolean)}), nothing is written
+     * while the previous frame is still waiting for the writer thread. The damage is kept, so the next refresh
+     * paints the changes of both frames at once; applications that skip a refresh this way should refresh again,
+     * typically on the next iteration of their main loop.</p>
+     * @throws IOException if there is an error writing to stdout
+     */
+    public Screen refresh() throws IOException {
+        if (terminal.isFramePending()) {
+            return this;
+        }
+        if (damage.isEmpty()) {
+            terminal.flush();
+            return this;
+        }
+        cursorRow = -1;
+        renditionKnown = false;
+        if (clearPending) {
+            terminal.resetTextRendition().clear();
+            currentRendition = null;
+            renditionKnown = true;
+            Arrays.fill(shownChars, BLANK);
+            Arrays.fill(shownRenditions, null);
+            Arrays.fill(shownHashes, blankLineHash());
+            clearPending = false;
+        }
+
+        Arrays.fill(damagedRows, false);
+        Arrays.fill(repaintedRows, false);
+        List<Region> regions = damage.regions();
+        for (Region region : regions) {
+            for (int row = Math.max(region.row, 0); row < Math.min(region.row + region.rows, rows); row++) {
+                damagedRows[row] = true;
+            }
+        }
+        // undamaged rows are displayed correctly, so their hashes are known already
+        for (int row = 0; row < rows; row++) {
+            hashes[row] = damagedRows[row] ? lineHash(chars, renditions, row) : shownHashes[row];
+        }
+        if (scrolling != Scrolling.NONE) {
+            long blankHash = blankLineHash();
+            for (int attempt = 0; attempt < rows && findScroll(hashes, blankHash); attempt++) {
+                scroll(scrollStart, scrollEnd, scrollShift, blankHash);
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            if (repaintedRows[row]) {
+                paintRow(row, 0, columns);
+            } else if (damagedRows[row]) {
+                for (Region region : regions) {
+                    if (row >= region.row && row < region.row + region.rows) {
+                        paintRow(row, Math.max(region.column, 0), Math.min(region.column + region.columns, columns));
+                    }
+                }
+            }
+            shownHashes[row] = hashes[row];
+        }
+        damage.clear();
+
+        if (currentRendition != null) {
+            terminal.resetTextRendition();
+        }
+        terminal.flush();
+        return this;
+    }
+
+//  =================== P R I V A T E   M E T H O D S ==================
+
+    private void allocate(int rows, int columns) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("Screen dimensions must not be negative");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        chars = new char[rows * columns];
+        renditions = new TextRendition[rows * columns];
+        shownChars = new char[rows * columns];
+        shownRenditions = new TextRendition[rows * columns];
+        shownHashes = new long[rows];
+        hashes = new long[rows];
+        damagedRows = new boolean[rows];
+        repaintedRows = new boolean[rows];
+        Arrays.fill(chars, BLANK);
+        clearPending = true;
+        damage.clear();
+        damage.add(0, 0, rows, columns);
+    }
+
+    private int index(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException("Cell " + row + ":" + column + " is outside the screen");
+        }
+        return row * columns + column;
+    }
+
+    private void setCell(int row, int column, char c, TextRendition rendition) {
+        int index = row * columns + column;
+        chars[index] = Character.isISOControl(c) ? BLANK : c;
+        renditions[index] = rendition;
+    }
+
+    private long lineHash(char[] lineChars, TextRendition[] lineRenditions, int row) {
+        long hash = HASH_SEED;
+        int end = (row + 1) * columns;
+        for (int index = row * columns; index < end; index++) {
+            TextRendition rendition = lineRenditions[index];
+            hash = 31 * hash + lineChars[index];
+            hash = 31 * hash + (rendition == null ? 0 : rendition.hashCode());
+        }
+        return hash;
+    }
+
+    private long blankLineHash() {
+        long hash = HASH_SEED;
+        for (int column = 0; column < columns; column++) {
+            hash = 31 * (31 * hash + BLANK);
+        }
+        return hash;
+    }
+
+    /*
+     * Looks for the most profitable run of consecutive lines that the terminal already displays at a different
+     * row. A run is worth scrolling when the lines it brings into place outnumber the correct lines that the
+     * scroll would blank plus the cost of the control sequences.
+     */
+    private boolean findScroll(long[] hashes, long blankHash) {
+        int bestProfit = 0;
+        for (int shift = 1 - rows; shift < rows; shift++) {
+            if (shift == 0) {
+                continue;
+            }
+            int first = Math.max(0, -shift);
+            int last = Math.min(rows - 1, rows - 1 - shift);
+            int runStart = -1;
+            int gain = 0;
+            for (int row = first; row <= last + 1; row++) {
+                if (row <= last && hashes[row] == shownHashes[row + shift]) {
+                    if (runStart < 0) {
+                        runStart = row;
+                        gain = 0;
+                    }
+                    if (hashes[row] != shownHashes[row]) {
+                        gain++;
+                    }
+                } else if (runStart >= 0) {
+                    int profit = gain - SCROLL_COST_LINES - damageOfScroll(hashes, runStart, row - 1, shift, blankHash);
+                    if (profit > bestProfit) {
+                        bestProfit = profit;
+                        scrollStart = runStart;
+                        scrollEnd = row - 1;
+                        scrollShift = shift;
+                    }
+                    runStart = -1;
+                }
+            }
+        }
+        return bestProfit > 0;
+    }
+
+    // counts the lines that are displayed correctly but would be blanked by the scroll
+    private int damageOfScroll(long[] hashes, int start, int end, int shift, long blankHash) {
+        int exposedFirst = shift > 0 ? end + 1 : start + shift;
+        int exposedLast = exposedFirst + Math.abs(shift) - 1;
+        int damage = 0;
+        for (int row = exposedFirst; row <= exposedLast; row++) {
+            if (hashes[row] == shownHashes[row] && hashes[row] != blankHash) {
+                damage++;
+            }
+        }
+        return damage;
+    }
+
+    private void scroll(int start, int end, int shift, long blankHash) throws IOException {
+        int lines = Math.abs(shift);
+        int top = shift > 0 ? start : start + shift;
+        int bottom = shift > 0 ? end + shift : end;
+
+        // lines inserted by the terminal take the current background color
+        applyRendition(null);
+        if (scrolling == Scrolling.SCROLL_REGION) {
+            terminal.setScrollRegion(top, bottom);
+            if (shift > 0) {
+                terminal.scrollUp(lines);
+            } else {
+                terminal.scrollDown(lines);
+            }
+            terminal.resetScrollRegion();
+        } else if (shift > 0) {
+            terminal.setCursorPosition(top, 0).deleteLines(lines);
+            if (bottom < rows - 1) {
+                terminal.setCursorPosition(bottom - lines + 1, 0).insertLines(lines);
+            }
+        } else {
+            if (bottom < rows - 1) {
+                terminal.setCursorPosition(bottom - lines + 1, 0).deleteLines(lines);
+            }
+            terminal.setCursorPosition(top, 0).insertLines(lines);
+        }
+        cursorRow = -1;
+        Arrays.fill(repaintedRows, top, bottom + 1, true);
+
+        int moved = bottom - top + 1 - lines;
+        int blankFrom = shift > 0 ? top + moved : top;
+        int source = shift > 0 ? top + lines : top;
+        int destination = shift > 0 ? top : top + lines;
+        System.arraycopy(shownChars, source * columns, shownChars, destination * columns, moved * columns);
+        System.arraycopy(shownRenditions, source * columns, shownRenditions, destination * columns,
+                moved * columns);
+        System.arraycopy(shownHashes, source, shownHashes, destination, moved);
+        Arrays.fill(shownChars, blankFrom * columns, (blankFrom + lines) * columns, BLANK);
+        Arrays.fill(shownRenditions, blankFrom * columns, (blankFrom + lines) * columns, null);
+        Arrays.fill(shownHashes, blankFrom, blankFrom + lines, blankHash);
+    }
+
+    private void paintRow(int row, int from, int to) throws IOException {
+        int base = row * columns;
+        int column = from;
+        while (column < to) {
+            if (isShown(base + column)) {
+                column++;
+                continue;
+            }
+            TextRendition rendition = renditions[base + column];
+            int end = column + 1;
+            while (end < to && Objects.equals(renditions[base + end], rendition)) {
+                if (!isShown(base + end)) {
+                    end++;
+                    continue;
+                }
+                // rewriting a few unchanged cells is cheaper than moving the cursor past them
+                int gapEnd = end + 1;
+                while (gapEnd < to && gapEnd - end < sequenceLength(gapEnd - end) && isShown(base + gapEnd)
+                        && Objects.equals(renditions[base + gapEnd], rendition)) {
+                    gapEnd++;
+                }
+                if (gapEnd == to || isShown(base + gapEnd)
+                        || !Objects.equals(renditions[base + gapEnd], rendition)
+                        || gapEnd - end >= sequenceLength(gapEnd - end)) {
+                    break;
+                }
+                end = gapEnd + 1;
+            }
+            column = compression.isEmpty()
+                    ? writeLiteral(row, column, end, rendition)
+                    : writeCompressed(row, column, end, rendition);
+        }
+    }
+
+    private int writeLiteral(int row, int start, int end, TextRendition rendition) throws IOException {
+        if (start >= end) {
+            return end;
+        }
+        int base = row * columns;
+        moveCursor(row, start);
+        applyRendition(rendition);
+        terminal.put(new String(chars, base + start, end - start));
+        markShown(base + start, base + end);
+        advanceCursor(end);
+        return end;
+    }
+
+    /*
+     * Writes a run of changed cells sharing one rendition, replacing runs of identical characters with control
+     * sequences wherever that saves bytes. Returns the column following the last cell written.
+     */
+    private int writeCompressed(int row, int start, int end, TextRendition rendition) throws IOException {
+        int base = row * columns;
+        int literalStart = start;
+        int position = start;
+        while (position < end) {
+            char c = chars[base + position];
+            if (rendition == null && c == BLANK && compression.contains(Compression.ERASE_TO_END_OF_LINE)
+                    && end - position > sequenceLength(1) && blankToEndOfLine(base, position)) {
+                writeLiteral(row, literalStart, position, rendition);
+                moveCursor(row, position);
+                applyRendition(null);
+                terminal.eraseToEndOfLine();
+                markShown(base + position, base + columns);
+                return columns;
+            }
+
+            int runEnd = position + 1;
+            while (runEnd < end && chars[base + runEnd] == c) {
+                runEnd++;
+            }
+            int count = runEnd - position;
+            if (rendition == null && c == BLANK && compression.contains(Compression.ERASE_CHARACTERS)
+                    && count > 2 * sequenceLength(count)) {
+                writeLiteral(row, literalStart, position, rendition);
+                moveCursor(row, position);
+                applyRendition(null);
+                terminal.eraseCharacters(count);
+                markShown(base + position, base + runEnd);
+                literalStart = runEnd;
+            } else if (count > 1 && compression.contains(Compression.REPEAT_CHARACTER) && !Character.isSurrogate(c)
+                    && (count - 1) * minimumEncodedLength(c) > sequenceLength(count - 1)) {
+                writeLiteral(row, literalStart, position + 1, rendition);
+                terminal.repeatLastCharacter(count - 1);
+                markShown(base + position + 1, base + runEnd);
+                advanceCursor(runEnd);
+                literalStart = runEnd;
+            }
+            position = runEnd;
+        }
+        if (literalStart < end) {
+            writeLiteral(row, literalStart, end, rendition);
+        }
+        return end;
+    }
+
+    private boolean blankToEndOfLine(int base, int column) {
+        for (int index = base + column; index < base + columns; index++) {
+            if (chars[index] != BLANK || renditions[index] != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a lower bound for the number of bytes the terminal's charset needs to encode the character
+    private int minimumEncodedLength(char c) {
+        if (StandardCharsets.UTF_8.equals(terminal.charset())) {
+            return c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return 1;
+    }
+
+    // the length of a CSI sequence with a single numeric parameter, which is omitted when it is 1
+    private static int sequenceLength(int parameter) {
+        return 3 + (parameter > 1 ? Integer.toString(parameter).length() : 0);
+    }
+
+    private void markShown(int from, int to) {
+        System.arraycopy(chars, from, shownChars, from, to - from);
+        System.arraycopy(renditions, from, shownRenditions, from, to - from);
+    }
+
+    // after writing the last column the cursor position depends on the terminal's wrapping behaviour
+    private void advanceCursor(int column) {
+        cursorColumn = column;
+        if (column >= columns) {
+            cursorRow = -1;
+        }
+    }
+
+    private boolean isShown(int index) {
+        return chars[index] == shownChars[index] && Objects.equals(renditions[index], shownRenditions[index]);
+    }
+
+    private void moveCursor(int row, int column) throws IOException {
+        if (cursorRow == row && cursorColumn == column) {
+            return;
+        }
+        if (cursorRow == row && column > cursorColumn) {
+            terminal.moveCursorForward(column - cursorColumn);
+        } else {
+            terminal.setCursorPosition(row, column);
+        }
+        cursorRow = row;
+        cursorColumn = column;
+    }
+
+    private void applyRendition(TextRendition rendition) throws IOException {
+        if (renditionKnown && Objects.equals(currentRendition, rendition)) {
+            return;
+        }
+        if (rendition == null) {
+            terminal.resetTextRendition();
+        } else {
+            terminal.setTextRendition(TextRendition.RESET_ALL, rendition);
+        }
+        currentRendition = rendition;
+        renditionKnown = true;
+    }
+}
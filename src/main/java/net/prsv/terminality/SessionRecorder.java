@@ -0,0 +1,367 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongSupplier;
+
+/**
+ * Records a terminal session in the <a href="https://docs.asciinema.org/manual/asciicast/v2/">asciicast v2</a>
+ * format, which can be played back with asciinema or replayed with {@link SessionReplayer}.
+ *
+ * <p>Attach the recorder with {@link UnixTerminal#setRecorder(SessionRecorder)}. The terminal then passes every
+ * chunk of bytes written to stdout (as an {@code "o"} event) and read from stdin (as an {@code "i"} event) to the
+ * recorder, which stamps it with the time since the recording started and copies it into a bounded ring buffer.
+ * A background thread formats the buffered events and writes them to the file, so the terminal never waits for the
+ * disk. If the buffer is full, the events that do not fit are dropped, counted, and noted in the recording as a
+ * marker ({@code "m"}) event.</p>
+ *
+ * <p>Both streams are assumed to be encoded in UTF-8; characters split between chunks are joined before they are
+ * written.</p>
+ */
+public final class SessionRecorder implements Closeable {
+
+    /** The default capacity of the ring buffer in bytes. */
+    public static final int DEFAULT_BUFFER_CAPACITY = 1 << 20;
+
+    private static final byte OUTPUT = 'o';
+    private static final byte INPUT = 'i';
+    // type, timestamp and length
+    private static final int RECORD_HEADER_BYTES = 1 + 8 + 4;
+    private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+    private final Writer out;
+    private final LongSupplier nanoTime;
+    private final long startedAt;
+    private final Thread thread;
+
+    private final byte[] ring;
+    private long head;
+    private long tail;
+    private long droppedBytes;
+    private long droppedSinceMarker;
+    private boolean writerWaiting;
+    private boolean closed;
+    private IOException failure;
+
+    // owned by the writer thread
+    private final StreamDecoder outputDecoder = new StreamDecoder();
+    private final StreamDecoder inputDecoder = new StreamDecoder();
+    private byte[] batch = new byte[0];
+    private long lastTimestamp;
+
+    /**
+     * Starts a recording of a terminal of the specified size with a ring buffer of the default capacity.
+     * @param out where to write the recording; it is closed by {@link #close()}
+     * @param columns the width of the terminal
+     * @param rows the height of the terminal
+     * @throws IOException if the header cannot be written
+     */
+    public SessionRecorder(OutputStream out, int columns, int rows) throws IOException {
+        this(out, columns, rows, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Starts a recording of a terminal of the specified size.
+     * @param out where to write the recording; it is closed by {@link #close()}
+     * @param columns the width of the terminal
+     * @param rows the height of the terminal
+     * @param bufferCapacity the capacity of the ring buffer in bytes; events are dropped while it is full
+     * @throws IOException if the header cannot be written
+     * @throws IllegalArgumentException if a dimension is not positive or the capacity is too small to hold an event
+     */
+    public SessionRecorder(OutputStream out, int columns, int rows, int bufferCapacity) throws IOException {
+        this(out, columns, rows, bufferCapacity, System::nanoTime);
+    }
+
+    SessionRecorder(OutputStream out, int columns, int rows, int bufferCapacity, LongSupplier nanoTime)
+            throws IOException {
+        if (columns <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Terminal size must be positive");
+        }
+        if (bufferCapacity <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Buffer capacity must be greater than " + RECORD_HEADER_BYTES);
+        }
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.nanoTime = nanoTime;
+        ring = new byte[bufferCapacity];
+        writeHeader(columns, rows);
+        startedAt = nanoTime.getAsLong();
+        thread = new Thread(this::drain, "terminality-session-recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the number of recorded bytes that have been dropped because the ring buffer was full.
+     */
+    public synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    void output(byte[] bytes, int offset, int length) {
+        record(OUTPUT, bytes, offset, length);
+    }
+
+    void input(byte[] bytes, int offset, int length) {
+        record(INPUT, bytes, offset, length);
+    }
+
+    private synchronized void record(byte type, byte[] bytes, int offset, int length) {
+        if (closed || length == 0) {
+            return;
+        }
+        long timestamp = nanoTime.getAsLong() - startedAt;
+        if (ring.length - (tail - head) < RECORD_HEADER_BYTES + length) {
+            droppedBytes += length;
+            droppedSinceMarker += length;
+            return;
+        }
+        put(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            put((byte) (timestamp >>> shift));
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            put((byte) (length >>> shift));
+        }
+        int start = (int) (tail % ring.length);
+        int first = Math.min(length, ring.length - start);
+        System.arraycopy(bytes, offset, ring, start, first);
+        System.arraycopy(bytes, offset + first, ring, 0, length - first);
+        tail += length;
+        if (writerWaiting) {
+            notifyAll();
+        }
+    }
+
+    private void put(byte b) {
+        ring[(int) (tail % ring.length)] = b;
+        tail++;
+    }
+
+    /**
+     * Writes the buffered events, stops the writer thread and closes the output stream. Events recorded after this
+     * method has been called are ignored.
+     * @throws IOException if the recording could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stopping the session recorder");
+        }
+        try {
+            out.close();
+        } catch (IOException closeFailure) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = closeFailure;
+                }
+            }
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        if (thread.isAlive()) {
+            throw new IOException("Session recorder did not stop");
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            int length;
+            long dropped;
+            boolean last;
+            synchronized (this) {
+                while (head == tail && droppedSinceMarker == 0 && !closed) {
+                    writerWaiting = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    } finally {
+                        writerWaiting = false;
+                    }
+                }
+                length = (int) (tail - head);
+                if (batch.length < length) {
+                    batch = new byte[ring.length];
+                }
+                int start = (int) (head % ring.length);
+                int first = Math.min(length, ring.length - start);
+                System.arraycopy(ring, start, batch, 0, first);
+                System.arraycopy(ring, 0, batch, first, length - first);
+                head = tail;
+                dropped = droppedSinceMarker;
+                droppedSinceMarker = 0;
+                last = closed;
+            }
+            try {
+                writeEvents(length);
+                if (dropped > 0) {
+                    writeEvent(lastTimestamp, 'm', "dropped " + dropped + " bytes");
+                }
+                out.flush();
+            } catch (IOException | RuntimeException writeFailure) {
+                synchronized (this) {
+                    failure = writeFailure instanceof IOException
+                            ? (IOException) writeFailure
+                            : new IOException("Session recorder failed", writeFailure);
+                    closed = true;
+                }
+                return;
+            }
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    private void writeEvents(int length) throws IOException {
+        int position = 0;
+        while (position < length) {
+            byte type = batch[position];
+            long timestamp = 0;
+            for (int index = 1; index <= 8; index++) {
+                timestamp = (timestamp << 8) | (batch[position + index] & 0xff);
+            }
+            int size = 0;
+            for (int index = 9; index <= 12; index++) {
+                size = (size << 8) | (batch[position + index] & 0xff);
+            }
+            position += RECORD_HEADER_BYTES;
+            StreamDecoder decoder = type == OUTPUT ? outputDecoder : inputDecoder;
+            String data = decoder.decode(batch, position, size);
+            position += size;
+            lastTimestamp = timestamp;
+            if (!data.isEmpty()) {
+                writeEvent(timestamp, (char) type, data);
+            }
+        }
+    }
+
+    private void writeHeader(int columns, int rows) throws IOException {
+        out.write("{\"version\": 2, \"width\": " + columns + ", \"height\": " + rows
+                + ", \"timestamp\": " + System.currentTimeMillis() / 1000);
+        String term = System.getenv("TERM");
+        if (term != null) {
+            out.write(", \"env\": {\"TERM\": ");
+            writeString(term);
+            out.write('}');
+        }
+        out.write("}\n");
+        out.flush();
+    }
+
+    private void writeEvent(long timestampNanos, char type, String data) throws IOException {
+        long micros = timestampNanos / 1000;
+        String fraction = Long.toString(micros % 1_000_000);
+        out.write('[');
+        out.write(Long.toString(micros / 1_000_000));
+        out.write('.');
+        for (int padding = fraction.length(); padding < 6; padding++) {
+            out.write('0');
+        }
+        out.write(fraction);
+        out.write(", \"");
+        out.write(type);
+        out.write("\", ");
+        writeString(data);
+        out.write("]\n");
+    }
+
+    private void writeString(String value) throws IOException {
+        out.write('"');
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                case '\b': out.write("\\b"); break;
+                case '\f': out.write("\\f"); break;
+                default:
+                    if (c < 0x20 || c == 0x7f) {
+                        String hex = Integer.toHexString(c);
+                        out.write("\\u" + "0".repeat(4 - hex.length()) + hex);
+                    } else {
+                        out.write(c);
+                    }
+                    break;
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Decodes a stream of UTF-8 chunks, keeping an incomplete character at the end of a chunk for the next one.
+     */
+    private static final class StreamDecoder {
+        private final byte[] carried = new byte[3];
+        private int carriedLength;
+
+        private String decode(byte[] bytes, int offset, int length) {
+            byte[] joined = bytes;
+            int start = offset;
+            int end = offset + length;
+            if (carriedLength > 0) {
+                joined = new byte[carriedLength + length];
+                System.arraycopy(carried, 0, joined, 0, carriedLength);
+                System.arraycopy(bytes, offset, joined, carriedLength, length);
+                start = 0;
+                end = joined.length;
+            }
+            int complete = end - incompleteTail(joined, start, end);
+            carriedLength = end - complete;
+            System.arraycopy(joined, complete, carried, 0, carriedLength);
+            return new String(joined, start, complete - start, StandardCharsets.UTF_8);
+        }
+
+        // returns the number of bytes of a multi-byte character that is cut off at the end
+        private static int incompleteTail(byte[] bytes, int start, int end) {
+            for (int back = 1; back <= 3 && end - back >= start; back++) {
+                int b = bytes[end - back] & 0xff;
+                if ((b & 0xc0) == 0x80) {
+                    continue;
+                }
+                int expected = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 1;
+                return expected > back ? back : 0;
+            }
+            return 0;
+        }
+    }
+}
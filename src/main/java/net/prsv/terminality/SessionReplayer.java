@@ -0,0 +1,308 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replays the input of a session recorded in the asciicast v2 format, e.g. by {@link SessionRecorder}. The recorded
+ * input is fed to the keyboard decoder with the original timing, or faster, so that the decoding of a session from
+ * the field can be reproduced and benchmarked.
+ */
+public final class SessionReplayer {
+
+    private static final Pattern WIDTH = Pattern.compile("\"width\"\\s*:\\s*(\\d+)");
+    private static final Pattern HEIGHT = Pattern.compile("\"height\"\\s*:\\s*(\\d+)");
+
+    private final int width;
+    private final int height;
+    private final List<Event> inputEvents;
+
+    private SessionReplayer(int width, int height, List<Event> inputEvents) {
+        this.width = width;
+        this.height = height;
+        this.inputEvents = inputEvents;
+    }
+
+    /**
+     * Reads a recording from a file.
+     * @throws IOException if the file cannot be read or is not an asciicast v2 recording
+     */
+    public static SessionReplayer read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    /**
+     * Reads a recording. Events other than input are skipped.
+     * @throws IOException if the recording cannot be read or is not in the asciicast v2 format
+     */
+    public static SessionReplayer read(Reader reader) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String header = lines.readLine();
+        if (header == null || !header.trim().startsWith("{")
+                || (!header.contains("\"version\": 2") && !header.contains("\"version\":2"))) {
+            throw new IOException("Not an asciicast v2 recording");
+        }
+        int width = headerValue(WIDTH, "width", header);
+        int height = headerValue(HEIGHT, "height", header);
+        List<Event> inputEvents = new ArrayList<>();
+        int lineNumber = 1;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                Event event = new EventParser(line).parse();
+                if (event.type.equals("i") && event.data.length > 0) {
+                    inputEvents.add(event);
+                }
+            } catch (RuntimeException malformed) {
+                throw new IOException("Malformed event on line " + lineNumber, malformed);
+            }
+        }
+        return new SessionReplayer(width, height, Collections.unmodifiableList(inputEvents));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getInputEventCount() {
+        return inputEvents.size();
+    }
+
+    /**
+     * Returns a stream that delivers the recorded input. Each input event becomes available once its recorded time,
+     * divided by {@code speed}, has passed since the first read from the stream; reads block until then. The stream
+     * can be passed to {@link UnixTerminal#UnixTerminal(InputStream, java.io.OutputStream, java.nio.charset.Charset,
+     * boolean)} to replay a session through a whole application.
+     * @param speed the replay speed relative to the recording, e.g. 1 for the original timing or
+     * {@link Double#POSITIVE_INFINITY} to deliver all input at once
+     * @throws IllegalArgumentException if {@code speed} is not positive
+     */
+    public InputStream openInput(double speed) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive");
+        }
+        return new TimedInput(inputEvents, speed);
+    }
+
+    /**
+     * Decodes the recorded input with the timing of {@link #openInput(double)} and passes the keystrokes to the
+     * consumer, including the final EOF keystroke.
+     * @return the number of keystrokes passed to the consumer
+     * @throws IOException if decoding fails or the thread is interrupted while waiting for the next event
+     */
+    public int replay(double speed, Consumer<KeyStroke> consumer) throws IOException {
+        UTKeyReader reader = new UTKeyReader(openInput(speed), StandardCharsets.UTF_8);
+        int count = 0;
+        while (true) {
+            KeyStroke keyStroke = reader.readKey(true);
+            if (keyStroke == null) {
+                return count;
+            }
+            consumer.accept(keyStroke);
+            count++;
+            if (keyStroke.type == KeyType.EOF) {
+                return count;
+            }
+        }
+    }
+
+    private static int headerValue(Pattern pattern, String name, String header) throws IOException {
+        Matcher matcher = pattern.matcher(header);
+        if (!matcher.find()) {
+            throw new IOException("Recording header has no " + name);
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private static final class Event {
+        private final long nanos;
+        private final String type;
+        private final byte[] data;
+
+        private Event(long nanos, String type, byte[] data) {
+            this.nanos = nanos;
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Parses an event line of the form {@code [time, "type", "data"]}.
+     */
+    private static final class EventParser {
+        private final String line;
+        private int position;
+
+        private EventParser(String line) {
+            this.line = line;
+        }
+
+        private Event parse() {
+            expect('[');
+            skipWhitespace();
+            int start = position;
+            while (position < line.length() && ",] \t".indexOf(line.charAt(position)) < 0) {
+                position++;
+            }
+            double seconds = Double.parseDouble(line.substring(start, position));
+            expect(',');
+            String type = string();
+            expect(',');
+            String data = string();
+            expect(']');
+            return new Event((long) (seconds * 1_000_000_000L), type, data.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void expect(char expected) {
+            skipWhitespace();
+            if (position >= line.length() || line.charAt(position) != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at " + position);
+            }
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = line.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = line.charAt(position++);
+                switch (escaped) {
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        value.append((char) Integer.parseInt(line.substring(position, position + 4), 16));
+                        position += 4;
+                        break;
+                    default: value.append(escaped); break;
+                }
+            }
+        }
+    }
+
+    private static final class TimedInput extends InputStream {
+        private final List<Event> events;
+        private final double speed;
+        private long startedAt;
+        private boolean started;
+        private int event;
+        private int offset;
+
+        private TimedInput(List<Event> events, double speed) {
+            this.events = events;
+            this.speed = speed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (event >= events.size()) {
+                return -1;
+            }
+            long wait = nanosUntilDue();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for recorded input");
+                }
+            }
+            byte[] data = events.get(event).data;
+            int count = Math.min(len, data.length - offset);
+            System.arraycopy(data, offset, b, off, count);
+            advance(count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            if (event >= events.size() || nanosUntilDue() > 0) {
+                return 0;
+            }
+            return events.get(event).data.length - offset;
+        }
+
+        private long nanosUntilDue() {
+            if (!started) {
+                startedAt = System.nanoTime();
+                started = true;
+            }
+            if (Double.isInfinite(speed)) {
+                return 0;
+            }
+            long due = (long) (events.get(event).nanos / speed);
+            return due - (System.nanoTime() - startedAt);
+        }
+
+        private void advance(int count) {
+            offset += count;
+            while (event < events.size() && offset >= events.get(event).data.length) {
+                event++;
+                offset = 0;
+            }
+        }
+    }
+}
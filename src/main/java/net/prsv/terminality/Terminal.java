@@ -17,6 +17,7 @@
 package net.prsv.terminality;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public interface Terminal extends AutoCloseable {
 
@@ -98,6 +99,75 @@ public interface Terminal extends AutoCloseable {
      */
     KeyStroke readKey(boolean blocking) throws IOException, RuntimeException;
 
+    /**
+     * Reads one key-press, waiting up to the specified time for it to arrive, e.g. until the next frame of an
+     * animation is due.
+     * <p>The default implementation calls {@link #readKey(boolean)} every millisecond until a key arrives or the time
+     * is up.
+     * @param timeout the maximum time to wait; the method does not wait if it is zero or negative
+     * @param unit the unit of {@code timeout}
+     * @return a {@link KeyStroke} object providing information about the key pressed by the user, or {@code null} if
+     *         no key has been pressed in time
+     * @throws IOException if there is an error while reading from stdin, or the thread is interrupted while waiting
+     * @throws RuntimeException if called before {@link #begin()}
+     */
+    default KeyStroke readKey(long timeout, TimeUnit unit) throws IOException, RuntimeException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            KeyStroke keyStroke = readKey(false);
+            long remaining = deadline - System.nanoTime();
+            if (keyStroke != null || remaining <= 0) {
+                return keyStroke;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(remaining, 1_000_000));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for keyboard input", interrupted);
+            }
+        }
+    }
+
+    /**
+     * Reads one key-press like {@link #readKey(boolean)}, but returns it packed into an {@code int} that can be
+     * unpacked with the helpers of {@link KeyCode}. The text of pastes and the events of mouse reports are not
+     * included.
+     * <p>The default implementation packs the result of {@link #readKey(boolean)}.
+     * @param blocking if {@code true} and the terminal is not in the async I/O mode, the method would wait for the
+     *                 next keypress, blocking further execution.
+     * @return the key code, or {@link KeyCode#NONE} if no key is available; the end of the input is reported once
+     *         as {@link KeyCode#EOF}
+     * @throws IOException if there is an error while reading from stdin
+     * @throws RuntimeException if called before {@link #begin()}
+     */
+    default int readKeyCode(boolean blocking) throws IOException, RuntimeException {
+        return KeyCode.of(readKey(blocking));
+    }
+
+    /**
+     * Reads the key-presses that are available without blocking into the array, as if by calling
+     * {@link #readKeyCode(boolean)} until it returns {@link KeyCode#NONE}, the array is full or {@link KeyCode#EOF}
+     * has been stored.
+     * @param codes the array to store the key codes in, from index 0
+     * @return the number of key codes stored
+     * @throws IOException if there is an error while reading from stdin
+     * @throws RuntimeException if called before {@link #begin()}
+     */
+    default int readKeyCodes(int[] codes) throws IOException, RuntimeException {
+        int count = 0;
+        while (count < codes.length) {
+            int code = readKeyCode(false);
+            if (code == KeyCode.NONE) {
+                break;
+            }
+            codes[count++] = code;
+            if (code == KeyCode.EOF) {
+                break;
+            }
+        }
+        return count;
+    }
+
     /**
      * Outputs a single character to the output stream.
      * @param c character to be written to the output stream
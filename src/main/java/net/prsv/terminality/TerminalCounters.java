@@ -0,0 +1,107 @@
+package net.prsv.terminality;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters behind {@link TerminalMetrics}. They are updated on the I/O paths with {@link LongAdder}s and
+ * {@link LongAccumulator}s, so that updates from the application and the reader and writer threads do not contend.
+ */
+final class TerminalCounters implements TerminalMetrics {
+
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder writeCalls = new LongAdder();
+    final LongAdder flushCount = new LongAdder();
+    final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0);
+    final LongAdder keysDecoded = new LongAdder();
+    final LongAdder escapeTimeouts = new LongAdder();
+    final LongAdder discardedSequences = new LongAdder();
+    final LongAccumulator asyncQueueHighWaterMark = new LongAccumulator(Math::max, 0);
+    final LongAdder sizeChanges = new LongAdder();
+    final LatencyHistogram keyLatency = new LatencyHistogram();
+
+    private final KeyQueue asyncQueue;
+
+    TerminalCounters() {
+        this(null);
+    }
+
+    TerminalCounters(KeyQueue asyncQueue) {
+        this.asyncQueue = asyncQueue;
+    }
+
+    void recordFlush(long nanos) {
+        flushCount.increment();
+        maxFlushNanos.accumulate(nanos);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getWriteCalls() {
+        return writeCalls.sum();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+
+    @Override
+    public long getMaxFlushNanos() {
+        return maxFlushNanos.get();
+    }
+
+    @Override
+    public long getKeysDecoded() {
+        return keysDecoded.sum();
+    }
+
+    @Override
+    public long getEscapeTimeouts() {
+        return escapeTimeouts.sum();
+    }
+
+    @Override
+    public long getDiscardedSequences() {
+        return discardedSequences.sum();
+    }
+
+    @Override
+    public int getAsyncQueueDepth() {
+        return asyncQueue == null ? 0 : asyncQueue.size();
+    }
+
+    @Override
+    public int getAsyncQueueHighWaterMark() {
+        return (int) asyncQueueHighWaterMark.get();
+    }
+
+    @Override
+    public long getCoalescedMouseMotions() {
+        return asyncQueue == null ? 0 : asyncQueue.coalesced();
+    }
+
+    @Override
+    public long getSizeChanges() {
+        return sizeChanges.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TerminalMetrics{bytesWritten=" + getBytesWritten()
+                + ", writeCalls=" + getWriteCalls()
+                + ", flushCount=" + getFlushCount()
+                + ", maxFlushNanos=" + getMaxFlushNanos()
+                + ", keysDecoded=" + getKeysDecoded()
+                + ", escapeTimeouts=" + getEscapeTimeouts()
+                + ", discardedSequences=" + getDiscardedSequences()
+                + ", asyncQueueDepth=" + getAsyncQueueDepth()
+                + ", asyncQueueHighWaterMark=" + getAsyncQueueHighWaterMark()
+                + ", coalescedMouseMotions=" + getCoalescedMouseMotions()
+                + ", sizeChanges=" + getSizeChanges() + '}';
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a whole terminal application on one thread: {@link #run()} reads the keyboard, notices changes of the window
+ * size, runs timers and the tasks posted by other threads, and calls the renderer once after each round of events, so
+ * that the handlers, the timers and the renderer can share the state of the application without locking.
+ *
+ * <pre>{@code
+ * TerminalEventLoop loop = new TerminalEventLoop(terminal);
+ * loop.onKey(ks -> { if (ks.type == KeyType.ESCAPE) loop.stop(); else editor.type(ks); })
+ *     .onResize(size -> screen.resize(size.rows, size.columns))
+ *     .onRender(() -> { editor.draw(screen); screen.refresh(); });
+ * loop.scheduleAtFixedRate(this::blinkCursor, 500, 500, TimeUnit.MILLISECONDS);
+ * worker.submit(() -> { Result result = search(); loop.execute(() -> editor.show(result)); });
+ * loop.run();
+ * }</pre>
+ *
+ * <p>Between rounds, the loop blocks in {@code poll()} on the standard input and on a wakeup pipe written by
+ * {@link #execute(Runnable)} and {@link #stop()}, until input arrives, a task is posted or the next timer is due; an
+ * idle application neither wakes up for nothing nor writes to the terminal. Other input streams cannot be polled, and
+ * are checked every millisecond instead.
+ *
+ * <p>With a {@link FrameScheduler}, timers are aligned to frames: the ones that expire between two frames run together
+ * once the next frame is due, so that the animation updates of a frame share one render.
+ *
+ * <p>Terminality does not install a {@code SIGWINCH} handler, so the loop checks the window size every
+ * {@value #DEFAULT_RESIZE_CHECK_MILLIS} ms, which can be changed with {@link #setResizeCheckInterval(long, TimeUnit)}.
+ *
+ * <p>The loop requires a terminal in the synchronous mode, as it reads the keyboard itself. The handlers, the
+ * renderer, the timers and the posted tasks run on the thread that called {@link #run()}; exceptions thrown by them
+ * end the loop and are thrown by {@link #run()}.
+ */
+public final class TerminalEventLoop implements Executor {
+
+    /** The default interval between checks of the window size in milliseconds. */
+    public static final long DEFAULT_RESIZE_CHECK_MILLIS = 250;
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final UnixTerminal terminal;
+    private final LongSupplier nanoTime;
+    private final TimerWheel timers;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile Thread thread;
+    private volatile Poller poller;
+    private volatile boolean stopRequested;
+
+    private Consumer<KeyStroke> keyHandler = keyStroke -> { };
+    private Consumer<Terminal.WindowSize> resizeHandler = size -> { };
+    private Runnable renderer = () -> { };
+    private long resizeCheckNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_RESIZE_CHECK_MILLIS);
+    private long nextResizeCheck;
+    private FrameScheduler frameScheduler;
+    private boolean renderPending;
+
+    /**
+     * Creates an event loop for the specified terminal, which must not be in the async I/O mode.
+     */
+    public TerminalEventLoop(UnixTerminal terminal) {
+        this(terminal, System::nanoTime);
+    }
+
+    TerminalEventLoop(UnixTerminal terminal, LongSupplier nanoTime) {
+        if (terminal == null) {
+            throw new NullPointerException("terminal can't be null");
+        }
+        this.terminal = terminal;
+        this.nanoTime = nanoTime;
+        timers = new TimerWheel(TICK_NANOS, nanoTime.getAsLong());
+    }
+
+    /**
+     * Sets the handler of the keystrokes. The end of the input is passed to the handler as well, and then ends the
+     * loop.
+     * @return this event loop
+     */
+    public TerminalEventLoop onKey(Consumer<KeyStroke> handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler can't be null");
+        }
+        keyHandler = handler;
+        return this;
+    }
+
+    /**
+     * Sets the handler of changes of the window size. It is called with the initial size when the loop starts.
+     * @return this event loop
+     */
+    public TerminalEventLoop onResize(Consumer<Terminal.WindowSize> handler) {
+        if (handler == null) {
+            throw new NullPointerException("handler can't be null");
+        }
+        resizeHandler = handler;
+        return this;
+    }
+
+    /**
+     * Sets the renderer, which is called when the loop starts and then once after every round of events in which a
+     * key was handled, the window was resized, a timer ran or a task was run. See also
+     * {@link #setFrameScheduler(FrameScheduler)}.
+     * @return this event loop
+     */
+    public TerminalEventLoop onRender(Runnable renderer) {
+        if (renderer == null) {
+            throw new NullPointerException("renderer can't be null");
+        }
+        this.renderer = renderer;
+        return this;
+    }
+
+    /**
+     * Sets how often the window size is checked. An interval of 0 turns the checks off.
+     * @return this event loop
+     * @throws IllegalArgumentException if the interval is negative
+     */
+    public TerminalEventLoop setResizeCheckInterval(long interval, TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Resize check interval must not be negative");
+        }
+        resizeCheckNanos = unit.toNanos(interval);
+        nextResizeCheck = nanoTime.getAsLong() + resizeCheckNanos;
+        return this;
+    }
+
+    /**
+     * Aligns the timers to the frames of the scheduler, or stops aligning them if the scheduler is {@code null}.
+     * Timers that expire between two frames then run together once the next frame is due, and are followed by a
+     * single render, after which the scheduler is told that the frame has been rendered. Animations driven by timers
+     * thus update in step, at the frame rate the terminal can keep up with. Keys, resizes and tasks are still rendered
+     * at once.
+     * @return this event loop
+     */
+    public TerminalEventLoop setFrameScheduler(FrameScheduler scheduler) {
+        frameScheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Schedules a task to run on the event loop once the delay has passed, with a resolution of one millisecond.
+     * Timers are kept in a hashed wheel, so scheduling and cancelling them take constant time.
+     * @return the timer, which can be cancelled on the event loop thread
+     * @throws IllegalStateException if called on another thread while the loop is running; such threads can
+     *         schedule timers from a task passed to {@link #execute(Runnable)}
+     */
+    public Timer schedule(Runnable task, long delay, TimeUnit unit) {
+        requireLoopThread();
+        return timers.schedule(task, unit.toNanos(delay), nanoTime.getAsLong());
+    }
+
+    /**
+     * Schedules a task to run on the event loop once the initial delay has passed, and then every period, e.g. to
+     * blink a cursor or to advance a spinner. The task runs at a fixed rate: its deadlines do not drift when it runs
+     * late, and periods that have been missed entirely are skipped rather than caught up with.
+     * @return the timer, which can be cancelled on the event loop thread, also by the task itself
+     * @throws IllegalArgumentException if the period is not positive
+     * @throws IllegalStateException if called on another thread while the loop is running
+     */
+    public Timer scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        requireLoopThread();
+        return timers.schedule(task, unit.toNanos(initialDelay), unit.toNanos(period), nanoTime.getAsLong());
+    }
+
+    /**
+     * Posts a task to run on the event loop in the next round of events. This method can be called on any thread.
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task can't be null");
+        }
+        tasks.add(task);
+        wakeup();
+    }
+
+    /**
+     * Makes {@link #run()} return after the current round of events. This method can be called on any thread.
+     */
+    public void stop() {
+        stopRequested = true;
+        wakeup();
+    }
+
+    /**
+     * Checks whether the current thread is the one running the loop.
+     */
+    public boolean inEventLoop() {
+        return thread == Thread.currentThread();
+    }
+
+    /**
+     * Runs the loop on the current thread until {@link #stop()} is called, the input ends or the thread is
+     * interrupted.
+     * @throws IOException if reading the keyboard or waiting for it fails
+     * @throws IllegalStateException if the terminal is in the async I/O mode, or the loop is running already
+     * @throws RuntimeException if called before {@link Terminal#begin()}, or thrown by a handler, a timer or a task
+     */
+    public void run() throws IOException {
+        if (terminal.isAsyncInput()) {
+            throw new IllegalStateException("The event loop requires the synchronous mode");
+        }
+        synchronized (this) {
+            if (thread != null) {
+                throw new IllegalStateException("The event loop is running already");
+            }
+            thread = Thread.currentThread();
+        }
+        try (Poller openedPoller = terminal.readsStandardInput()
+                ? new PosixEventPoller(terminal.lib(), PosixLibC.STDIN_FD)
+                : new SleepingPoller()) {
+            poller = openedPoller;
+            try {
+                checkSize();
+                nextResizeCheck = nanoTime.getAsLong() + resizeCheckNanos;
+                render(true);
+                do {
+                    openedPoller.await(waitNanos());
+                    renderPending = false;
+                    readKeys();
+                    long now = nanoTime.getAsLong();
+                    if (resizeCheckNanos > 0 && now - nextResizeCheck >= 0) {
+                        checkSize();
+                        nextResizeCheck = now + resizeCheckNanos;
+                    }
+                    boolean frame = isFrameDue() && timers.expire(now) > 0;
+                    renderPending |= frame;
+                    runTasks();
+                    if (renderPending) {
+                        render(frame);
+                    }
+                } while (!stopRequested && !Thread.currentThread().isInterrupted());
+            } finally {
+                // other threads stop waking the poller up before it is closed
+                poller = null;
+            }
+        } finally {
+            stopRequested = false;
+            thread = null;
+        }
+    }
+
+    // how long the loop may wait for input before something else is due
+    private long waitNanos() {
+        if (stopRequested || !tasks.isEmpty()) {
+            return 0;
+        }
+        long now = nanoTime.getAsLong();
+        long timerWait = timers.nanosUntilNextExpiry(now);
+        if (frameScheduler != null && timerWait != Long.MAX_VALUE) {
+            timerWait = Math.max(timerWait, frameScheduler.nanosUntilNextFrame());
+        }
+        long wait = Math.min(timerWait, terminal.keyReader().nanosUntilEscapeTimeout());
+        if (resizeCheckNanos > 0) {
+            wait = Math.min(wait, Math.max(nextResizeCheck - now, 0));
+        }
+        return wait;
+    }
+
+    private boolean isFrameDue() {
+        return frameScheduler == null || frameScheduler.isFrameDue();
+    }
+
+    private void render(boolean frame) {
+        renderer.run();
+        if (frame && frameScheduler != null) {
+            frameScheduler.frameRendered();
+        }
+    }
+
+    private void requireLoopThread() {
+        Thread loopThread = thread;
+        if (loopThread != null && loopThread != Thread.currentThread()) {
+            throw new IllegalStateException("Timers can only be scheduled on the event loop thread");
+        }
+    }
+
+    private void readKeys() throws IOException {
+        KeyStroke keyStroke;
+        while ((keyStroke = terminal.readKey(false)) != null) {
+            renderPending = true;
+            keyHandler.accept(keyStroke);
+            if (keyStroke.type == KeyType.EOF) {
+                stopRequested = true;
+                return;
+            }
+        }
+    }
+
+    private void checkSize() throws IOException {
+        Terminal.WindowSize size = terminal.getTerminalSize();
+        if (terminal.sizeChanged()) {
+            renderPending = true;
+            resizeHandler.accept(size);
+        }
+    }
+
+    // runs the tasks posted so far, but not those the tasks post in turn, which wait for the next round
+    private void runTasks() {
+        for (int count = tasks.size(); count > 0; count--) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                return;
+            }
+            renderPending = true;
+            task.run();
+        }
+    }
+
+    private void wakeup() {
+        Poller current = poller;
+        if (current != null && !inEventLoop()) {
+            current.wakeup();
+        }
+    }
+
+    /**
+     * A timer scheduled on an event loop.
+     */
+    public interface Timer {
+
+        /**
+         * Cancels the timer. Like scheduling, cancelling takes constant time and must be done on the event loop
+         * thread.
+         * @return {@code false} if the timer has run or been cancelled already
+         */
+        boolean cancel();
+
+        /**
+         * Checks whether the timer is still waiting to run.
+         */
+        boolean isPending();
+    }
+
+    // waits for input from the terminal or for a wakeup from another thread
+    interface Poller extends Closeable {
+        void await(long timeoutNanos) throws IOException;
+
+        void wakeup();
+    }
+
+    // waits for input that cannot be polled, such as a stream other than the standard input, checking it every
+    // millisecond
+    private static final class SleepingPoller implements Poller {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition woken = lock.newCondition();
+        private boolean wakeupPending;
+
+        @Override
+        public void await(long timeoutNanos) {
+            lock.lock();
+            try {
+                if (!wakeupPending && timeoutNanos > 0) {
+                    woken.awaitNanos(Math.min(timeoutNanos, TICK_NANOS));
+                }
+                wakeupPending = false;
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void wakeup() {
+            lock.lock();
+            try {
+                wakeupPending = true;
+                woken.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
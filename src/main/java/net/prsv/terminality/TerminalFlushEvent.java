@@ -0,0 +1,31 @@
+package net.prsv.terminality;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("net.prsv.terminality.TerminalFlush")
+@Label("Terminal Flush")
+@Description("Buffered output written to the terminal; the duration is the time spent blocked in write calls")
+@Category("Terminality")
+@Enabled(false)
+@StackTrace(false)
+final class TerminalFlushEvent extends Event {
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    void complete(long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
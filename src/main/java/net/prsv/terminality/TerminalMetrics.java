@@ -0,0 +1,61 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+import javax.management.MXBean;
+
+/**
+ * Counters describing the terminal I/O of a {@link UnixTerminal} since it was created. The counters are always
+ * on and cheap to update; they can be read at any time from any thread, or through JMX after calling
+ * {@link UnixTerminal#registerMetricsMBean()}.
+ */
+@MXBean
+public interface TerminalMetrics {
+
+    /** Returns the number of bytes written to stdout. */
+    long getBytesWritten();
+
+    /** Returns the number of write calls made on stdout. */
+    long getWriteCalls();
+
+    /** Returns the number of flushes that wrote output to stdout. */
+    long getFlushCount();
+
+    /** Returns the longest time a single flush spent writing to stdout, in nanoseconds. */
+    long getMaxFlushNanos();
+
+    /** Returns the number of keys decoded from stdin. */
+    long getKeysDecoded();
+
+    /** Returns the number of lone ESC bytes reported as [Esc] after the escape timeout. */
+    long getEscapeTimeouts();
+
+    /** Returns the number of malformed or unknown escape sequences that were discarded. */
+    long getDiscardedSequences();
+
+    /** Returns the number of keys waiting in the queue of the asynchronous keyboard reader. */
+    int getAsyncQueueDepth();
+
+    /** Returns the largest number of keys that have been waiting in the queue of the asynchronous keyboard reader. */
+    int getAsyncQueueHighWaterMark();
+
+    /** Returns the number of mouse motion events that were replaced by later ones in the asynchronous queue. */
+    long getCoalescedMouseMotions();
+
+    /** Returns the number of times a change of the terminal size has been detected. */
+    long getSizeChanges();
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Terminality: https://github.com/SpinningVinyl/Terminality
+ *  Copyright 2023 Pavel Urusov
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.prsv.terminality;
+
+/**
+ * Optional terminal modes that can be enabled by {@link UnixTerminal#begin(TerminalMode...)}. The modes are
+ * disabled again, in reverse order, by {@link UnixTerminal#end()} and by the shutdown hook.
+ */
+public enum TerminalMode {
+
+    /**
+     * Saves the cursor and switches to the alternate screen buffer ({@code CSI ? 1049 h}). The alternate screen
+     * has no scrollback, so full-screen applications do not overwrite the user's shell history, and on exit the
+     * terminal simply switches back to the main screen and restores its content instead of clearing it.
+     */
+    ALTERNATE_SCREEN("\u001b[?1049h", "\u001b[?1049l"),
+
+    /**
+     * Makes the terminal mark pasted text with {@code CSI 200 ~} and {@code CSI 201 ~} ({@code CSI ? 2004 h}).
+     * Instead of one keystroke per character, the whole paste is then read as a single {@link KeyType#PASTE}
+     * keystroke carrying the text, so that large pastes neither flood the key handler nor overflow the queue of the
+     * asynchronous keyboard reader, and pasted control characters are not mistaken for commands.
+     */
+    BRACKETED_PASTE("\u001b[?2004h", "\u001b[?2004l"),
+
+    /**
+     * Reports mouse button presses, releases and wheel events ({@code CSI ? 1000 h}) in the SGR format
+     * ({@code CSI ? 1006 h}), which has no limit on the coordinates. The reports are read as
+     * {@link KeyType#MOUSE} keystrokes carrying a {@link MouseEvent}.
+     */
+    MOUSE_BUTTONS("\u001b[?1000h\u001b[?1006h", "\u001b[?1006l\u001b[?1000l"),
+
+    /**
+     * Like {@link #MOUSE_BUTTONS}, and also reports the motion of the mouse while a button is held
+     * ({@code CSI ? 1002 h}).
+     */
+    MOUSE_DRAG("\u001b[?1002h\u001b[?1006h", "\u001b[?1006l\u001b[?1002l"),
+
+    /**
+     * Like {@link #MOUSE_BUTTONS}, and also reports every motion of the mouse ({@code CSI ? 1003 h}). Motion can
+     * arrive much faster than an application handles it; the asynchronous keyboard reader therefore collapses
+     * consecutive motion events that have not been read yet, so that only the latest position is delivered.
+     */
+    MOUSE_ALL_MOTION("\u001b[?1003h\u001b[?1006h", "\u001b[?1006l\u001b[?1003l"),
+
+    /**
+     * Pushes the kitty keyboard protocol flags for disambiguated escape codes and event types
+     * ({@code CSI > 3 u}) and queries them back ({@code CSI ? u}); terminals that don't support the protocol ignore
+     * both. Where it is supported, [Esc] arrives as an escape sequence of its own and is read without waiting for the
+     * escape timeout, [Ctrl]+[h] and [Backspace] (and similar combinations) can be told apart, and key repeats and
+     * releases are reported (see {@link KeyStroke#getAction()}). {@link UnixTerminal#isKittyKeyboardActive()}
+     * tells whether the terminal has confirmed the protocol.
+     */
+    KITTY_KEYBOARD("\u001b[>3u\u001b[?u", "\u001b[<u");
+
+    final String enableSequence;
+    final String disableSequence;
+
+    TerminalMode(String enableSequence, String disableSequence) {
+        this.enableSequence = enableSequence;
+        this.disableSequence = disableSequence;
+    }
+}
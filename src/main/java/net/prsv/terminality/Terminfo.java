@@ -0,0 +1,171 @@
+package net.prsv.terminality;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The string capabilities of a compiled terminfo entry, read from the terminfo database of the system. Only the
+ * standard capabilities are read; extended (user-defined) capabilities are skipped.
+ */
+final class Terminfo {
+
+    // indices of the key capabilities in the string section, in the order of ncurses' Caps file
+    static final int KEY_DC = 59;
+    static final int KEY_DOWN = 61;
+    static final int KEY_F1 = 66;
+    static final int KEY_F10 = 67;
+    static final int KEY_F2 = 68;
+    static final int KEY_HOME = 76;
+    static final int KEY_IC = 77;
+    static final int KEY_LEFT = 79;
+    static final int KEY_NPAGE = 81;
+    static final int KEY_PPAGE = 82;
+    static final int KEY_RIGHT = 83;
+    static final int KEY_UP = 87;
+    static final int KEY_BTAB = 148;
+    static final int KEY_END = 164;
+    static final int KEY_ENTER = 165;
+    static final int KEY_SDC = 191;
+    static final int KEY_SEND = 194;
+    static final int KEY_SHOME = 199;
+    static final int KEY_SIC = 200;
+    static final int KEY_SLEFT = 201;
+    static final int KEY_SNEXT = 204;
+    static final int KEY_SPREVIOUS = 206;
+    static final int KEY_SRIGHT = 210;
+    static final int KEY_F11 = 216;
+    static final int KEY_F12 = 217;
+
+    private static final int MAGIC = 0432;
+    private static final int MAGIC_32_BIT_NUMBERS = 01036;
+    private static final int MAX_ENTRY_SIZE = 32768;
+
+    private final String[] strings;
+
+    private Terminfo(String[] strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Finds and reads the entry of the specified terminal in the directories searched by ncurses.
+     * @return the entry, or {@code null} if there is none or it cannot be read
+     */
+    static Terminfo load(String term) {
+        if (term == null || term.isEmpty() || term.contains("/") || term.startsWith(".")) {
+            return null;
+        }
+        for (Path directory : searchPath()) {
+            for (String subdirectory : new String[]{term.substring(0, 1), Integer.toHexString(term.charAt(0))}) {
+                Path file = directory.resolve(subdirectory).resolve(term);
+                if (Files.isRegularFile(file)) {
+                    try {
+                        return parse(Files.readAllBytes(file));
+                    } catch (IOException unreadable) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a compiled terminfo entry in the legacy or the extended-number format.
+     * @throws IOException if the data is not a compiled terminfo entry
+     */
+    static Terminfo parse(byte[] data) throws IOException {
+        if (data.length > MAX_ENTRY_SIZE) {
+            throw new IOException("Terminfo entry is too large");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            int magic = buffer.getShort();
+            if (magic != MAGIC && magic != MAGIC_32_BIT_NUMBERS) {
+                throw new IOException("Not a compiled terminfo entry");
+            }
+            int namesSize = buffer.getShort();
+            int booleanCount = buffer.getShort();
+            int numberCount = buffer.getShort();
+            int stringCount = buffer.getShort();
+            int tableSize = buffer.getShort();
+            if (namesSize < 0 || booleanCount < 0 || numberCount < 0 || stringCount < 0 || tableSize < 0) {
+                throw new IOException("Malformed terminfo header");
+            }
+            int position = buffer.position() + namesSize + booleanCount;
+            position += position % 2; // numbers are aligned on an even byte
+            position += numberCount * (magic == MAGIC ? 2 : 4);
+            buffer.position(position);
+            short[] offsets = new short[stringCount];
+            buffer.asShortBuffer().get(offsets);
+            int tableStart = position + 2 * stringCount;
+            if (tableStart + tableSize > data.length) {
+                throw new IOException("Truncated terminfo entry");
+            }
+
+            String[] strings = new String[stringCount];
+            for (int index = 0; index < stringCount; index++) {
+                int offset = offsets[index];
+                if (offset < 0 || offset >= tableSize) {
+                    continue; // absent or cancelled
+                }
+                int end = tableStart + offset;
+                while (end < tableStart + tableSize && data[end] != 0) {
+                    end++;
+                }
+                strings[index] = new String(data, tableStart + offset, end - tableStart - offset,
+                        StandardCharsets.ISO_8859_1);
+            }
+            return new Terminfo(strings);
+        } catch (RuntimeException malformed) {
+            throw new IOException("Malformed terminfo entry", malformed);
+        }
+    }
+
+    /**
+     * Returns the value of a string capability, one character per byte, or {@code null} if it is absent.
+     */
+    String getString(int capability) {
+        return capability < strings.length ? strings[capability] : null;
+    }
+
+    private static List<Path> searchPath() {
+        List<Path> directories = new ArrayList<>();
+        String terminfo = System.getenv("TERMINFO");
+        if (terminfo != null && !terminfo.isEmpty()) {
+            directories.add(Paths.get(terminfo));
+        }
+        String home = System.getProperty("user.home");
+        if (home != null) {
+            directories.add(Paths.get(home, ".terminfo"));
+        }
+        String terminfoDirs = System.getenv("TERMINFO_DIRS");
+        if (terminfoDirs != null) {
+            for (String directory : terminfoDirs.split(":", -1)) {
+                if (directory.isEmpty()) {
+                    addSystemDirectories(directories);
+                } else {
+                    directories.add(Paths.get(directory));
+                }
+            }
+        }
+        addSystemDirectories(directories);
+        return directories;
+    }
+
+    private static void addSystemDirectories(List<Path> directories) {
+        for (String directory : new String[]{"/etc/terminfo", "/lib/terminfo", "/usr/share/terminfo",
+                "/usr/lib/terminfo", "/usr/share/lib/terminfo"}) {
+            Path path = Paths.get(directory);
+            if (!directories.contains(path)) {
+                directories.add(path);
+            }
+        }
+    }
+}
@@ -139,6 +139,51 @@ public class TextRendition {
         sequence = sj.toString();
     }
     
+    /**
+     * Combines several renditions into a single SGR sequence that applies their parameters in the supplied order.
+     * {@code null} elements are ignored.
+     *
+     * @param renditions renditions to combine
+     * @return the combined rendition, or {@code null} if no non-null rendition was supplied
+     */
+    static TextRendition combine(TextRendition... renditions) {
+        if (renditions == null) {
+            return null;
+        }
+        TextRendition single = null;
+        int count = 0;
+        for (TextRendition rendition : renditions) {
+            if (rendition != null) {
+                single = rendition;
+                count++;
+            }
+        }
+        if (count <= 1) {
+            return single;
+        }
+        String[] attributes = new String[count];
+        int index = 0;
+        for (TextRendition rendition : renditions) {
+            if (rendition != null) {
+                attributes[index++] = rendition.sequence.substring(PREFIX.length(),
+                        rendition.sequence.length() - POSTFIX.length());
+            }
+        }
+        return new TextRendition(attributes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TextRendition)) return false;
+        return sequence.equals(((TextRendition) o).sequence);
+    }
+
+    @Override
+    public int hashCode() {
+        return sequence.hashCode();
+    }
+
     @Override
     public String toString() {
         return sequence;
@@ -0,0 +1,268 @@
+package net.prsv.terminality;
+
+/**
+ * A hashed timer wheel. Time is divided into ticks, and every timer is kept in the slot of the tick at which it
+ * expires, in a doubly-linked list, so that scheduling and cancelling a timer take constant time however many timers
+ * there are. Advancing the wheel visits the slots of the ticks that have passed, at most one revolution of them, and
+ * runs the timers whose tick has come; a timer that expires several revolutions later stays in its slot until then.
+ * Timers never run before their deadline, and at most one tick after it once the wheel is advanced. Periodic timers
+ * run at a fixed rate and reuse their entry, so that an animation does not allocate per frame.
+ *
+ * <p>The wheel is not thread-safe; it is meant to be used by the thread of an event loop.
+ */
+final class TimerWheel {
+
+    static final int SLOTS = 512;
+    private static final int MASK = SLOTS - 1;
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final int PENDING = 0;
+    private static final int EXPIRED = 1;
+    private static final int DONE = 2;
+
+    private final long tickNanos;
+    private final long originNanos;
+    // the timers of each slot in the order they were scheduled
+    private final Entry[] heads = new Entry[SLOTS];
+    private final Entry[] tails = new Entry[SLOTS];
+    // the last tick whose timers have been run
+    private long currentTick;
+    private int size;
+    // the earliest tick of the pending timers, or UNKNOWN if it has to be looked up
+    private long nextTick = UNKNOWN;
+
+    TimerWheel(long tickNanos, long nowNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos must be positive");
+        }
+        this.tickNanos = tickNanos;
+        this.originNanos = nowNanos;
+    }
+
+    /**
+     * Schedules the task to run once the delay has passed.
+     * @param nowNanos the current time
+     */
+    Entry schedule(Runnable task, long delayNanos, long nowNanos) {
+        return schedule(task, delayNanos, 0, nowNanos);
+    }
+
+    /**
+     * Schedules the task to run once the delay has passed, and then every period, or only once if the period is 0.
+     * Periods that have been missed entirely, because the wheel was not advanced in time, are skipped.
+     * @param nowNanos the current time
+     */
+    Entry schedule(Runnable task, long delayNanos, long periodNanos, long nowNanos) {
+        if (task == null) {
+            throw new NullPointerException("task can't be null");
+        }
+        if (periodNanos < 0) {
+            throw new IllegalArgumentException("periodNanos must not be negative");
+        }
+        long elapsed = nowNanos - originNanos;
+        Entry entry = new Entry(task, periodNanos);
+        insert(entry, elapsed + Math.min(Math.max(delayNanos, 0), Long.MAX_VALUE - elapsed));
+        return entry;
+    }
+
+    /**
+     * Runs the timers that have expired by now, in the order of their ticks as long as the wheel is advanced at least
+     * once per revolution.
+     * @return the number of timers run
+     */
+    int expire(long nowNanos) {
+        long target = Math.floorDiv(nowNanos - originNanos, tickNanos);
+        if (target <= currentTick) {
+            return 0;
+        }
+        Entry head = null;
+        Entry tail = null;
+        if (size > 0 && (nextTick == UNKNOWN || nextTick <= target)) {
+            long last = Math.min(target, currentTick + SLOTS);
+            for (long tick = currentTick + 1; tick <= last; tick++) {
+                Entry entry = heads[(int) (tick & MASK)];
+                while (entry != null) {
+                    Entry next = entry.next;
+                    if (entry.tick <= target) {
+                        unlink(entry);
+                        entry.state = EXPIRED;
+                        if (tail == null) {
+                            head = entry;
+                        } else {
+                            tail.next = entry;
+                        }
+                        tail = entry;
+                    }
+                    entry = next;
+                }
+            }
+        }
+        currentTick = target;
+        if (head != null) {
+            nextTick = UNKNOWN;
+        }
+        int count = 0;
+        Entry remaining = head;
+        try {
+            while (remaining != null) {
+                Entry entry = remaining;
+                remaining = entry.next;
+                entry.next = null;
+                // a timer run before may have cancelled this one
+                if (entry.state == EXPIRED) {
+                    count++;
+                    run(entry, nowNanos - originNanos);
+                }
+            }
+        } finally {
+            // if a timer has thrown, the ones that have not run yet are due again on the next advance
+            while (remaining != null) {
+                Entry entry = remaining;
+                remaining = entry.next;
+                entry.next = null;
+                if (entry.state == EXPIRED) {
+                    insert(entry, entry.deadline);
+                }
+            }
+        }
+        return count;
+    }
+
+    private void run(Entry entry, long elapsed) {
+        if (entry.period == 0) {
+            entry.state = DONE;
+            entry.task.run();
+            return;
+        }
+        boolean completed = false;
+        try {
+            entry.task.run();
+            completed = true;
+        } finally {
+            // unless the timer has cancelled itself or thrown, it is due again one period later
+            if (entry.state == EXPIRED && completed) {
+                long deadline = entry.deadline + entry.period;
+                if (deadline <= elapsed) {
+                    deadline += ((elapsed - deadline) / entry.period + 1) * entry.period;
+                }
+                insert(entry, deadline);
+            } else {
+                entry.state = DONE;
+            }
+        }
+    }
+
+    /**
+     * Returns how long it is until the next timer expires, or {@link Long#MAX_VALUE} if there are no timers.
+     */
+    long nanosUntilNextExpiry(long nowNanos) {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        if (nextTick == UNKNOWN) {
+            nextTick = findNextTick();
+        }
+        return Math.max(originNanos + nextTick * tickNanos - nowNanos, 0);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private long findNextTick() {
+        // the first timer of the coming revolution is found in slot order; later ones only by their ticks
+        for (long tick = currentTick + 1; tick <= currentTick + SLOTS; tick++) {
+            for (Entry entry = heads[(int) (tick & MASK)]; entry != null; entry = entry.next) {
+                if (entry.tick == tick) {
+                    return tick;
+                }
+            }
+        }
+        long earliest = Long.MAX_VALUE;
+        for (Entry head : heads) {
+            for (Entry entry = head; entry != null; entry = entry.next) {
+                earliest = Math.min(earliest, entry.tick);
+            }
+        }
+        return earliest;
+    }
+
+    // links the entry into the slot of the tick that starts at or after the deadline, but never of a tick that has
+    // already been run
+    private void insert(Entry entry, long deadline) {
+        entry.deadline = deadline;
+        entry.tick = Math.max(Math.floorDiv(deadline, tickNanos) + (Math.floorMod(deadline, tickNanos) == 0 ? 0 : 1),
+                currentTick + 1);
+        entry.state = PENDING;
+        link(entry);
+        if (size == 0 || (nextTick != UNKNOWN && entry.tick < nextTick)) {
+            nextTick = entry.tick;
+        }
+        size++;
+    }
+
+    private void link(Entry entry) {
+        int slot = (int) (entry.tick & MASK);
+        Entry tail = tails[slot];
+        entry.previous = tail;
+        if (tail != null) {
+            tail.next = entry;
+        } else {
+            heads[slot] = entry;
+        }
+        tails[slot] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        int slot = (int) (entry.tick & MASK);
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            heads[slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        } else {
+            tails[slot] = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        size--;
+    }
+
+    final class Entry implements TerminalEventLoop.Timer {
+        private final Runnable task;
+        private final long period;
+        // the deadline in nanoseconds since the origin of the wheel, and the tick it falls into
+        private long deadline;
+        private long tick;
+        private Entry previous;
+        private Entry next;
+        private int state = PENDING;
+
+        private Entry(Runnable task, long period) {
+            this.task = task;
+            this.period = period;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (state == DONE) {
+                return false;
+            }
+            if (state == PENDING) {
+                unlink(this);
+                if (tick == nextTick) {
+                    nextTick = UNKNOWN;
+                }
+            }
+            state = DONE;
+            return true;
+        }
+
+        @Override
+        public boolean isPending() {
+            return state != DONE;
+        }
+    }
+}
@@ -9,39 +9,99 @@ import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.concurrent.TimeUnit;
 import java.util.function.LongSupplier;
 
 final class UTKeyReader {
 
     private static final int ESC = 0x1b;
     private static final int DELETE = 0x7f;
-    private static final int MAX_SEQUENCE_LENGTH = 32;
+    private static final int MAX_SEQUENCE_LENGTH = KeyMatcher.MAX_SEQUENCE_LENGTH;
     private static final int MAX_CHARACTER_BYTES = 16;
-    private static final long DEFAULT_ESCAPE_TIMEOUT_NANOS = 25_000_000L;
+    private static final int SNAPSHOT_LENGTH = MAX_SEQUENCE_LENGTH + 4;
+    private static final int READ_BUFFER_LENGTH = 1024;
+    private static final int PASTE_BUFFER_LENGTH = 16384;
+    private static final int INITIAL_PASTE_LENGTH = 4096;
+    private static final int PASTE_START = 200;
+    private static final byte[] PASTE_END = {ESC, '[', '2', '0', '1', '~'};
+    static final long DEFAULT_ESCAPE_TIMEOUT_NANOS = 25_000_000L;
+    // the value of the time fields that are not set
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int PASTE_CODE = KeyCode.special(KeyType.PASTE, false, false, false);
 
     private static final int SHIFT_CODE = 1;
     private static final int ALT_CODE = 2;
     private static final int CTRL_CODE = 4;
 
+    // bits of the button code of SGR mouse reports
+    private static final int MOUSE_BUTTON_BITS = 3;
+    private static final int MOUSE_SHIFT = 4;
+    private static final int MOUSE_ALT = 8;
+    private static final int MOUSE_CTRL = 16;
+    private static final int MOUSE_MOTION = 32;
+    private static final int MOUSE_WHEEL = 64;
+    private static final int MOUSE_EXTRA_BUTTONS = 128;
+
+    // kitty keyboard protocol: the event types and the key codes of the keypad and its navigation keys
+    private static final int KITTY_REPEAT = 2;
+    private static final int KITTY_RELEASE = 3;
+    private static final int KITTY_KEYPAD_FIRST = 57399;
+    private static final int KITTY_KEYPAD_LAST = 57426;
+    private static final String KITTY_KEYPAD_CHARACTERS = "0123456789./*-+\r=,";
+
     private final InputStream input;
     private final Charset charset;
-    private final long escapeTimeoutNanos;
+    private final EscapeTimeout escapeTimeout;
     private final LongSupplier nanoTime;
     private final InputStatusProbe inputStatusProbe;
+    private final TerminalCounters counters;
     private final Deque<Byte> bytes = new ArrayDeque<>();
-    private final Deque<KeyStroke> decodedKeyStrokes = new ArrayDeque<>();
+    private final Arrivals arrivals = new Arrivals();
+    private final byte[] snapshot = new byte[SNAPSHOT_LENGTH];
+    private final KeyMatcher.Match match = new KeyMatcher.Match();
+    private KeyMatcher keyMatcher = KeyMatcher.builtIn();
+
+    // the second character of a key that decodes to a surrogate pair, until it is read
+    private int pendingCode = KeyCode.NONE;
+    // the keystroke of a paste or a mouse report, whose text or event does not fit into its key code
+    private KeyStroke payload;
+    // the key code and the length of the escape sequence that has just been parsed
+    private int parsedCode;
+    private int parsedLength;
+
+    // bytes consumed by the key being decoded, and the time the first of them was read
+    private int keyBytes;
+    private long keyFirstByteAt;
+
+    private volatile SessionRecorder recorder;
+
+    // the text of a bracketed paste being read, and how much of the end marker has been seen
+    private byte[] paste;
+    private int pasteLength;
+    private int pasteEndMatched;
+    private byte[] pasteBuffer;
+
+    private final byte[] readBuffer = new byte[READ_BUFFER_LENGTH];
 
-    private Long escapeStartedAt;
+    // the flags of the kitty keyboard protocol reported by the terminal, 0 until it has replied
+    private volatile int keyboardFlags;
+
+    private long escapeStartedAt = NO_TIME;
+    // the arrival of the last [Esc] reported after the timeout, until the byte following it has been seen
+    private long timedOutEscapeAt = NO_TIME;
     private boolean eof;
     private boolean eofDelivered;
 
     UTKeyReader(InputStream input, Charset charset) {
-        this(input, charset, DEFAULT_ESCAPE_TIMEOUT_NANOS, System::nanoTime, null);
+        this(input, charset, EscapeTimeout.adaptive(DEFAULT_ESCAPE_TIMEOUT_NANOS), System::nanoTime, null,
+                new TerminalCounters());
     }
 
     UTKeyReader(InputStream input, Charset charset, InputStatusProbe inputStatusProbe) {
-        this(input, charset, DEFAULT_ESCAPE_TIMEOUT_NANOS, System::nanoTime, inputStatusProbe);
+        this(input, charset, EscapeTimeout.adaptive(DEFAULT_ESCAPE_TIMEOUT_NANOS), System::nanoTime,
+                inputStatusProbe, new TerminalCounters());
     }
 
     UTKeyReader(InputStream input, Charset charset, long escapeTimeoutNanos, LongSupplier nanoTime) {
@@ -50,71 +110,243 @@ final class UTKeyReader {
 
     UTKeyReader(InputStream input, Charset charset, long escapeTimeoutNanos, LongSupplier nanoTime,
                 InputStatusProbe inputStatusProbe) {
+        this(input, charset, escapeTimeoutNanos, nanoTime, inputStatusProbe, new TerminalCounters());
+    }
+
+    UTKeyReader(InputStream input, Charset charset, long escapeTimeoutNanos, LongSupplier nanoTime,
+                InputStatusProbe inputStatusProbe, TerminalCounters counters) {
+        this(input, charset, fixedEscapeTimeout(escapeTimeoutNanos), nanoTime, inputStatusProbe, counters);
+    }
+
+    UTKeyReader(InputStream input, Charset charset, EscapeTimeout escapeTimeout, LongSupplier nanoTime,
+                InputStatusProbe inputStatusProbe, TerminalCounters counters) {
         if (input == null) {
             throw new NullPointerException("input");
         }
         if (charset == null) {
             throw new NullPointerException("charset");
         }
-        if (escapeTimeoutNanos < 0) {
-            throw new IllegalArgumentException("escapeTimeoutNanos must not be negative");
+        if (escapeTimeout == null) {
+            throw new NullPointerException("escapeTimeout");
         }
         if (nanoTime == null) {
             throw new NullPointerException("nanoTime");
         }
         this.input = input;
         this.charset = charset;
-        this.escapeTimeoutNanos = escapeTimeoutNanos;
+        this.escapeTimeout = escapeTimeout;
         this.nanoTime = nanoTime;
         this.inputStatusProbe = inputStatusProbe;
+        this.counters = counters;
+    }
+
+    private static EscapeTimeout fixedEscapeTimeout(long escapeTimeoutNanos) {
+        if (escapeTimeoutNanos < 0) {
+            throw new IllegalArgumentException("escapeTimeoutNanos must not be negative");
+        }
+        return EscapeTimeout.fixed(escapeTimeoutNanos);
+    }
+
+    /**
+     * Returns the current escape timeout, which adapts to the connection unless a fixed timeout has been specified.
+     */
+    long escapeTimeoutNanos() {
+        return escapeTimeout.nanos();
+    }
+
+    /**
+     * Sets the matcher of the escape sequences of special keys, e.g. one compiled for the terminal's terminfo entry.
+     */
+    synchronized void setKeyMatcher(KeyMatcher keyMatcher) {
+        if (keyMatcher == null) {
+            throw new NullPointerException("keyMatcher");
+        }
+        this.keyMatcher = keyMatcher;
+    }
+
+    /**
+     * Passes every chunk of bytes read from the input to the specified recorder, or stops doing so if it is null.
+     */
+    void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
     }
 
     synchronized KeyStroke readKey(boolean blocking) throws IOException {
-        if (!decodedKeyStrokes.isEmpty()) {
-            return decodedKeyStrokes.removeFirst();
+        return toKeyStroke(decodeKey(blocking));
+    }
+
+    /**
+     * Reads a key, waiting up to the timeout for it to arrive. The input is awaited with the probe, if there is one,
+     * and polled every millisecond otherwise.
+     * @return the keystroke, or {@code null} if no key has arrived in time
+     */
+    synchronized KeyStroke readKey(long timeoutNanos) throws IOException {
+        return toKeyStroke(decodeKey(timeoutNanos));
+    }
+
+    private KeyStroke toKeyStroke(int code) {
+        if (code == KeyCode.NONE) {
+            return null;
+        }
+        KeyStroke keyStroke = payload != null ? payload : KeyCode.toKeyStroke(code);
+        payload = null;
+        if (keyBytes > 0) {
+            keyStroke.setTimestamp(keyFirstByteAt);
+        }
+        keyDecoded(code);
+        return keyStroke;
+    }
+
+    /**
+     * Reads a key like {@link #readKey(boolean)}, but returns its {@link KeyCode}. Apart from pastes, mouse reports
+     * and characters outside ASCII, keys are decoded without allocating.
+     * @return the key code, or {@link KeyCode#NONE} if no key is available
+     */
+    synchronized int readKeyCode(boolean blocking) throws IOException {
+        int code = decodeKey(blocking);
+        if (code != KeyCode.NONE) {
+            payload = null;
+            keyDecoded(code);
+        }
+        return code;
+    }
+
+    /**
+     * Reads the available keys into the array without blocking, up to its length or the end of the input.
+     * @return the number of key codes stored
+     */
+    synchronized int readKeyCodes(int[] codes) throws IOException {
+        int count = 0;
+        while (count < codes.length) {
+            int code = readKeyCode(false);
+            if (code == KeyCode.NONE) {
+                break;
+            }
+            codes[count++] = code;
+            if (code == KeyCode.EOF) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private void keyDecoded(int code) {
+        counters.keysDecoded.increment();
+        KeyDecodedEvent event = new KeyDecodedEvent();
+        if (event.isEnabled()) {
+            event.keyType = KeyCode.type(code).name();
+            event.bytesConsumed = keyBytes;
+            event.timeFromFirstByte = keyBytes == 0 ? 0 : nanoTime.getAsLong() - keyFirstByteAt;
+            event.commit();
+        }
+        keyBytes = 0;
+    }
+
+    // decodes the next key, waiting for input until the deadline, but for the rest of an escape sequence only until
+    // its escape timeout expires
+    private int decodeKey(long timeoutNanos) throws IOException {
+        long deadline = nanoTime.getAsLong() + timeoutNanos;
+        while (true) {
+            int code = decodeKey(false);
+            if (code != KeyCode.NONE || eofDelivered) {
+                return code;
+            }
+            long now = nanoTime.getAsLong();
+            long wait = deadline - now;
+            if (wait <= 0) {
+                return KeyCode.NONE;
+            }
+            awaitInput(Math.min(wait, Math.max(escapeWaitNanos(now), 1)));
+        }
+    }
+
+    /**
+     * Returns how long an incomplete escape sequence at the start of the input may still wait for its remaining bytes
+     * before it is reported as [Esc], or {@link Long#MAX_VALUE} if there is no such sequence.
+     */
+    synchronized long nanosUntilEscapeTimeout() {
+        return escapeWaitNanos(nanoTime.getAsLong());
+    }
+
+    private long escapeWaitNanos(long now) {
+        if (escapeStartedAt == NO_TIME) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(escapeStartedAt + escapeTimeout.nanos() - now, 0);
+    }
+
+    private int decodeKey(boolean blocking) throws IOException {
+        if (pendingCode != KeyCode.NONE) {
+            int code = pendingCode;
+            pendingCode = KeyCode.NONE;
+            return code;
+        }
+        if (paste != null) {
+            return readPaste(blocking);
         }
 
         fillAvailable();
         if (bytes.isEmpty()) {
             if (eof) {
-                return eofKeyStroke();
+                return eofCode();
             }
             if (!blocking) {
-                return null;
+                return KeyCode.NONE;
             }
             readOneBlocking();
             if (bytes.isEmpty()) {
-                return eofKeyStroke();
+                return eofCode();
             }
         }
 
         while (true) {
             int first = unsigned(bytes.peekFirst());
+            if (timedOutEscapeAt != NO_TIME) {
+                if ((first == '[' || first == 'O') && !arrivals.isEmpty()) {
+                    escapeTimeout.lateContinuation(arrivals.firstTime() - timedOutEscapeAt);
+                }
+                timedOutEscapeAt = NO_TIME;
+            }
             if (first == ESC) {
-                if (escapeStartedAt == null) {
+                if (escapeStartedAt == NO_TIME) {
                     escapeStartedAt = nanoTime.getAsLong();
                 }
-                ParseResult result = parseEscapeSequence();
-                if (result.status == ParseStatus.MATCH) {
-                    consume(result.consumed);
-                    escapeStartedAt = null;
-                    return result.keyStroke;
+                ParseStatus status = parseEscapeSequence();
+                if (status == ParseStatus.MATCH) {
+                    if (isControlSequence(parsedLength) && !arrivals.isEmpty()) {
+                        escapeTimeout.sequenceRead(arrivals.timeAt(parsedLength - 1) - arrivals.firstTime());
+                    }
+                    consume(parsedLength);
+                    escapeStartedAt = NO_TIME;
+                    return parsedCode;
+                }
+                if (status == ParseStatus.PASTE_START) {
+                    consume(parsedLength);
+                    escapeStartedAt = NO_TIME;
+                    paste = new byte[INITIAL_PASTE_LENGTH];
+                    pasteLength = 0;
+                    pasteEndMatched = 0;
+                    return readPaste(blocking);
                 }
-                if (result.status == ParseStatus.DISCARD) {
-                    consume(result.consumed);
-                    escapeStartedAt = null;
+                if (status == ParseStatus.DISCARD || status == ParseStatus.REPLY) {
+                    consume(parsedLength);
+                    keyBytes = 0;
+                    if (status == ParseStatus.DISCARD) {
+                        counters.discardedSequences.increment();
+                    }
+                    escapeStartedAt = NO_TIME;
                     if (bytes.isEmpty()) {
                         fillAvailable();
                         if (bytes.isEmpty()) {
                             if (eof) {
-                                return eofKeyStroke();
+                                return eofCode();
                             }
                             if (!blocking) {
-                                return null;
+                                return KeyCode.NONE;
                             }
                             readOneBlocking();
                             if (bytes.isEmpty()) {
-                                return eofKeyStroke();
+                                return eofCode();
                             }
                         }
                     }
@@ -130,26 +362,25 @@ final class UTKeyReader {
                     return emitTimedOutEscape();
                 }
                 if (!blocking) {
-                    return null;
+                    return KeyCode.NONE;
                 }
                 waitForEscapeContinuation();
                 continue;
             }
 
-            escapeStartedAt = null;
+            escapeStartedAt = NO_TIME;
             if (first < 0x80) {
                 consume(1);
-                return keyStrokeForAscii(first, false);
+                return codeForAscii(first, false);
             }
 
             DecodedCharacter decoded = decodeCharacter(0);
             if (decoded != null) {
                 consume(decoded.consumed);
-                for (int index = 1; index < decoded.characters.length; index++) {
-                    decodedKeyStrokes.addLast(
-                            KeyStroke.character(decoded.characters[index], false, false));
+                if (decoded.characters.length > 1) {
+                    pendingCode = KeyCode.character(decoded.characters[1], false, false, false);
                 }
-                return KeyStroke.character(decoded.characters[0], false, false);
+                return KeyCode.character(decoded.characters[0], false, false, false);
             }
 
             int sizeBeforeFill = bytes.size();
@@ -159,38 +390,55 @@ final class UTKeyReader {
             }
             if (eof || bytes.size() >= MAX_CHARACTER_BYTES) {
                 consume(1);
-                return KeyStroke.character('\ufffd', false, false);
+                return KeyCode.character('\ufffd', false, false, false);
             }
             if (!blocking) {
-                return null;
+                return KeyCode.NONE;
             }
             readOneBlocking();
         }
     }
 
     synchronized void reset() {
+        keyboardFlags = 0;
+        escapeTimeout.reset();
+        timedOutEscapeAt = NO_TIME;
         bytes.clear();
-        decodedKeyStrokes.clear();
-        escapeStartedAt = null;
+        pendingCode = KeyCode.NONE;
+        payload = null;
+        arrivals.clear();
+        paste = null;
+        keyBytes = 0;
+        escapeStartedAt = NO_TIME;
         eof = false;
         eofDelivered = false;
     }
 
-    private ParseResult parseEscapeSequence() {
-        byte[] snapshot = snapshot();
-        if (snapshot.length < 2) {
-            return ParseResult.incomplete();
+    /**
+     * Returns the enhancement flags of the kitty keyboard protocol that the terminal has reported in reply to the
+     * query sent by {@link TerminalMode#KITTY_KEYBOARD}, or 0 if it has not replied.
+     */
+    int keyboardFlags() {
+        return keyboardFlags;
+    }
+
+    // parses the escape sequence at the start of the buffer; a match leaves its code and length in parsedCode and
+    // parsedLength, and so do the other results, where they apply
+    private ParseStatus parseEscapeSequence() {
+        int length = snapshot();
+        if (length < 2) {
+            return ParseStatus.INCOMPLETE;
         }
 
         int introducerIndex = 1;
         boolean alt = false;
         if (unsigned(snapshot[1]) == ESC) {
-            if (snapshot.length < 3) {
-                return ParseResult.incomplete();
+            if (length < 3) {
+                return ParseStatus.INCOMPLETE;
             }
             int possibleIntroducer = unsigned(snapshot[2]);
             if (possibleIntroducer != '[' && possibleIntroducer != 'O') {
-                return ParseResult.match(keyStrokeForAscii(ESC, true), 2);
+                return parsed(ParseStatus.MATCH, codeForAscii(ESC, true), 2);
             }
             alt = true;
             introducerIndex = 2;
@@ -200,235 +448,221 @@ final class UTKeyReader {
         if (introducer != '[' && introducer != 'O') {
             DecodedCharacter decoded = decodeCharacter(introducerIndex);
             if (decoded == null) {
-                return ParseResult.incomplete();
+                return ParseStatus.INCOMPLETE;
             }
-            char firstCharacter = decoded.characters[0];
-            for (int index = 1; index < decoded.characters.length; index++) {
-                decodedKeyStrokes.addLast(
-                        KeyStroke.character(decoded.characters[index], false, true));
+            if (decoded.characters.length > 1) {
+                pendingCode = KeyCode.character(decoded.characters[1], false, true, false);
             }
-            return ParseResult.match(keyStrokeForCharacter(firstCharacter, true),
+            return parsed(ParseStatus.MATCH, codeForCharacter(decoded.characters[0], true),
                     introducerIndex + decoded.consumed);
         }
 
-        int parametersStart = introducerIndex + 1;
-        int finalIndex = -1;
-        for (int index = parametersStart; index < snapshot.length; index++) {
-            int current = unsigned(snapshot[index]);
-            if (current >= 0x40 && current <= 0x7e) {
-                finalIndex = index;
+        switch (keyMatcher.match(snapshot, introducerIndex, length, match)) {
+            case KeyMatcher.KEY:
+                KeyAction action = action(match.eventType);
+                if (action == null) {
+                    return parsed(ParseStatus.DISCARD, KeyCode.NONE, match.end);
+                }
+                int code = KeyCode.withAction(alt ? match.key | KeyCode.ALT : match.key, action);
+                return parsed(ParseStatus.MATCH, code, match.end);
+            case KeyMatcher.INCOMPLETE:
+                return length > MAX_SEQUENCE_LENGTH
+                        ? parsed(ParseStatus.DISCARD, KeyCode.NONE, length)
+                        : ParseStatus.INCOMPLETE;
+            case KeyMatcher.INVALID:
+                return parsed(ParseStatus.DISCARD, KeyCode.NONE, match.end);
+            default:
                 break;
+        }
+
+        // a well-formed sequence that is not a key; none of these has an Alt prefix
+        int code = KeyCode.NONE;
+        if (alt) {
+            return parsed(ParseStatus.DISCARD, KeyCode.NONE, match.end);
+        }
+        if (match.prefix == '?') {
+            return matchReply(match);
+        } else if (match.prefix == '<') {
+            payload = matchMouseReport(match);
+            code = KeyCode.of(payload);
+        } else if (match.prefix == 0 && introducer == '[') {
+            if (match.finalByte == '~' && match.fields == 1 && match.parameter0 == PASTE_START) {
+                return parsed(ParseStatus.PASTE_START, KeyCode.NONE, match.end);
+            }
+            if (match.finalByte == 'u') {
+                code = matchKittyKey(match, false);
             }
-            if (!isAsciiDigit(current) && current != ';') {
-                return ParseResult.discard(index + 1);
-            }
-            if (index - introducerIndex >= MAX_SEQUENCE_LENGTH) {
-                return ParseResult.discard(index + 1);
-            }
-        }
-        if (finalIndex == -1) {
-            return snapshot.length > MAX_SEQUENCE_LENGTH
-                    ? ParseResult.discard(snapshot.length)
-                    : ParseResult.incomplete();
-        }
-
-        int[] parameters = parseParameters(snapshot, parametersStart, finalIndex);
-        if (parameters == null) {
-            return ParseResult.discard(finalIndex + 1);
-        }
-
-        KeyStroke keyStroke = introducer == '['
-                ? matchCsi(unsigned(snapshot[finalIndex]), parameters, alt)
-                : matchSs3(unsigned(snapshot[finalIndex]), parameters, alt);
-        return keyStroke == null
-                ? ParseResult.discard(finalIndex + 1)
-                : ParseResult.match(keyStroke, finalIndex + 1);
-    }
-
-    private KeyStroke matchCsi(int finalByte, int[] parameters, boolean altPrefix) {
-        KeyType keyType;
-        switch (finalByte) {
-            case 'A': keyType = KeyType.ARROW_UP; break;
-            case 'B': keyType = KeyType.ARROW_DOWN; break;
-            case 'C': keyType = KeyType.ARROW_RIGHT; break;
-            case 'D': keyType = KeyType.ARROW_LEFT; break;
-            case 'H': keyType = KeyType.HOME; break;
-            case 'F': keyType = KeyType.END; break;
-            case 'P': keyType = KeyType.F1; break;
-            case 'Q': keyType = KeyType.F2; break;
-            case 'R': keyType = KeyType.F3; break;
-            case 'S': keyType = KeyType.F4; break;
-            case 'Z':
-                return parameters.length == 0
-                        ? KeyStroke.special(KeyType.REVERSE_TAB, false, altPrefix, false)
-                        : null;
-            case '~':
-                return matchTildeKey(parameters, altPrefix);
-            default:
-                return null;
         }
+        return code == KeyCode.NONE
+                ? parsed(ParseStatus.DISCARD, KeyCode.NONE, match.end)
+                : parsed(ParseStatus.MATCH, code, match.end);
+    }
 
-        Integer modifierBits = cursorModifierBits(parameters);
-        return modifierBits == null ? null : modifiedKeyStroke(keyType, modifierBits, altPrefix);
+    private ParseStatus parsed(ParseStatus status, int code, int length) {
+        parsedCode = code;
+        parsedLength = length;
+        return status;
     }
 
-    private KeyStroke matchSs3(int finalByte, int[] parameters, boolean altPrefix) {
-        if (parameters.length != 0) {
-            return null;
+    // the event type of the kitty keyboard protocol, which terminals without the protocol never send
+    private static KeyAction action(int eventType) {
+        switch (eventType) {
+            case KeyMatcher.MISSING:
+            case 1: return KeyAction.PRESS;
+            case KITTY_REPEAT: return KeyAction.REPEAT;
+            case KITTY_RELEASE: return KeyAction.RELEASE;
+            default: return null;
         }
+    }
 
-        KeyType keyType;
-        switch (finalByte) {
-            case 'A': keyType = KeyType.ARROW_UP; break;
-            case 'B': keyType = KeyType.ARROW_DOWN; break;
-            case 'C': keyType = KeyType.ARROW_RIGHT; break;
-            case 'D': keyType = KeyType.ARROW_LEFT; break;
-            case 'H': keyType = KeyType.HOME; break;
-            case 'F': keyType = KeyType.END; break;
-            case 'P': keyType = KeyType.F1; break;
-            case 'Q': keyType = KeyType.F2; break;
-            case 'R': keyType = KeyType.F3; break;
-            case 'S': keyType = KeyType.F4; break;
-            default:
-                return null;
+    // the reply to the kitty keyboard protocol query (CSI ? flags u) confirms that the protocol is active
+    private ParseStatus matchReply(KeyMatcher.Match match) {
+        if (match.finalByte != 'u' || match.fields != 1 || match.parameter0 < 0) {
+            return parsed(ParseStatus.DISCARD, KeyCode.NONE, match.end);
         }
-        return KeyStroke.special(keyType, false, altPrefix, false);
+        keyboardFlags = match.parameter0;
+        return parsed(ParseStatus.REPLY, KeyCode.NONE, match.end);
     }
 
-    private KeyStroke matchTildeKey(int[] parameters, boolean altPrefix) {
-        if (parameters.length < 1 || parameters.length > 2) {
-            return null;
+    // a key event of the kitty keyboard protocol: CSI key[:alternates] ; modifiers[:event type] ; text u
+    private int matchKittyKey(KeyMatcher.Match match, boolean altPrefix) {
+        int key = match.parameter0;
+        int modifiers = match.parameter1 == KeyMatcher.MISSING ? 1 : match.parameter1;
+        KeyAction action = action(match.eventType);
+        if (key < 0 || modifiers < 1 || action == null) {
+            return KeyCode.NONE;
         }
+        // the lock keys and the Super, Hyper and Meta modifiers have no place in a KeyStroke
+        int modifierBits = (modifiers - 1) & (SHIFT_CODE | ALT_CODE | CTRL_CODE);
+        boolean shift = (modifierBits & SHIFT_CODE) != 0;
+        boolean alt = altPrefix || (modifierBits & ALT_CODE) != 0;
+        boolean ctrl = (modifierBits & CTRL_CODE) != 0;
 
-        KeyType keyType;
-        switch (parameters[0]) {
-            case 1:  keyType = KeyType.HOME; break;
-            case 2:  keyType = KeyType.INSERT; break;
-            case 3:  keyType = KeyType.DELETE; break;
-            case 4:  keyType = KeyType.END; break;
-            case 5:  keyType = KeyType.PAGE_UP; break;
-            case 6:  keyType = KeyType.PAGE_DOWN; break;
-            case 11: keyType = KeyType.F1; break;
-            case 12: keyType = KeyType.F2; break;
-            case 13: keyType = KeyType.F3; break;
-            case 14: keyType = KeyType.F4; break;
-            case 15:
-            case 16: keyType = KeyType.F5; break;
-            case 17: keyType = KeyType.F6; break;
-            case 18: keyType = KeyType.F7; break;
-            case 19: keyType = KeyType.F8; break;
-            case 20: keyType = KeyType.F9; break;
-            case 21: keyType = KeyType.F10; break;
-            case 23: keyType = KeyType.F11; break;
-            case 24: keyType = KeyType.F12; break;
-            default:
-                return null;
+        KeyType keyType = null;
+        switch (key) {
+            case ESC:  keyType = KeyType.ESCAPE; break;
+            case '\r': keyType = KeyType.CR; break;
+            case '\t': keyType = KeyType.TAB; break;
+            case 0x08:
+            case DELETE: keyType = KeyType.BACKSPACE; break;
+            case KITTY_KEYPAD_FIRST + 15: keyType = KeyType.CR; break;
+            case KITTY_KEYPAD_FIRST + 18: keyType = KeyType.ARROW_LEFT; break;
+            case KITTY_KEYPAD_FIRST + 19: keyType = KeyType.ARROW_RIGHT; break;
+            case KITTY_KEYPAD_FIRST + 20: keyType = KeyType.ARROW_UP; break;
+            case KITTY_KEYPAD_FIRST + 21: keyType = KeyType.ARROW_DOWN; break;
+            case KITTY_KEYPAD_FIRST + 22: keyType = KeyType.PAGE_UP; break;
+            case KITTY_KEYPAD_FIRST + 23: keyType = KeyType.PAGE_DOWN; break;
+            case KITTY_KEYPAD_FIRST + 24: keyType = KeyType.HOME; break;
+            case KITTY_KEYPAD_FIRST + 25: keyType = KeyType.END; break;
+            case KITTY_KEYPAD_FIRST + 26: keyType = KeyType.INSERT; break;
+            case KITTY_KEYPAD_LAST: keyType = KeyType.DELETE; break;
+            default: break;
         }
-
-        int modifierBits = 0;
-        if (parameters.length == 2) {
-            modifierBits = decodeModifier(parameters[1]);
-            if (modifierBits < 0) {
-                return null;
-            }
+        if (keyType == KeyType.TAB && shift) {
+            return KeyCode.withAction(KeyCode.special(KeyType.REVERSE_TAB, ctrl, alt, false), action);
+        }
+        if (keyType != null) {
+            return KeyCode.withAction(KeyCode.special(keyType, ctrl, alt, shift), action);
         }
-        return modifiedKeyStroke(keyType, modifierBits, altPrefix);
-    }
 
-    private Integer cursorModifierBits(int[] parameters) {
-        if (parameters.length == 0 || (parameters.length == 1 && parameters[0] == 1)) {
-            return 0;
+        if (key >= KITTY_KEYPAD_FIRST && key < KITTY_KEYPAD_FIRST + KITTY_KEYPAD_CHARACTERS.length()) {
+            key = KITTY_KEYPAD_CHARACTERS.charAt(key - KITTY_KEYPAD_FIRST);
         }
-        if (parameters.length == 2 && parameters[0] == 1) {
-            int modifierBits = decodeModifier(parameters[1]);
-            return modifierBits < 0 ? null : modifierBits;
+        // control characters, surrogates and the private use area, where the protocol puts the keys we don't know
+        if (key < 0x20 || (key >= Character.MIN_SURROGATE && key <= Character.MAX_SURROGATE)
+                || (key >= 0xe000 && key <= 0xf8ff)) {
+            return KeyCode.NONE;
         }
-        return null;
-    }
-
-    private int decodeModifier(int parameter) {
-        int modifierBits = parameter - 1;
-        return modifierBits >= 0 && modifierBits <= (SHIFT_CODE | ALT_CODE | CTRL_CODE)
-                ? modifierBits
-                : -1;
-    }
-
-    private KeyStroke modifiedKeyStroke(KeyType keyType, int modifierBits, boolean altPrefix) {
-        boolean shift = (modifierBits & SHIFT_CODE) != 0;
-        boolean alt = altPrefix || (modifierBits & ALT_CODE) != 0;
-        boolean ctrl = (modifierBits & CTRL_CODE) != 0;
-        return KeyStroke.special(keyType, ctrl, alt, shift);
+        if (shift && Character.isLowerCase(key)) {
+            key = Character.toUpperCase(key);
+        }
+        if (Character.isSupplementaryCodePoint(key)) {
+            pendingCode = KeyCode.withAction(KeyCode.character(Character.lowSurrogate(key), ctrl, alt, shift), action);
+            key = Character.highSurrogate(key);
+        }
+        return KeyCode.withAction(KeyCode.character((char) key, ctrl, alt, shift), action);
     }
 
-    private int[] parseParameters(byte[] snapshot, int start, int end) {
-        if (start == end) {
-            return new int[0];
+    // decodes an SGR (1006) mouse report: the button code, then the 1-based column and row
+    private static KeyStroke matchMouseReport(KeyMatcher.Match match) {
+        int finalByte = match.finalByte;
+        if ((finalByte != 'M' && finalByte != 'm') || match.fields != 3 || match.subparameters
+                || match.parameter0 < 0 || match.parameter1 < 1 || match.parameter2 < 1) {
+            return null;
         }
+        int code = match.parameter0;
+        boolean shift = (code & MOUSE_SHIFT) != 0;
+        boolean alt = (code & MOUSE_ALT) != 0;
+        boolean ctrl = (code & MOUSE_CTRL) != 0;
+        boolean motion = (code & MOUSE_MOTION) != 0;
+        int base = code & MOUSE_BUTTON_BITS;
+        int group = code & (MOUSE_WHEEL | MOUSE_EXTRA_BUTTONS);
 
-        int parameterCount = 1;
-        for (int index = start; index < end; index++) {
-            int current = unsigned(snapshot[index]);
-            if (current == ';') {
-                parameterCount++;
-            } else if (!isAsciiDigit(current)) {
+        MouseEvent.Type type;
+        int button;
+        if (group == MOUSE_WHEEL) {
+            if (motion) {
                 return null;
             }
-        }
-
-        int[] parameters = new int[parameterCount];
-        int parameterIndex = 0;
-        boolean hasDigit = false;
-        for (int index = start; index < end; index++) {
-            int current = unsigned(snapshot[index]);
-            if (current == ';') {
-                if (!hasDigit) {
-                    return null;
-                }
-                parameterIndex++;
-                hasDigit = false;
+            switch (base) {
+                case 0: type = MouseEvent.Type.WHEEL_UP; break;
+                case 1: type = MouseEvent.Type.WHEEL_DOWN; break;
+                case 2: type = MouseEvent.Type.WHEEL_LEFT; break;
+                default: type = MouseEvent.Type.WHEEL_RIGHT; break;
+            }
+            button = MouseEvent.NO_BUTTON;
+        } else {
+            if (group == 0) {
+                button = base == 3 ? MouseEvent.NO_BUTTON : base + 1;
+            } else if (group == MOUSE_EXTRA_BUTTONS) {
+                button = base + 8;
             } else {
-                hasDigit = true;
-                int digit = current - '0';
-                if (parameters[parameterIndex] > (Integer.MAX_VALUE - digit) / 10) {
-                    return null;
-                }
-                parameters[parameterIndex] = parameters[parameterIndex] * 10 + digit;
+                return null;
+            }
+            if (motion) {
+                type = button == MouseEvent.NO_BUTTON ? MouseEvent.Type.MOVE : MouseEvent.Type.DRAG;
+            } else if (finalByte == 'm') {
+                type = MouseEvent.Type.RELEASE;
+            } else if (button == MouseEvent.NO_BUTTON) {
+                return null;
+            } else {
+                type = MouseEvent.Type.PRESS;
             }
         }
-        return hasDigit ? parameters : null;
+        MouseEvent event = new MouseEvent(type, button, match.parameter2 - 1, match.parameter1 - 1);
+        return KeyStroke.mouse(event, ctrl, alt, shift);
     }
 
-    private KeyStroke keyStrokeForAscii(int value, boolean alt) {
+    private static int codeForAscii(int value, boolean alt) {
         if (value < 32) {
             switch (value) {
-                case '\n': return KeyStroke.special(KeyType.LF, false, alt, false);
-                case '\r': return KeyStroke.special(KeyType.CR, false, alt, false);
-                case '\t': return KeyStroke.special(KeyType.TAB, false, alt, false);
-                case 0x08: return KeyStroke.special(KeyType.BACKSPACE, false, alt, false);
-                case ESC:  return KeyStroke.special(KeyType.ESCAPE, false, alt, false);
-                case 0:    return KeyStroke.character(' ', true, alt);
-                case 28:   return KeyStroke.character('\\', true, alt);
-                case 29:   return KeyStroke.character(']', true, alt);
-                case 30:   return KeyStroke.character('^', true, alt);
-                case 31:   return KeyStroke.character('_', true, alt);
-                default:   return KeyStroke.character((char) (96 + value), true, alt);
+                case '\n': return KeyCode.special(KeyType.LF, false, alt, false);
+                case '\r': return KeyCode.special(KeyType.CR, false, alt, false);
+                case '\t': return KeyCode.special(KeyType.TAB, false, alt, false);
+                case 0x08: return KeyCode.special(KeyType.BACKSPACE, false, alt, false);
+                case ESC:  return KeyCode.special(KeyType.ESCAPE, false, alt, false);
+                case 0:    return KeyCode.character(' ', true, alt, false);
+                case 28:   return KeyCode.character('\\', true, alt, false);
+                case 29:   return KeyCode.character(']', true, alt, false);
+                case 30:   return KeyCode.character('^', true, alt, false);
+                case 31:   return KeyCode.character('_', true, alt, false);
+                default:   return KeyCode.character((char) (96 + value), true, alt, false);
             }
         }
         if (value == DELETE) {
-            return KeyStroke.special(KeyType.DELETE, false, alt, false);
+            return KeyCode.special(KeyType.DELETE, false, alt, false);
         }
-        return KeyStroke.character((char) value, false, alt);
+        return KeyCode.character((char) value, false, alt, false);
     }
 
-    private KeyStroke keyStrokeForCharacter(char character, boolean alt) {
+    private static int codeForCharacter(char character, boolean alt) {
         return character < 0x80
-                ? keyStrokeForAscii(character, alt)
-                : KeyStroke.character(character, false, alt);
+                ? codeForAscii(character, alt)
+                : KeyCode.character(character, false, alt, false);
     }
 
     private DecodedCharacter decodeCharacter(int offset) {
-        byte[] snapshot = snapshot();
-        int availableBytes = snapshot.length - offset;
+        int availableBytes = snapshot() - offset;
         int maximum = Math.min(availableBytes, MAX_CHARACTER_BYTES);
         for (int length = 1; length <= maximum; length++) {
             CharsetDecoder decoder = charset.newDecoder()
@@ -450,70 +684,203 @@ final class UTKeyReader {
         return null;
     }
 
-    private void fillAvailable() throws IOException {
-        while (!eof) {
-            int available = input.available();
-            if (available <= 0) {
-                if (inputStatusProbe == null) {
-                    return;
+    // Moves the input into the paste in a single pass until the end marker is found. Once the buffered bytes have
+    // been used up, the input is read in large chunks straight into the paste. The paste is delivered as one
+    // keystroke; if the input ends before the marker, the text read so far is delivered.
+    private int readPaste(boolean blocking) throws IOException {
+        if (pasteBuffer == null) {
+            pasteBuffer = new byte[PASTE_BUFFER_LENGTH];
+        }
+        while (true) {
+            if (!bytes.isEmpty()) {
+                int count = 0;
+                for (Byte value : bytes) {
+                    if (count == pasteBuffer.length) break;
+                    pasteBuffer[count++] = value;
+                }
+                int end = scanPaste(pasteBuffer, count);
+                consume(end < 0 ? count : end);
+                if (end >= 0) {
+                    return finishPaste();
+                }
+                continue;
+            }
+            int count = readAvailable(pasteBuffer);
+            if (count > 0) {
+                int end = scanPaste(pasteBuffer, count);
+                if (end < 0) {
+                    keyBytes += count;
+                    continue;
                 }
-                InputStatus status = inputStatusProbe.poll();
-                if (status == InputStatus.EOF) {
-                    eof = true;
-                    return;
+                keyBytes += end;
+                for (int index = end; index < count; index++) {
+                    bytes.addLast(pasteBuffer[index]);
                 }
-                if (status == InputStatus.UNAVAILABLE) {
-                    return;
+                if (end < count) {
+                    arrivals.add(count - end, nanoTime.getAsLong());
                 }
-                available = 1;
+                return finishPaste();
             }
-            byte[] inputBytes = new byte[Math.min(available, 1024)];
-            int count = input.read(inputBytes);
-            if (count == -1) {
-                eof = true;
-                return;
+            if (eof) {
+                appendToPaste(PASTE_END, 0, pasteEndMatched);
+                return finishPaste();
+            }
+            if (!blocking) {
+                return KeyCode.NONE;
+            }
+            readOneBlocking();
+        }
+    }
+
+    // Appends the text in the buffer to the paste, up to the end marker. Returns the index after the end marker, or
+    // -1 if the buffer does not complete it. A partially matched marker is kept in pasteEndMatched, so that a marker
+    // split between reads is recognized.
+    private int scanPaste(byte[] buffer, int length) {
+        int runStart = 0;
+        for (int index = 0; index < length; index++) {
+            byte value = buffer[index];
+            if (pasteEndMatched > 0) {
+                if (value == PASTE_END[pasteEndMatched]) {
+                    if (++pasteEndMatched == PASTE_END.length) {
+                        pasteEndMatched = 0;
+                        return index + 1;
+                    }
+                    continue;
+                }
+                // the marker starts with its only ESC, so a mismatch can only restart the match at an ESC
+                appendToPaste(PASTE_END, 0, pasteEndMatched);
+                pasteEndMatched = 0;
+                runStart = index;
             }
+            if (value == ESC) {
+                appendToPaste(buffer, runStart, index - runStart);
+                pasteEndMatched = 1;
+                runStart = index + 1;
+            }
+        }
+        if (pasteEndMatched == 0) {
+            appendToPaste(buffer, runStart, length - runStart);
+        }
+        return -1;
+    }
+
+    private void appendToPaste(byte[] source, int offset, int length) {
+        if (pasteLength + length > paste.length) {
+            paste = Arrays.copyOf(paste, Math.max(paste.length * 2, pasteLength + length));
+        }
+        System.arraycopy(source, offset, paste, pasteLength, length);
+        pasteLength += length;
+    }
+
+    private int finishPaste() {
+        String text = new String(paste, 0, pasteLength, charset);
+        paste = null;
+        pasteLength = 0;
+        pasteEndMatched = 0;
+        payload = KeyStroke.paste(text);
+        return PASTE_CODE;
+    }
+
+    // Buffers the available input, but not much more than a read buffer: a key needs only a few bytes, and the rest
+    // of a large paste can be read when it is needed.
+    private void fillAvailable() throws IOException {
+        while (bytes.size() < READ_BUFFER_LENGTH) {
+            int count = readAvailable(readBuffer);
             if (count == 0) {
                 return;
             }
             for (int index = 0; index < count; index++) {
-                bytes.addLast(inputBytes[index]);
+                bytes.addLast(readBuffer[index]);
             }
+            arrivals.add(count, nanoTime.getAsLong());
         }
     }
 
+    // reads the bytes that are available without blocking into the buffer and returns their number
+    private int readAvailable(byte[] buffer) throws IOException {
+        if (eof) {
+            return 0;
+        }
+        int available = input.available();
+        if (available <= 0) {
+            if (inputStatusProbe == null) {
+                return 0;
+            }
+            InputStatus status = inputStatusProbe.poll();
+            if (status == InputStatus.EOF) {
+                eof = true;
+                return 0;
+            }
+            if (status == InputStatus.UNAVAILABLE) {
+                return 0;
+            }
+            available = 1;
+        }
+        int count = input.read(buffer, 0, Math.min(available, buffer.length));
+        if (count == -1) {
+            eof = true;
+            return 0;
+        }
+        SessionRecorder tap = recorder;
+        if (tap != null && count > 0) {
+            tap.input(buffer, 0, count);
+        }
+        return count;
+    }
+
     private void readOneBlocking() throws IOException {
         int next = input.read();
         if (next == -1) {
             eof = true;
         } else {
             bytes.addLast((byte) next);
+            SessionRecorder tap = recorder;
+            if (tap != null) {
+                tap.input(new byte[] {(byte) next}, 0, 1);
+            }
+            arrivals.add(1, nanoTime.getAsLong());
             fillAvailable();
         }
     }
 
-    private KeyStroke eofKeyStroke() {
+    private int eofCode() {
         if (eofDelivered) {
-            return null;
+            return KeyCode.NONE;
         }
         eofDelivered = true;
-        return KeyStroke.eof();
+        return KeyCode.EOF;
     }
 
     private boolean escapeTimedOut() {
-        return nanoTime.getAsLong() - escapeStartedAt >= escapeTimeoutNanos;
+        return nanoTime.getAsLong() - escapeStartedAt >= escapeTimeout.nanos();
     }
 
-    private KeyStroke emitTimedOutEscape() {
-        byte[] snapshot = snapshot();
-        if (snapshot.length >= 2 && unsigned(snapshot[1]) == ESC) {
-            consume(2);
-            escapeStartedAt = null;
-            return KeyStroke.special(KeyType.ESCAPE, false, true, false);
+    // whether the escape sequence of the specified length at the start of the snapshot is a CSI or SS3 sequence,
+    // possibly with an Alt prefix, rather than [Esc] followed by a character, which may as well have been typed slowly
+    private boolean isControlSequence(int length) {
+        for (int index = 1; index < length; index++) {
+            int next = unsigned(snapshot[index]);
+            if (next != ESC) {
+                return next == '[' || next == 'O';
+            }
+        }
+        return false;
+    }
+
+    private int emitTimedOutEscape() {
+        if (!eof) {
+            counters.escapeTimeouts.increment();
+            EscapeTimeoutEvent event = new EscapeTimeoutEvent();
+            if (event.isEnabled()) {
+                event.waited = nanoTime.getAsLong() - escapeStartedAt;
+                event.commit();
+            }
         }
-        consume(1);
-        escapeStartedAt = null;
-        return KeyStroke.special(KeyType.ESCAPE, false, false, false);
+        boolean alt = snapshot() >= 2 && unsigned(snapshot[1]) == ESC;
+        consume(alt ? 2 : 1);
+        escapeStartedAt = NO_TIME;
+        timedOutEscapeAt = keyFirstByteAt;
+        return KeyCode.special(KeyType.ESCAPE, false, alt, false);
     }
 
     private void waitForEscapeContinuation() throws IOException {
@@ -525,23 +892,44 @@ final class UTKeyReader {
         }
     }
 
-    private byte[] snapshot() {
-        byte[] snapshot = new byte[bytes.size()];
+    private void awaitInput(long timeoutNanos) throws IOException {
+        if (inputStatusProbe != null) {
+            inputStatusProbe.await(timeoutNanos);
+        } else {
+            sleepUpToAMillisecond(timeoutNanos);
+        }
+    }
+
+    private static void sleepUpToAMillisecond(long timeoutNanos) throws IOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(Math.min(timeoutNanos, 1_000_000));
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for keyboard input", interrupted);
+        }
+    }
+
+    // Copies the start of the buffer. A key never spans more than SNAPSHOT_LENGTH bytes, and copying only those
+    // keeps decoding linear when a large paste is buffered at once.
+    private int snapshot() {
+        int length = Math.min(bytes.size(), SNAPSHOT_LENGTH);
         int index = 0;
         for (byte value : bytes) {
+            if (index == length) break;
             snapshot[index++] = value;
         }
-        return snapshot;
+        return length;
     }
 
     private void consume(int count) {
+        if (keyBytes == 0 && !arrivals.isEmpty()) {
+            keyFirstByteAt = arrivals.firstTime();
+        }
+        keyBytes += count;
         for (int index = 0; index < count; index++) {
             bytes.removeFirst();
         }
-    }
-
-    private static boolean isAsciiDigit(int value) {
-        return value >= '0' && value <= '9';
+        arrivals.consume(count);
     }
 
     private static int unsigned(byte value) {
@@ -561,36 +949,93 @@ final class UTKeyReader {
     @FunctionalInterface
     interface InputStatusProbe {
         InputStatus poll() throws IOException;
-    }
 
-    private enum ParseStatus {
-        MATCH,
-        INCOMPLETE,
-        DISCARD
+        /**
+         * Waits up to the timeout for input to become available. Probes that cannot wait poll and then sleep for up
+         * to a millisecond.
+         */
+        default InputStatus await(long timeoutNanos) throws IOException {
+            InputStatus status = poll();
+            if (status == InputStatus.UNAVAILABLE) {
+                sleepUpToAMillisecond(timeoutNanos);
+            }
+            return status;
+        }
     }
 
-    private static final class ParseResult {
-        private final ParseStatus status;
-        private final KeyStroke keyStroke;
-        private final int consumed;
+    // the runs of bytes read from the input at the same time, oldest first, in a ring that grows as needed
+    private static final class Arrivals {
+        private int[] remaining = new int[16];
+        private long[] nanoTimes = new long[16];
+        private int head;
+        private int size;
 
-        private ParseResult(ParseStatus status, KeyStroke keyStroke, int consumed) {
-            this.status = status;
-            this.keyStroke = keyStroke;
-            this.consumed = consumed;
+        private boolean isEmpty() {
+            return size == 0;
         }
 
-        private static ParseResult match(KeyStroke keyStroke, int consumed) {
-            return new ParseResult(ParseStatus.MATCH, keyStroke, consumed);
+        private void add(int count, long nanoTime) {
+            if (size == remaining.length) {
+                int[] grownRemaining = new int[size * 2];
+                long[] grownNanoTimes = new long[size * 2];
+                for (int index = 0; index < size; index++) {
+                    grownRemaining[index] = remaining[(head + index) % size];
+                    grownNanoTimes[index] = nanoTimes[(head + index) % size];
+                }
+                remaining = grownRemaining;
+                nanoTimes = grownNanoTimes;
+                head = 0;
+            }
+            int tail = (head + size) % remaining.length;
+            remaining[tail] = count;
+            nanoTimes[tail] = nanoTime;
+            size++;
         }
 
-        private static ParseResult incomplete() {
-            return new ParseResult(ParseStatus.INCOMPLETE, null, 0);
+        private long firstTime() {
+            return nanoTimes[head];
         }
 
-        private static ParseResult discard(int consumed) {
-            return new ParseResult(ParseStatus.DISCARD, null, consumed);
+        // the time at which the buffered byte at the specified index arrived
+        private long timeAt(int index) {
+            int skipped = index;
+            long nanos = 0;
+            for (int run = 0; run < size; run++) {
+                int slot = (head + run) % remaining.length;
+                nanos = nanoTimes[slot];
+                if (skipped < remaining[slot]) {
+                    break;
+                }
+                skipped -= remaining[slot];
+            }
+            return nanos;
         }
+
+        private void consume(int count) {
+            int left = count;
+            while (left > 0 && size > 0) {
+                int taken = Math.min(left, remaining[head]);
+                remaining[head] -= taken;
+                left -= taken;
+                if (remaining[head] == 0) {
+                    head = (head + 1) % remaining.length;
+                    size--;
+                }
+            }
+        }
+
+        private void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+
+    private enum ParseStatus {
+        MATCH,
+        PASTE_START,
+        REPLY,
+        INCOMPLETE,
+        DISCARD
     }
 
     private static final class DecodedCharacter {
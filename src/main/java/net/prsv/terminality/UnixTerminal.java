@@ -19,15 +19,21 @@ package net.prsv.terminality;
 import com.sun.jna.LastErrorException;
 import com.sun.jna.Platform;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class UnixTerminal implements Terminal {
 
@@ -41,7 +47,10 @@ public class UnixTerminal implements Terminal {
     private final PosixLibC lib;
 
     private final UTKeyReader keyReader;
+    private final boolean standardInput;
     private final BufferedOutputStream output;
+    private final OutputMeter outputMeter;
+    private final TerminalCounters counters;
     private final Charset charset;
 
     private final AtomicBoolean sizeChange = new AtomicBoolean(true);
@@ -53,14 +62,24 @@ public class UnixTerminal implements Terminal {
     private boolean shutdownHookRegistered = false;
     private Thread shutdownHook;
 
+    private final List<TerminalMode> enabledModes = new ArrayList<>();
+
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
     private static final int KEY_QUEUE_CAPACITY = 256;
     private static final long COLOR_DETECTION_TIMEOUT_MILLIS = 1000;
 
-    private final BlockingQueue<KeyStroke> keyQueue;
+    private final KeyQueue keyQueue;
+    private final KeyListeners keyListeners = new KeyListeners();
+    private final KeyPublisher keyPublisher = new KeyPublisher();
     private final AtomicReference<IOException> asyncKeyboardFailure;
     private volatile Thread asyncKeyboardReader;
+    private boolean asyncOutput = false;
+    private volatile FrameWriter frameWriter;
+    // the bytes written before the asynchronous output started
+    private volatile long bytesBeforeFrameWriter;
+    private boolean flushTagged = false;
+    private long flushTagNanoTime;
     private int colors = COLORS_UNKNOWN;
 
 //  ===================== C O N S T R U C T O R S ======================
@@ -97,18 +116,24 @@ public class UnixTerminal implements Terminal {
 
     UnixTerminal(InputStream in, OutputStream out, Charset charset, boolean asyncIO, PosixLibC lib) {
         this.lib = lib;
-        keyReader = in == System.in
-                ? new UTKeyReader(in, charset, new PosixInputProbe(lib, PosixLibC.STDIN_FD))
-                : new UTKeyReader(in, charset);
-        output = new BufferedOutputStream(out);
-        this.charset = charset;
         if (asyncIO) {
-            keyQueue = new ArrayBlockingQueue<>(KEY_QUEUE_CAPACITY);
+            keyQueue = new KeyQueue(KEY_QUEUE_CAPACITY);
             asyncKeyboardFailure = new AtomicReference<>();
         } else {
             keyQueue = null;
             asyncKeyboardFailure = null;
         }
+        counters = new TerminalCounters(keyQueue);
+        keyReader = new UTKeyReader(in, charset,
+                EscapeTimeout.adaptive(UTKeyReader.DEFAULT_ESCAPE_TIMEOUT_NANOS), System::nanoTime,
+                in == System.in ? new PosixInputProbe(lib, PosixLibC.STDIN_FD) : null, counters);
+        if (in == System.in) {
+            keyReader.setKeyMatcher(KeyMatcher.forTerminal(System.getenv("TERM")));
+        }
+        outputMeter = new OutputMeter(out, counters);
+        output = new BufferedOutputStream(outputMeter);
+        this.charset = charset;
+        standardInput = in == System.in;
         asyncKeyboardReader = null;
     }
 
@@ -116,6 +141,16 @@ public class UnixTerminal implements Terminal {
 
     @Override
     public synchronized UnixTerminal begin() throws IOException, RuntimeException {
+        return begin(new TerminalMode[0]);
+    }
+
+    /**
+     * Saves the original state, puts the terminal into the raw mode and enables the specified optional modes.
+     * If the terminal is already initialized, this method does nothing.
+     * @param modes optional terminal modes to be enabled until {@link #end()} is called
+     * @throws IOException if there is an error calling native functions or writing to stdout
+     */
+    public synchronized UnixTerminal begin(TerminalMode... modes) throws IOException, RuntimeException {
         if (isInitialized) {
             return this;
         }
@@ -152,7 +187,9 @@ public class UnixTerminal implements Terminal {
                 shutdownHookRegistered = true;
             }
             setTerminalAttrs(termios);
+            enableModes(modes);
             startAsyncKeyboardReader();
+            startAsyncOutput();
             isInitialized = true;
             return this;
         } catch (IOException | RuntimeException | Error initializationFailure) {
@@ -161,6 +198,16 @@ public class UnixTerminal implements Terminal {
             } catch (IOException readerFailure) {
                 initializationFailure.addSuppressed(readerFailure);
             }
+            try {
+                stopAsyncOutput();
+            } catch (IOException writerFailure) {
+                initializationFailure.addSuppressed(writerFailure);
+            }
+            try {
+                disableModes();
+            } catch (IOException modeFailure) {
+                initializationFailure.addSuppressed(modeFailure);
+            }
             try {
                 setTerminalAttrs(savedState);
                 originalState = null;
@@ -191,9 +238,15 @@ public class UnixTerminal implements Terminal {
         try {
             if (fullyInitialized) {
                 resetTextRendition(); // reset FG and BG color
-                clear();
-                setCursorVisibility(true);
-                writeCsi("H"); // reset the cursor position
+                if (enabledModes.contains(TerminalMode.ALTERNATE_SCREEN)) {
+                    // leaving the alternate screen restores the main screen and the cursor position
+                    setCursorVisibility(true);
+                } else {
+                    clear();
+                    setCursorVisibility(true);
+                    writeCsi("H"); // reset the cursor position
+                }
+                disableModes();
                 flush();
             }
         } catch (IOException outputFailure) {
@@ -203,6 +256,15 @@ public class UnixTerminal implements Terminal {
                 failure.addSuppressed(outputFailure);
             }
         } finally {
+            try {
+                stopAsyncOutput();
+            } catch (IOException writerFailure) {
+                if (failure == null) {
+                    failure = writerFailure;
+                } else {
+                    failure.addSuppressed(writerFailure);
+                }
+            }
             try {
                 setTerminalAttrs(originalState);
                 stateRestored = true;
@@ -214,6 +276,7 @@ public class UnixTerminal implements Terminal {
                 }
             }
             if (stateRestored) {
+                enabledModes.clear();
                 originalState = null;
                 isInitialized = false;
                 restorationPending = false;
@@ -250,6 +313,125 @@ public class UnixTerminal implements Terminal {
         return keyReader.readKey(blocking);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>In the synchronous mode, the terminal waits for input with {@code poll()} on its input descriptor, rounded up
+     * to whole milliseconds; in the async I/O mode, it waits for the reader thread to queue a keystroke.
+     */
+    @Override
+    public KeyStroke readKey(long timeout, TimeUnit unit) throws IOException, RuntimeException {
+        if (!isInitialized) {
+            throw new RuntimeException("The terminal is not initialized");
+        }
+        if (keyQueue != null) {
+            KeyStroke keyStroke;
+            try {
+                keyStroke = keyQueue.poll(timeout, unit);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for keyboard input", interrupted);
+            }
+            if (keyStroke != null) {
+                return keyStroke;
+            }
+            IOException readerFailure = asyncKeyboardFailure.get();
+            if (readerFailure != null) {
+                throw readerFailure;
+            }
+            return null;
+        }
+        return keyReader.readKey(unit.toNanos(timeout));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>In the synchronous mode, keys other than pastes, mouse reports and characters outside ASCII are decoded
+     * without allocating. In the async I/O mode, the keystrokes have already been created by the reader thread and
+     * are packed as they are taken from the queue.
+     */
+    @Override
+    public int readKeyCode(boolean blocking) throws IOException, RuntimeException {
+        if (!isInitialized) {
+            throw new RuntimeException("The terminal is not initialized");
+        }
+        if (keyQueue != null) {
+            return KeyCode.of(readKey(false));
+        }
+        return keyReader.readKeyCode(blocking);
+    }
+
+    @Override
+    public int readKeyCodes(int[] codes) throws IOException, RuntimeException {
+        if (!isInitialized) {
+            throw new RuntimeException("The terminal is not initialized");
+        }
+        if (keyQueue != null) {
+            return Terminal.super.readKeyCodes(codes);
+        }
+        return keyReader.readKeyCodes(codes);
+    }
+
+    /**
+     * Registers a listener that is called with every keystroke read in the async I/O mode. On Java 21 and later,
+     * listeners run on virtual threads; on earlier versions, on a shared pool of daemon threads. See
+     * {@link #addKeyListener(Consumer, Executor)}.
+     * @param listener the listener
+     * @throws IllegalStateException if the terminal is not in the async I/O mode
+     */
+    public UnixTerminal addKeyListener(Consumer<KeyStroke> listener) {
+        return addKeyListener(listener, KeyListeners.defaultExecutor());
+    }
+
+    /**
+     * Registers a listener that is called with every keystroke read in the async I/O mode. While at least one
+     * listener is registered, the keyboard reader thread hands the keystrokes to the listeners instead of queueing
+     * them for {@link #readKey()}. Each listener has its own mailbox, drained by one task at a time on its executor,
+     * so that it receives the keystrokes in the order they were typed, never concurrently, and a slow listener delays
+     * neither the reader nor the other listeners until its mailbox of 256 keystrokes is full; the reader then waits
+     * for it. Mouse motion is coalesced in the mailboxes as in the queue. Exceptions and errors thrown by a listener
+     * are passed to the uncaught exception handler of the thread it runs on. A listener whose executor rejects it is
+     * removed, and the rejection is reported the same way.
+     * @param listener the listener
+     * @param executor the executor that runs the listener, e.g. {@code Runnable::run} to run it on the reader thread
+     * @throws IllegalStateException if the terminal is not in the async I/O mode
+     */
+    public UnixTerminal addKeyListener(Consumer<KeyStroke> listener, Executor executor) {
+        if (keyQueue == null) {
+            throw new IllegalStateException("Key listeners require the async I/O mode");
+        }
+        keyListeners.add(listener, executor);
+        return this;
+    }
+
+    /**
+     * Returns the keystrokes read in the async I/O mode as a reactive stream. While the stream has subscribers, the
+     * keyboard reader thread hands the keystrokes to them instead of the key listeners and the queue read by
+     * {@link #readKey()}, and it reads the next keystroke only once every subscriber has requested one: input that
+     * has not been requested stays in the terminal's input buffer, so the kernel applies backpressure to the sender
+     * instead of the keystrokes filling the heap. Subscribers are signalled on the reader thread, one signal at a
+     * time; a subscriber that subscribes while the reader is waiting for demand receives keystrokes from the next
+     * one it requests on. The end of the input completes the subscriptions, and a failure of the reader terminates
+     * them with the {@link IOException}; {@link #end()} neither completes nor cancels them, so that they carry on
+     * once the terminal is initialized again.
+     * @throws IllegalStateException if the terminal is not in the async I/O mode
+     */
+    public Flow.Publisher<KeyStroke> keyStrokes() {
+        if (keyQueue == null) {
+            throw new IllegalStateException("The key stream requires the async I/O mode");
+        }
+        return keyPublisher;
+    }
+
+    /**
+     * Removes a listener registered by {@link #addKeyListener(Consumer)}. Keystrokes already handed to it are still
+     * delivered. Once the last listener has been removed, keystrokes are queued for {@link #readKey()} again.
+     * @param listener the listener
+     * @return {@code false} if the listener was not registered
+     */
+    public boolean removeKeyListener(Consumer<KeyStroke> listener) {
+        return keyListeners.remove(listener);
+    }
+
     @Override
     public UnixTerminal setTitle(String title) throws IOException {
         writeOsc(2, title);
@@ -340,7 +522,23 @@ public class UnixTerminal implements Terminal {
 
     @Override
     public UnixTerminal flush() throws IOException {
-        output.flush();
+        FrameWriter writer = frameWriter;
+        if (writer != null) {
+            writer.flush();
+        } else {
+            TerminalFlushEvent event = new TerminalFlushEvent();
+            long bytesBefore = outputMeter.bytesWritten();
+            long start = System.nanoTime();
+            event.begin();
+            output.flush();
+            long bytes = outputMeter.bytesWritten() - bytesBefore;
+            event.complete(bytes);
+            if (bytes > 0) {
+                long end = System.nanoTime();
+                counters.recordFlush(end - start);
+                recordKeyLatency(end);
+            }
+        }
         return this;
     }
 
@@ -353,12 +551,16 @@ public class UnixTerminal implements Terminal {
     public synchronized WindowSize getTerminalSize() throws IOException {
         final PosixLibC.WinSize winSize = new PosixLibC.WinSize();
         int returnCode;
+        NativeCallEvent event = new NativeCallEvent();
+        event.begin();
         try {
             returnCode = lib.ioctl(PosixLibC.STDIN_FD,
                     Platform.isMac() ? PosixLibC.TIOCGWINSZ_DARWIN : PosixLibC.TIOCGWINSZ,
                     winSize);
         } catch (LastErrorException e) {
             throw new IOException("Can't determine window size; JNA call failed", e);
+        } finally {
+            event.complete("ioctl");
         }
         if (returnCode != 0) {
             throw new IOException(String.format("Can't determine window size; ioctl failed with return code [%d]",
@@ -373,6 +575,7 @@ public class UnixTerminal implements Terminal {
         if (previousSize != null
                 && (currentSize.rows != previousSize.rows || currentSize.columns != previousSize.columns)) {
             sizeChange.set(true);
+            counters.sizeChanges.increment();
         }
         return currentSize;
     }
@@ -428,6 +631,119 @@ public class UnixTerminal implements Terminal {
         return detectedColors;
     }
 
+    /**
+     * Returns the recent output throughput: the number of bytes written to stdout per second spent blocked in
+     * write calls. On a fast local terminal, the writes rarely block and the throughput is very high; on a slow link,
+     * it approaches the bandwidth of the link once the kernel buffers have filled up.
+     * @return the throughput in bytes per second, or {@link Double#POSITIVE_INFINITY} if no write has blocked
+     * measurably yet
+     */
+    public double getOutputThroughput() {
+        return outputMeter.throughput();
+    }
+
+    /**
+     * Returns the total number of bytes written to stdout. Bytes that are still buffered are not included.
+     */
+    public long getBytesWritten() {
+        return outputMeter.bytesWritten();
+    }
+
+    /**
+     * Returns the I/O counters of this terminal. The returned object is live: its values change as the terminal
+     * is used.
+     */
+    public TerminalMetrics getMetrics() {
+        return counters;
+    }
+
+    /**
+     * Checks whether the terminal has confirmed that it speaks the kitty keyboard protocol enabled by
+     * {@link TerminalMode#KITTY_KEYBOARD}. The confirmation is read from stdin along with the keys, so it is
+     * available once the keys typed after {@link #begin(TerminalMode...)} start arriving; terminals without the
+     * protocol never confirm it, and their keys are decoded as usual.
+     */
+    public boolean isKittyKeyboardActive() {
+        return keyReader.keyboardFlags() != 0;
+    }
+
+    /**
+     * Starts or stops recording the session. While a recorder is attached, the bytes written to stdout and read from
+     * stdin are passed to it as they leave the output buffer and enter the keyboard decoder. The recorder never
+     * blocks the terminal; see {@link SessionRecorder} for details. The terminal does not close the recorder.
+     * @param recorder the recorder to attach, or {@code null} to detach the current one
+     */
+    public UnixTerminal setRecorder(SessionRecorder recorder) {
+        outputMeter.setRecorder(recorder);
+        keyReader.setRecorder(recorder);
+        return this;
+    }
+
+    /**
+     * Marks the output written until the next flush as the response to the specified keystroke. When that output
+     * has been written to stdout, the time since the first byte of the keystroke was read is recorded in the
+     * {@linkplain #getKeyLatencyHistogram() key latency histogram}. If several keystrokes are tagged before a flush,
+     * the latency of the oldest one is recorded. Keystrokes without a timestamp are ignored.
+     * @param keyStroke the keystroke the next flush responds to
+     */
+    public UnixTerminal tagNextFlush(KeyStroke keyStroke) {
+        if (!keyStroke.hasTimestamp()) {
+            return this;
+        }
+        long timestamp = keyStroke.getTimestamp();
+        FrameWriter writer = frameWriter;
+        if (writer != null) {
+            writer.tag(timestamp);
+            return this;
+        }
+        synchronized (this) {
+            if (!flushTagged || timestamp - flushTagNanoTime < 0) {
+                flushTagNanoTime = timestamp;
+            }
+            flushTagged = true;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the histogram of the latencies between key presses and the output tagged with
+     * {@link #tagNextFlush(KeyStroke)}, i.e. the time from reading the first byte of a keystroke to writing the
+     * response to stdout.
+     */
+    public LatencyHistogram getKeyLatencyHistogram() {
+        return counters.keyLatency;
+    }
+
+    /**
+     * Registers the I/O counters of this terminal with the platform MBean server, so that they can be monitored
+     * with JMX tools such as JConsole. The MBean stays registered until it is unregistered with the returned name.
+     * @return the name under which the counters have been registered
+     * @throws JMException if the MBean cannot be registered
+     */
+    public ObjectName registerMetricsMBean() throws JMException {
+        ObjectName name = new ObjectName("net.prsv.terminality:type=TerminalMetrics,id="
+                + Integer.toHexString(System.identityHashCode(this)));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(counters, name);
+        return name;
+    }
+
+    /**
+     * Enables or disables the asynchronous output mode, which takes effect when the terminal is initialized.
+     * In this mode, {@link #flush()} does not block: it hands the output written since the previous flush over to a
+     * dedicated writer thread and returns, so that a slow connection does not hold up the application. If the
+     * writer is still busy with an earlier frame when the next one is flushed, the frames are merged and sent
+     * together. {@link #end()} waits until all output has been written.
+     * @param asyncOutput {@code true} to write the output on a dedicated thread
+     * @throws IllegalStateException if the terminal is already initialized
+     */
+    public synchronized UnixTerminal setAsyncOutput(boolean asyncOutput) {
+        if (isInitialized) {
+            throw new IllegalStateException("Cannot change the output mode of an initialized terminal");
+        }
+        this.asyncOutput = asyncOutput;
+        return this;
+    }
+
     /**
      * Changes the dimensions of the terminal window to the specified number of rows and columns.
      * Please be aware that not all terminal emulators support this functionality, and it is advisable to call
@@ -442,15 +758,127 @@ public class UnixTerminal implements Terminal {
         writeCsi("8;"+rows+';'+columns+'t');
     }
 
+    /**
+     * Restricts scrolling to the rows between {@code top} and {@code bottom}, inclusive (DECSTBM). Row indices are
+     * zero-based. Terminals move the cursor to the home position after changing the scroll region.
+     * @param top the first row of the scroll region
+     * @param bottom the last row of the scroll region
+     * @throws IllegalArgumentException if {@code top} is negative or {@code bottom} is less than {@code top}
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal setScrollRegion(int top, int bottom) throws IOException {
+        if (top < 0 || bottom < top) {
+            throw new IllegalArgumentException("Invalid scroll region: " + top + ".." + bottom);
+        }
+        writeCsi((top + 1) + ";" + (bottom + 1) + "r");
+        return this;
+    }
+
+    /**
+     * Resets the scroll region to the whole terminal window. Terminals move the cursor to the home position after
+     * changing the scroll region.
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal resetScrollRegion() throws IOException {
+        writeCsi("r");
+        return this;
+    }
+
+    /**
+     * Scrolls the contents of the scroll region up by the specified number of lines (SU). Blank lines are inserted
+     * at the bottom of the region.
+     * @param lines the number of lines to scroll
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal scrollUp(int lines) throws IOException {
+        writeCsi(requirePositive(lines, "lines") + "S");
+        return this;
+    }
+
+    /**
+     * Scrolls the contents of the scroll region down by the specified number of lines (SD). Blank lines are inserted
+     * at the top of the region.
+     * @param lines the number of lines to scroll
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal scrollDown(int lines) throws IOException {
+        writeCsi(requirePositive(lines, "lines") + "T");
+        return this;
+    }
+
+    /**
+     * Moves the cursor forward by the specified number of columns (CUF), stopping at the right margin.
+     * @param columns the number of columns
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal moveCursorForward(int columns) throws IOException {
+        writeCsi(requirePositive(columns, "columns") + "C");
+        return this;
+    }
+
+    /**
+     * Erases the specified number of characters starting at the cursor position (ECH) without moving the cursor.
+     * @param count the number of characters to erase
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal eraseCharacters(int count) throws IOException {
+        writeCsi(requirePositive(count, "count") + "X");
+        return this;
+    }
+
+    /**
+     * Erases the characters between the cursor position and the end of the line (EL) without moving the cursor.
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal eraseToEndOfLine() throws IOException {
+        writeCsi("K");
+        return this;
+    }
+
+    /**
+     * Repeats the most recently printed character the specified number of times (REP). This sequence is not
+     * supported by all terminals; check the {@code rep} terminfo capability before using it.
+     * @param count the number of repetitions
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal repeatLastCharacter(int count) throws IOException {
+        writeCsi(requirePositive(count, "count") + "b");
+        return this;
+    }
+
+    /**
+     * Inserts blank lines at the cursor row (IL), moving the following lines down.
+     * @param lines the number of lines to insert
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal insertLines(int lines) throws IOException {
+        writeCsi(requirePositive(lines, "lines") + "L");
+        return this;
+    }
+
+    /**
+     * Deletes lines starting at the cursor row (DL), moving the following lines up.
+     * @param lines the number of lines to delete
+     * @throws IOException if there is an error writing to stdout
+     */
+    public UnixTerminal deleteLines(int lines) throws IOException {
+        writeCsi(requirePositive(lines, "lines") + "M");
+        return this;
+    }
+
 //  =================== P R I V A T E   M E T H O D S ==================
 
     private synchronized PosixLibC.Termios getTerminalAttrs() throws IOException {
         int returnCode;
         PosixLibC.Termios t = PosixLibC.Termios.create();
+        NativeCallEvent event = new NativeCallEvent();
+        event.begin();
         try {
             returnCode = lib.tcgetattr(PosixLibC.STDIN_FD, t);
         } catch (LastErrorException e) {
             throw new IOException(e);
+        } finally {
+            event.complete("tcgetattr");
         }
         if (returnCode != 0) {
             throw new IOException(String.format("tcgetattr failed with return code [%d]", returnCode));
@@ -460,10 +888,14 @@ public class UnixTerminal implements Terminal {
 
     private synchronized void setTerminalAttrs(PosixLibC.Termios termios) throws IOException {
         int returnCode;
+        NativeCallEvent event = new NativeCallEvent();
+        event.begin();
         try {
             returnCode = lib.tcsetattr(PosixLibC.STDIN_FD, PosixLibC.TCSANOW, termios);
         } catch (LastErrorException e) {
             throw new IOException(e);
+        } finally {
+            event.complete("tcsetattr");
         }
         if (returnCode != 0) {
             throw new IOException(String.format("tcsetattr failed with return code [%d]", returnCode));
@@ -502,6 +934,29 @@ public class UnixTerminal implements Terminal {
         }
     }
 
+    private void enableModes(TerminalMode... modes) throws IOException {
+        if (modes == null) {
+            return;
+        }
+        for (TerminalMode mode : modes) {
+            if (mode == null || enabledModes.contains(mode)) continue;
+            enabledModes.add(mode);
+            writeAnsi(mode.enableSequence);
+        }
+        flush();
+    }
+
+    private void disableModes() throws IOException {
+        if (enabledModes.isEmpty()) {
+            return;
+        }
+        for (int index = enabledModes.size() - 1; index >= 0; index--) {
+            writeAnsi(enabledModes.get(index).disableSequence);
+        }
+        enabledModes.clear();
+        flush();
+    }
+
     private void writeAnsi(String sequence) throws IOException {
         for (int index = 0; index < sequence.length(); index++) {
             if (sequence.charAt(index) > 0x7f) {
@@ -531,11 +986,70 @@ public class UnixTerminal implements Terminal {
     }
 
     private synchronized void writeOutput(byte... bytes) throws IOException {
+        FrameWriter writer = frameWriter;
+        if (writer != null) {
+            writer.write(bytes);
+            return;
+        }
         synchronized (output) {
             output.write(bytes);
         }
     }
 
+    private synchronized void recordKeyLatency(long nanoTime) {
+        if (flushTagged) {
+            counters.keyLatency.record(nanoTime - flushTagNanoTime);
+            flushTagged = false;
+        }
+    }
+
+    // true if a flushed frame is waiting for the writer thread in the asynchronous output mode
+    boolean isFramePending() {
+        FrameWriter writer = frameWriter;
+        return writer != null && writer.isFramePending();
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+
+    OutputMeter outputMeter() {
+        return outputMeter;
+    }
+
+    /**
+     * Returns the number of bytes flushed so far. In the asynchronous output mode, these include the bytes handed
+     * over to the writer thread that it has not written yet, so that a frame is counted as soon as it is flushed.
+     */
+    long bytesFlushed() {
+        FrameWriter writer = frameWriter;
+        return writer == null ? outputMeter.bytesWritten() : bytesBeforeFrameWriter + writer.bytesHandedOver();
+    }
+
+    Charset charset() {
+        return charset;
+    }
+
+    PosixLibC lib() {
+        return lib;
+    }
+
+    UTKeyReader keyReader() {
+        return keyReader;
+    }
+
+    // true if the keyboard is read from the standard input, whose descriptor can be polled
+    boolean readsStandardInput() {
+        return standardInput;
+    }
+
+    boolean isAsyncInput() {
+        return keyQueue != null;
+    }
+
     private synchronized byte[] convertCharset(char c) {
         return Character.toString(c).getBytes(charset);
     }
@@ -562,13 +1076,29 @@ public class UnixTerminal implements Terminal {
         Thread reader = new Thread(() -> {
             try {
                 while (!Thread.currentThread().isInterrupted()) {
+                    keyPublisher.awaitDemand();
                     KeyStroke keyStroke = keyReader.readKey(false);
                     if (keyStroke == null) {
                         Thread.sleep(5);
                         continue;
                     }
 
-                    keyQueue.put(keyStroke);
+                    if (keyPublisher.hasSubscribers()) {
+                        keyPublisher.publish(keyStroke);
+                    } else if (!keyListeners.isEmpty()) {
+                        keyListeners.dispatch(keyStroke);
+                    } else if (!keyQueue.offer(keyStroke)) {
+                        AsyncQueueOverflowEvent event = new AsyncQueueOverflowEvent();
+                        event.begin();
+                        keyQueue.put(keyStroke);
+                        event.end();
+                        if (event.shouldCommit()) {
+                            event.capacity = KEY_QUEUE_CAPACITY;
+                            event.keyType = keyStroke.type.name();
+                            event.commit();
+                        }
+                    }
+                    counters.asyncQueueHighWaterMark.accumulate(keyQueue.size());
                     if (keyStroke.type == KeyType.EOF) {
                         return;
                     }
@@ -580,6 +1110,7 @@ public class UnixTerminal implements Terminal {
                         readerFailure instanceof IOException
                                 ? (IOException) readerFailure
                                 : new IOException("Asynchronous keyboard reader failed", readerFailure));
+                keyPublisher.fail(asyncKeyboardFailure.get());
             }
         }, "terminality-keyboard-reader");
         reader.setDaemon(true);
@@ -587,6 +1118,26 @@ public class UnixTerminal implements Terminal {
         reader.start();
     }
 
+    private void startAsyncOutput() throws IOException {
+        if (!asyncOutput) {
+            return;
+        }
+        output.flush();
+        FrameWriter writer = new FrameWriter(output, counters);
+        bytesBeforeFrameWriter = outputMeter.bytesWritten();
+        frameWriter = writer;
+        writer.start();
+    }
+
+    private void stopAsyncOutput() throws IOException {
+        FrameWriter writer = frameWriter;
+        if (writer == null) {
+            return;
+        }
+        frameWriter = null;
+        writer.close();
+    }
+
     private void stopAsyncKeyboardReader() throws IOException {
         Thread reader = asyncKeyboardReader;
         if (reader == null) {
@@ -3,6 +3,7 @@ package net.prsv.terminality.example;
 import net.prsv.terminality.*;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class BouncyBall {
 
@@ -12,13 +13,17 @@ public class BouncyBall {
     private static final int MAXIMUM_BOUNCE_DIGITS = 10;
     private static final int MINIMUM_COLUMNS = STATUS_BAR_TEMPLATE.length() + MAXIMUM_BOUNCE_DIGITS;
 
-    public static void main(String[] args) throws IOException, InterruptedException {
+    public static void main(String[] args) throws IOException {
 
         // create a new terminal with default settings
         try (UnixTerminal t = new UnixTerminal()) {
             // enter the raw mode, make the cursor invisible and apply the changes
             t.begin().setCursorVisibility(false).flush();
             t.setTitle("Bouncy Ball");
+            // the screen sends only the cells that change between frames to the terminal
+            Screen screen = new Screen(t, 0, 0);
+            // aim for 40 frames per second, fewer if the terminal cannot keep up
+            FrameScheduler scheduler = new FrameScheduler(t, 40);
             // declare variables for later use
             Terminal.WindowSize ws;
             int cols, rows;
@@ -28,6 +33,7 @@ public class BouncyBall {
             int bounces = 0;
             int deltaRow = 1, deltaColumn = 2;
 
+            animation:
             while (true) {
 
                 // get the size of the terminal window
@@ -35,12 +41,14 @@ public class BouncyBall {
                 cols = ws.columns;
                 rows = ws.rows;
                 boolean fullRedraw = t.sizeChanged();
+                if (fullRedraw) {
+                    // the next refresh clears the terminal and repaints everything
+                    screen.resize(rows, cols).clear();
+                }
 
                 if (rows < MINIMUM_ROWS || cols < MINIMUM_COLUMNS) {
                     if (fullRedraw) {
-                        t.clear()
-                                .put(0, 0, TERMINAL_TOO_SMALL)
-                                .flush();
+                        screen.put(0, 0, TERMINAL_TOO_SMALL);
                     }
                 } else {
                     int previousRow = row;
@@ -58,30 +66,28 @@ public class BouncyBall {
                     deltaColumn = horizontal.velocity;
                     bounces += horizontal.bounces;
 
-                    if (fullRedraw) {
-                        t.clear();
-                    } else {
-                        // erase the ball at its previous position
-                        t.put(previousRow, previousColumn, " ");
-                    }
+                    // erase the ball at its previous position
+                    screen.put(previousRow, previousColumn, ' ');
 
                     if (fullRedraw || bounces != previousBounces) {
                         String statusBar = STATUS_BAR_TEMPLATE + bounces;
                         statusBar += " ".repeat(cols - statusBar.length());
-                        t.put(rows - 1, 0, statusBar,
+                        screen.put(rows - 1, 0, statusBar,
                                 TextRendition.FG_RED, TextRendition.BG_WHITE);
                     }
 
                     // print the ball at its new position
-                    t.put(row, column, "⬤", TextRendition.FG_WHITE_INTENSE);
-                    t.flush();
+                    screen.put(row, column, '⬤', TextRendition.FG_WHITE_INTENSE);
+                }
+                // repaint only the damaged cells
+                screen.refresh();
+                scheduler.frameRendered();
+
+                // handle keyboard input until the next frame is due
+                KeyStroke ks;
+                while ((ks = t.readKey(scheduler.nanosUntilNextFrame(), TimeUnit.NANOSECONDS)) != null) {
+                    if (shouldQuit(ks)) break animation;
                 }
-
-                // check for keyboard input
-                KeyStroke ks = t.readKey(false);
-                if (shouldQuit(ks)) break;
-                // wait 25ms until the next frame
-                Thread.sleep(25);
             }
         }
     }
@@ -0,0 +1,85 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DamageTrackerTest {
+
+    @Test
+    void adjacentSpansOnTheSameRowAreMerged() {
+        DamageTracker damage = new DamageTracker();
+
+        damage.add(2, 0, 1, 5);
+        damage.add(2, 5, 1, 3);
+
+        assertEquals(List.of(new Region(2, 0, 1, 8)), damage.getRegions());
+    }
+
+    @Test
+    void overlappingRegionsAreMergedWhenTheirBoundsWasteFewCells() {
+        DamageTracker damage = new DamageTracker();
+
+        damage.add(0, 0, 4, 4);
+        damage.add(2, 2, 4, 4);
+
+        assertEquals(List.of(new Region(0, 0, 6, 6)), damage.getRegions());
+    }
+
+    @Test
+    void distantRegionsRemainSeparate() {
+        DamageTracker damage = new DamageTracker();
+
+        damage.add(0, 0, 1, 1);
+        damage.add(20, 40, 1, 1);
+        damage.add(1, 1, 1, 1);
+
+        assertEquals(3, damage.getRegions().size());
+        assertEquals(new Region(0, 0, 21, 41), damage.getBounds());
+    }
+
+    @Test
+    void containedRegionsAreAbsorbed() {
+        DamageTracker damage = new DamageTracker();
+
+        damage.add(0, 0, 10, 10);
+        damage.add(3, 3, 2, 2);
+
+        assertEquals(List.of(new Region(0, 0, 10, 10)), damage.getRegions());
+    }
+
+    @Test
+    void numberOfRegionsIsBounded() {
+        DamageTracker damage = new DamageTracker();
+
+        for (int index = 0; index < 100; index++) {
+            damage.add(index * 2, index * 2, 1, 1);
+        }
+
+        List<Region> regions = damage.getRegions();
+        assertTrue(regions.size() <= 32);
+        for (int index = 0; index < 100; index++) {
+            Region cell = new Region(index * 2, index * 2, 1, 1);
+            assertTrue(regions.stream().anyMatch(region -> region.contains(cell)), "lost damage at " + cell);
+        }
+    }
+
+    @Test
+    void emptyRegionsAreIgnoredAndClearForgetsDamage() {
+        DamageTracker damage = new DamageTracker();
+
+        damage.add(1, 1, 0, 5);
+        assertTrue(damage.isEmpty());
+
+        damage.add(1, 1, 1, 5);
+        assertFalse(damage.isEmpty());
+        damage.clear();
+        assertTrue(damage.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> damage.add(0, 0, -1, 1));
+    }
+}
@@ -0,0 +1,75 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EscapeTimeoutTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void initialTimeoutIsKeptUntilTheConnectionIsKnown() {
+        EscapeTimeout timeout = new EscapeTimeout(25 * MILLIS, 5 * MILLIS, 250 * MILLIS);
+
+        for (int sequence = 0; sequence < 31; sequence++) {
+            timeout.sequenceRead(0);
+        }
+
+        assertEquals(25 * MILLIS, timeout.nanos());
+    }
+
+    @Test
+    void timeoutShrinksToTheLowerBoundWhenSequencesAreNeverSplit() {
+        EscapeTimeout timeout = new EscapeTimeout(25 * MILLIS, 5 * MILLIS, 250 * MILLIS);
+
+        for (int sequence = 0; sequence < 32; sequence++) {
+            timeout.sequenceRead(0);
+        }
+
+        assertEquals(5 * MILLIS, timeout.nanos());
+    }
+
+    @Test
+    void timeoutFollowsAHighPercentileOfTheSplitGaps() {
+        EscapeTimeout timeout = new EscapeTimeout(25 * MILLIS, 5 * MILLIS, 250 * MILLIS);
+
+        for (int gap = 1; gap <= 10; gap++) {
+            timeout.sequenceRead(gap * 10 * MILLIS);
+            timeout.sequenceRead(0);
+        }
+        assertEquals(180 * MILLIS, timeout.nanos());
+
+        timeout.sequenceRead(400 * MILLIS);
+        assertEquals(200 * MILLIS, timeout.nanos());
+        for (int sequence = 0; sequence < 10; sequence++) {
+            timeout.sequenceRead(400 * MILLIS);
+        }
+        assertEquals(250 * MILLIS, timeout.nanos());
+    }
+
+    @Test
+    void lateContinuationsRaiseTheTimeoutUnlessTheyLookTyped() {
+        EscapeTimeout timeout = new EscapeTimeout(25 * MILLIS, 5 * MILLIS, 250 * MILLIS);
+
+        timeout.lateContinuation(900 * MILLIS);
+        assertEquals(25 * MILLIS, timeout.nanos());
+        timeout.lateContinuation(40 * MILLIS);
+        assertEquals(80 * MILLIS, timeout.nanos());
+
+        timeout.reset();
+        assertEquals(25 * MILLIS, timeout.nanos());
+    }
+
+    @Test
+    void fixedTimeoutNeverChanges() {
+        EscapeTimeout timeout = EscapeTimeout.fixed(25);
+
+        timeout.sequenceRead(100 * MILLIS);
+        timeout.lateContinuation(100 * MILLIS);
+
+        assertEquals(25, timeout.nanos());
+        assertThrows(IllegalArgumentException.class, () -> new EscapeTimeout(1, 2, 3));
+    }
+}
@@ -0,0 +1,82 @@
+package net.prsv.terminality;
+
+import com.sun.jna.NativeLong;
+
+/**
+ * A {@link PosixLibC} for tests that does not touch the real terminal. Every call succeeds: the terminal attributes
+ * are left as they are, the window size is the one set with {@link #setWindowSize(int, int)}, polls report no input
+ * and writes consume all their bytes. Tests that need more override the calls they are interested in.
+ */
+class FakePosixLibC implements PosixLibC {
+
+    private volatile short rows = 24;
+    private volatile short columns = 80;
+    private volatile boolean terminal = true;
+
+    /**
+     * Sets the window size reported by {@code ioctl(TIOCGWINSZ)}; 24x80 by default.
+     */
+    void setWindowSize(int rows, int columns) {
+        this.rows = (short) rows;
+        this.columns = (short) columns;
+    }
+
+    /**
+     * Sets whether {@code isatty()} reports the file descriptors as terminals; {@code true} by default.
+     */
+    void setTerminal(boolean terminal) {
+        this.terminal = terminal;
+    }
+
+    @Override
+    public int tcgetattr(int fd, Termios termios) {
+        return 0;
+    }
+
+    @Override
+    public int tcsetattr(int fd, int optionalActions, Termios termios) {
+        return 0;
+    }
+
+    @Override
+    public int ioctl(int fd, int opt, WinSize winsize) {
+        winsize.ws_row = rows;
+        winsize.ws_col = columns;
+        return 0;
+    }
+
+    @Override
+    public int isatty(int fd) {
+        return terminal ? 1 : 0;
+    }
+
+    @Override
+    public int poll(PollFd descriptors, NfdsT count, int timeoutMillis) {
+        return 0;
+    }
+
+    @Override
+    public int poll(PollFd[] descriptors, NfdsT count, int timeoutMillis) {
+        return 0;
+    }
+
+    @Override
+    public int pipe(int[] fds) {
+        return 0;
+    }
+
+    @Override
+    public NativeLong read(int fd, byte[] buffer, NativeLong count) {
+        return new NativeLong(0);
+    }
+
+    @Override
+    public NativeLong write(int fd, byte[] buffer, NativeLong count) {
+        return count;
+    }
+
+    @Override
+    public int close(int fd) {
+        return 0;
+    }
+}
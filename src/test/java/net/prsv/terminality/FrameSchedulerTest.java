@@ -0,0 +1,97 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameSchedulerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final LinkOutputStream link = new LinkOutputStream();
+    private final OutputMeter meter = new OutputMeter(link, clock::get);
+
+    @Test
+    void framesAreDueAtTheRequestedRateOnAFastLink() throws IOException {
+        FrameScheduler scheduler = new FrameScheduler(meter, 50, clock::get);
+        assertTrue(scheduler.isFrameDue());
+
+        meter.write(new byte[1000], 0, 1000);
+        scheduler.frameRendered();
+
+        assertFalse(scheduler.isFrameDue());
+        assertEquals(20_000_000, scheduler.nanosUntilNextFrame());
+        assertFalse(scheduler.isUnderPressure());
+        clock.addAndGet(20_000_000);
+        assertTrue(scheduler.isFrameDue());
+    }
+
+    @Test
+    void frameRateFollowsTheThroughputOfASlowLink() throws IOException {
+        FrameScheduler scheduler = new FrameScheduler(meter, 50, clock::get);
+        link.nanosPerByte = 1_000_000; // 1000 bytes per second
+
+        meter.write(new byte[100], 0, 100);
+        scheduler.frameRendered();
+
+        assertTrue(scheduler.isUnderPressure());
+        assertEquals(10.0, scheduler.getFramesPerSecond(), 1e-9);
+        assertEquals(100_000_000, scheduler.nanosUntilNextFrame());
+    }
+
+    @Test
+    void pressureEndsWhenFramesBecomeSmallEnough() throws IOException {
+        FrameScheduler scheduler = new FrameScheduler(meter, 50, clock::get);
+        link.nanosPerByte = 1_000_000;
+        meter.write(new byte[100], 0, 100);
+        scheduler.frameRendered();
+
+        meter.write(new byte[5], 0, 5);
+        scheduler.frameRendered();
+
+        assertFalse(scheduler.isUnderPressure());
+        assertEquals(50.0, scheduler.getFramesPerSecond(), 1e-9);
+    }
+
+    @Test
+    void framesHandedOverButNotYetWrittenAreCountedAsTheFrameJustRendered() throws IOException {
+        AtomicLong bytesFlushed = new AtomicLong();
+        FrameScheduler scheduler = new FrameScheduler(meter, bytesFlushed::get, 50, clock::get);
+        link.nanosPerByte = 1_000_000;
+        // the throughput measured from an earlier frame
+        meter.write(new byte[10], 0, 10);
+        bytesFlushed.addAndGet(10);
+        scheduler.frameRendered();
+
+        bytesFlushed.addAndGet(100);
+        scheduler.frameRendered();
+
+        assertTrue(scheduler.isUnderPressure());
+        assertEquals(10.0, scheduler.getFramesPerSecond(), 1e-9);
+    }
+
+    @Test
+    void frameRateMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameScheduler(meter, 0, clock::get));
+    }
+
+    private final class LinkOutputStream extends OutputStream {
+        private long nanosPerByte = 0;
+
+        @Override
+        public void write(int value) {
+            clock.addAndGet(nanosPerByte);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            clock.addAndGet(nanosPerByte * length);
+        }
+    }
+}
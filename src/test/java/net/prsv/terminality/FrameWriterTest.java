@@ -0,0 +1,96 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameWriterTest {
+
+    @Test
+    void flushedFramesAreWrittenByTheWriterThread() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FrameWriter writer = new FrameWriter(output);
+        writer.start();
+
+        writer.write(ascii("frame"));
+        writer.flush();
+        writer.close();
+
+        assertEquals("frame", output.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void framesFlushedWhileTheWriterIsBusyAreMergedIntoOneWrite() throws Exception {
+        BlockingOutputStream output = new BlockingOutputStream();
+        FrameWriter writer = new FrameWriter(output);
+        writer.start();
+
+        writer.write(ascii("first"));
+        writer.flush();
+        assertTrue(output.writeStarted.await(1, TimeUnit.SECONDS));
+        writer.write(ascii("second"));
+        writer.flush();
+        writer.write(ascii("third"));
+        writer.flush();
+        assertTrue(writer.isFramePending());
+        output.release.countDown();
+        writer.close();
+
+        assertEquals(List.of("first", "secondthird"), output.writes);
+        assertFalse(writer.isFramePending());
+    }
+
+    @Test
+    void writeFailureIsReportedByTheNextFlush() throws Exception {
+        FrameWriter writer = new FrameWriter(new OutputStream() {
+            @Override
+            public void write(int value) throws IOException {
+                throw new IOException("expected output failure");
+            }
+        });
+        writer.start();
+        writer.write(ascii("lost"));
+        writer.flush();
+
+        assertThrows(IOException.class, writer::close);
+        assertThrows(IOException.class, writer::flush);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final class BlockingOutputStream extends OutputStream {
+        private final CountDownLatch writeStarted = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> writes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void write(int value) {
+            write(new byte[] {(byte) value}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            writeStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            writes.add(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+        }
+    }
+}
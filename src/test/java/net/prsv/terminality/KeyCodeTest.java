@@ -0,0 +1,73 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyCodeTest {
+
+    @Test
+    void unmodifiedCharacterCodeIsTheCharacter() {
+        assertEquals('q', KeyCode.character('q', false, false, false));
+        assertEquals('s' | KeyCode.CTRL, KeyCode.of(KeyStroke.character('s', true, false)));
+        assertEquals(KeyType.CHARACTER, KeyCode.type('q'));
+        assertEquals('q', KeyCode.character('q'));
+    }
+
+    @Test
+    void codesRoundTripThroughKeyStrokes() {
+        KeyStroke[] keyStrokes = {
+                KeyStroke.character('é', false, true),
+                KeyStroke.character('A', true, false, true).withAction(KeyAction.RELEASE),
+                KeyStroke.special(KeyType.F12, true, true, true),
+                KeyStroke.special(KeyType.ARROW_UP, false, false, false).withAction(KeyAction.REPEAT),
+                KeyStroke.eof()
+        };
+
+        for (KeyStroke keyStroke : keyStrokes) {
+            int code = KeyCode.of(keyStroke);
+            assertTrue(code >= 0);
+            assertEquals(keyStroke, KeyCode.toKeyStroke(code));
+            assertEquals(keyStroke.type, KeyCode.type(code));
+            assertEquals(keyStroke.ctrl, KeyCode.isCtrl(code));
+            assertEquals(keyStroke.alt, KeyCode.isAlt(code));
+            assertEquals(keyStroke.shift, KeyCode.isShift(code));
+            assertEquals(keyStroke.getAction(), KeyCode.action(code));
+        }
+    }
+
+    @Test
+    void actionCanBeRemovedFromACode() {
+        int release = KeyCode.withAction(KeyCode.special(KeyType.HOME, false, true, false), KeyAction.RELEASE);
+
+        assertEquals(KeyAction.RELEASE, KeyCode.action(release));
+        assertEquals(KeyCode.special(KeyType.HOME, false, true, false), KeyCode.withoutAction(release));
+    }
+
+    @Test
+    void noneAndEofAreDistinct() {
+        assertEquals(KeyCode.NONE, KeyCode.of(null));
+        assertNull(KeyCode.toKeyStroke(KeyCode.NONE));
+        assertEquals(KeyType.EOF, KeyCode.type(KeyCode.EOF));
+        assertFalse(KeyCode.EOF == KeyCode.NONE);
+        assertEquals("NONE", KeyCode.toString(KeyCode.NONE));
+    }
+
+    @Test
+    void payloadsAreNotPartOfTheCode() {
+        int paste = KeyCode.of(KeyStroke.paste("text"));
+        MouseEvent event = new MouseEvent(MouseEvent.Type.PRESS, MouseEvent.LEFT_BUTTON, 1, 2);
+        int mouse = KeyCode.of(KeyStroke.mouse(event, true, false, false));
+
+        assertEquals(KeyType.PASTE, KeyCode.type(paste));
+        assertEquals(KeyType.MOUSE, KeyCode.type(mouse));
+        assertTrue(KeyCode.isCtrl(mouse));
+        assertThrows(IllegalArgumentException.class, () -> KeyCode.toKeyStroke(paste));
+        assertThrows(IllegalArgumentException.class, () -> KeyCode.toKeyStroke(mouse));
+        assertThrows(IllegalArgumentException.class, () -> KeyCode.toKeyStroke(0x00ff0000));
+    }
+}
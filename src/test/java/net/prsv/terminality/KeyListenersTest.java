@@ -0,0 +1,205 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyListenersTest {
+
+    private static final int KEYS = 2000;
+
+    @Test
+    void everyListenerReceivesTheKeystrokesInOrderOnAPool() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            KeyListeners listeners = new KeyListeners();
+            List<List<Character>> received = new ArrayList<>();
+            CountDownLatch done = new CountDownLatch(3);
+            AtomicInteger concurrent = new AtomicInteger();
+            AtomicInteger maxConcurrent = new AtomicInteger();
+            for (int index = 0; index < 3; index++) {
+                List<Character> characters = Collections.synchronizedList(new ArrayList<>());
+                received.add(characters);
+                listeners.add(keyStroke -> {
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    characters.add(keyStroke.c);
+                    concurrent.decrementAndGet();
+                    if (characters.size() == KEYS) {
+                        done.countDown();
+                    }
+                }, pool);
+            }
+
+            for (int index = 0; index < KEYS; index++) {
+                listeners.dispatch(KeyStroke.character((char) ('0' + index % 64), false, false));
+            }
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            for (List<Character> characters : received) {
+                for (int index = 0; index < KEYS; index++) {
+                    assertEquals((char) ('0' + index % 64), characters.get(index));
+                }
+            }
+            assertTrue(maxConcurrent.get() <= 3);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failingListenerKeepsReceivingKeystrokes() throws InterruptedException {
+        KeyListeners listeners = new KeyListeners();
+        List<KeyStroke> received = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        listeners.add(keyStroke -> {
+            received.add(keyStroke);
+            throw new IllegalStateException("expected listener failure");
+        }, Runnable::run);
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((failedThread, failure) -> failures.add(failure));
+        try {
+            listeners.dispatch(KeyStroke.character('a', false, false));
+            listeners.dispatch(KeyStroke.character('b', false, false));
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(2, received.size());
+        assertEquals(2, failures.size());
+    }
+
+    @Test
+    void listenerThatThrowsAnErrorKeepsItsMailboxDrained() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(2, task -> {
+            Thread thread = new Thread(task);
+            thread.setUncaughtExceptionHandler((failedThread, failure) -> { });
+            return thread;
+        });
+        try {
+            KeyListeners listeners = new KeyListeners(2);
+            AtomicInteger failing = new AtomicInteger();
+            AtomicInteger healthy = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(2);
+            listeners.add(keyStroke -> {
+                if (failing.incrementAndGet() == KEYS) {
+                    done.countDown();
+                }
+                throw new AssertionError("expected listener error");
+            }, pool);
+            listeners.add(keyStroke -> {
+                if (healthy.incrementAndGet() == KEYS) {
+                    done.countDown();
+                }
+            }, pool);
+
+            // more keystrokes than the mailboxes hold, so the reader would wait forever for an undrained mailbox
+            Thread reader = new Thread(() -> {
+                try {
+                    for (int index = 0; index < KEYS; index++) {
+                        listeners.dispatch(KeyStroke.character('a', false, false));
+                    }
+                } catch (InterruptedException ignored) {
+                    // the test failed
+                }
+            });
+            reader.start();
+            try {
+                assertTrue(done.await(5, TimeUnit.SECONDS));
+            } finally {
+                reader.interrupt();
+                reader.join();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void removedListenerReceivesNothingMore() throws InterruptedException {
+        KeyListeners listeners = new KeyListeners();
+        List<KeyStroke> received = new ArrayList<>();
+        Consumer<KeyStroke> listener = received::add;
+        listeners.add(listener, Runnable::run);
+
+        listeners.dispatch(KeyStroke.character('a', false, false));
+        assertTrue(listeners.remove(listener));
+        listeners.dispatch(KeyStroke.character('b', false, false));
+
+        assertEquals(1, received.size());
+        assertTrue(listeners.isEmpty());
+        assertFalse(listeners.remove(listener));
+        assertNotNull(KeyListeners.defaultExecutor());
+    }
+
+    @Test
+    void fullMailboxMakesTheReaderWaitAndMotionIsCoalesced() throws InterruptedException {
+        List<Runnable> drains = Collections.synchronizedList(new ArrayList<>());
+        KeyListeners listeners = new KeyListeners(2);
+        List<KeyStroke> received = Collections.synchronizedList(new ArrayList<>());
+        listeners.add(received::add, drains::add);
+        for (int column = 0; column < 100; column++) {
+            listeners.dispatch(KeyStroke.mouse(new MouseEvent(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 0, column),
+                    false, false, false));
+        }
+        listeners.dispatch(KeyStroke.character('a', false, false));
+
+        Thread reader = new Thread(() -> {
+            try {
+                listeners.dispatch(KeyStroke.character('b', false, false));
+            } catch (InterruptedException ignored) {
+                // the test failed
+            }
+        });
+        reader.start();
+        reader.join(50);
+        assertTrue(reader.isAlive());
+
+        drains.get(0).run();
+        reader.join(5000);
+        assertFalse(reader.isAlive());
+        // the drain may have taken the last keystroke as well; otherwise another drain has been scheduled for it
+        if (received.size() < 3) {
+            drains.get(drains.size() - 1).run();
+        }
+        assertEquals(3, received.size());
+        assertEquals(99, received.get(0).getMouseEvent().column);
+        assertEquals('b', received.get(2).c);
+    }
+
+    @Test
+    void listenerWhoseExecutorRejectsItIsRemovedAndTheRejectionReported() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        KeyListeners listeners = new KeyListeners();
+        listeners.add(keyStroke -> { }, executor);
+        List<Throwable> failures = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((failedThread, failure) -> failures.add(failure));
+        try {
+            listeners.dispatch(KeyStroke.character('a', false, false));
+            listeners.dispatch(KeyStroke.character('b', false, false));
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof RejectedExecutionException);
+        assertTrue(listeners.isEmpty());
+    }
+}
@@ -0,0 +1,193 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyMapTest {
+
+    private static final int CTRL_X = 'x' | KeyCode.CTRL;
+    private static final int CTRL_S = 's' | KeyCode.CTRL;
+    private static final int CTRL_C = 'c' | KeyCode.CTRL;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void singleKeysAreResolvedImmediately() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get)
+                .bind("quit", 'q')
+                .bind("up", KeyStroke.special(KeyType.ARROW_UP, false, false, false))
+                .bind("word up", KeyStroke.special(KeyType.ARROW_UP, true, false, false))
+                .bind("greek", KeyCode.character('λ', false, true, false));
+
+        assertEquals(List.of("quit"), press(keyMap, 'q'));
+        assertEquals(List.of("up"), press(keyMap, KeyStroke.special(KeyType.ARROW_UP, false, false, false)));
+        assertEquals(List.of("word up"), press(keyMap, KeyCode.special(KeyType.ARROW_UP, true, false, false)));
+        assertEquals(List.of("greek"), press(keyMap, KeyCode.character('λ', false, true, false)));
+        assertEquals(List.of(), press(keyMap, 'Q'));
+        assertEquals(List.of(), press(keyMap, KeyCode.NONE));
+    }
+
+    @Test
+    void repeatsTriggerBindingsAndReleasesAreIgnored() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get).bind("left", KeyCode.special(KeyType.ARROW_LEFT,
+                false, false, false));
+        int left = KeyCode.special(KeyType.ARROW_LEFT, false, false, false);
+
+        assertEquals(List.of("left"), press(keyMap, KeyCode.withAction(left, KeyAction.REPEAT)));
+        assertEquals(List.of(), press(keyMap, KeyCode.withAction(left, KeyAction.RELEASE)));
+    }
+
+    @Test
+    void chordsAreResolvedKeyByKey() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get)
+                .bind("save", CTRL_X, CTRL_S)
+                .bind("exit", CTRL_X, CTRL_C)
+                .bind("search", CTRL_S);
+
+        assertEquals(List.of(), press(keyMap, CTRL_X));
+        assertTrue(keyMap.isPending());
+        assertEquals(List.of("save"), press(keyMap, CTRL_S));
+        assertFalse(keyMap.isPending());
+        assertEquals(List.of("search"), press(keyMap, CTRL_S));
+
+        assertEquals(List.of(), press(keyMap, CTRL_X));
+        assertEquals(List.of(), press(keyMap, 'k'));
+        assertFalse(keyMap.isPending());
+        assertEquals("exit", keyMap.get(CTRL_X, CTRL_C));
+        assertNull(keyMap.get(CTRL_X));
+    }
+
+    @Test
+    void chordsTimeOut() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get)
+                .setChordTimeout(500, TimeUnit.MILLISECONDS)
+                .bind("save", CTRL_X, CTRL_S)
+                .bind("search", CTRL_S);
+
+        press(keyMap, CTRL_X);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(499));
+        assertNull(keyMap.expire());
+        assertTrue(keyMap.isPending());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(List.of("search"), press(keyMap, CTRL_S));
+    }
+
+    @Test
+    void keyThatAlsoStartsAChordWaitsForTheTimeout() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get)
+                .setChordTimeout(50, TimeUnit.MILLISECONDS)
+                .bind("escape", KeyStroke.special(KeyType.ESCAPE, false, false, false))
+                .bind("meta-x", KeyStroke.special(KeyType.ESCAPE, false, false, false),
+                        KeyStroke.character('x', false, false));
+        int escape = KeyCode.special(KeyType.ESCAPE, false, false, false);
+
+        assertEquals(List.of(), press(keyMap, escape));
+        assertEquals(List.of("meta-x"), press(keyMap, 'x'));
+
+        assertEquals(List.of(), press(keyMap, escape));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals("escape", keyMap.expire());
+        assertFalse(keyMap.isPending());
+    }
+
+    @Test
+    void keyThatDoesNotContinueTheChordTriggersTheActionOfTheKeyBeforeIt() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get)
+                .bind("escape", KeyStroke.special(KeyType.ESCAPE, false, false, false))
+                .bind("meta-x", KeyStroke.special(KeyType.ESCAPE, false, false, false),
+                        KeyStroke.character('x', false, false))
+                .bind("quit", 'q');
+        int escape = KeyCode.special(KeyType.ESCAPE, false, false, false);
+
+        assertEquals(List.of(), press(keyMap, escape));
+        assertEquals(List.of("escape", "quit"), press(keyMap, 'q'));
+        assertFalse(keyMap.isPending());
+
+        assertEquals(List.of(), press(keyMap, escape));
+        assertEquals(List.of("escape"), press(keyMap, escape));
+        assertTrue(keyMap.isPending());
+        assertEquals(List.of("meta-x"), press(keyMap, 'x'));
+    }
+
+    @Test
+    void keyAfterTheTimeoutTriggersTheActionOfTheKeyBeforeItWithoutExpire() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get)
+                .setChordTimeout(50, TimeUnit.MILLISECONDS)
+                .bind("escape", KeyStroke.special(KeyType.ESCAPE, false, false, false))
+                .bind("meta-x", KeyStroke.special(KeyType.ESCAPE, false, false, false),
+                        KeyStroke.character('x', false, false))
+                .bind("quit", 'q');
+        int escape = KeyCode.special(KeyType.ESCAPE, false, false, false);
+
+        assertEquals(List.of(), press(keyMap, escape));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(List.of("escape", "quit"), press(keyMap, 'q'));
+
+        assertEquals(List.of(), press(keyMap, escape));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(List.of("escape"), press(keyMap, 'x'));
+        assertNull(keyMap.expire());
+    }
+
+    @Test
+    void unbindingPrunesChordsThatLeadNowhere() {
+        KeyMap<String> keyMap = new KeyMap<String>(clock::get)
+                .bind("save", CTRL_X, CTRL_S)
+                .bind("prefix", CTRL_X);
+
+        keyMap.unbind(CTRL_X, CTRL_S);
+
+        assertEquals(List.of("prefix"), press(keyMap, CTRL_X));
+        keyMap.unbind(CTRL_X);
+        assertEquals(List.of(), press(keyMap, CTRL_X));
+        assertFalse(keyMap.isPending());
+    }
+
+    @Test
+    void manyBindingsOutsideTheDenseTableCanBeBoundAndUnbound() {
+        KeyMap<Integer> keyMap = new KeyMap<>(clock::get);
+        for (char c = 0x400; c < 0x800; c++) {
+            keyMap.bind((int) c, KeyCode.character(c, false, false, false));
+        }
+        for (char c = 0x400; c < 0x800; c += 2) {
+            keyMap.unbind(KeyCode.character(c, false, false, false));
+        }
+
+        for (char c = 0x400; c < 0x800; c++) {
+            List<Integer> expected = c % 2 == 0 ? List.of() : List.of((int) c);
+            assertEquals(expected, press(keyMap, KeyCode.character(c, false, false, false)));
+        }
+    }
+
+    @Test
+    void invalidBindingsAreRejected() {
+        KeyMap<String> keyMap = new KeyMap<>();
+
+        assertThrows(IllegalArgumentException.class, () -> keyMap.bind("nothing", new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> keyMap.bind("none", KeyCode.NONE));
+        assertThrows(NullPointerException.class, () -> keyMap.bind(null, 'a'));
+        assertThrows(IllegalArgumentException.class, () -> keyMap.setChordTimeout(-1, TimeUnit.SECONDS));
+    }
+
+    private static <A> List<A> press(KeyMap<A> keyMap, int code) {
+        List<A> actions = new ArrayList<>();
+        keyMap.press(code, actions::add);
+        return actions;
+    }
+
+    private static <A> List<A> press(KeyMap<A> keyMap, KeyStroke keyStroke) {
+        List<A> actions = new ArrayList<>();
+        keyMap.press(keyStroke, actions::add);
+        return actions;
+    }
+}
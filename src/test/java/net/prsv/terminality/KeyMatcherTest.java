@@ -0,0 +1,155 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyMatcherTest {
+
+    private final KeyMatcher.Match match = new KeyMatcher.Match();
+
+    @Test
+    void builtInTableCoversRxvtAndTheLinuxConsole() {
+        KeyMatcher matcher = KeyMatcher.builtIn();
+
+        assertKey(matcher, "[a", KeyType.ARROW_UP, false, true);
+        assertKey(matcher, "Od", KeyType.ARROW_LEFT, true, false);
+        assertKey(matcher, "[7~", KeyType.HOME, false, false);
+        assertKey(matcher, "[8^", KeyType.END, true, false);
+        assertKey(matcher, "[2$", KeyType.INSERT, false, true);
+        assertKey(matcher, "[[A", KeyType.F1, false, false);
+        assertKey(matcher, "[[E", KeyType.F5, false, false);
+        assertKey(matcher, "[1~", KeyType.HOME, false, false);
+
+        assertEquals(KeyMatcher.KEY, match(matcher, "Ok"));
+        assertEquals(KeyType.CHARACTER, KeyCode.type(match.key));
+        assertEquals('+', KeyCode.character(match.key));
+    }
+
+    @Test
+    void parameterizedKeysAreDecodedInTheSamePass() {
+        KeyMatcher matcher = KeyMatcher.builtIn();
+
+        assertKey(matcher, "[1;5A", KeyType.ARROW_UP, true, false);
+        assertKey(matcher, "[3;2~", KeyType.DELETE, false, true);
+        assertKey(matcher, "O2P", KeyType.F1, false, true);
+        assertEquals(3, match.end);
+        assertEquals(KeyMatcher.SEQUENCE, match(matcher, "[999~"));
+        assertEquals(KeyMatcher.SEQUENCE, match(matcher, "[;A"));
+    }
+
+    @Test
+    void sequencesThatAreNotKeysKeepTheirParameters() {
+        KeyMatcher matcher = KeyMatcher.builtIn();
+
+        assertEquals(KeyMatcher.SEQUENCE, match(matcher, "[<0;12;7M"));
+        assertEquals('<', match.prefix);
+        assertEquals('M', match.finalByte);
+        assertEquals(3, match.fields);
+        assertEquals(12, match.parameter1);
+        assertEquals(7, match.parameter2);
+
+        assertEquals(KeyMatcher.SEQUENCE, match(matcher, "[97;5:3u"));
+        assertEquals(97, match.parameter0);
+        assertEquals(5, match.parameter1);
+        assertEquals(3, match.eventType);
+
+        assertKey(matcher, "[1;5:2A", KeyType.ARROW_UP, true, false);
+        assertEquals(2, match.eventType);
+    }
+
+    @Test
+    void incompleteAndInvalidSequencesAreTold() {
+        KeyMatcher matcher = KeyMatcher.builtIn();
+
+        assertEquals(KeyMatcher.INCOMPLETE, match(matcher, "[1;5"));
+        assertEquals(KeyMatcher.INCOMPLETE, match(matcher, "[["));
+        assertEquals(KeyMatcher.INVALID, match(matcher, "[1\u00017x"));
+        assertEquals(3, match.end);
+        assertEquals(KeyMatcher.INVALID, match(matcher, "[" + "1".repeat(40)));
+    }
+
+    @Test
+    void terminfoCapabilitiesAreMergedIntoTheTable() throws IOException {
+        String[] strings = new String[Terminfo.KEY_SRIGHT + 1];
+        strings[Terminfo.KEY_BTAB] = "\u001b[25~";
+        strings[Terminfo.KEY_SRIGHT] = "\u001b[30~";
+        strings[Terminfo.KEY_F1] = "\u001bOP";
+        strings[Terminfo.KEY_HOME] = "\u0001";
+        Terminfo terminfo = Terminfo.parse(compiledEntry("test-terminal", strings));
+
+        assertEquals("\u001b[25~", terminfo.getString(Terminfo.KEY_BTAB));
+        assertNull(terminfo.getString(Terminfo.KEY_UP));
+        assertNull(terminfo.getString(Terminfo.KEY_F12));
+
+        KeyMatcher matcher = KeyMatcher.compile(terminfo);
+        assertKey(matcher, "[25~", KeyType.REVERSE_TAB, false, false);
+        assertKey(matcher, "[30~", KeyType.ARROW_RIGHT, false, true);
+        assertKey(matcher, "[1;5A", KeyType.ARROW_UP, true, false);
+        assertEquals(KeyMatcher.SEQUENCE, match(KeyMatcher.builtIn(), "[25~"));
+    }
+
+    @Test
+    void malformedTerminfoEntriesAreRejected() {
+        assertThrows(IOException.class, () -> Terminfo.parse(new byte[]{0x1a, 0x01}));
+        assertThrows(IOException.class, () -> Terminfo.parse("not terminfo".getBytes(StandardCharsets.US_ASCII)));
+        assertNull(Terminfo.load("../passwd"));
+        assertEquals(KeyMatcher.builtIn(), KeyMatcher.forTerminal(null));
+    }
+
+    private int match(KeyMatcher matcher, String sequence) {
+        byte[] bytes = sequence.getBytes(StandardCharsets.ISO_8859_1);
+        return matcher.match(bytes, 0, bytes.length, match);
+    }
+
+    private void assertKey(KeyMatcher matcher, String sequence, KeyType keyType, boolean ctrl, boolean shift) {
+        assertEquals(KeyMatcher.KEY, match(matcher, sequence), sequence);
+        assertEquals(keyType, KeyCode.type(match.key), sequence);
+        assertEquals(ctrl, KeyCode.isCtrl(match.key), sequence);
+        assertEquals(shift, KeyCode.isShift(match.key), sequence);
+        assertFalse(KeyCode.isAlt(match.key), sequence);
+        assertTrue(match.end <= sequence.length(), sequence);
+    }
+
+    // builds an entry in the legacy compiled format with no booleans and no numbers
+    private static byte[] compiledEntry(String name, String[] strings) {
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        short[] offsets = new short[strings.length];
+        for (int index = 0; index < strings.length; index++) {
+            if (strings[index] == null) {
+                offsets[index] = -1;
+            } else {
+                offsets[index] = (short) table.size();
+                table.writeBytes(strings[index].getBytes(StandardCharsets.ISO_8859_1));
+                table.write(0);
+            }
+        }
+        byte[] names = (name + "\0").getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        for (int value : new int[]{0432, names.length, 0, 0, strings.length, table.size()}) {
+            writeShort(entry, value);
+        }
+        entry.writeBytes(names);
+        if (names.length % 2 != 0) {
+            entry.write(0);
+        }
+        for (short offset : offsets) {
+            writeShort(entry, offset);
+        }
+        entry.writeBytes(table.toByteArray());
+        return entry.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream output, int value) {
+        output.write(value & 0xff);
+        output.write((value >> 8) & 0xff);
+    }
+}
@@ -0,0 +1,118 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyPublisherTest {
+
+    @Test
+    void theReaderWaitsUntilEverySubscriberHasDemand() throws InterruptedException {
+        KeyPublisher publisher = new KeyPublisher();
+        RecordingSubscriber first = new RecordingSubscriber();
+        RecordingSubscriber second = new RecordingSubscriber();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        CountDownLatch demanded = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try {
+                publisher.awaitDemand();
+                demanded.countDown();
+            } catch (InterruptedException ignored) {
+                // the test failed
+            }
+        });
+        reader.start();
+
+        try {
+            first.subscription.request(1);
+            assertFalse(demanded.await(100, TimeUnit.MILLISECONDS));
+            second.subscription.request(1);
+            assertTrue(demanded.await(5, TimeUnit.SECONDS));
+        } finally {
+            reader.interrupt();
+        }
+    }
+
+    @Test
+    void keystrokesAreDeliveredOnlyAsRequested() throws InterruptedException {
+        KeyPublisher publisher = new KeyPublisher();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(2);
+
+        publisher.awaitDemand();
+        publisher.publish(KeyStroke.character('a', false, false));
+        publisher.publish(KeyStroke.character('b', false, false));
+        publisher.publish(KeyStroke.character('c', false, false));
+
+        assertEquals(List.of("a", "b"), subscriber.events);
+    }
+
+    @Test
+    void theEndOfTheInputCompletesTheSubscriptions() throws InterruptedException {
+        KeyPublisher publisher = new KeyPublisher();
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        publisher.publish(KeyStroke.character('a', false, false));
+        publisher.publish(KeyStroke.eof());
+        publisher.publish(KeyStroke.character('b', false, false));
+
+        assertEquals(List.of("a", "complete"), subscriber.events);
+        assertFalse(publisher.hasSubscribers());
+        publisher.awaitDemand();
+    }
+
+    @Test
+    void aNonPositiveRequestOrACancellationEndsTheSubscription() {
+        KeyPublisher publisher = new KeyPublisher();
+        RecordingSubscriber invalid = new RecordingSubscriber();
+        RecordingSubscriber cancelled = new RecordingSubscriber();
+        publisher.subscribe(invalid);
+        publisher.subscribe(cancelled);
+
+        invalid.subscription.request(0);
+        cancelled.subscription.cancel();
+        publisher.fail(new IllegalStateException());
+
+        assertEquals(List.of("error IllegalArgumentException"), invalid.events);
+        assertEquals(List.of(), cancelled.events);
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<KeyStroke> {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(KeyStroke item) {
+            events.add(String.valueOf(item.c));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            events.add("error " + throwable.getClass().getSimpleName());
+        }
+
+        @Override
+        public void onComplete() {
+            events.add("complete");
+        }
+    }
+}
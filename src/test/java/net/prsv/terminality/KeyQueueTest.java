@@ -0,0 +1,75 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyQueueTest {
+
+    @Test
+    void consecutiveMotionEventsAreCollapsedIntoTheLatest() {
+        KeyQueue queue = new KeyQueue(8);
+        KeyStroke key = KeyStroke.character('a', false, false);
+
+        queue.offer(key);
+        for (int column = 0; column < 100; column++) {
+            queue.offer(mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, column, false));
+        }
+        queue.offer(mouse(MouseEvent.Type.DRAG, MouseEvent.LEFT_BUTTON, 1, false));
+        queue.offer(mouse(MouseEvent.Type.DRAG, MouseEvent.LEFT_BUTTON, 2, false));
+        queue.offer(mouse(MouseEvent.Type.DRAG, MouseEvent.LEFT_BUTTON, 3, true));
+
+        assertEquals(List.of(key, mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 99, false),
+                mouse(MouseEvent.Type.DRAG, MouseEvent.LEFT_BUTTON, 2, false),
+                mouse(MouseEvent.Type.DRAG, MouseEvent.LEFT_BUTTON, 3, true)), drain(queue));
+        assertEquals(100, queue.coalesced());
+    }
+
+    @Test
+    void pressesAndKeysAreNeverCollapsed() {
+        KeyQueue queue = new KeyQueue(8);
+        KeyStroke press = mouse(MouseEvent.Type.PRESS, MouseEvent.LEFT_BUTTON, 0, false);
+
+        queue.offer(mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 0, false));
+        queue.offer(press);
+        queue.offer(press);
+        queue.offer(mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 1, false));
+
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.coalesced());
+    }
+
+    @Test
+    void motionIsCoalescedEvenWhenTheQueueIsFull() throws InterruptedException {
+        KeyQueue queue = new KeyQueue(2);
+
+        assertTrue(queue.offer(KeyStroke.character('a', false, false)));
+        assertTrue(queue.offer(mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 0, false)));
+        assertTrue(queue.offer(mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 1, false)));
+        assertFalse(queue.offer(KeyStroke.character('b', false, false)));
+
+        assertEquals(KeyStroke.character('a', false, false), queue.poll(1, TimeUnit.MILLISECONDS));
+        assertEquals(mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 1, false), queue.poll());
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    private static List<KeyStroke> drain(KeyQueue queue) {
+        List<KeyStroke> keyStrokes = new ArrayList<>();
+        KeyStroke keyStroke;
+        while ((keyStroke = queue.poll()) != null) {
+            keyStrokes.add(keyStroke);
+        }
+        return keyStrokes;
+    }
+
+    private static KeyStroke mouse(MouseEvent.Type type, int button, int column, boolean ctrl) {
+        return KeyStroke.mouse(new MouseEvent(type, button, 0, column), ctrl, false, false);
+    }
+}
@@ -95,6 +95,28 @@ class KeyStrokeTest {
         assertEquals(1, keyStrokes.size());
     }
 
+    @Test
+    void keyStrokesThatDifferOnlyInModifiersHaveDistinctHashCodes() {
+        Set<Integer> hashCodes = new HashSet<>();
+        int keyStrokes = 0;
+        for (char c = ' '; c < 0x7f; c++) {
+            for (int modifiers = 0; modifiers < 8; modifiers++) {
+                hashCodes.add(KeyStroke.character(c, (modifiers & 4) != 0, (modifiers & 2) != 0,
+                        (modifiers & 1) != 0).hashCode());
+                keyStrokes++;
+            }
+        }
+        for (KeyType type : new KeyType[]{KeyType.ARROW_UP, KeyType.F1, KeyType.HOME, KeyType.DELETE}) {
+            for (int modifiers = 0; modifiers < 8; modifiers++) {
+                hashCodes.add(KeyStroke.special(type, (modifiers & 4) != 0, (modifiers & 2) != 0,
+                        (modifiers & 1) != 0).hashCode());
+                keyStrokes++;
+            }
+        }
+
+        assertEquals(keyStrokes, hashCodes.size());
+    }
+
     @Test
     void toStringEscapesControlCharacters() {
         assertCharacterText('\b', "\\b");
@@ -0,0 +1,85 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMean());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    void largeValuesAreWithinOnePercent() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = {1_234, 56_789, 2_500_000, 17_000_000, 987_654_321};
+        for (long value : values) {
+            histogram.record(value);
+            histogram.record(1);
+        }
+
+        for (int index = 0; index < values.length; index++) {
+            double percentile = 100.0 * (values.length + index + 1) / (2 * values.length);
+            long reported = histogram.getValueAtPercentile(percentile);
+            assertTrue(Math.abs(reported - values[index]) <= values[index] / 100,
+                    values[index] + " reported as " + reported);
+        }
+        assertEquals(987_654_321, histogram.getMax());
+    }
+
+    @Test
+    void bucketIndicesAreContiguous() {
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestEquivalentValue(index - 1) < value);
+        }
+    }
+
+    @Test
+    void dumpWritesThePercentileDistribution() throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_000);
+        histogram.record(3_000_000);
+        StringBuilder out = new StringBuilder();
+
+        histogram.dump(out, 1_000_000);
+
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[0].contains("Percentile"));
+        assertTrue(lines[2].trim().startsWith("1.00"), lines[2]);
+        assertTrue(lines[2].contains(" 0.500000000000          1 "), lines[2]);
+        assertTrue(lines[3].trim().startsWith("3.0"), lines[3]);
+        assertTrue(lines[lines.length - 1].contains("Total count    =            2"));
+    }
+
+    @Test
+    void percentileMustBeInRange() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+}
@@ -0,0 +1,75 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OutputMeterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void throughputIsUnknownUntilAWriteBlocks() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        OutputMeter meter = new OutputMeter(output, clock::get);
+
+        meter.write(new byte[] {1, 2, 3}, 0, 3);
+
+        assertArrayEquals(new byte[] {1, 2, 3}, output.toByteArray());
+        assertEquals(3, meter.bytesWritten());
+        assertEquals(Double.POSITIVE_INFINITY, meter.throughput());
+    }
+
+    @Test
+    void throughputIsBytesPerSecondBlockedInWrites() throws IOException {
+        OutputMeter meter = new OutputMeter(new SlowOutputStream(clock, 1_000_000), clock::get);
+
+        meter.write(new byte[100], 0, 100);
+        meter.write(new byte[50], 0, 50);
+
+        assertEquals(150, meter.bytesWritten());
+        assertEquals(150_000_000, meter.blockedNanos());
+        assertEquals(1000.0, meter.throughput(), 1e-6);
+    }
+
+    @Test
+    void recentWritesOutweighOlderOnes() throws IOException {
+        SlowOutputStream slow = new SlowOutputStream(clock, 1_000_000);
+        OutputMeter meter = new OutputMeter(slow, clock::get);
+        meter.write(new byte[1000], 0, 1000);
+
+        slow.nanosPerByte = 1_000;
+        for (int write = 0; write < 40; write++) {
+            meter.write(new byte[1000], 0, 1000);
+        }
+
+        assertEquals(1_000_000.0, meter.throughput(), 10_000.0);
+    }
+
+    // advances the clock as if every byte took the configured time to transmit
+    private static final class SlowOutputStream extends OutputStream {
+        private final AtomicLong clock;
+        private long nanosPerByte;
+
+        private SlowOutputStream(AtomicLong clock, long nanosPerByte) {
+            this.clock = clock;
+            this.nanosPerByte = nanosPerByte;
+        }
+
+        @Override
+        public void write(int value) {
+            clock.addAndGet(nanosPerByte);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            clock.addAndGet(nanosPerByte * length);
+        }
+    }
+}
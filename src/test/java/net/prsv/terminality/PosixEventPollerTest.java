@@ -0,0 +1,124 @@
+package net.prsv.terminality;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.NativeLong;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PosixEventPollerTest {
+
+    @Test
+    void pollsTheInputAndTheWakeupPipeWithTheTimeoutInMilliseconds() throws IOException {
+        PipePosixLibC libc = new PipePosixLibC();
+        PosixEventPoller poller = new PosixEventPoller(libc, PosixLibC.STDIN_FD);
+
+        poller.await(2_500_000L);
+        poller.await(Long.MAX_VALUE);
+
+        assertEquals(List.of(PosixLibC.STDIN_FD, PipePosixLibC.READ_FD), libc.polledDescriptors);
+        assertEquals(List.of(3, -1), libc.pollTimeouts);
+    }
+
+    @Test
+    void wakeupsWriteOneByteUntilThePipeIsDrained() throws IOException {
+        PipePosixLibC libc = new PipePosixLibC();
+        PosixEventPoller poller = new PosixEventPoller(libc, PosixLibC.STDIN_FD);
+
+        poller.wakeup();
+        poller.wakeup();
+        assertEquals(1, libc.pendingBytes);
+
+        poller.await(Long.MAX_VALUE);
+        assertEquals(0, libc.pendingBytes);
+        poller.wakeup();
+        assertEquals(1, libc.pendingBytes);
+    }
+
+    @Test
+    void closesThePipeOnceAndIgnoresLaterWakeups() throws IOException {
+        PipePosixLibC libc = new PipePosixLibC();
+        PosixEventPoller poller = new PosixEventPoller(libc, PosixLibC.STDIN_FD);
+
+        poller.close();
+        poller.close();
+        poller.wakeup();
+
+        assertEquals(List.of(PipePosixLibC.READ_FD, PipePosixLibC.WRITE_FD), libc.closed);
+        assertEquals(0, libc.pendingBytes);
+    }
+
+    @Test
+    void reportsErrorsOfTheInputAsIoExceptions() throws IOException {
+        PipePosixLibC libc = new PipePosixLibC();
+        PosixEventPoller poller = new PosixEventPoller(libc, PosixLibC.STDIN_FD);
+
+        libc.inputEvents = PosixLibC.POLLERR;
+        assertThrows(IOException.class, () -> poller.await(0));
+
+        libc.inputEvents = 0;
+        libc.pollFailure = new LastErrorException(PosixLibC.EINTR);
+        poller.await(0);
+        libc.pollFailure = new LastErrorException(5);
+        assertThrows(IOException.class, () -> poller.await(0));
+    }
+
+    // a pipe whose bytes are counted, and a poll() that reports whether it has any
+    private static final class PipePosixLibC extends FakePosixLibC {
+        private static final int READ_FD = 7;
+        private static final int WRITE_FD = 8;
+
+        private final List<Integer> polledDescriptors = new ArrayList<>();
+        private final List<Integer> pollTimeouts = new ArrayList<>();
+        private final List<Integer> closed = new ArrayList<>();
+        private int pendingBytes;
+        private short inputEvents;
+        private LastErrorException pollFailure;
+
+        @Override
+        public int poll(PollFd[] descriptors, NfdsT count, int timeoutMillis) {
+            if (pollFailure != null) {
+                throw pollFailure;
+            }
+            polledDescriptors.clear();
+            for (PollFd descriptor : descriptors) {
+                polledDescriptors.add(descriptor.fd);
+            }
+            pollTimeouts.add(timeoutMillis);
+            descriptors[0].revents = inputEvents;
+            descriptors[1].revents = pendingBytes > 0 ? POLLIN : 0;
+            return (inputEvents != 0 ? 1 : 0) + (pendingBytes > 0 ? 1 : 0);
+        }
+
+        @Override
+        public int pipe(int[] fds) {
+            fds[0] = READ_FD;
+            fds[1] = WRITE_FD;
+            return 0;
+        }
+
+        @Override
+        public NativeLong read(int fd, byte[] buffer, NativeLong count) {
+            int read = Math.min(pendingBytes, count.intValue());
+            pendingBytes -= read;
+            return new NativeLong(read);
+        }
+
+        @Override
+        public NativeLong write(int fd, byte[] buffer, NativeLong count) {
+            pendingBytes += count.intValue();
+            return count;
+        }
+
+        @Override
+        public int close(int fd) {
+            closed.add(fd);
+            return 0;
+        }
+    }
+}
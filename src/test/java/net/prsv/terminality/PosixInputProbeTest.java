@@ -11,14 +11,14 @@ class PosixInputProbeTest {
 
     @Test
     void reportsUnavailableInputWhenPollTimesOut() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        PollingPosixLibC libc = new PollingPosixLibC();
 
         assertEquals(UTKeyReader.InputStatus.UNAVAILABLE, probe(libc).poll());
     }
 
     @Test
     void prioritizesReadableDataWhenHangupIsAlsoReported() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        PollingPosixLibC libc = new PollingPosixLibC();
         libc.pollResult = 1;
         libc.pollEvents = (short) (PosixLibC.POLLIN | PosixLibC.POLLHUP);
 
@@ -27,7 +27,7 @@ class PosixInputProbeTest {
 
     @Test
     void reportsEofForHangupWithoutReadableData() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        PollingPosixLibC libc = new PollingPosixLibC();
         libc.pollResult = 1;
         libc.pollEvents = PosixLibC.POLLHUP;
 
@@ -36,7 +36,7 @@ class PosixInputProbeTest {
 
     @Test
     void retriesPollWhenInterrupted() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        PollingPosixLibC libc = new PollingPosixLibC();
         libc.pollFailuresRemaining = 1;
         libc.pollFailure = new LastErrorException(PosixLibC.EINTR);
 
@@ -44,9 +44,31 @@ class PosixInputProbeTest {
         assertEquals(2, libc.pollCalls);
     }
 
+    @Test
+    void awaitsInputForTheTimeoutRoundedUpToWholeMilliseconds() throws Exception {
+        PollingPosixLibC libc = new PollingPosixLibC();
+
+        assertEquals(UTKeyReader.InputStatus.UNAVAILABLE, probe(libc).await(2_500_000L));
+        assertEquals(3, libc.pollTimeoutMillis);
+        libc.pollResult = 1;
+        libc.pollEvents = PosixLibC.POLLIN;
+        assertEquals(UTKeyReader.InputStatus.DATA, probe(libc).await(Long.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, libc.pollTimeoutMillis);
+    }
+
+    @Test
+    void endsTheWaitWhenInterruptedBySignal() throws Exception {
+        PollingPosixLibC libc = new PollingPosixLibC();
+        libc.pollFailuresRemaining = 1;
+        libc.pollFailure = new LastErrorException(PosixLibC.EINTR);
+
+        assertEquals(UTKeyReader.InputStatus.UNAVAILABLE, probe(libc).await(10_000_000L));
+        assertEquals(1, libc.pollCalls);
+    }
+
     @Test
     void reportsNonInterruptedPollErrorAsIoException() {
-        FakePosixLibC libc = new FakePosixLibC();
+        PollingPosixLibC libc = new PollingPosixLibC();
         libc.pollFailuresRemaining = 1;
         libc.pollFailure = new LastErrorException(5);
 
@@ -59,7 +81,7 @@ class PosixInputProbeTest {
 
     @Test
     void reportsPollFailuresAsIoExceptions() {
-        FakePosixLibC libc = new FakePosixLibC();
+        PollingPosixLibC libc = new PollingPosixLibC();
         libc.pollResult = -1;
         assertThrows(java.io.IOException.class, () -> probe(libc).poll());
 
@@ -71,40 +93,22 @@ class PosixInputProbeTest {
         assertThrows(java.io.IOException.class, () -> probe(libc).poll());
     }
 
-    private static PosixInputProbe probe(FakePosixLibC libc) {
+    private static PosixInputProbe probe(PollingPosixLibC libc) {
         return new PosixInputProbe(libc, PosixLibC.STDIN_FD);
     }
 
-    private static final class FakePosixLibC implements PosixLibC {
+    private static final class PollingPosixLibC extends FakePosixLibC {
         private int pollResult;
         private short pollEvents;
         private int pollCalls;
+        private int pollTimeoutMillis;
         private int pollFailuresRemaining;
         private LastErrorException pollFailure;
 
-        @Override
-        public int tcgetattr(int fd, Termios termios) {
-            return 0;
-        }
-
-        @Override
-        public int tcsetattr(int fd, int optionalActions, Termios termios) {
-            return 0;
-        }
-
-        @Override
-        public int ioctl(int fd, int opt, WinSize winsize) {
-            return 0;
-        }
-
-        @Override
-        public int isatty(int fd) {
-            return 1;
-        }
-
         @Override
         public int poll(PollFd descriptors, NfdsT count, int timeoutMillis) {
             pollCalls++;
+            pollTimeoutMillis = timeoutMillis;
             if (pollFailuresRemaining > 0) {
                 pollFailuresRemaining--;
                 throw pollFailure;
@@ -0,0 +1,308 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScreenTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final UnixTerminal terminal = new UnixTerminal(
+            new ByteArrayInputStream(new byte[0]), output, StandardCharsets.UTF_8, false, new FakePosixLibC());
+
+    @Test
+    void firstRefreshClearsTheTerminalAndWritesOnlyNonBlankCells() throws IOException {
+        Screen screen = new Screen(terminal, 3, 10);
+
+        screen.put(1, 2, "Hi").refresh();
+
+        assertEquals("\u001b[0m\u001b[2J\u001b[2;3HHi", output());
+    }
+
+    @Test
+    void refreshWithoutChangesWritesNothing() throws IOException {
+        Screen screen = new Screen(terminal, 3, 10);
+        screen.put(0, 0, "text").refresh();
+        output.reset();
+
+        screen.refresh();
+
+        assertEquals("", output());
+    }
+
+    @Test
+    void refreshWritesOnlyChangedCellsAndRestoresDefaultRendition() throws IOException {
+        Screen screen = new Screen(terminal, 2, 10);
+        screen.put(0, 0, "abcdef").refresh();
+        output.reset();
+
+        screen.put(0, 2, "X", TextRendition.FG_RED).refresh();
+
+        assertEquals("\u001b[1;3H\u001b[0m\u001b[31mX\u001b[0m", output());
+    }
+
+    @Test
+    void renditionsAreCombinedPerCell() {
+        Screen screen = new Screen(terminal, 1, 5);
+
+        screen.put(0, 0, "ab", TextRendition.BOLD, null, TextRendition.BG_BLUE);
+
+        assertEquals("\u001b[1;44m", screen.getRendition(0, 1).toString());
+        assertNull(screen.getRendition(0, 2));
+    }
+
+    @Test
+    void textIsClippedToTheScreen() {
+        Screen screen = new Screen(terminal, 1, 4);
+
+        screen.put(0, -1, "abcdef").put(1, 0, "ignored");
+
+        assertEquals('b', screen.getCharacter(0, 0));
+        assertEquals('e', screen.getCharacter(0, 3));
+    }
+
+    @Test
+    void scrolledLinesAreMovedWithScrollRegion() throws IOException {
+        Screen screen = new Screen(terminal, 5, 10);
+        for (int row = 0; row < 5; row++) {
+            screen.put(row, 0, "line" + row);
+        }
+        screen.refresh();
+        output.reset();
+
+        for (int row = 0; row < 5; row++) {
+            screen.put(row, 0, "line" + (row + 1));
+        }
+        screen.refresh();
+
+        assertEquals("\u001b[0m\u001b[1;5r\u001b[1S\u001b[r\u001b[5;1Hline5", output());
+    }
+
+    @Test
+    void scrollRegionIsLimitedToTheShiftedLines() throws IOException {
+        Screen screen = new Screen(terminal, 5, 10);
+        screen.put(0, 0, "head").put(1, 0, "a").put(2, 0, "b").put(3, 0, "c").put(4, 0, "status");
+        screen.refresh();
+        output.reset();
+
+        screen.put(1, 0, "new").put(2, 0, "a").put(3, 0, "b");
+        screen.refresh();
+
+        assertEquals("\u001b[0m\u001b[2;4r\u001b[1T\u001b[r\u001b[2;1Hnew", output());
+    }
+
+    @Test
+    void scrolledLinesCanBeMovedWithInsertAndDeleteLine() throws IOException {
+        Screen screen = new Screen(terminal, 5, 10).setScrolling(Screen.Scrolling.INSERT_DELETE_LINE);
+        screen.put(0, 0, "head").put(1, 0, "a").put(2, 0, "b").put(3, 0, "c").put(4, 0, "status");
+        screen.refresh();
+        output.reset();
+
+        screen.put(1, 0, "b").put(2, 0, "c").put(3, 0, "new");
+        screen.refresh();
+
+        assertEquals("\u001b[0m\u001b[2;1H\u001b[1M\u001b[4;1H\u001b[1L\u001b[4;1Hnew", output());
+    }
+
+    @Test
+    void shiftedLinesAreRepaintedWhenScrollingIsDisabled() throws IOException {
+        Screen screen = new Screen(terminal, 3, 4).setScrolling(Screen.Scrolling.NONE);
+        screen.put(0, 0, "aa").put(1, 0, "bb").put(2, 0, "cc").refresh();
+        output.reset();
+
+        screen.put(0, 0, "bb").put(1, 0, "cc").put(2, 0, "dd").refresh();
+
+        assertEquals("\u001b[1;1H\u001b[0mbb\u001b[2;1Hcc\u001b[3;1Hdd", output());
+    }
+
+    @Test
+    void resizeClearsTheTerminalOnTheNextRefresh() throws IOException {
+        Screen screen = new Screen(terminal, 2, 4);
+        screen.put(0, 0, "ab").refresh();
+        output.reset();
+
+        screen.resize(3, 3).refresh();
+
+        assertEquals(3, screen.getRows());
+        assertEquals(3, screen.getColumns());
+        assertEquals("\u001b[0m\u001b[2J\u001b[1;1Hab", output());
+    }
+
+    @Test
+    void runsOfIdenticalCharactersAreRepeated() throws IOException {
+        Screen screen = new Screen(terminal, 1, 20).setCompression(Screen.Compression.REPEAT_CHARACTER);
+
+        screen.put(0, 0, "\u2500".repeat(10) + "ab").refresh();
+
+        assertEquals("\u001b[0m\u001b[2J\u001b[1;1H\u2500\u001b[9bab", output());
+    }
+
+    @Test
+    void shortRunsAreWrittenLiterally() throws IOException {
+        Screen screen = new Screen(terminal, 1, 20).setCompression(Screen.Compression.values());
+
+        screen.put(0, 0, "aaab  c").refresh();
+
+        assertEquals("\u001b[0m\u001b[2J\u001b[1;1Haaab  c", output());
+    }
+
+    @Test
+    void blankRunsAreErasedAndSkipped() throws IOException {
+        Screen screen = new Screen(terminal, 1, 24);
+        screen.put(0, 0, "x".repeat(24)).refresh();
+        output.reset();
+
+        screen.setCompression(Screen.Compression.ERASE_CHARACTERS);
+        screen.put(0, 0, "ab" + " ".repeat(20) + "cd").refresh();
+
+        assertEquals("\u001b[1;1H\u001b[0mab\u001b[20X\u001b[20Ccd", output());
+    }
+
+    @Test
+    void trailingBlanksAreErasedToTheEndOfTheLine() throws IOException {
+        Screen screen = new Screen(terminal, 2, 40);
+        screen.put(0, 0, "a very long line of text").put(1, 0, "next").refresh();
+        output.reset();
+
+        screen.setCompression(Screen.Compression.ERASE_TO_END_OF_LINE);
+        screen.clear().put(0, 0, "a").put(1, 0, "next").refresh();
+
+        assertEquals("\u001b[1;3H\u001b[0m\u001b[K", output());
+    }
+
+    @Test
+    void blanksWithRenditionsAreNotErased() throws IOException {
+        Screen screen = new Screen(terminal, 1, 20).setCompression(Screen.Compression.ERASE_CHARACTERS);
+
+        screen.put(0, 0, " ".repeat(20), TextRendition.BG_BLUE).refresh();
+
+        assertEquals("\u001b[0m\u001b[2J\u001b[1;1H\u001b[0m\u001b[44m" + " ".repeat(20) + "\u001b[0m",
+                output());
+    }
+
+    @Test
+    void writesMarkDamageAndRefreshConsumesIt() throws IOException {
+        Screen screen = new Screen(terminal, 10, 40);
+        screen.refresh();
+        assertTrue(screen.getDamage().isEmpty());
+
+        screen.put(2, 3, "abc").put(2, 6, 'd').put(7, 30, "far");
+
+        assertEquals(List.of(new Region(2, 3, 1, 4), new Region(7, 30, 1, 3)), screen.getDamage());
+        screen.refresh();
+        assertTrue(screen.getDamage().isEmpty());
+    }
+
+    @Test
+    void markDirtyIsClippedToTheScreen() throws IOException {
+        Screen screen = new Screen(terminal, 5, 5);
+        screen.refresh();
+
+        screen.markDirty(3, 3, 10, 10).markDirty(-4, 0, 2, 2);
+
+        assertEquals(List.of(new Region(3, 3, 2, 2)), screen.getDamage());
+    }
+
+    @Test
+    void separateDamagedRegionsOnOneRowArePaintedIndependently() throws IOException {
+        Screen screen = new Screen(terminal, 1, 40);
+        screen.refresh();
+        output.reset();
+
+        screen.put(0, 0, "a").put(0, 30, "b").refresh();
+
+        assertEquals("\u001b[1;1H\u001b[0ma\u001b[29Cb", output());
+    }
+
+    @Test
+    void everyScrollingAndCompressionModeProducesTheSameScreen() throws IOException {
+        Screen.Compression[][] compressions = {new Screen.Compression[0], Screen.Compression.values()};
+        for (Screen.Scrolling scrolling : Screen.Scrolling.values()) {
+            for (Screen.Compression[] compression : compressions) {
+                VirtualTerminal display = new VirtualTerminal(12, 30);
+                UnixTerminal terminal = new UnixTerminal(new ByteArrayInputStream(new byte[0]), display,
+                        StandardCharsets.UTF_8, false, new FakePosixLibC());
+                Screen screen = new Screen(terminal, 12, 30).setScrolling(scrolling).setCompression(compression);
+                Random random = new Random(42);
+
+                for (int frame = 0; frame < 300; frame++) {
+                    change(screen, display, random);
+                    screen.refresh();
+
+                    assertShows(screen, display, scrolling + " " + Arrays.toString(compression) + " frame " + frame);
+                }
+            }
+        }
+    }
+
+    private static final TextRendition[] RENDITIONS = {null, null, null, TextRendition.BOLD, TextRendition.FG_RED,
+            TextRendition.BG_BLUE, TextRendition.FG_CYAN_UNDERLINE, TextRendition.BG_GREEN_INTENSE,
+            new TextRendition("38", "5", "208")};
+
+    private static void change(Screen screen, VirtualTerminal display, Random random) {
+        int rows = screen.getRows();
+        int columns = screen.getColumns();
+        int action = random.nextInt(20);
+        if (action < 12) {
+            String text = random.nextBoolean()
+                    ? String.valueOf("ab ─x".charAt(random.nextInt(5))).repeat(1 + random.nextInt(12))
+                    : Integer.toString(random.nextInt(1_000_000), 36) + " ".repeat(random.nextInt(6));
+            screen.put(random.nextInt(rows), random.nextInt(columns + 4) - 2, text,
+                    RENDITIONS[random.nextInt(RENDITIONS.length)]);
+        } else if (action < 17) {
+            // moves a band of lines like a scrolling log, adding a new line at the freed edge
+            int top = random.nextInt(rows - 1);
+            int bottom = top + 1 + random.nextInt(rows - top - 1);
+            int distance = 1 + random.nextInt(bottom - top);
+            boolean up = random.nextBoolean();
+            for (int step = 0; step <= bottom - top; step++) {
+                int row = up ? top + step : bottom - step;
+                int source = up ? row + distance : row - distance;
+                for (int column = 0; column < columns; column++) {
+                    if (source >= top && source <= bottom) {
+                        screen.put(row, column, screen.getCharacter(source, column),
+                                screen.getRendition(source, column));
+                    } else {
+                        screen.put(row, column, ' ');
+                    }
+                }
+            }
+            screen.put(up ? bottom : top, 0, "new " + random.nextInt(1000));
+        } else if (action < 19) {
+            screen.clear().put(random.nextInt(rows), 0, "cleared");
+        } else {
+            int newRows = 2 + random.nextInt(14);
+            int newColumns = 2 + random.nextInt(40);
+            screen.resize(newRows, newColumns);
+            display.resize(newRows, newColumns);
+        }
+    }
+
+    private static void assertShows(Screen screen, VirtualTerminal display, String context) {
+        for (int row = 0; row < screen.getRows(); row++) {
+            for (int column = 0; column < screen.getColumns(); column++) {
+                TextRendition rendition = screen.getRendition(row, column);
+                long expectedStyle = rendition == null
+                        ? VirtualTerminal.DEFAULT_STYLE
+                        : VirtualTerminal.styleOf(rendition.toString());
+                String cell = context + " at " + row + ", " + column + "\n" + display;
+                assertEquals(screen.getCharacter(row, column), display.getCodePoint(row, column), cell);
+                assertEquals(expectedStyle, display.getStyle(row, column), cell);
+            }
+        }
+    }
+
+    private String output() {
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRecorderTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void terminalOutputAndInputAreRecordedAsTimedEvents() throws IOException {
+        ByteArrayOutputStream recording = new ByteArrayOutputStream();
+        SessionRecorder recorder = new SessionRecorder(recording, 80, 24, SessionRecorder.DEFAULT_BUFFER_CAPACITY,
+                now::get);
+        UnixTerminal terminal = new UnixTerminal(new ByteArrayInputStream(ascii("ab")), new ByteArrayOutputStream(),
+                StandardCharsets.UTF_8, false, new FakePosixLibC());
+        terminal.begin();
+        terminal.setRecorder(recorder);
+
+        terminal.put("hi").flush();
+        now.addAndGet(250_000_000L);
+        terminal.readKey();
+        terminal.setRecorder(null);
+        terminal.put("ignored").flush();
+        recorder.close();
+
+        List<String> lines = lines(recording);
+        assertTrue(lines.get(0).startsWith("{\"version\": 2, \"width\": 80, \"height\": 24, \"timestamp\": "));
+        assertEquals(List.of("[0.000000, \"o\", \"hi\"]", "[0.250000, \"i\", \"ab\"]"), lines.subList(1, 3));
+        assertEquals(3, lines.size());
+    }
+
+    @Test
+    void charactersSplitBetweenChunksAreJoinedAndControlsEscaped() throws IOException {
+        ByteArrayOutputStream recording = new ByteArrayOutputStream();
+        SessionRecorder recorder = new SessionRecorder(recording, 10, 5, 1024, now::get);
+        byte[] bytes = "\u001b[1m\"é\"\\".getBytes(StandardCharsets.UTF_8);
+
+        recorder.output(bytes, 0, 6);
+        recorder.output(bytes, 6, bytes.length - 6);
+        recorder.close();
+
+        List<String> lines = lines(recording);
+        assertEquals(List.of("[0.000000, \"o\", \"\\u001b[1m\\\"\"]", "[0.000000, \"o\", \"é\\\"\\\\\"]"),
+                lines.subList(1, lines.size()));
+    }
+
+    @Test
+    void eventsThatDoNotFitIntoTheBufferAreDroppedWithoutBlocking() throws Exception {
+        BlockingOutputStream recording = new BlockingOutputStream();
+        SessionRecorder recorder = new SessionRecorder(recording, 10, 5, 64, now::get);
+        byte[] chunk = ascii("x".repeat(40));
+
+        recorder.output(chunk, 0, chunk.length);
+        assertTrue(recording.writeStarted.await(1, TimeUnit.SECONDS));
+        chunk = ascii("y".repeat(40));
+        recorder.output(chunk, 0, chunk.length);
+        chunk = ascii("z".repeat(40));
+        recorder.output(chunk, 0, chunk.length);
+
+        assertEquals(40, recorder.getDroppedBytes());
+        recording.release.countDown();
+        recorder.close();
+        String recorded = recording.toString(StandardCharsets.UTF_8);
+        assertTrue(recorded.contains("y".repeat(40)));
+        assertFalse(recorded.contains("z"));
+        assertTrue(recorded.contains("\"m\", \"dropped 40 bytes\""));
+    }
+
+    private static List<String> lines(ByteArrayOutputStream recording) {
+        return List.of(recording.toString(StandardCharsets.UTF_8).split("\n"));
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // lets the header through and blocks the writes of the first batch of events
+    private static final class BlockingOutputStream extends ByteArrayOutputStream {
+        private final CountDownLatch writeStarted = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private int writes;
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (++writes == 2) {
+                writeStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionReplayerTest {
+
+    private static final String RECORDING = "{\"version\": 2, \"width\": 100, \"height\": 30}\n"
+            + "[0.0, \"o\", \"\\u001b[2J\"]\n"
+            + "[0.010000, \"i\", \"a\"]\n"
+            + "[0.200000, \"i\", \"\\u001b[A\\u00e9\"]\n";
+
+    @Test
+    void recordedInputIsDecodedIntoKeyStrokes() throws IOException {
+        SessionReplayer replayer = SessionReplayer.read(new StringReader(RECORDING));
+        List<KeyStroke> keyStrokes = new ArrayList<>();
+
+        int count = replayer.replay(Double.POSITIVE_INFINITY, keyStrokes::add);
+
+        assertEquals(100, replayer.getWidth());
+        assertEquals(30, replayer.getHeight());
+        assertEquals(2, replayer.getInputEventCount());
+        assertEquals(4, count);
+        assertEquals(List.of(KeyStroke.character('a', false, false),
+                KeyStroke.special(KeyType.ARROW_UP, false, false, false),
+                KeyStroke.character('é', false, false), KeyStroke.eof()), keyStrokes);
+    }
+
+    @Test
+    void inputIsDeliveredWithTheRecordedTimingDividedBySpeed() throws IOException {
+        SessionReplayer replayer = SessionReplayer.read(new StringReader(RECORDING));
+
+        long start = System.nanoTime();
+        replayer.replay(1, keyStroke -> { });
+        long original = System.nanoTime() - start;
+
+        assertTrue(original >= 200_000_000L, "original timing took " + original + " ns");
+    }
+
+    @Test
+    void sessionRecordedByTheRecorderCanBeReplayed() throws IOException {
+        ByteArrayOutputStream recording = new ByteArrayOutputStream();
+        SessionRecorder recorder = new SessionRecorder(recording, 80, 24);
+        UTKeyReader reader = new UTKeyReader(
+                new ByteArrayInputStream("x\u001b[1;5B".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+        reader.setRecorder(recorder);
+        List<KeyStroke> recorded = new ArrayList<>();
+        for (KeyStroke keyStroke = reader.readKey(true); keyStroke != null; keyStroke = reader.readKey(true)) {
+            recorded.add(keyStroke);
+        }
+        recorder.close();
+        List<KeyStroke> replayed = new ArrayList<>();
+
+        SessionReplayer.read(new StringReader(recording.toString(StandardCharsets.UTF_8)))
+                .replay(1000, replayed::add);
+
+        assertEquals(3, recorded.size());
+        assertEquals(recorded, replayed);
+    }
+
+    @Test
+    void malformedRecordingsAreRejected() {
+        assertThrows(IOException.class, () -> SessionReplayer.read(new StringReader("[0.1, \"i\", \"a\"]\n")));
+        assertThrows(IOException.class, () -> SessionReplayer.read(
+                new StringReader("{\"version\": 2, \"width\": 1, \"height\": 1}\n[0.1, \"i\"\n")));
+    }
+}
@@ -0,0 +1,326 @@
+package net.prsv.terminality;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.NativeLong;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TerminalEventLoopTest {
+
+    private final FakePosixLibC libc = new FakePosixLibC();
+
+    @Test
+    void keysAvailableTogetherAreHandledInOneRoundWithOneRender() throws IOException {
+        UnixTerminal terminal = begin("ab", false);
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        List<Character> keys = new ArrayList<>();
+        int[] renders = new int[1];
+        loop.onKey(keyStroke -> {
+            keys.add(keyStroke.c);
+            if (keys.size() == 2) {
+                loop.stop();
+            }
+        }).onRender(() -> renders[0]++);
+
+        try {
+            loop.run();
+        } finally {
+            terminal.end();
+        }
+
+        assertEquals(List.of('a', 'b'), keys);
+        assertEquals(2, renders[0]);
+    }
+
+    @Test
+    void tasksPostedByOtherThreadsRunOnTheLoopThread() throws Exception {
+        UnixTerminal terminal = begin("", false);
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        AtomicReference<Thread> taskThread = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        loop.onRender(started::countDown);
+        Thread poster = new Thread(() -> {
+            try {
+                started.await();
+                loop.execute(() -> {
+                    taskThread.set(Thread.currentThread());
+                    assertTrue(loop.inEventLoop());
+                });
+                loop.stop();
+            } catch (InterruptedException ignored) {
+                // the test failed
+            }
+        });
+        poster.start();
+
+        try {
+            loop.run();
+        } finally {
+            terminal.end();
+            poster.join();
+        }
+
+        assertSame(Thread.currentThread(), taskThread.get());
+        assertFalse(loop.inEventLoop());
+    }
+
+    @Test
+    void taskPostedWhileTheLoopClosesItsWakeupPipeDoesNotWriteToIt() throws Exception {
+        BlockingPipePosixLibC pipeLibc = new BlockingPipePosixLibC();
+        // the loop polls a wakeup pipe only for the standard input, which the fake reports as never readable
+        InputStream standardInput = System.in;
+        UnixTerminal terminal;
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        try {
+            terminal = new UnixTerminal(System.in, new ByteArrayOutputStream(), StandardCharsets.UTF_8, false,
+                    pipeLibc);
+        } finally {
+            System.setIn(standardInput);
+        }
+        terminal.begin();
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        AtomicReference<Throwable> posterFailure = new AtomicReference<>();
+        List<String> ran = new ArrayList<>();
+        // another thread posts a task just as the loop, which is ending, closes the write end of the pipe
+        pipeLibc.onWriteEndClosed = () -> {
+            Thread poster = new Thread(() -> {
+                try {
+                    loop.execute(() -> ran.add("posted"));
+                } catch (RuntimeException failure) {
+                    posterFailure.set(failure);
+                }
+            });
+            poster.start();
+            try {
+                poster.join(1000);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        try {
+            loop.schedule(loop::stop, 1, TimeUnit.MILLISECONDS);
+            loop.run();
+            pipeLibc.onWriteEndClosed = null;
+            loop.schedule(loop::stop, 1, TimeUnit.MILLISECONDS);
+            loop.run();
+        } finally {
+            terminal.end();
+        }
+
+        assertEquals(null, posterFailure.get());
+        assertEquals(0, pipeLibc.writesAfterClose);
+        assertEquals(List.of("posted"), ran);
+    }
+
+    @Test
+    void timersRunOnTheLoopOnceTheirDelayHasPassed() throws IOException {
+        UnixTerminal terminal = begin("", false);
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        List<String> ran = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        long[] stoppedAt = new long[1];
+        loop.schedule(() -> ran.add("cancelled"), 5, TimeUnit.MILLISECONDS).cancel();
+        loop.schedule(() -> {
+            ran.add("timer");
+            stoppedAt[0] = System.nanoTime();
+            loop.stop();
+        }, 20, TimeUnit.MILLISECONDS);
+
+        try {
+            loop.run();
+        } finally {
+            terminal.end();
+        }
+
+        assertEquals(List.of("timer"), ran);
+        assertTrue(stoppedAt[0] - startedAt >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void timersDueWithinOneFrameRunTogetherWithOneRender() throws IOException {
+        UnixTerminal terminal = begin("", false);
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        List<String> ran = new ArrayList<>();
+        int[] renders = new int[1];
+        long startedAt = System.nanoTime();
+        long[] stoppedAt = new long[1];
+        loop.setFrameScheduler(new FrameScheduler(terminal, 10)).onRender(() -> renders[0]++);
+        loop.schedule(() -> ran.add("first"), 5, TimeUnit.MILLISECONDS);
+        loop.schedule(() -> {
+            ran.add("second");
+            stoppedAt[0] = System.nanoTime();
+            loop.stop();
+        }, 30, TimeUnit.MILLISECONDS);
+
+        try {
+            loop.run();
+        } finally {
+            terminal.end();
+        }
+
+        assertEquals(List.of("first", "second"), ran);
+        assertEquals(2, renders[0]);
+        assertTrue(stoppedAt[0] - startedAt >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void fixedRateTimersRunUntilCancelled() throws IOException {
+        UnixTerminal terminal = begin("", false);
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        int[] runs = new int[1];
+        TerminalEventLoop.Timer[] timer = new TerminalEventLoop.Timer[1];
+        timer[0] = loop.scheduleAtFixedRate(() -> {
+            if (++runs[0] == 3) {
+                timer[0].cancel();
+                loop.schedule(loop::stop, 20, TimeUnit.MILLISECONDS);
+            }
+        }, 1, 2, TimeUnit.MILLISECONDS);
+        assertThrows(IllegalArgumentException.class,
+                () -> loop.scheduleAtFixedRate(() -> { }, 1, 0, TimeUnit.MILLISECONDS));
+
+        try {
+            loop.run();
+        } finally {
+            terminal.end();
+        }
+
+        assertEquals(3, runs[0]);
+        assertFalse(timer[0].isPending());
+    }
+
+    @Test
+    void resizesAreReportedWhenTheWindowSizeIsChecked() throws IOException {
+        UnixTerminal terminal = begin("", false);
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        List<String> sizes = new ArrayList<>();
+        loop.setResizeCheckInterval(1, TimeUnit.MILLISECONDS).onResize(size -> {
+            sizes.add(size.rows + "x" + size.columns);
+            if (sizes.size() == 2) {
+                loop.stop();
+            }
+        });
+        loop.schedule(() -> {
+            libc.setWindowSize(30, 100);
+        }, 5, TimeUnit.MILLISECONDS);
+
+        try {
+            loop.run();
+        } finally {
+            terminal.end();
+        }
+
+        assertEquals(List.of("24x80", "30x100"), sizes);
+    }
+
+    @Test
+    void theLoopRequiresTheSynchronousModeAndRunsOnOneThreadAtATime() throws IOException {
+        UnixTerminal asyncTerminal = begin("", true);
+        try {
+            assertThrows(IllegalStateException.class, () -> new TerminalEventLoop(asyncTerminal).run());
+        } finally {
+            asyncTerminal.end();
+        }
+
+        UnixTerminal terminal = begin("", false);
+        TerminalEventLoop loop = new TerminalEventLoop(terminal);
+        loop.onRender(() -> {
+            assertThrows(IllegalStateException.class, loop::run);
+            loop.stop();
+        });
+        try {
+            loop.run();
+        } finally {
+            terminal.end();
+        }
+    }
+
+    private UnixTerminal begin(String input, boolean asyncIO) throws IOException {
+        UnixTerminal terminal = new UnixTerminal(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                new ByteArrayOutputStream(), StandardCharsets.UTF_8, asyncIO, libc);
+        terminal.begin();
+        return terminal;
+    }
+
+    // a wakeup pipe in memory whose poll() blocks until a byte is written, and whose closed write end fails writes
+    private static final class BlockingPipePosixLibC extends FakePosixLibC {
+        private static final int READ_FD = 7;
+        private static final int WRITE_FD = 8;
+        private static final int EBADF = 9;
+
+        private int pendingBytes;
+        private boolean open;
+        private int writesAfterClose;
+        private volatile Runnable onWriteEndClosed;
+
+        @Override
+        public synchronized int poll(PollFd[] descriptors, NfdsT count, int timeoutMillis) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try {
+                while (pendingBytes == 0 && (timeoutMillis < 0 || System.currentTimeMillis() < deadline)) {
+                    wait(timeoutMillis < 0 ? 0 : Math.max(1, deadline - System.currentTimeMillis()));
+                }
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            descriptors[0].revents = 0;
+            descriptors[1].revents = pendingBytes > 0 ? POLLIN : 0;
+            return pendingBytes > 0 ? 1 : 0;
+        }
+
+        @Override
+        public synchronized int pipe(int[] fds) {
+            fds[0] = READ_FD;
+            fds[1] = WRITE_FD;
+            open = true;
+            return 0;
+        }
+
+        @Override
+        public synchronized NativeLong read(int fd, byte[] buffer, NativeLong count) {
+            int read = Math.min(pendingBytes, count.intValue());
+            pendingBytes -= read;
+            return new NativeLong(read);
+        }
+
+        @Override
+        public synchronized NativeLong write(int fd, byte[] buffer, NativeLong count) {
+            if (!open) {
+                writesAfterClose++;
+                throw new LastErrorException(EBADF);
+            }
+            pendingBytes += count.intValue();
+            notifyAll();
+            return count;
+        }
+
+        @Override
+        public int close(int fd) {
+            synchronized (this) {
+                open = false;
+                pendingBytes = 0;
+            }
+            Runnable hook = onWriteEndClosed;
+            if (fd == WRITE_FD && hook != null) {
+                hook.run();
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package net.prsv.terminality;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TerminalEventsTest {
+
+    @Test
+    void decodedKeysReportTheirBytesAndTimeFromTheFirstByte() throws IOException {
+        AtomicLong clock = new AtomicLong(1_000);
+        byte[] input = "a\u001b[1;5A".getBytes(StandardCharsets.US_ASCII);
+        UTKeyReader reader = new UTKeyReader(new ByteArrayInputStream(input), StandardCharsets.UTF_8, 25,
+                clock::get);
+
+        List<RecordedEvent> events = record("net.prsv.terminality.KeyDecoded", () -> {
+            reader.readKey(false);
+            clock.addAndGet(500);
+            reader.readKey(false);
+        });
+
+        assertEquals(2, events.size());
+        assertEquals("CHARACTER", events.get(0).getString("keyType"));
+        assertEquals(1, events.get(0).getInt("bytesConsumed"));
+        assertEquals("ARROW_UP", events.get(1).getString("keyType"));
+        assertEquals(6, events.get(1).getInt("bytesConsumed"));
+        assertEquals(500, events.get(1).getDuration("timeFromFirstByte").toNanos());
+    }
+
+    @Test
+    void loneEscapeReportsTheEscapeTimeout() throws IOException {
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(new ByteArrayInputStream(new byte[] {0x1b}), StandardCharsets.UTF_8,
+                25, clock::get, () -> UTKeyReader.InputStatus.UNAVAILABLE);
+
+        List<RecordedEvent> events = record("net.prsv.terminality.EscapeTimeout", () -> {
+            reader.readKey(false);
+            clock.set(30);
+            reader.readKey(false);
+        });
+
+        assertEquals(1, events.size());
+        assertEquals(30, events.get(0).getDuration("waited").toNanos());
+    }
+
+    @Test
+    void flushAndNativeCallsAreRecorded() throws IOException {
+        UnixTerminal terminal = new UnixTerminal(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+                StandardCharsets.UTF_8, false, new FakePosixLibC());
+
+        List<RecordedEvent> events = record("net.prsv.terminality.TerminalFlush", () -> {
+            terminal.put("hello").flush();
+            terminal.getTerminalSize();
+        }, "net.prsv.terminality.NativeCall");
+
+        List<RecordedEvent> flushes = events.stream()
+                .filter(event -> event.getEventType().getName().endsWith("TerminalFlush"))
+                .collect(Collectors.toList());
+        assertEquals(1, flushes.size());
+        assertEquals(5, flushes.get(0).getLong("bytes"));
+        assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().endsWith("NativeCall")
+                && "ioctl".equals(event.getString("function"))));
+    }
+
+    private static List<RecordedEvent> record(String eventName, IORunnable action, String... otherEvents)
+            throws IOException {
+        Path file = Files.createTempFile("terminality", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName).withThreshold(Duration.ZERO);
+            for (String other : otherEvents) {
+                recording.enable(other).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface IORunnable {
+        void run() throws IOException;
+    }
+}
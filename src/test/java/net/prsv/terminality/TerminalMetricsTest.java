@@ -0,0 +1,138 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TerminalMetricsTest {
+
+    @Test
+    void outputIsCountedPerFlush() throws IOException {
+        UnixTerminal terminal = terminal(new byte[0]);
+
+        terminal.put("hello").flush();
+        terminal.flush();
+        terminal.put("!").flush();
+
+        TerminalMetrics metrics = terminal.getMetrics();
+        assertEquals(6, metrics.getBytesWritten());
+        assertEquals(2, metrics.getWriteCalls());
+        assertEquals(2, metrics.getFlushCount());
+        assertTrue(metrics.getMaxFlushNanos() >= 0);
+    }
+
+    @Test
+    void decodedKeysAndDiscardedSequencesAreCounted() throws IOException {
+        TerminalCounters counters = new TerminalCounters();
+        byte[] input = "a\u001b[99z\u001b[A".getBytes(StandardCharsets.US_ASCII);
+        UTKeyReader reader = new UTKeyReader(new ByteArrayInputStream(input), StandardCharsets.UTF_8, 25,
+                System::nanoTime, null, counters);
+
+        reader.readKey(false);
+        reader.readKey(false);
+
+        assertEquals(2, counters.getKeysDecoded());
+        assertEquals(1, counters.getDiscardedSequences());
+    }
+
+    @Test
+    void escapeTimeoutsAreCounted() throws IOException {
+        TerminalCounters counters = new TerminalCounters();
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(new ByteArrayInputStream(new byte[] {0x1b}), StandardCharsets.UTF_8,
+                25, clock::get, () -> UTKeyReader.InputStatus.UNAVAILABLE, counters);
+
+        reader.readKey(false);
+        clock.set(25);
+        reader.readKey(false);
+
+        assertEquals(1, counters.getEscapeTimeouts());
+        assertEquals(1, counters.getKeysDecoded());
+    }
+
+    @Test
+    void sizeChangesAreCounted() throws IOException {
+        FakePosixLibC libc = new FakePosixLibC();
+        UnixTerminal terminal = new UnixTerminal(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+                StandardCharsets.UTF_8, false, libc);
+
+        terminal.getTerminalSize();
+        libc.setWindowSize(24, 100);
+        terminal.getTerminalSize();
+        terminal.getTerminalSize();
+
+        assertEquals(1, terminal.getMetrics().getSizeChanges());
+    }
+
+    @Test
+    void keyStrokesCarryTheTimeTheirFirstByteWasRead() throws IOException {
+        AtomicLong clock = new AtomicLong(1_000);
+        UTKeyReader reader = new UTKeyReader(new ByteArrayInputStream(new byte[] {'x'}), StandardCharsets.UTF_8,
+                25, clock::get);
+
+        KeyStroke keyStroke = reader.readKey(false);
+
+        assertTrue(keyStroke.hasTimestamp());
+        assertEquals(1_000, keyStroke.getTimestamp());
+        assertFalse(KeyStroke.character('x', false, false).hasTimestamp());
+    }
+
+    @Test
+    void taggedFlushRecordsTheLatencyOfTheOldestKey() throws IOException {
+        UnixTerminal terminal = terminal(new byte[0]);
+        KeyStroke older = KeyStroke.character('a', false, false);
+        older.setTimestamp(System.nanoTime() - 5_000_000);
+        KeyStroke newer = KeyStroke.character('b', false, false);
+        newer.setTimestamp(System.nanoTime());
+
+        terminal.tagNextFlush(newer).tagNextFlush(older).put("ab").flush();
+        terminal.put("c").flush();
+
+        LatencyHistogram histogram = terminal.getKeyLatencyHistogram();
+        assertEquals(1, histogram.getTotalCount());
+        assertTrue(histogram.getMax() >= 5_000_000);
+    }
+
+    @Test
+    void taggedFrameRecordsTheLatencyOnceWritten() throws IOException {
+        UnixTerminal terminal = terminal(new byte[0]).setAsyncOutput(true).begin();
+        KeyStroke keyStroke = KeyStroke.character('a', false, false);
+        keyStroke.setTimestamp(System.nanoTime());
+
+        terminal.tagNextFlush(keyStroke).put("a").flush();
+        terminal.end();
+
+        assertEquals(1, terminal.getKeyLatencyHistogram().getTotalCount());
+    }
+
+        @Test
+    void metricsCanBeReadThroughJmx() throws Exception {
+        UnixTerminal terminal = terminal(new byte[0]);
+        terminal.put("jmx").flush();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        ObjectName name = terminal.registerMetricsMBean();
+        try {
+            assertEquals(3L, server.getAttribute(name, "BytesWritten"));
+            assertEquals(0, server.getAttribute(name, "AsyncQueueDepth"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static UnixTerminal terminal(byte[] input) {
+        return new UnixTerminal(new ByteArrayInputStream(input), new ByteArrayOutputStream(), StandardCharsets.UTF_8,
+                false, new FakePosixLibC());
+    }
+}
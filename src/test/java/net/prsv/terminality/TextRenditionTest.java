@@ -7,6 +7,8 @@ import java.lang.reflect.Modifier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class TextRenditionTest {
@@ -68,6 +70,22 @@ class TextRenditionTest {
         }
     }
 
+    @Test
+    void renditionsWithTheSameSequenceAreEqual() {
+        TextRendition custom = new TextRendition("31");
+
+        assertEquals(TextRendition.FG_RED, custom);
+        assertEquals(TextRendition.FG_RED.hashCode(), custom.hashCode());
+    }
+
+    @Test
+    void combineJoinsParametersInOrderAndIgnoresNulls() {
+        assertEquals("\u001b[1;31;44m", TextRendition.combine(
+                TextRendition.BOLD, null, TextRendition.FG_RED, TextRendition.BG_BLUE).toString());
+        assertSame(TextRendition.BOLD, TextRendition.combine(null, TextRendition.BOLD));
+        assertNull(TextRendition.combine());
+    }
+
     private static void assertColorRangeDoesNotReset(
             String prefix, int firstCode, boolean intense) {
         String[] colors = {
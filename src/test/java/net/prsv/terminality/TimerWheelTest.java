@@ -0,0 +1,126 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void timersRunOnceTheirDeadlineHasPassedAndNotBefore() {
+        TimerWheel wheel = new TimerWheel(MILLIS, 0);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> ran.add("a"), 5 * MILLIS, 0);
+        wheel.schedule(() -> ran.add("b"), 2 * MILLIS + MILLIS / 2, 0);
+
+        assertEquals(3 * MILLIS, wheel.nanosUntilNextExpiry(0));
+        assertEquals(0, wheel.expire(2 * MILLIS));
+        assertEquals(1, wheel.expire(3 * MILLIS));
+        assertEquals(List.of("b"), ran);
+        assertEquals(2 * MILLIS, wheel.nanosUntilNextExpiry(3 * MILLIS));
+        assertEquals(1, wheel.expire(5 * MILLIS));
+        assertEquals(List.of("b", "a"), ran);
+        assertEquals(Long.MAX_VALUE, wheel.nanosUntilNextExpiry(5 * MILLIS));
+    }
+
+    @Test
+    void cancelledTimersDoNotRun() {
+        TimerWheel wheel = new TimerWheel(MILLIS, 0);
+        List<String> ran = new ArrayList<>();
+        TimerWheel.Entry cancelled = wheel.schedule(() -> ran.add("cancelled"), MILLIS, 0);
+        TimerWheel.Entry[] later = new TimerWheel.Entry[1];
+        wheel.schedule(() -> later[0].cancel(), 2 * MILLIS, 0);
+        later[0] = wheel.schedule(() -> ran.add("later"), 2 * MILLIS, 0);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertFalse(cancelled.isPending());
+        assertEquals(2, wheel.size());
+        assertEquals(2 * MILLIS, wheel.nanosUntilNextExpiry(0));
+        assertEquals(1, wheel.expire(2 * MILLIS));
+        assertTrue(ran.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void timersMoreThanARevolutionAheadWaitForTheirTick() {
+        TimerWheel wheel = new TimerWheel(MILLIS, 0);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> ran.add("far"), 2000 * MILLIS, 0);
+        wheel.schedule(() -> ran.add("near"), 10 * MILLIS, 0);
+
+        assertEquals(1, wheel.expire(600 * MILLIS));
+        assertEquals(1400 * MILLIS, wheel.nanosUntilNextExpiry(600 * MILLIS));
+        assertEquals(0, wheel.expire(1999 * MILLIS));
+        assertEquals(1, wheel.expire(100_000 * MILLIS));
+        assertEquals(List.of("near", "far"), ran);
+    }
+
+    @Test
+    void timersScheduledByATimerRunInALaterTick() {
+        TimerWheel wheel = new TimerWheel(MILLIS, 0);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> {
+            ran.add("first");
+            wheel.schedule(() -> ran.add("second"), 0, 4 * MILLIS);
+        }, 3 * MILLIS, 0);
+
+        assertEquals(1, wheel.expire(4 * MILLIS));
+        assertEquals(MILLIS, wheel.nanosUntilNextExpiry(4 * MILLIS));
+        assertEquals(1, wheel.expire(5 * MILLIS));
+        assertEquals(List.of("first", "second"), ran);
+    }
+
+    @Test
+    void periodicTimersRunAtAFixedRateAndSkipMissedPeriods() {
+        TimerWheel wheel = new TimerWheel(MILLIS, 0);
+        List<Long> ran = new ArrayList<>();
+        long[] now = new long[1];
+        TimerWheel.Entry[] timer = new TimerWheel.Entry[1];
+        timer[0] = wheel.schedule(() -> {
+            ran.add(now[0] / MILLIS);
+            if (ran.size() == 4) {
+                timer[0].cancel();
+            }
+        }, 10 * MILLIS, 10 * MILLIS, 0);
+
+        now[0] = 12 * MILLIS;
+        assertEquals(1, wheel.expire(now[0]));
+        assertEquals(8 * MILLIS, wheel.nanosUntilNextExpiry(now[0]));
+        now[0] = 20 * MILLIS;
+        assertEquals(1, wheel.expire(now[0]));
+        now[0] = 55 * MILLIS;
+        assertEquals(1, wheel.expire(now[0]));
+        assertEquals(5 * MILLIS, wheel.nanosUntilNextExpiry(now[0]));
+        assertEquals(1, wheel.size());
+        now[0] = 60 * MILLIS;
+        assertEquals(1, wheel.expire(now[0]));
+        assertEquals(List.of(12L, 20L, 55L, 60L), ran);
+        assertFalse(timer[0].isPending());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void timersThatDidNotRunBecauseAnotherOneThrewRunOnTheNextAdvance() {
+        TimerWheel wheel = new TimerWheel(MILLIS, 0);
+        List<String> ran = new ArrayList<>();
+        wheel.schedule(() -> {
+            throw new IllegalStateException("failed");
+        }, MILLIS, 0);
+        TimerWheel.Entry periodic = wheel.schedule(() -> ran.add("periodic"), MILLIS, 5 * MILLIS, 0);
+
+        assertThrows(IllegalStateException.class, () -> wheel.expire(2 * MILLIS));
+        assertTrue(periodic.isPending());
+        assertEquals(1, wheel.expire(3 * MILLIS));
+        assertEquals(List.of("periodic"), ran);
+        assertEquals(3 * MILLIS, wheel.nanosUntilNextExpiry(3 * MILLIS));
+    }
+}
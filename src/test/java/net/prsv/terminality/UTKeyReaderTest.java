@@ -9,6 +9,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -27,6 +28,27 @@ class UTKeyReaderTest {
         assertNull(reader.readKey(false));
     }
 
+    @Test
+    void readsKeysAsKeyCodes() throws IOException {
+        String input = "q\u001b[1;5A\u00e9\ud83d\ude00\u001b[200~pasted\u001b[201~";
+        UTKeyReader reader = new UTKeyReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8, () -> UTKeyReader.InputStatus.EOF);
+
+        assertEquals('q', reader.readKeyCode(false));
+        assertEquals(KeyCode.special(KeyType.ARROW_UP, true, false, false), reader.readKeyCode(false));
+
+        int[] codes = new int[2];
+        assertEquals(2, reader.readKeyCodes(codes));
+        assertEquals('\u00e9', codes[0]);
+        assertEquals('\ud83d', codes[1]);
+        codes = new int[8];
+        assertEquals(3, reader.readKeyCodes(codes));
+        assertEquals('\ude00', codes[0]);
+        assertEquals(KeyType.PASTE, KeyCode.type(codes[1]));
+        assertEquals(KeyCode.EOF, codes[2]);
+        assertEquals(KeyCode.NONE, reader.readKeyCode(false));
+    }
+
     @Test
     void retainsAnIncompleteSequenceUntilMoreBytesArrive() throws IOException {
         FeedableInputStream input = new FeedableInputStream();
@@ -54,6 +76,67 @@ class UTKeyReaderTest {
         assertSpecialKey(reader.readKey(false), KeyType.ESCAPE, false, false, false);
     }
 
+    @Test
+    void readKeyWithATimeoutReturnsNullOnceTheTimeoutHasElapsed() throws IOException {
+        FeedableInputStream input = new FeedableInputStream();
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(input, StandardCharsets.UTF_8, 25, clock::get,
+                waitingProbe(clock, timeoutNanos -> clock.addAndGet(timeoutNanos)));
+
+        assertNull(reader.readKey(50_000_000L));
+        assertEquals(50_000_000L, clock.get());
+    }
+
+    @Test
+    void readKeyWithATimeoutReturnsAKeyAsSoonAsItArrives() throws IOException {
+        FeedableInputStream input = new FeedableInputStream();
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(input, StandardCharsets.UTF_8, 25, clock::get,
+                waitingProbe(clock, timeoutNanos -> {
+                    clock.addAndGet(10_000_000L);
+                    input.feed("a");
+                }));
+
+        assertCharacter(reader.readKey(50_000_000L), 'a', false, false);
+        assertEquals(10_000_000L, clock.get());
+    }
+
+    @Test
+    void readKeyWithATimeoutWaitsForTheRestOfAnEscapeSequenceOnlyUntilTheEscapeTimeout() throws IOException {
+        FeedableInputStream input = new FeedableInputStream();
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(input, StandardCharsets.UTF_8, 25_000_000L, clock::get,
+                waitingProbe(clock, timeoutNanos -> clock.addAndGet(timeoutNanos)));
+        input.feed("\u001b");
+
+        assertSpecialKey(reader.readKey(1_000_000_000L), KeyType.ESCAPE, false, false, false);
+        assertEquals(25_000_000L, clock.get());
+    }
+
+    @Test
+    void escapeTimeoutAdaptsToTheGapsWithinSplitSequences() throws IOException {
+        FeedableInputStream input = new FeedableInputStream();
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(input, StandardCharsets.UTF_8, EscapeTimeout.adaptive(25_000_000L),
+                clock::get, null, new TerminalCounters());
+
+        for (int sequence = 0; sequence < 3; sequence++) {
+            input.feed("\u001b[");
+            assertNull(reader.readKey(false));
+            clock.addAndGet(20_000_000L);
+            input.feed("A");
+            assertSpecialKey(reader.readKey(false), KeyType.ARROW_UP, false, false, false);
+        }
+        assertEquals(40_000_000L, reader.escapeTimeoutNanos());
+
+        input.feed("\u001b");
+        assertNull(reader.readKey(false));
+        clock.addAndGet(30_000_000L);
+        assertNull(reader.readKey(false));
+        clock.addAndGet(10_000_000L);
+        assertSpecialKey(reader.readKey(false), KeyType.ESCAPE, false, false, false);
+    }
+
     @Test
     void decodesCsiAndSs3KeysUsingSeparateRules() throws IOException {
         UTKeyReader reader = reader("\u001b[A\u001bOH\u001bOP\u001bOQ\u001bOR\u001bOS");
@@ -209,12 +292,139 @@ class UTKeyReaderTest {
         assertCharacter(reader.readKey(false), 'x', false, false);
     }
 
+    @Test
+    void bracketedPasteIsReadAsOneKeyStroke() throws IOException {
+        UTKeyReader reader = reader("x\u001b[200~pasted \u001b[A\u00e9\r\n\u001b[201\u001b[201~y");
+
+        assertCharacter(reader.readKey(false), 'x', false, false);
+        assertEquals(KeyStroke.paste("pasted \u001b[A\u00e9\r\n\u001b[201"), reader.readKey(false));
+        assertCharacter(reader.readKey(false), 'y', false, false);
+        assertNull(reader.readKey(false));
+    }
+
+    @Test
+    void pasteSplitAcrossReadsIsDeliveredWhenItEnds() throws IOException {
+        FeedableInputStream input = new FeedableInputStream();
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(input, StandardCharsets.UTF_8, 25, clock::get);
+        input.feed("\u001b[200~first ");
+
+        assertNull(reader.readKey(false));
+        input.feed("second\u001b[2");
+        clock.set(1000);
+        assertNull(reader.readKey(false));
+        input.feed("01~");
+
+        assertEquals(KeyStroke.paste("first second"), reader.readKey(false));
+    }
+
+    @Test
+    void unterminatedPasteIsDeliveredAtEof() throws IOException {
+        UTKeyReader reader = reader("\u001b[200~text\u001b[20");
+
+        assertEquals(KeyStroke.paste("text\u001b[20"), reader.readKey(true));
+        assertSpecialKey(reader.readKey(true), KeyType.EOF, false, false, false);
+    }
+
+    @Test
+    void decodesSgrMouseReports() throws IOException {
+        UTKeyReader reader = reader("\u001b[<0;10;5M\u001b[<32;11;5M\u001b[<0;12;6m\u001b[<35;1;1M"
+                + "\u001b[<65;3;4M\u001b[<18;200;300M\u001b[<128;1;1M\u001b[<3;1;1Mx");
+
+        assertEquals(mouse(MouseEvent.Type.PRESS, MouseEvent.LEFT_BUTTON, 4, 9, false, false, false),
+                reader.readKey(false));
+        assertEquals(mouse(MouseEvent.Type.DRAG, MouseEvent.LEFT_BUTTON, 4, 10, false, false, false),
+                reader.readKey(false));
+        assertEquals(mouse(MouseEvent.Type.RELEASE, MouseEvent.LEFT_BUTTON, 5, 11, false, false, false),
+                reader.readKey(false));
+        assertEquals(mouse(MouseEvent.Type.MOVE, MouseEvent.NO_BUTTON, 0, 0, false, false, false),
+                reader.readKey(false));
+        assertEquals(mouse(MouseEvent.Type.WHEEL_DOWN, MouseEvent.NO_BUTTON, 3, 2, false, false, false),
+                reader.readKey(false));
+        assertEquals(mouse(MouseEvent.Type.PRESS, MouseEvent.RIGHT_BUTTON, 299, 199, true, false, false),
+                reader.readKey(false));
+        assertEquals(mouse(MouseEvent.Type.PRESS, 8, 0, 0, false, false, false), reader.readKey(false));
+        assertCharacter(reader.readKey(false), 'x', false, false);
+        assertNull(reader.readKey(false));
+    }
+
+    @Test
+    void mouseReportSplitAcrossReadsIsDecodedWhenComplete() throws IOException {
+        FeedableInputStream input = new FeedableInputStream();
+        AtomicLong clock = new AtomicLong();
+        UTKeyReader reader = new UTKeyReader(input, StandardCharsets.UTF_8, 25, clock::get);
+        input.feed("\u001b[<0;1");
+
+        assertNull(reader.readKey(false));
+        input.feed("0;5M");
+
+        assertEquals(mouse(MouseEvent.Type.PRESS, MouseEvent.LEFT_BUTTON, 4, 9, false, false, false),
+                reader.readKey(false));
+    }
+
+    @Test
+    void decodesKittyKeyEventsWithoutWaitingForTheEscapeTimeout() throws IOException {
+        UTKeyReader reader = reader("\u001b[27u\u001b[104;5u\u001b[127u\u001b[97;6:2u\u001b[97;1:3u"
+                + "\u001b[1;5:3A\u001b[3;2:2~\u001b[57414u\u001b[9;2u\u001b[128512u");
+
+        assertSpecialKey(reader.readKey(false), KeyType.ESCAPE, false, false, false);
+        assertCharacter(reader.readKey(false), 'h', true, false);
+        assertSpecialKey(reader.readKey(false), KeyType.BACKSPACE, false, false, false);
+        assertEquals(KeyStroke.character('A', true, false, true).withAction(KeyAction.REPEAT), reader.readKey(false));
+        assertEquals(KeyStroke.character('a', false, false).withAction(KeyAction.RELEASE), reader.readKey(false));
+        assertEquals(KeyStroke.special(KeyType.ARROW_UP, true, false, false).withAction(KeyAction.RELEASE),
+                reader.readKey(false));
+        assertEquals(KeyStroke.special(KeyType.DELETE, false, false, true).withAction(KeyAction.REPEAT),
+                reader.readKey(false));
+        assertSpecialKey(reader.readKey(false), KeyType.CR, false, false, false);
+        assertSpecialKey(reader.readKey(false), KeyType.REVERSE_TAB, false, false, false);
+        assertCharacter(reader.readKey(false), '\ud83d', false, false);
+        assertCharacter(reader.readKey(false), '\ude00', false, false);
+        assertNull(reader.readKey(false));
+    }
+
+    @Test
+    void kittyProtocolReplyIsConsumedSilently() throws IOException {
+        TerminalCounters counters = new TerminalCounters();
+        UTKeyReader reader = new UTKeyReader(
+                new ByteArrayInputStream("\u001b[?3ux".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8,
+                UTKeyReader.DEFAULT_ESCAPE_TIMEOUT_NANOS, System::nanoTime, null, counters);
+
+        assertEquals(0, reader.keyboardFlags());
+        assertCharacter(reader.readKey(false), 'x', false, false);
+        assertEquals(3, reader.keyboardFlags());
+        assertEquals(0, counters.getDiscardedSequences());
+        reader.reset();
+        assertEquals(0, reader.keyboardFlags());
+    }
+
+    private static KeyStroke mouse(MouseEvent.Type type, int button, int row, int column,
+                                   boolean ctrl, boolean alt, boolean shift) {
+        return KeyStroke.mouse(new MouseEvent(type, button, row, column), ctrl, alt, shift);
+    }
+
     private static UTKeyReader reader(String input) {
         return new UTKeyReader(
                 new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
                 StandardCharsets.UTF_8);
     }
 
+    // a probe that never finds input when polled, and lets the test decide what happens while it waits
+    private static UTKeyReader.InputStatusProbe waitingProbe(AtomicLong clock, LongConsumer onAwait) {
+        return new UTKeyReader.InputStatusProbe() {
+            @Override
+            public UTKeyReader.InputStatus poll() {
+                return UTKeyReader.InputStatus.UNAVAILABLE;
+            }
+
+            @Override
+            public UTKeyReader.InputStatus await(long timeoutNanos) {
+                onAwait.accept(timeoutNanos);
+                return UTKeyReader.InputStatus.UNAVAILABLE;
+            }
+        };
+    }
+
     private static void assertCharacter(KeyStroke keyStroke, char character, boolean ctrl, boolean alt) {
         assertEquals(KeyType.CHARACTER, keyStroke.type);
         assertEquals(character, keyStroke.c);
@@ -123,31 +123,4 @@ class UnixTerminalColorTest {
         public void destroy() {
         }
     }
-
-    private static final class FakePosixLibC implements PosixLibC {
-        @Override
-        public int tcgetattr(int fd, Termios termios) {
-            return 0;
-        }
-
-        @Override
-        public int tcsetattr(int fd, int optionalActions, Termios termios) {
-            return 0;
-        }
-
-        @Override
-        public int ioctl(int fd, int opt, WinSize winsize) {
-            return 0;
-        }
-
-        @Override
-        public int isatty(int fd) {
-            return 1;
-        }
-
-        @Override
-        public int poll(PollFd descriptors, NfdsT count, int timeoutMillis) {
-            return 0;
-        }
-    }
 }
@@ -12,7 +12,11 @@ import java.lang.reflect.Modifier;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -33,7 +37,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void beginClearsIextenAndPreservesUnrelatedLocalFlags() throws IOException {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream());
 
         terminal.begin();
@@ -46,7 +50,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void failedBeginRestoresCapturedStateAndLeavesEndIdempotent() {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         libc.failNextSet = true;
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream());
 
@@ -60,7 +64,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void endRestoresStateOnlyOnce() throws IOException {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream());
         terminal.begin();
 
@@ -73,8 +77,8 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void originalStateBelongsToTheTerminalInstance() throws IOException {
-        FakePosixLibC firstLibc = new FakePosixLibC();
-        FakePosixLibC secondLibc = new FakePosixLibC();
+        RecordingPosixLibC firstLibc = new RecordingPosixLibC();
+        RecordingPosixLibC secondLibc = new RecordingPosixLibC();
         secondLibc.initialLocalFlags = INITIAL_LOCAL_FLAGS | (1L << 21);
         UnixTerminal first = terminal(firstLibc, new ByteArrayOutputStream());
         UnixTerminal second = terminal(secondLibc, new ByteArrayOutputStream());
@@ -97,7 +101,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void endRestoresStateWhenOutputCleanupFails() throws IOException {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         UnixTerminal terminal = terminal(libc, new FailingOutputStream());
         terminal.begin();
 
@@ -111,7 +115,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void terminalCanBeUsedWithTryWithResources() throws IOException {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
 
         try (UnixTerminal ignored = terminal(libc, new ByteArrayOutputStream()).begin()) {
             assertEquals(1, libc.localFlagsSet.size());
@@ -121,9 +125,137 @@ class UnixTerminalLifecycleTest {
         assertEquals(INITIAL_LOCAL_FLAGS, libc.localFlagsSet.get(1));
     }
 
+    @Test
+    void alternateScreenIsEnteredByBeginAndLeftByEnd() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), output);
+
+        terminal.begin(TerminalMode.ALTERNATE_SCREEN);
+        assertEquals("\u001b[?1049h", output.toString(StandardCharsets.UTF_8));
+        output.reset();
+        terminal.end();
+
+        assertEquals("\u001b[0m\u001b[?25h\u001b[?1049l", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void bracketedPasteIsEnabledByBeginAndDisabledByEnd() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), output);
+
+        terminal.begin(TerminalMode.ALTERNATE_SCREEN, TerminalMode.BRACKETED_PASTE);
+        assertEquals("\u001b[?1049h\u001b[?2004h", output.toString(StandardCharsets.UTF_8));
+        output.reset();
+        terminal.end();
+
+        assertEquals("\u001b[0m\u001b[?25h\u001b[?2004l\u001b[?1049l", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void mouseTrackingIsEnabledInSgrFormatAndDisabledByEnd() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), output);
+
+        terminal.begin(TerminalMode.ALTERNATE_SCREEN, TerminalMode.MOUSE_DRAG);
+        assertEquals("\u001b[?1049h\u001b[?1002h\u001b[?1006h", output.toString(StandardCharsets.UTF_8));
+        output.reset();
+        terminal.end();
+
+        assertEquals("\u001b[0m\u001b[?25h\u001b[?1006l\u001b[?1002l\u001b[?1049l",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void kittyKeyboardProtocolIsPushedQueriedAndPoppedByEnd() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), output);
+
+        terminal.begin(TerminalMode.ALTERNATE_SCREEN, TerminalMode.KITTY_KEYBOARD);
+        assertEquals("\u001b[?1049h\u001b[>3u\u001b[?u", output.toString(StandardCharsets.UTF_8));
+        assertFalse(terminal.isKittyKeyboardActive());
+        output.reset();
+        terminal.end();
+
+        assertEquals("\u001b[0m\u001b[?25h\u001b[<u\u001b[?1049l", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void endClearsTheMainScreenWithoutAlternateScreen() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), output);
+
+        terminal.begin();
+        terminal.end();
+
+        assertEquals("\u001b[0m\u001b[2J\u001b[?25h\u001b[H", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void asynchronousOutputIsDrainedByEnd() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), output).setAsyncOutput(true);
+
+        terminal.begin(TerminalMode.ALTERNATE_SCREEN);
+        terminal.setCursorPosition(0, 0).put("frame").flush();
+        terminal.end();
+
+        assertEquals("\u001b[?1049h\u001b[1;1Hframe\u001b[0m\u001b[?25h\u001b[?1049l",
+                output.toString(StandardCharsets.UTF_8));
+        assertFalse(terminal.isFramePending());
+    }
+
+    @Test
+    void asynchronousFramesCountAsFlushedBeforeTheyAreWritten() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean blocking = new AtomicBoolean();
+        OutputStream blockedOutput = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (!blocking.get()) {
+                    return;
+                }
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), blockedOutput).setAsyncOutput(true);
+        terminal.begin();
+        blocking.set(true);
+        try {
+            terminal.put("first").flush();
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            long flushed = terminal.bytesFlushed();
+
+            terminal.put("frame").flush();
+
+            assertEquals(flushed + 5, terminal.bytesFlushed());
+        } finally {
+            release.countDown();
+            terminal.end();
+        }
+    }
+
+    @Test
+    void outputModeCannotChangeWhileInitialized() throws IOException {
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream()).begin();
+
+        assertThrows(IllegalStateException.class, () -> terminal.setAsyncOutput(true));
+        terminal.end();
+    }
+
     @Test
     void shutdownHookIsRemovedAndRecreatedWithTheTerminalLifecycle() throws Exception {
-        UnixTerminal terminal = terminal(new FakePosixLibC(), new ByteArrayOutputStream());
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream());
 
         terminal.begin();
         Thread firstHook = shutdownHook(terminal);
@@ -144,7 +276,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void failedBeginRemovesItsShutdownHook() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         libc.failNextSet = true;
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream());
 
@@ -156,7 +288,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void failedBeginRollbackRemainsRecoverableWithoutBecomingInitialized() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         libc.setFailuresRemaining = 2;
         UnixTerminal terminal = new UnixTerminal(
                 new ByteArrayInputStream(new byte[0]),
@@ -188,7 +320,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void failedEndRetainsShutdownHookUntilTerminalRestorationSucceeds() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream());
 
         terminal.begin();
@@ -207,7 +339,7 @@ class UnixTerminalLifecycleTest {
     @Test
     void setTitleUsesOperatingSystemCommandSequence() throws IOException {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
-        UnixTerminal terminal = terminal(new FakePosixLibC(), output);
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), output);
 
         terminal.setTitle("Terminality");
 
@@ -222,7 +354,7 @@ class UnixTerminalLifecycleTest {
                 output,
                 StandardCharsets.UTF_16BE,
                 false,
-                new FakePosixLibC());
+                new RecordingPosixLibC());
 
         terminal.setCursorPosition(0, 1)
                 .setCursorVisibility(false)
@@ -254,7 +386,7 @@ class UnixTerminalLifecycleTest {
                 output,
                 StandardCharsets.UTF_16BE,
                 false,
-                new FakePosixLibC());
+                new RecordingPosixLibC());
 
         terminal.setTitle("A");
 
@@ -268,7 +400,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void terminalSizeQueriesCacheDimensionsAndReportChanges() throws IOException {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream());
 
         assertTrue(terminal.sizeChanged());
@@ -279,8 +411,7 @@ class UnixTerminalLifecycleTest {
         assertEquals(80, initialSize.columns);
         assertFalse(terminal.sizeChanged());
 
-        libc.terminalRows = 30;
-        libc.terminalColumns = 100;
+        libc.setWindowSize(30, 100);
         Terminal.WindowSize resized = terminal.getTerminalSize();
 
         assertEquals(30, resized.rows);
@@ -294,11 +425,11 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void failedTerminalSizeQueryDoesNotChangeCachedDimensions() throws IOException {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream());
         terminal.getTerminalSize();
         terminal.sizeChanged();
-        libc.terminalRows = 30;
+        libc.setWindowSize(30, 80);
         libc.failNextIoctl = true;
 
         assertThrows(IOException.class, terminal::getTerminalSize);
@@ -310,7 +441,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void asynchronousReaderFollowsTerminalLifecycle() throws Exception {
-        UnixTerminal terminal = terminal(new FakePosixLibC(), new ByteArrayOutputStream(),
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream(),
                 new ByteArrayInputStream(new byte[0]), true);
 
         assertNull(asyncKeyboardReader(terminal));
@@ -335,7 +466,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void asynchronousReaderFailureIsReportedByReadKey() throws Exception {
-        UnixTerminal terminal = terminal(new FakePosixLibC(), new ByteArrayOutputStream(),
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream(),
                 new FailingInputStream(), true);
         terminal.begin();
 
@@ -347,7 +478,7 @@ class UnixTerminalLifecycleTest {
 
     @Test
     void beginRejectsPreviousAsynchronousReaderThatIsStillAlive() throws Exception {
-        FakePosixLibC libc = new FakePosixLibC();
+        RecordingPosixLibC libc = new RecordingPosixLibC();
         UnixTerminal terminal = terminal(libc, new ByteArrayOutputStream(),
                 new ByteArrayInputStream(new byte[0]), true);
         CountDownLatch releaseReader = new CountDownLatch(1);
@@ -373,11 +504,105 @@ class UnixTerminalLifecycleTest {
         }
     }
 
-    private static UnixTerminal terminal(FakePosixLibC libc, OutputStream output) {
+    @Test
+    void keyListenersReceiveTheKeystrokesInsteadOfTheQueue() throws Exception {
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream(),
+                new ByteArrayInputStream("ab".getBytes(StandardCharsets.UTF_8)), true);
+        List<KeyStroke> received = new CopyOnWriteArrayList<>();
+        CountDownLatch keys = new CountDownLatch(2);
+        terminal.addKeyListener(keyStroke -> {
+            received.add(keyStroke);
+            keys.countDown();
+        });
+        terminal.begin();
+
+        try {
+            assertTrue(keys.await(5, TimeUnit.SECONDS));
+            assertEquals(2, received.size());
+            assertEquals('a', received.get(0).c);
+            assertEquals('b', received.get(1).c);
+            assertNull(terminal.readKey());
+        } finally {
+            terminal.end();
+        }
+    }
+
+    @Test
+    void subscribersReceiveTheKeystrokesTheyRequest() throws Exception {
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream(),
+                new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)), true);
+        List<KeyStroke> received = new CopyOnWriteArrayList<>();
+        CountDownLatch keys = new CountDownLatch(2);
+        terminal.keyStrokes().subscribe(new Flow.Subscriber<KeyStroke>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(KeyStroke keyStroke) {
+                received.add(keyStroke);
+                keys.countDown();
+                if (received.size() < 2) {
+                    subscription.request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        terminal.begin();
+
+        try {
+            assertTrue(keys.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            assertEquals(2, received.size());
+            assertEquals('a', received.get(0).c);
+            assertEquals('b', received.get(1).c);
+            assertNull(terminal.readKey());
+        } finally {
+            terminal.end();
+        }
+    }
+
+    @Test
+    void readKeyWithATimeoutWaitsInBothModes() throws Exception {
+        for (boolean asyncIO : new boolean[] {false, true}) {
+            UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream(),
+                    new ByteArrayInputStream("a".getBytes(StandardCharsets.UTF_8)), asyncIO);
+            terminal.begin();
+
+            try {
+                assertEquals('a', terminal.readKey(5, TimeUnit.SECONDS).c);
+                long waitStartedAt = System.nanoTime();
+                assertNull(terminal.readKey(20, TimeUnit.MILLISECONDS));
+                assertTrue(System.nanoTime() - waitStartedAt >= TimeUnit.MILLISECONDS.toNanos(20));
+            } finally {
+                terminal.end();
+            }
+        }
+    }
+
+    @Test
+    void keyListenersRequireTheAsynchronousMode() {
+        UnixTerminal terminal = terminal(new RecordingPosixLibC(), new ByteArrayOutputStream());
+
+        assertThrows(IllegalStateException.class, () -> terminal.addKeyListener(keyStroke -> { }));
+    }
+
+    private static UnixTerminal terminal(RecordingPosixLibC libc, OutputStream output) {
         return terminal(libc, output, new ByteArrayInputStream(new byte[0]), false);
     }
 
-    private static UnixTerminal terminal(FakePosixLibC libc, OutputStream output,
+    private static UnixTerminal terminal(RecordingPosixLibC libc, OutputStream output,
                                          InputStream input, boolean asyncIO) {
         return new UnixTerminal(input, output, StandardCharsets.UTF_8, asyncIO, libc);
     }
@@ -445,13 +670,11 @@ class UnixTerminalLifecycleTest {
         }
     }
 
-    private static final class FakePosixLibC implements PosixLibC {
+    private static final class RecordingPosixLibC extends FakePosixLibC {
         private final List<Long> localFlagsSet = new ArrayList<>();
         private long initialLocalFlags = INITIAL_LOCAL_FLAGS;
         private boolean failNextSet;
         private int setFailuresRemaining;
-        private int terminalRows = 24;
-        private int terminalColumns = 80;
         private boolean failNextIoctl;
 
         @Override
@@ -481,20 +704,7 @@ class UnixTerminalLifecycleTest {
                 failNextIoctl = false;
                 return -1;
             }
-            winsize.ws_row = (short) terminalRows;
-            winsize.ws_col = (short) terminalColumns;
-            return 0;
+            return super.ioctl(fd, opt, winsize);
         }
-
-        @Override
-        public int isatty(int fd) {
-            return 1;
-        }
-
-        @Override
-        public int poll(PollFd descriptors, NfdsT count, int timeoutMillis) {
-            return 0;
-        }
-
     }
 }
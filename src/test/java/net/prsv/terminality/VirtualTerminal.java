@@ -0,0 +1,793 @@
+package net.prsv.terminality;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A headless xterm-compatible terminal for tests and benchmarks. It parses the bytes written to it and keeps the
+ * resulting cell grid, cursor position, SGR state, modes and title, so that output can be verified by the screen it
+ * produces rather than by its exact bytes.
+ *
+ * <p>The parser understands the control functions Terminality uses and the common ones around them: C0 controls,
+ * cursor movement, erasing, insertion and deletion of lines and characters, scrolling and scroll regions, SGR with
+ * 16, 256 and true colors, DEC private modes (cursor visibility and the alternate screen are interpreted, the others
+ * are only recorded), cursor save and restore, and OSC titles. Unknown sequences are consumed and ignored. Input is
+ * decoded as UTF-8, and every character occupies one cell.</p>
+ */
+final class VirtualTerminal extends OutputStream {
+
+    // style layout: foreground in bits 0-25, background in bits 26-51, attribute flags from bit 52
+    static final long DEFAULT_STYLE = 0;
+    static final int BOLD = 1, DIM = 1 << 1, ITALIC = 1 << 2, UNDERLINE = 1 << 3, BLINK = 1 << 4,
+            INVERSE = 1 << 5, HIDDEN = 1 << 6, STRIKETHROUGH = 1 << 7;
+
+    private static final int COLOR_BITS = 26;
+    private static final long COLOR_MASK = (1L << COLOR_BITS) - 1;
+    private static final int FLAGS_SHIFT = 2 * COLOR_BITS;
+    private static final int INDEXED = 1 << 24;
+    private static final int TRUE_COLOR = 1 << 25;
+
+    private static final int MAX_PARAMETERS = 32;
+    private static final int TAB_WIDTH = 8;
+
+    private static final int GROUND = 0, ESCAPE = 1, ESCAPE_SKIP = 2, CSI = 3, OSC = 4, OSC_ESCAPE = 5,
+            STRING = 6, STRING_ESCAPE = 7;
+
+    private int rows;
+    private int columns;
+    // one array per row, so that scrolling only moves the row references
+    private int[][] cells;
+    private long[][] styles;
+    private int[][] alternateCells;
+    private long[][] alternateStyles;
+    private boolean alternateScreen;
+
+    private int cursorRow, cursorColumn;
+    private boolean pendingWrap;
+    private long style = DEFAULT_STYLE;
+    private int savedRow, savedColumn;
+    private long savedStyle;
+    private boolean cursorVisible = true;
+    private int scrollTop, scrollBottom;
+    private int lastCharacter = ' ';
+    private String title = "";
+    private final BitSet privateModes = new BitSet();
+
+    private int state = GROUND;
+    private final int[] parameters = new int[MAX_PARAMETERS];
+    private int parameterCount;
+    private boolean parameterStarted;
+    private char privateMarker;
+    private char intermediate;
+    private final StringBuilder oscString = new StringBuilder();
+    private int utf8CodePoint;
+    private int utf8Remaining;
+
+    VirtualTerminal(int rows, int columns) {
+        resize(rows, columns);
+    }
+
+    /**
+     * Changes the size of the terminal, keeping the cells that fit and resetting the scroll region.
+     */
+    void resize(int newRows, int newColumns) {
+        if (newRows < 1 || newColumns < 1) {
+            throw new IllegalArgumentException("Terminal size must be positive");
+        }
+        cells = resized(cells, newRows, newColumns, ' ');
+        styles = resized(styles, newRows, newColumns);
+        alternateCells = resized(alternateCells, newRows, newColumns, ' ');
+        alternateStyles = resized(alternateStyles, newRows, newColumns);
+        rows = newRows;
+        columns = newColumns;
+        scrollTop = 0;
+        scrollBottom = rows - 1;
+        cursorRow = Math.min(cursorRow, rows - 1);
+        cursorColumn = Math.min(cursorColumn, columns - 1);
+        pendingWrap = false;
+    }
+
+//  ============================== P A R S E R ==============================
+
+    @Override
+    public void write(int b) {
+        consume(b & 0xff);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int index = offset;
+        while (index < end) {
+            if (state == GROUND && utf8Remaining == 0) {
+                // fast path for runs of printable ASCII
+                int b = bytes[index];
+                if (b >= 0x20 && b < 0x7f) {
+                    index = printAscii(bytes, index, end);
+                    continue;
+                }
+            }
+            consume(bytes[index++] & 0xff);
+        }
+    }
+
+    private int printAscii(byte[] bytes, int index, int end) {
+        while (index < end && bytes[index] >= 0x20 && bytes[index] < 0x7f) {
+            if (pendingWrap) {
+                wrap();
+            }
+            int[] rowCells = cells[cursorRow];
+            int column = cursorColumn;
+            int start = column;
+            int limit = Math.min(end, index + columns - column);
+            while (index < limit) {
+                int b = bytes[index];
+                if (b < 0x20 || b >= 0x7f) {
+                    break;
+                }
+                rowCells[column++] = b;
+                index++;
+            }
+            Arrays.fill(styles[cursorRow], start, column, style);
+            lastCharacter = rowCells[column - 1];
+            if (column == columns) {
+                cursorColumn = columns - 1;
+                pendingWrap = true;
+            } else {
+                cursorColumn = column;
+                break;
+            }
+        }
+        return index;
+    }
+
+    private void consume(int b) {
+        switch (state) {
+            case GROUND:
+                ground(b);
+                break;
+            case ESCAPE:
+                escape(b);
+                break;
+            case ESCAPE_SKIP:
+                state = GROUND;
+                break;
+            case CSI:
+                csi(b);
+                break;
+            case OSC:
+                if (b == 0x07) {
+                    dispatchOsc();
+                    state = GROUND;
+                } else if (b == 0x1b) {
+                    state = OSC_ESCAPE;
+                } else {
+                    oscString.append((char) b);
+                }
+                break;
+            case OSC_ESCAPE:
+                dispatchOsc();
+                state = GROUND;
+                if (b != '\\') {
+                    consume(b);
+                }
+                break;
+            case STRING:
+                if (b == 0x1b) {
+                    state = STRING_ESCAPE;
+                } else if (b == 0x07) {
+                    state = GROUND;
+                }
+                break;
+            case STRING_ESCAPE:
+                state = b == '\\' ? GROUND : STRING;
+                break;
+            default:
+                throw new IllegalStateException("Unknown parser state " + state);
+        }
+    }
+
+    private void ground(int b) {
+        if (utf8Remaining > 0) {
+            if ((b & 0xc0) == 0x80) {
+                utf8CodePoint = (utf8CodePoint << 6) | (b & 0x3f);
+                if (--utf8Remaining == 0) {
+                    print(utf8CodePoint);
+                }
+                return;
+            }
+            utf8Remaining = 0;
+            print(0xfffd);
+        }
+        if (b < 0x20 || b == 0x7f) {
+            control(b);
+        } else if (b < 0x80) {
+            print(b);
+        } else if ((b & 0xe0) == 0xc0) {
+            utf8CodePoint = b & 0x1f;
+            utf8Remaining = 1;
+        } else if ((b & 0xf0) == 0xe0) {
+            utf8CodePoint = b & 0x0f;
+            utf8Remaining = 2;
+        } else if ((b & 0xf8) == 0xf0) {
+            utf8CodePoint = b & 0x07;
+            utf8Remaining = 3;
+        } else {
+            print(0xfffd);
+        }
+    }
+
+    private void control(int b) {
+        switch (b) {
+            case 0x08:
+                if (cursorColumn > 0) cursorColumn--;
+                pendingWrap = false;
+                break;
+            case '\t':
+                cursorColumn = Math.min(columns - 1, (cursorColumn / TAB_WIDTH + 1) * TAB_WIDTH);
+                pendingWrap = false;
+                break;
+            case '\n':
+            case 0x0b:
+            case 0x0c:
+                lineFeed();
+                break;
+            case '\r':
+                cursorColumn = 0;
+                pendingWrap = false;
+                break;
+            case 0x1b:
+                state = ESCAPE;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void escape(int b) {
+        state = GROUND;
+        switch (b) {
+            case '[':
+                state = CSI;
+                parameterCount = 0;
+                parameterStarted = false;
+                privateMarker = 0;
+                intermediate = 0;
+                Arrays.fill(parameters, 0);
+                break;
+            case ']':
+                state = OSC;
+                oscString.setLength(0);
+                break;
+            case 'P':
+            case 'X':
+            case '^':
+            case '_':
+                state = STRING;
+                break;
+            case '(':
+            case ')':
+            case '*':
+            case '+':
+            case '#':
+            case '%':
+                state = ESCAPE_SKIP;
+                break;
+            case '7':
+                saveCursor();
+                break;
+            case '8':
+                restoreCursor();
+                break;
+            case 'D':
+                lineFeed();
+                break;
+            case 'E':
+                cursorColumn = 0;
+                lineFeed();
+                break;
+            case 'M':
+                reverseIndex();
+                break;
+            case 'c':
+                reset();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void csi(int b) {
+        if (b >= '0' && b <= '9') {
+            if (parameterCount < MAX_PARAMETERS) {
+                parameters[parameterCount] = Math.min(parameters[parameterCount] * 10 + (b - '0'), 65535);
+            }
+            parameterStarted = true;
+        } else if (b == ';' || b == ':') {
+            if (parameterCount < MAX_PARAMETERS) parameterCount++;
+            parameterStarted = false;
+        } else if (b >= 0x3c && b <= 0x3f) {
+            privateMarker = (char) b;
+        } else if (b >= 0x20 && b <= 0x2f) {
+            intermediate = (char) b;
+        } else if (b >= 0x40 && b <= 0x7e) {
+            if (parameterStarted || parameterCount > 0) {
+                parameterCount = Math.min(parameterCount + 1, MAX_PARAMETERS);
+            }
+            state = GROUND;
+            dispatchCsi((char) b);
+        } else if (b == 0x1b) {
+            state = ESCAPE;
+        } else if (b < 0x20) {
+            control(b);
+        }
+    }
+
+    private void dispatchOsc() {
+        int separator = oscString.indexOf(";");
+        if (separator < 0) {
+            return;
+        }
+        String command = oscString.substring(0, separator);
+        if (command.equals("0") || command.equals("2")) {
+            byte[] payload = new byte[oscString.length() - separator - 1];
+            for (int index = 0; index < payload.length; index++) {
+                payload[index] = (byte) oscString.charAt(separator + 1 + index);
+            }
+            title = new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void dispatchCsi(char finalByte) {
+        if (intermediate != 0) {
+            return;
+        }
+        if (privateMarker == '?') {
+            if (finalByte == 'h' || finalByte == 'l') {
+                for (int index = 0; index < parameterCount; index++) {
+                    setPrivateMode(parameters[index], finalByte == 'h');
+                }
+            }
+            return;
+        }
+        if (privateMarker != 0) {
+            return;
+        }
+        switch (finalByte) {
+            case '@': insertCharacters(parameter(0, 1)); break;
+            case 'A': moveCursor(cursorRow - parameter(0, 1), cursorColumn); break;
+            case 'B': moveCursor(cursorRow + parameter(0, 1), cursorColumn); break;
+            case 'C': moveCursor(cursorRow, cursorColumn + parameter(0, 1)); break;
+            case 'D': moveCursor(cursorRow, cursorColumn - parameter(0, 1)); break;
+            case 'E': moveCursor(cursorRow + parameter(0, 1), 0); break;
+            case 'F': moveCursor(cursorRow - parameter(0, 1), 0); break;
+            case 'G': case '`': moveCursor(cursorRow, parameter(0, 1) - 1); break;
+            case 'H': case 'f': moveCursor(parameter(0, 1) - 1, parameter(1, 1) - 1); break;
+            case 'J': eraseInDisplay(parameter(0, 0)); break;
+            case 'K': eraseInLine(parameter(0, 0)); break;
+            case 'L': insertLines(parameter(0, 1)); break;
+            case 'M': deleteLines(parameter(0, 1)); break;
+            case 'P': deleteCharacters(parameter(0, 1)); break;
+            case 'S': scrollUp(scrollTop, scrollBottom, parameter(0, 1)); break;
+            case 'T': scrollDown(scrollTop, scrollBottom, parameter(0, 1)); break;
+            case 'X': erase(cursorRow, cursorColumn, Math.min(columns, cursorColumn + parameter(0, 1))); break;
+            case 'b': repeat(parameter(0, 1)); break;
+            case 'd': moveCursor(parameter(0, 1) - 1, cursorColumn); break;
+            case 'm': selectGraphicRendition(); break;
+            case 'r': setScrollRegion(parameter(0, 1) - 1, parameter(1, rows) - 1); break;
+            case 's': saveCursor(); break;
+            case 'u': restoreCursor(); break;
+            default: break;
+        }
+    }
+
+    private int parameter(int index, int defaultValue) {
+        return index < parameterCount && parameters[index] != 0 ? parameters[index] : defaultValue;
+    }
+
+//  ============================ A C T I O N S ============================
+
+    private void print(int codePoint) {
+        if (pendingWrap) {
+            wrap();
+        }
+        cells[cursorRow][cursorColumn] = codePoint;
+        styles[cursorRow][cursorColumn] = style;
+        lastCharacter = codePoint;
+        if (cursorColumn == columns - 1) {
+            pendingWrap = true;
+        } else {
+            cursorColumn++;
+        }
+    }
+
+    private void wrap() {
+        pendingWrap = false;
+        cursorColumn = 0;
+        lineFeed();
+    }
+
+    private void repeat(int count) {
+        for (int index = 0; index < count; index++) {
+            print(lastCharacter);
+        }
+    }
+
+    private void lineFeed() {
+        pendingWrap = false;
+        if (cursorRow == scrollBottom) {
+            scrollUp(scrollTop, scrollBottom, 1);
+        } else if (cursorRow < rows - 1) {
+            cursorRow++;
+        }
+    }
+
+    private void reverseIndex() {
+        pendingWrap = false;
+        if (cursorRow == scrollTop) {
+            scrollDown(scrollTop, scrollBottom, 1);
+        } else if (cursorRow > 0) {
+            cursorRow--;
+        }
+    }
+
+    private void moveCursor(int row, int column) {
+        cursorRow = Math.max(0, Math.min(row, rows - 1));
+        cursorColumn = Math.max(0, Math.min(column, columns - 1));
+        pendingWrap = false;
+    }
+
+    private void scrollUp(int top, int bottom, int lines) {
+        int count = Math.min(lines, bottom - top + 1);
+        for (int step = 0; step < count; step++) {
+            rotate(top, bottom, top, bottom);
+        }
+    }
+
+    private void scrollDown(int top, int bottom, int lines) {
+        int count = Math.min(lines, bottom - top + 1);
+        for (int step = 0; step < count; step++) {
+            rotate(top, bottom, bottom, top);
+        }
+    }
+
+    // moves the row at 'from' to 'to', shifting the rows between them, and erases it
+    private void rotate(int top, int bottom, int from, int to) {
+        int[] rowCells = cells[from];
+        long[] rowStyles = styles[from];
+        if (from == top) {
+            System.arraycopy(cells, top + 1, cells, top, bottom - top);
+            System.arraycopy(styles, top + 1, styles, top, bottom - top);
+        } else {
+            System.arraycopy(cells, top, cells, top + 1, bottom - top);
+            System.arraycopy(styles, top, styles, top + 1, bottom - top);
+        }
+        cells[to] = rowCells;
+        styles[to] = rowStyles;
+        erase(to, 0, columns);
+    }
+
+    private void insertLines(int lines) {
+        if (cursorRow >= scrollTop && cursorRow <= scrollBottom) {
+            scrollDown(cursorRow, scrollBottom, lines);
+            cursorColumn = 0;
+            pendingWrap = false;
+        }
+    }
+
+    private void deleteLines(int lines) {
+        if (cursorRow >= scrollTop && cursorRow <= scrollBottom) {
+            scrollUp(cursorRow, scrollBottom, lines);
+            cursorColumn = 0;
+            pendingWrap = false;
+        }
+    }
+
+    private void insertCharacters(int count) {
+        int[] rowCells = cells[cursorRow];
+        long[] rowStyles = styles[cursorRow];
+        int shifted = Math.min(count, columns - cursorColumn);
+        System.arraycopy(rowCells, cursorColumn, rowCells, cursorColumn + shifted, columns - cursorColumn - shifted);
+        System.arraycopy(rowStyles, cursorColumn, rowStyles, cursorColumn + shifted, columns - cursorColumn - shifted);
+        erase(cursorRow, cursorColumn, cursorColumn + shifted);
+        pendingWrap = false;
+    }
+
+    private void deleteCharacters(int count) {
+        int[] rowCells = cells[cursorRow];
+        long[] rowStyles = styles[cursorRow];
+        int shifted = Math.min(count, columns - cursorColumn);
+        System.arraycopy(rowCells, cursorColumn + shifted, rowCells, cursorColumn, columns - cursorColumn - shifted);
+        System.arraycopy(rowStyles, cursorColumn + shifted, rowStyles, cursorColumn, columns - cursorColumn - shifted);
+        erase(cursorRow, columns - shifted, columns);
+        pendingWrap = false;
+    }
+
+    private void eraseInDisplay(int mode) {
+        switch (mode) {
+            case 0:
+                erase(cursorRow, cursorColumn, columns);
+                for (int row = cursorRow + 1; row < rows; row++) erase(row, 0, columns);
+                break;
+            case 1:
+                for (int row = 0; row < cursorRow; row++) erase(row, 0, columns);
+                erase(cursorRow, 0, cursorColumn + 1);
+                break;
+            case 2:
+            case 3:
+                for (int row = 0; row < rows; row++) erase(row, 0, columns);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void eraseInLine(int mode) {
+        switch (mode) {
+            case 0: erase(cursorRow, cursorColumn, columns); break;
+            case 1: erase(cursorRow, 0, cursorColumn + 1); break;
+            case 2: erase(cursorRow, 0, columns); break;
+            default: break;
+        }
+    }
+
+    // erased cells keep the current background color, like in xterm
+    private void erase(int row, int from, int to) {
+        long erasedStyle = style & (COLOR_MASK << COLOR_BITS);
+        Arrays.fill(cells[row], from, to, ' ');
+        Arrays.fill(styles[row], from, to, erasedStyle);
+    }
+
+    private void setScrollRegion(int top, int bottom) {
+        int lastRow = Math.min(bottom, rows - 1);
+        if (top < lastRow) {
+            scrollTop = top;
+            scrollBottom = lastRow;
+        }
+        moveCursor(0, 0);
+    }
+
+    private void saveCursor() {
+        savedRow = cursorRow;
+        savedColumn = cursorColumn;
+        savedStyle = style;
+    }
+
+    private void restoreCursor() {
+        moveCursor(savedRow, savedColumn);
+        style = savedStyle;
+    }
+
+    private void setPrivateMode(int mode, boolean enabled) {
+        privateModes.set(mode, enabled);
+        switch (mode) {
+            case 25:
+                cursorVisible = enabled;
+                break;
+            case 47:
+            case 1047:
+                switchScreen(enabled);
+                break;
+            case 1049:
+                if (enabled) {
+                    saveCursor();
+                    switchScreen(true);
+                    for (int row = 0; row < rows; row++) erase(row, 0, columns);
+                } else {
+                    switchScreen(false);
+                    restoreCursor();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void switchScreen(boolean alternate) {
+        if (alternate == alternateScreen) {
+            return;
+        }
+        int[][] swappedCells = cells;
+        cells = alternateCells;
+        alternateCells = swappedCells;
+        long[][] swappedStyles = styles;
+        styles = alternateStyles;
+        alternateStyles = swappedStyles;
+        alternateScreen = alternate;
+    }
+
+    private void reset() {
+        switchScreen(false);
+        style = DEFAULT_STYLE;
+        for (int row = 0; row < rows; row++) erase(row, 0, columns);
+        moveCursor(0, 0);
+        scrollTop = 0;
+        scrollBottom = rows - 1;
+        cursorVisible = true;
+        privateModes.clear();
+    }
+
+    private void selectGraphicRendition() {
+        if (parameterCount == 0) {
+            style = DEFAULT_STYLE;
+            return;
+        }
+        for (int index = 0; index < parameterCount; index++) {
+            int parameter = parameters[index];
+            switch (parameter) {
+                case 0: style = DEFAULT_STYLE; break;
+                case 1: setFlag(BOLD, true); break;
+                case 2: setFlag(DIM, true); break;
+                case 3: setFlag(ITALIC, true); break;
+                case 4: setFlag(UNDERLINE, true); break;
+                case 5: case 6: setFlag(BLINK, true); break;
+                case 7: setFlag(INVERSE, true); break;
+                case 8: setFlag(HIDDEN, true); break;
+                case 9: setFlag(STRIKETHROUGH, true); break;
+                case 21: case 24: setFlag(UNDERLINE, false); break;
+                case 22: setFlag(BOLD | DIM, false); break;
+                case 23: setFlag(ITALIC, false); break;
+                case 25: setFlag(BLINK, false); break;
+                case 27: setFlag(INVERSE, false); break;
+                case 28: setFlag(HIDDEN, false); break;
+                case 29: setFlag(STRIKETHROUGH, false); break;
+                case 39: setForeground(0); break;
+                case 49: setBackground(0); break;
+                case 38:
+                case 48: {
+                    int color = 0;
+                    if (index + 2 < parameterCount && parameters[index + 1] == 5) {
+                        color = INDEXED | (parameters[index + 2] & 0xff);
+                        index += 2;
+                    } else if (index + 4 < parameterCount && parameters[index + 1] == 2) {
+                        color = TRUE_COLOR | (parameters[index + 2] & 0xff) << 16
+                                | (parameters[index + 3] & 0xff) << 8 | (parameters[index + 4] & 0xff);
+                        index += 4;
+                    } else {
+                        index = parameterCount;
+                        break;
+                    }
+                    if (parameter == 38) setForeground(color); else setBackground(color);
+                    break;
+                }
+                default:
+                    if (parameter >= 30 && parameter <= 37) setForeground(INDEXED | (parameter - 30));
+                    else if (parameter >= 40 && parameter <= 47) setBackground(INDEXED | (parameter - 40));
+                    else if (parameter >= 90 && parameter <= 97) setForeground(INDEXED | (parameter - 90 + 8));
+                    else if (parameter >= 100 && parameter <= 107) setBackground(INDEXED | (parameter - 100 + 8));
+                    break;
+            }
+        }
+    }
+
+    private void setFlag(int flag, boolean enabled) {
+        long mask = (long) flag << FLAGS_SHIFT;
+        style = enabled ? style | mask : style & ~mask;
+    }
+
+    private void setForeground(int color) {
+        style = (style & ~COLOR_MASK) | color;
+    }
+
+    private void setBackground(int color) {
+        style = (style & ~(COLOR_MASK << COLOR_BITS)) | ((long) color << COLOR_BITS);
+    }
+
+//  ============================ A C C E S S ============================
+
+    int getRows() {
+        return rows;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getCodePoint(int row, int column) {
+        return cells[row][column];
+    }
+
+    long getStyle(int row, int column) {
+        return styles[row][column];
+    }
+
+    /**
+     * Returns the text of a row, including trailing blanks.
+     */
+    String getLine(int row) {
+        return new String(cells[row], 0, columns);
+    }
+
+    int getCursorRow() {
+        return cursorRow;
+    }
+
+    int getCursorColumn() {
+        return cursorColumn;
+    }
+
+    boolean isCursorVisible() {
+        return cursorVisible;
+    }
+
+    boolean isAlternateScreen() {
+        return alternateScreen;
+    }
+
+    boolean isPrivateModeSet(int mode) {
+        return privateModes.get(mode);
+    }
+
+    String getTitle() {
+        return title;
+    }
+
+    /**
+     * Returns the SGR state that subsequent characters are written with.
+     */
+    long getCurrentStyle() {
+        return style;
+    }
+
+    /**
+     * Checks whether both terminals show the same characters with the same styles, regardless of the cursor.
+     */
+    boolean hasSameScreen(VirtualTerminal other) {
+        return rows == other.rows && columns == other.columns
+                && Arrays.deepEquals(cells, other.cells) && Arrays.deepEquals(styles, other.styles);
+    }
+
+    static int foreground(long style) {
+        return (int) (style & COLOR_MASK);
+    }
+
+    static int background(long style) {
+        return (int) ((style >>> COLOR_BITS) & COLOR_MASK);
+    }
+
+    static int flags(long style) {
+        return (int) (style >>> FLAGS_SHIFT);
+    }
+
+    /**
+     * Returns the style a terminal in its initial state applies after the specified SGR sequences.
+     */
+    static long styleOf(String... sgrSequences) {
+        VirtualTerminal terminal = new VirtualTerminal(1, 1);
+        for (String sequence : sgrSequences) {
+            byte[] bytes = sequence.getBytes(StandardCharsets.US_ASCII);
+            terminal.write(bytes, 0, bytes.length);
+        }
+        return terminal.style;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            builder.append(getLine(row)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private int[][] resized(int[][] source, int newRows, int newColumns, int fill) {
+        int[][] target = new int[newRows][newColumns];
+        for (int row = 0; row < newRows; row++) {
+            Arrays.fill(target[row], fill);
+            if (source != null && row < rows) {
+                System.arraycopy(source[row], 0, target[row], 0, Math.min(columns, newColumns));
+            }
+        }
+        return target;
+    }
+
+    private long[][] resized(long[][] source, int newRows, int newColumns) {
+        long[][] target = new long[newRows][newColumns];
+        for (int row = 0; source != null && row < Math.min(rows, newRows); row++) {
+            System.arraycopy(source[row], 0, target[row], 0, Math.min(columns, newColumns));
+        }
+        return target;
+    }
+}
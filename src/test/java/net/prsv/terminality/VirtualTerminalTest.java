@@ -0,0 +1,171 @@
+package net.prsv.terminality;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualTerminalTest {
+
+    @Test
+    void printedTextWrapsAtTheRightMarginOnlyWhenMoreTextFollows() {
+        VirtualTerminal terminal = terminal(3, 4, "abcd");
+
+        assertEquals("abcd", terminal.getLine(0));
+        assertEquals(0, terminal.getCursorRow());
+        assertEquals(3, terminal.getCursorColumn());
+
+        write(terminal, "ef");
+
+        assertEquals("ef  ", terminal.getLine(1));
+    }
+
+    @Test
+    void lineFeedAtTheBottomScrollsTheScreen() {
+        VirtualTerminal terminal = terminal(2, 3, "ab\r\ncd\r\nef");
+
+        assertEquals("cd ", terminal.getLine(0));
+        assertEquals("ef ", terminal.getLine(1));
+    }
+
+    @Test
+    void multiByteCharactersOccupyOneCell() {
+        VirtualTerminal terminal = terminal(1, 4, "é─😀x");
+
+        assertEquals('é', terminal.getCodePoint(0, 0));
+        assertEquals('─', terminal.getCodePoint(0, 1));
+        assertEquals(0x1f600, terminal.getCodePoint(0, 2));
+        assertEquals('x', terminal.getCodePoint(0, 3));
+    }
+
+    @Test
+    void cursorMovementIsClampedToTheScreen() {
+        VirtualTerminal terminal = terminal(5, 10, "\u001b[3;4H");
+        assertEquals(2, terminal.getCursorRow());
+        assertEquals(3, terminal.getCursorColumn());
+
+        write(terminal, "\u001b[20A\u001b[2C");
+        assertEquals(0, terminal.getCursorRow());
+        assertEquals(5, terminal.getCursorColumn());
+
+        write(terminal, "\u001b[99;99H");
+        assertEquals(4, terminal.getCursorRow());
+        assertEquals(9, terminal.getCursorColumn());
+    }
+
+    @Test
+    void eraseAndRepeatChangeTheCells() {
+        VirtualTerminal terminal = terminal(2, 8, "abcdefgh\r\nxyz\u001b[3b");
+        assertEquals("xyzzzz  ", terminal.getLine(1));
+
+        write(terminal, "\u001b[1;3H\u001b[2X\u001b[1;7H\u001b[K");
+        assertEquals("ab  ef  ", terminal.getLine(0));
+
+        write(terminal, "\u001b[2J");
+        assertEquals("        ", terminal.getLine(0));
+        assertEquals("        ", terminal.getLine(1));
+    }
+
+    @Test
+    void scrollRegionLimitsScrollingAndLineInsertion() {
+        VirtualTerminal terminal = terminal(4, 2, "a\r\nb\r\nc\r\nd");
+
+        write(terminal, "\u001b[2;3r\u001b[1S\u001b[r");
+        assertEquals("a c   d ", String.join("", lines(terminal)));
+
+        write(terminal, "\u001b[2;1H\u001b[1L");
+        assertEquals("a   c   ", String.join("", lines(terminal)));
+
+        write(terminal, "\u001b[1;1H\u001b[1M");
+        assertEquals("  c     ", String.join("", lines(terminal)));
+    }
+
+    @Test
+    void graphicRenditionIsAppliedToPrintedAndErasedCells() {
+        VirtualTerminal terminal = terminal(1, 6, "\u001b[1;31;44mA\u001b[38;5;200;48;2;1;2;3mB\u001b[0;4mC\u001b[m");
+
+        long a = terminal.getStyle(0, 0);
+        assertEquals(VirtualTerminal.BOLD, VirtualTerminal.flags(a));
+        assertEquals(VirtualTerminal.styleOf("\u001b[1;44;31m"), a);
+        assertEquals(VirtualTerminal.styleOf("\u001b[1;38;5;200;48;2;1;2;3m"), terminal.getStyle(0, 1));
+        assertEquals(VirtualTerminal.UNDERLINE, VirtualTerminal.flags(terminal.getStyle(0, 2)));
+        assertEquals(VirtualTerminal.DEFAULT_STYLE, terminal.getCurrentStyle());
+
+        write(terminal, "\u001b[45m\u001b[1;4H\u001b[K");
+        assertEquals(VirtualTerminal.styleOf("\u001b[45m"), terminal.getStyle(0, 5));
+    }
+
+    @Test
+    void alternateScreenKeepsTheMainScreenAndCursor() {
+        VirtualTerminal terminal = terminal(2, 4, "main\u001b[2;2H");
+
+        write(terminal, "\u001b[?1049h\u001b[?25lalt");
+        assertTrue(terminal.isAlternateScreen());
+        assertFalse(terminal.isCursorVisible());
+        assertEquals("    ", terminal.getLine(0));
+        assertEquals(" alt", terminal.getLine(1));
+
+        write(terminal, "\u001b[?1049l\u001b[?25h");
+        assertFalse(terminal.isAlternateScreen());
+        assertTrue(terminal.isCursorVisible());
+        assertEquals("main", terminal.getLine(0));
+        assertEquals(1, terminal.getCursorRow());
+        assertEquals(1, terminal.getCursorColumn());
+    }
+
+    @Test
+    void otherSequencesAreConsumedWithoutPrinting() {
+        VirtualTerminal terminal = terminal(1, 8,
+                "\u001b]0;tïtle\u0007\u001b[?2004h\u001b[>1u\u001b(B\u001bP+q\u001b\\ok\u001b[8;24;80t");
+
+        assertEquals("ok      ", terminal.getLine(0));
+        assertEquals("tïtle", terminal.getTitle());
+        assertTrue(terminal.isPrivateModeSet(2004));
+    }
+
+    @Test
+    void sequencesSplitAcrossWritesAreParsed() {
+        VirtualTerminal terminal = new VirtualTerminal(1, 4);
+        byte[] bytes = "\u001b[31mxé".getBytes(StandardCharsets.UTF_8);
+
+        for (byte b : bytes) {
+            terminal.write(b);
+        }
+
+        assertEquals("xé  ", terminal.getLine(0));
+        assertEquals(VirtualTerminal.styleOf("\u001b[31m"), terminal.getStyle(0, 1));
+    }
+
+    @Test
+    void resizeKeepsTheCellsThatFit() {
+        VirtualTerminal terminal = terminal(2, 3, "abc\r\ndef");
+
+        terminal.resize(3, 2);
+
+        assertEquals("ab", terminal.getLine(0));
+        assertEquals("de", terminal.getLine(1));
+        assertEquals("  ", terminal.getLine(2));
+    }
+
+    private static VirtualTerminal terminal(int rows, int columns, String output) {
+        VirtualTerminal terminal = new VirtualTerminal(rows, columns);
+        write(terminal, output);
+        return terminal;
+    }
+
+    private static void write(VirtualTerminal terminal, String output) {
+        byte[] bytes = output.getBytes(StandardCharsets.UTF_8);
+        terminal.write(bytes, 0, bytes.length);
+    }
+
+    private static String[] lines(VirtualTerminal terminal) {
+        String[] lines = new String[terminal.getRows()];
+        for (int row = 0; row < lines.length; row++) {
+            lines[row] = terminal.getLine(row);
+        }
+        return lines;
+    }
+}